@@ -0,0 +1,133 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import javax.xml.transform.Source;
+import javax.xml.transform.stream.StreamSource;
+
+import com.helger.commons.annotation.ReturnsMutableCopy;
+import com.helger.commons.io.stream.StreamHelper;
+
+/**
+ * Provides access to the test documents of the <code>ubl2ebinterface</code>
+ * project that are used as the benchmark corpus. All documents are read into
+ * memory upfront so that file I/O is not part of the measurement.
+ *
+ * @author philip
+ */
+@Immutable
+public final class BenchmarkCorpus
+{
+  /**
+   * The system property that may be used to define the base directory of the
+   * test files. Defaults to the test resources of the sibling project.
+   */
+  public static final String SYSTEM_PROPERTY_BASE_DIR = "ubl2ebi.benchmark.basedir";
+  public static final String DEFAULT_BASE_DIR = "../ubl2ebinterface/src/test/resources";
+
+  public static final String DIR_INVOICES_SUCCESS = "test-invoices/success";
+  public static final String DIR_CREDITNOTES_SUCCESS = "test-creditnotes/success";
+
+  private BenchmarkCorpus ()
+  {}
+
+  @Nonnull
+  public static File getBaseDir ()
+  {
+    return new File (System.getProperty (SYSTEM_PROPERTY_BASE_DIR, DEFAULT_BASE_DIR));
+  }
+
+  @Nonnull
+  private static byte [] _readFully (@Nonnull final File aFile)
+  {
+    InputStream aIS = null;
+    try
+    {
+      aIS = new FileInputStream (aFile);
+      final ByteArrayOutputStream aBAOS = new ByteArrayOutputStream ((int) aFile.length ());
+      final byte [] aBuffer = new byte [16 * 1024];
+      int nRead;
+      while ((nRead = aIS.read (aBuffer)) > 0)
+        aBAOS.write (aBuffer, 0, nRead);
+      return aBAOS.toByteArray ();
+    }
+    catch (final FileNotFoundException ex)
+    {
+      throw new IllegalStateException ("Failed to open corpus file " + aFile.getAbsolutePath (), ex);
+    }
+    catch (final IOException ex)
+    {
+      throw new IllegalStateException ("Failed to read corpus file " + aFile.getAbsolutePath (), ex);
+    }
+    finally
+    {
+      StreamHelper.close (aIS);
+    }
+  }
+
+  /**
+   * Read all XML files of the passed directory relative to the base directory.
+   *
+   * @param sRelativeDir
+   *        The directory relative to {@link #getBaseDir()}. May not be
+   *        <code>null</code>.
+   * @return The content of all files, sorted by filename. Never
+   *         <code>null</code> nor empty.
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public static List <byte []> readAllFiles (@Nonnull final String sRelativeDir)
+  {
+    final File aDir = new File (getBaseDir (), sRelativeDir);
+    final File [] aFiles = aDir.listFiles ();
+    if (aFiles == null)
+      throw new IllegalStateException ("Corpus directory " +
+                                       aDir.getAbsolutePath () +
+                                       " does not exist. Use -D" +
+                                       SYSTEM_PROPERTY_BASE_DIR +
+                                       "=<dir> to specify the test resource directory.");
+    // Ensure a stable order over all runs
+    Arrays.sort (aFiles);
+
+    final List <byte []> ret = new ArrayList <byte []> ();
+    for (final File aFile : aFiles)
+      if (aFile.isFile () && aFile.getName ().endsWith (".xml"))
+        ret.add (_readFully (aFile));
+    if (ret.isEmpty ())
+      throw new IllegalStateException ("Corpus directory " + aDir.getAbsolutePath () + " contains no XML files");
+    return ret;
+  }
+
+  @Nonnull
+  public static Source createSource (@Nonnull final byte [] aBytes)
+  {
+    return new StreamSource (new ByteArrayInputStream (aBytes));
+  }
+}
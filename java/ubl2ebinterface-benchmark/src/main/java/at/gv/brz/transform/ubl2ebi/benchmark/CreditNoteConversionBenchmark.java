@@ -0,0 +1,152 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+
+import com.helger.commons.xml.serialize.write.XMLWriter;
+import com.helger.ebinterface.EbInterface41Marshaller;
+import com.helger.ebinterface.v41.Ebi41InvoiceType;
+import com.helger.ubl21.UBL21Reader;
+import com.helger.validation.error.ErrorList;
+
+import at.gv.brz.transform.ubl2ebi.EbInterface41StreamWriter;
+import at.gv.brz.transform.ubl2ebi.creditnote.CreditNoteToEbInterface41Converter;
+import oasis.names.specification.ubl.schema.xsd.creditnote_21.CreditNoteType;
+
+/**
+ * Benchmark for {@link CreditNoteToEbInterface41Converter} on the UBL credit
+ * note success corpus. Each benchmark method processes exactly one document per
+ * invocation (round robin over the corpus), so the reported time and the
+ * allocation rate of the GC profiler are per document. The three phases parse,
+ * convert and marshal are measured independently.
+ *
+ * @author philip
+ */
+@State (Scope.Thread)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.MICROSECONDS)
+@Warmup (iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement (iterations = 10, time = 2, timeUnit = TimeUnit.SECONDS)
+@Fork (1)
+public class CreditNoteConversionBenchmark
+{
+  private final List <byte []> m_aSources = new ArrayList <byte []> ();
+  private final List <CreditNoteType> m_aUBLDocs = new ArrayList <CreditNoteType> ();
+  private final List <Ebi41InvoiceType> m_aEbiDocs = new ArrayList <Ebi41InvoiceType> ();
+  private CreditNoteToEbInterface41Converter m_aConverter;
+  private final EbInterface41StreamWriter m_aStreamWriter = new EbInterface41StreamWriter ();
+  private int m_nSourceIndex;
+  private int m_nUBLIndex;
+  private int m_nEbiIndex;
+
+  @Setup
+  public void setup ()
+  {
+    m_aConverter = new CreditNoteToEbInterface41Converter (Locale.GERMANY, Locale.GERMANY, false);
+    for (final byte [] aBytes : BenchmarkCorpus.readAllFiles (BenchmarkCorpus.DIR_CREDITNOTES_SUCCESS))
+    {
+      m_aSources.add (aBytes);
+
+      final CreditNoteType aUBLDoc = UBL21Reader.readCreditNote (BenchmarkCorpus.createSource (aBytes));
+      if (aUBLDoc == null)
+        continue;
+      m_aUBLDocs.add (aUBLDoc);
+
+      final Ebi41InvoiceType aEbiDoc = m_aConverter.convertToEbInterface (aUBLDoc, new ErrorList ());
+      // Only documents that can be marshalled are part of the marshal phase
+      if (aEbiDoc != null && new EbInterface41Marshaller ().write (aEbiDoc) != null)
+        m_aEbiDocs.add (aEbiDoc);
+    }
+    if (m_aUBLDocs.isEmpty () || m_aEbiDocs.isEmpty ())
+      throw new IllegalStateException ("No convertible credit notes found in the corpus");
+  }
+
+  /**
+   * Phase 1: XML bytes to UBL domain object
+   *
+   * @return The read UBL credit note
+   */
+  @Benchmark
+  public CreditNoteType parse ()
+  {
+    final byte [] aBytes = m_aSources.get (m_nSourceIndex);
+    m_nSourceIndex = (m_nSourceIndex + 1) % m_aSources.size ();
+    return UBL21Reader.readCreditNote (BenchmarkCorpus.createSource (aBytes));
+  }
+
+  /**
+   * Phase 2: UBL domain object to ebInterface domain object
+   *
+   * @return The converted ebInterface credit note
+   */
+  @Benchmark
+  public Ebi41InvoiceType convert ()
+  {
+    final CreditNoteType aUBLDoc = m_aUBLDocs.get (m_nUBLIndex);
+    m_nUBLIndex = (m_nUBLIndex + 1) % m_aUBLDocs.size ();
+    return m_aConverter.convertToEbInterface (aUBLDoc, new ErrorList ());
+  }
+
+  /**
+   * Phase 3: ebInterface domain object to XML bytes
+   *
+   * @return The serialized ebInterface credit note
+   */
+  @Benchmark
+  public byte [] marshal ()
+  {
+    final Ebi41InvoiceType aEbiDoc = m_aEbiDocs.get (m_nEbiIndex);
+    m_nEbiIndex = (m_nEbiIndex + 1) % m_aEbiDocs.size ();
+    final Document aDoc = new EbInterface41Marshaller ().write (aEbiDoc);
+    final ByteArrayOutputStream aBAOS = new ByteArrayOutputStream ();
+    XMLWriter.writeToStream (aDoc, aBAOS);
+    return aBAOS.toByteArray ();
+  }
+
+  /**
+   * Phase 3 (alternative): ebInterface domain object to XML bytes without an
+   * intermediate DOM document and without XML Schema validation
+   *
+   * @return The serialized ebInterface invoice
+   */
+  @Benchmark
+  public byte [] marshalStreaming ()
+  {
+    final Ebi41InvoiceType aEbiDoc = m_aEbiDocs.get (m_nEbiIndex);
+    m_nEbiIndex = (m_nEbiIndex + 1) % m_aEbiDocs.size ();
+    final ByteArrayOutputStream aBAOS = new ByteArrayOutputStream ();
+    m_aStreamWriter.write (aEbiDoc, aBAOS);
+    return aBAOS.toByteArray ();
+  }
+}
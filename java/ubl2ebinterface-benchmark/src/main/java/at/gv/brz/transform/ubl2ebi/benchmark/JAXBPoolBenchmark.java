@@ -0,0 +1,192 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.helger.ebinterface.v41.Ebi41InvoiceType;
+import com.helger.ebinterface.v41.ObjectFactory;
+import com.helger.jaxb.JAXBMarshallerHelper;
+import com.helger.ubl21.UBL21Reader;
+import com.helger.validation.error.ErrorList;
+
+import at.gv.brz.transform.ubl2ebi.EbInterface41StreamWriter;
+import at.gv.brz.transform.ubl2ebi.EbiNamespacePrefixMapper;
+import at.gv.brz.transform.ubl2ebi.JAXBPool;
+import at.gv.brz.transform.ubl2ebi.invoice.InvoiceToEbInterface41Converter;
+import oasis.names.specification.ubl.schema.xsd.invoice_21.InvoiceType;
+
+/**
+ * Compares the per thread marshallers and unmarshallers of {@link JAXBPool}
+ * with creating them for every document from the same shared context, on the
+ * UBL invoice success corpus. Together with the GC profiler of
+ * {@link MainBenchmarkRunner} this shows the time and the allocation per
+ * document that the pool saves. The parse phase additionally measures
+ * <code>UBL21Reader</code>, which is still used where XML Schema validation is
+ * needed. Each benchmark method processes exactly one document per
+ * invocation.
+ *
+ * @author philip
+ */
+@State (Scope.Thread)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.MICROSECONDS)
+@Warmup (iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement (iterations = 10, time = 2, timeUnit = TimeUnit.SECONDS)
+@Fork (1)
+public class JAXBPoolBenchmark
+{
+  private static final ObjectFactory s_aObjectFactory = new ObjectFactory ();
+
+  private final List <byte []> m_aSources = new ArrayList <byte []> ();
+  private final List <Ebi41InvoiceType> m_aEbiDocs = new ArrayList <Ebi41InvoiceType> ();
+  private int m_nSourceIndex;
+  private int m_nEbiIndex;
+
+  @Setup
+  public void setup ()
+  {
+    final InvoiceToEbInterface41Converter aConverter = new InvoiceToEbInterface41Converter (Locale.GERMANY,
+                                                                                           Locale.GERMANY,
+                                                                                           false);
+    final EbInterface41StreamWriter aWriter = new EbInterface41StreamWriter ();
+    for (final byte [] aBytes : BenchmarkCorpus.readAllFiles (BenchmarkCorpus.DIR_INVOICES_SUCCESS))
+    {
+      final InvoiceType aUBLDoc = UBL21Reader.readInvoice (BenchmarkCorpus.createSource (aBytes));
+      if (aUBLDoc == null)
+        continue;
+      m_aSources.add (aBytes);
+
+      final Ebi41InvoiceType aEbiDoc = aConverter.convertToEbInterface (aUBLDoc, new ErrorList ());
+      // Only documents that can be marshalled are part of the marshal phase
+      if (aEbiDoc != null && aWriter.write (aEbiDoc, new ByteArrayOutputStream ()).isSuccess ())
+        m_aEbiDocs.add (aEbiDoc);
+    }
+    if (m_aSources.isEmpty () || m_aEbiDocs.isEmpty ())
+      throw new IllegalStateException ("No convertible invoices found in the corpus");
+  }
+
+  private byte [] _nextSource ()
+  {
+    final byte [] ret = m_aSources.get (m_nSourceIndex);
+    m_nSourceIndex = (m_nSourceIndex + 1) % m_aSources.size ();
+    return ret;
+  }
+
+  private Ebi41InvoiceType _nextEbiDoc ()
+  {
+    final Ebi41InvoiceType ret = m_aEbiDocs.get (m_nEbiIndex);
+    m_nEbiIndex = (m_nEbiIndex + 1) % m_aEbiDocs.size ();
+    return ret;
+  }
+
+  /**
+   * Parse with <code>UBL21Reader</code>, including XML Schema validation
+   *
+   * @return The read UBL invoice
+   */
+  @Benchmark
+  public InvoiceType parseUBL21Reader ()
+  {
+    return UBL21Reader.readInvoice (BenchmarkCorpus.createSource (_nextSource ()));
+  }
+
+  /**
+   * Parse with a new unmarshaller of the shared context
+   *
+   * @return The read UBL invoice
+   * @throws JAXBException
+   *         In case of an error
+   */
+  @Benchmark
+  public InvoiceType parseUnpooled () throws JAXBException
+  {
+    return JAXBPool.getUBLInvoiceContext ()
+                   .createUnmarshaller ()
+                   .unmarshal (BenchmarkCorpus.createSource (_nextSource ()), InvoiceType.class)
+                   .getValue ();
+  }
+
+  /**
+   * Parse with the unmarshaller of the current thread
+   *
+   * @return The read UBL invoice
+   * @throws JAXBException
+   *         In case of an error
+   */
+  @Benchmark
+  public InvoiceType parsePooled () throws JAXBException
+  {
+    return JAXBPool.getUBLInvoiceUnmarshaller ()
+                   .unmarshal (BenchmarkCorpus.createSource (_nextSource ()), InvoiceType.class)
+                   .getValue ();
+  }
+
+  /**
+   * Marshal with a new marshaller of the shared context, configured like the
+   * pooled one
+   *
+   * @return The serialized ebInterface invoice
+   * @throws JAXBException
+   *         In case of an error
+   */
+  @Benchmark
+  public byte [] marshalUnpooled () throws JAXBException
+  {
+    final Marshaller aMarshaller = JAXBPool.getEbInterface41Context ().createMarshaller ();
+    aMarshaller.setProperty (Marshaller.JAXB_ENCODING, JAXBPool.DEFAULT_ENCODING);
+    aMarshaller.setProperty (Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.FALSE);
+    JAXBMarshallerHelper.setSunNamespacePrefixMapper (aMarshaller, new EbiNamespacePrefixMapper ());
+    final ByteArrayOutputStream aBAOS = new ByteArrayOutputStream ();
+    aMarshaller.marshal (s_aObjectFactory.createInvoice (_nextEbiDoc ()), aBAOS);
+    return aBAOS.toByteArray ();
+  }
+
+  /**
+   * Marshal with the marshaller of the current thread
+   *
+   * @return The serialized ebInterface invoice
+   * @throws JAXBException
+   *         In case of an error
+   */
+  @Benchmark
+  public byte [] marshalPooled () throws JAXBException
+  {
+    final ByteArrayOutputStream aBAOS = new ByteArrayOutputStream ();
+    JAXBPool.getEbInterface41Marshaller (false, false).marshal (s_aObjectFactory.createInvoice (_nextEbiDoc ()),
+                                                                aBAOS);
+    return aBAOS.toByteArray ();
+  }
+}
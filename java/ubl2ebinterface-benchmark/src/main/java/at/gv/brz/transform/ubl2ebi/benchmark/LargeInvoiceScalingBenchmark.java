@@ -0,0 +1,98 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.benchmark;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.helger.ebinterface.v41.Ebi41InvoiceType;
+import com.helger.ubl21.UBL21Reader;
+import com.helger.validation.error.ErrorList;
+
+import at.gv.brz.transform.ubl2ebi.invoice.InvoiceToEbInterface41Converter;
+import at.gv.brz.transform.ubl2ebi.synthetic.SyntheticDocumentGenerator;
+import at.gv.brz.transform.ubl2ebi.synthetic.SyntheticDocumentSettings;
+import oasis.names.specification.ubl.schema.xsd.invoice_21.InvoiceType;
+
+/**
+ * Measures how parsing and conversion scale with the number of invoice lines.
+ * The invoices are created by the {@link SyntheticDocumentGenerator} with a
+ * fixed seed, so every run works on identical documents. The time is reported
+ * per document - divide by the line count to get the time per line.
+ *
+ * @author philip
+ */
+@State (Scope.Thread)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.MILLISECONDS)
+@Warmup (iterations = 3, time = 5, timeUnit = TimeUnit.SECONDS)
+@Measurement (iterations = 5, time = 5, timeUnit = TimeUnit.SECONDS)
+@Fork (value = 1, jvmArgsAppend = { "-Xmx4g" })
+public class LargeInvoiceScalingBenchmark
+{
+  @Param ({ "1000", "20000", "200000" })
+  public int m_nLineCount;
+
+  @Param ({ "4" })
+  public int m_nTaxCategoryCount;
+
+  @Param ({ "0.25" })
+  public double m_dDensity;
+
+  private byte [] m_aSource;
+  private InvoiceType m_aUBLDoc;
+  private InvoiceToEbInterface41Converter m_aConverter;
+
+  @Setup
+  public void setup ()
+  {
+    final SyntheticDocumentSettings aSettings = new SyntheticDocumentSettings ().setLineCount (m_nLineCount)
+                                                                                .setTaxCategoryCount (m_nTaxCategoryCount)
+                                                                                .setAllowanceChargeDensity (m_dDensity)
+                                                                                .setLineDeliveryDensity (m_dDensity)
+                                                                                .setOrderLineReferenceDensity (m_dDensity);
+    m_aSource = new SyntheticDocumentGenerator (aSettings).createInvoiceBytes ();
+    m_aUBLDoc = UBL21Reader.readInvoice (BenchmarkCorpus.createSource (m_aSource));
+    if (m_aUBLDoc == null)
+      throw new IllegalStateException ("Failed to read synthetic invoice with " + m_nLineCount + " lines");
+    m_aConverter = new InvoiceToEbInterface41Converter (Locale.GERMANY, Locale.GERMANY, false);
+  }
+
+  @Benchmark
+  public InvoiceType parse ()
+  {
+    return UBL21Reader.readInvoice (BenchmarkCorpus.createSource (m_aSource));
+  }
+
+  @Benchmark
+  public Ebi41InvoiceType convert ()
+  {
+    return m_aConverter.convertToEbInterface (m_aUBLDoc, new ErrorList ());
+  }
+}
@@ -0,0 +1,52 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmark JAR. Runs all benchmarks of this package with
+ * the GC profiler enabled, so that the allocation rate per operation (=per
+ * document) is reported next to the timing of each phase. All regular JMH
+ * command line options (e.g. a regular expression to select benchmarks or
+ * <code>-rf json</code>) can be passed in addition.
+ *
+ * @author philip
+ */
+public final class MainBenchmarkRunner
+{
+  private MainBenchmarkRunner ()
+  {}
+
+  public static void main (final String [] aArgs) throws RunnerException, CommandLineOptionException
+  {
+    final CommandLineOptions aCmdLineOptions = new CommandLineOptions (aArgs);
+    final OptionsBuilder aOB = new OptionsBuilder ();
+    aOB.parent (aCmdLineOptions);
+    if (aCmdLineOptions.getIncludes ().isEmpty ())
+      aOB.include (MainBenchmarkRunner.class.getPackage ().getName () + ".*Benchmark");
+    aOB.addProfiler (GCProfiler.class);
+    final Options aOptions = aOB.build ();
+    new Runner (aOptions).run ();
+  }
+}
@@ -16,30 +16,45 @@
  */
 package at.gv.brz.transform.ubl2ebi;
 
+import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.NotThreadSafe;
 
 import com.helger.commons.ValueEnforcer;
 import com.helger.commons.annotation.Translatable;
+import com.helger.commons.math.MathHelper;
+import com.helger.commons.state.ESuccess;
 import com.helger.commons.string.StringHelper;
 import com.helger.commons.text.IMultilingualText;
 import com.helger.commons.text.display.IHasDisplayText;
 import com.helger.commons.text.display.IHasDisplayTextWithArgs;
-import com.helger.commons.text.resolve.DefaultTextResolver;
 import com.helger.commons.text.util.TextHelper;
 import com.helger.ebinterface.v41.Ebi41DocumentTypeType;
 import com.helger.ebinterface.v41.Ebi41InvoiceType;
+import com.helger.ebinterface.v41.Ebi41ItemListType;
+import com.helger.ebinterface.v41.Ebi41ListLineItemType;
 import com.helger.ebinterface.v41.Ebi41RelatedDocumentType;
 import com.helger.peppol.codelist.EInvoiceTypeCode;
 import com.helger.peppol.codelist.ETaxSchemeID;
 
+import at.gv.brz.transform.ubl2ebi.error.ErrorLocation;
+import at.gv.brz.transform.ubl2ebi.error.TransformationErrorList;
+import at.gv.brz.transform.ubl2ebi.helper.NumericLimits;
+import at.gv.brz.transform.ubl2ebi.metrics.ConversionMetricsRecorder;
+import at.gv.brz.transform.ubl2ebi.metrics.IConversionMetricsListener;
 import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.AllowanceChargeType;
 import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.BillingReferenceType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.MonetaryTotalType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.TaxCategoryType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.TaxSubtotalType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.TaxTotalType;
 import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.AllowanceChargeReasonType;
 
 /**
@@ -138,7 +153,19 @@ public abstract class AbstractConverter
                          "A Delivery/DeliveryDate or an InvoicePeriod must be present."),
    PREPAID_NOT_SUPPORTED ("Das Element <PrepaidAmount> wird nicht unterstützt.",
                           "The <PrepaidAmount> element is not supported!"),
-   MISSING_TAXCATEGORY_ID ("Das Element <ID> fehlt.", "Element <ID> is missing.");
+   MISSING_TAXCATEGORY_ID ("Das Element <ID> fehlt.", "Element <ID> is missing."),
+   XML_READ_ERROR ("Das XML Dokument konnte nicht gelesen werden: {0}", "The XML document could not be read: {0}"),
+   INVALID_ROOT_ELEMENT ("Das Wurzelelement ''{0}'' wird nicht unterstützt. Erwartet wird ''{1}''.",
+                         "The root element ''{0}'' is not supported. Expected is ''{1}''."),
+   REPEATED_OCCURRENCES ("Diese Meldung tritt {0} Mal auf.", "This message occurs {0} times."),
+   NUMERIC_VALUE_OUT_OF_RANGE ("Der Zahlenwert darf maximal {0} signifikante Stellen und einen Exponenten zwischen -{1} und {1} haben.",
+                               "The numeric value may have at most {0} significant digits and an exponent between -{1} and {1}."),
+   UBL_READ_ERROR ("Das Dokument konnte nicht als UBL 2.1 {0} gelesen werden.",
+                   "The document could not be read as UBL 2.1 {0}."),
+   EBI_WRITE_ERROR ("Das ebInterface Dokument konnte nicht geschrieben werden.",
+                    "The ebInterface document could not be written."),
+   CONVERSION_FAILED ("Bei der Konvertierung ist ein unerwarteter Fehler aufgetreten: {0}",
+                      "An unexpected error occurred during the conversion: {0}");
 
     private final IMultilingualText m_aTP;
 
@@ -147,16 +174,92 @@ public abstract class AbstractConverter
       m_aTP = TextHelper.create_DE_EN (sDE, sEN);
     }
 
+    /**
+     * @param aLocale
+     *        The locale to use.
+     * @return The unformatted text as passed in the constructor or
+     *         <code>null</code> if no text for the passed locale is present.
+     */
+    @Nullable
+    String getTemplate (@Nonnull final Locale aLocale)
+    {
+      return m_aTP.getText (aLocale);
+    }
+
     @Nullable
     public String getDisplayText (@Nonnull final Locale aContentLocale)
     {
-      return DefaultTextResolver.getTextStatic (this, m_aTP, aContentLocale);
+      return ETextCatalog.getInstance ().getText (this, aContentLocale);
     }
 
     @Nullable
     public String getDisplayTextWithArgs (@Nonnull final Locale aContentLocale, @Nullable final Object... aArgs)
     {
-      return DefaultTextResolver.getTextWithArgsStatic (this, m_aTP, aContentLocale, aArgs);
+      return ETextCatalog.getInstance ().getTextWithArgs (this, aContentLocale, aArgs);
+    }
+  }
+
+  /**
+   * Collects the converted line items of a single document in document order
+   * and sums up the line item amounts.
+   */
+  @NotThreadSafe
+  protected static final class LineItemCollector implements IEbiListLineItemHandler
+  {
+    private final IEbiListLineItemHandler m_aLineItemHandler;
+    private final Ebi41ItemListType m_aEbiItemList;
+    private BigDecimal m_aTotalZeroPercLineExtensionAmount = BigDecimal.ZERO;
+    private BigDecimal m_aTotalLineItemAmount = BigDecimal.ZERO;
+
+    /**
+     * Constructor
+     *
+     * @param aLineItemHandler
+     *        An optional handler for the line items. If present, the line items
+     *        are passed on to the handler. May be <code>null</code>.
+     * @param aEbiItemList
+     *        The item list to add the line items to, if no handler is present.
+     *        May not be <code>null</code>.
+     */
+    public LineItemCollector (@Nullable final IEbiListLineItemHandler aLineItemHandler,
+                              @Nonnull final Ebi41ItemListType aEbiItemList)
+    {
+      m_aLineItemHandler = aLineItemHandler;
+      m_aEbiItemList = ValueEnforcer.notNull (aEbiItemList, "EbiItemList");
+    }
+
+    public void onListLineItem (@Nonnull final Ebi41ListLineItemType aEbiListLineItem)
+    {
+      // Special handling in case no VAT item is present
+      if (MathHelper.isEqualToZero (aEbiListLineItem.getVATRate ().getValue ()))
+        m_aTotalZeroPercLineExtensionAmount = m_aTotalZeroPercLineExtensionAmount.add (aEbiListLineItem.getLineItemAmount ());
+      m_aTotalLineItemAmount = m_aTotalLineItemAmount.add (aEbiListLineItem.getLineItemAmount ());
+
+      // Add the item to the list or pass it on
+      if (m_aLineItemHandler != null)
+        m_aLineItemHandler.onListLineItem (aEbiListLineItem);
+      else
+        m_aEbiItemList.getListLineItem ().add (aEbiListLineItem);
+    }
+
+    /**
+     * @return The sum of the amounts of all line items with a VAT rate of 0.
+     *         Never <code>null</code>.
+     */
+    @Nonnull
+    public BigDecimal getTotalZeroPercLineExtensionAmount ()
+    {
+      return m_aTotalZeroPercLineExtensionAmount;
+    }
+
+    /**
+     * @return The sum of the amounts of all line items. Never
+     *         <code>null</code>.
+     */
+    @Nonnull
+    public BigDecimal getTotalLineItemAmount ()
+    {
+      return m_aTotalLineItemAmount;
     }
   }
 
@@ -184,6 +287,8 @@ public abstract class AbstractConverter
   protected final Locale m_aDisplayLocale;
   protected final Locale m_aContentLocale;
   protected final boolean m_bStrictERBMode;
+  protected final ParallelLineConversion m_aParallelLineConversion;
+  protected final IConversionMetricsListener m_aMetricsListener;
 
   /**
    * Constructor
@@ -200,10 +305,154 @@ public abstract class AbstractConverter
   public AbstractConverter (@Nonnull final Locale aDisplayLocale,
                             @Nonnull final Locale aContentLocale,
                             final boolean bStrictERBMode)
+  {
+    this (aDisplayLocale, aContentLocale, bStrictERBMode, null);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param aDisplayLocale
+   *        The locale for error messages. May not be <code>null</code>.
+   * @param aContentLocale
+   *        The locale for the created ebInterface files. May not be
+   *        <code>null</code>.
+   * @param bStrictERBMode
+   *        <code>true</code> if E-RECHNUNG.GV.AT specific checks should be
+   *        performed
+   * @param aParallelLineConversion
+   *        The settings for the parallel conversion of lines. May be
+   *        <code>null</code> to convert all lines sequentially.
+   */
+  public AbstractConverter (@Nonnull final Locale aDisplayLocale,
+                            @Nonnull final Locale aContentLocale,
+                            final boolean bStrictERBMode,
+                            @Nullable final ParallelLineConversion aParallelLineConversion)
+  {
+    this (aDisplayLocale, aContentLocale, bStrictERBMode, aParallelLineConversion, null);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param aDisplayLocale
+   *        The locale for error messages. May not be <code>null</code>.
+   * @param aContentLocale
+   *        The locale for the created ebInterface files. May not be
+   *        <code>null</code>.
+   * @param bStrictERBMode
+   *        <code>true</code> if E-RECHNUNG.GV.AT specific checks should be
+   *        performed
+   * @param aParallelLineConversion
+   *        The settings for the parallel conversion of lines. May be
+   *        <code>null</code> to convert all lines sequentially.
+   * @param aMetricsListener
+   *        The listener for the timings and counts of each conversion. May be
+   *        <code>null</code> if no metrics are needed.
+   */
+  public AbstractConverter (@Nonnull final Locale aDisplayLocale,
+                            @Nonnull final Locale aContentLocale,
+                            final boolean bStrictERBMode,
+                            @Nullable final ParallelLineConversion aParallelLineConversion,
+                            @Nullable final IConversionMetricsListener aMetricsListener)
   {
     m_aDisplayLocale = ValueEnforcer.notNull (aDisplayLocale, "DisplayLocale");
     m_aContentLocale = ValueEnforcer.notNull (aContentLocale, "ContentLocale");
     m_bStrictERBMode = bStrictERBMode;
+    m_aParallelLineConversion = aParallelLineConversion;
+    m_aMetricsListener = aMetricsListener;
+  }
+
+  /**
+   * @return The locale for error messages. Never <code>null</code>.
+   */
+  @Nonnull
+  public final Locale getDisplayLocale ()
+  {
+    return m_aDisplayLocale;
+  }
+
+  /**
+   * @return The locale for the created ebInterface files. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  public final Locale getContentLocale ()
+  {
+    return m_aContentLocale;
+  }
+
+  /**
+   * @return <code>true</code> if E-RECHNUNG.GV.AT specific checks are
+   *         performed
+   */
+  public final boolean isStrictERBMode ()
+  {
+    return m_bStrictERBMode;
+  }
+
+  /**
+   * @return The settings for the parallel conversion of lines or
+   *         <code>null</code> if all lines are converted sequentially.
+   */
+  @Nullable
+  public final ParallelLineConversion getParallelLineConversion ()
+  {
+    return m_aParallelLineConversion;
+  }
+
+  /**
+   * @return The listener for the timings and counts of each conversion or
+   *         <code>null</code> if no metrics are recorded.
+   */
+  @Nullable
+  public final IConversionMetricsListener getMetricsListener ()
+  {
+    return m_aMetricsListener;
+  }
+
+  /**
+   * @return A new recorder for a single conversion. Never <code>null</code>.
+   */
+  @Nonnull
+  protected final ConversionMetricsRecorder createMetricsRecorder ()
+  {
+    return ConversionMetricsRecorder.create (m_aMetricsListener);
+  }
+
+  /**
+   * Convert all lines of a document either sequentially or in parallel,
+   * depending on the settings of this converter.
+   *
+   * @param aUBLLines
+   *        The lines to convert in document order. May not be
+   *        <code>null</code>.
+   * @param aLineConverter
+   *        The converter for a single line. May not be <code>null</code>.
+   * @param aLineItemHandler
+   *        The handler for the converted line items. May not be
+   *        <code>null</code>.
+   * @param aTransformationErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return {@link ESuccess#FAILURE} if the conversion was aborted because the
+   *         error budget is exhausted.
+   */
+  @Nonnull
+  protected final <LINETYPE> ESuccess convertAllLines (@Nonnull final Iterator <? extends LINETYPE> aUBLLines,
+                                                       @Nonnull final ParallelLineConversion.ILineConverter <LINETYPE> aLineConverter,
+                                                       @Nonnull final IEbiListLineItemHandler aLineItemHandler,
+                                                       @Nonnull final TransformationErrorList aTransformationErrorList)
+  {
+    if (m_aParallelLineConversion != null)
+      return m_aParallelLineConversion.convertAllLines (aUBLLines,
+                                                        aLineConverter,
+                                                        aLineItemHandler,
+                                                        aTransformationErrorList);
+    return ParallelLineConversion.convertAllLinesSequentially (aUBLLines,
+                                                               0,
+                                                               aLineConverter,
+                                                               aLineItemHandler,
+                                                               aTransformationErrorList);
   }
 
   protected static final boolean isSupportedTaxSchemeSchemeID (@Nullable final String sUBLTaxSchemeSchemeID)
@@ -231,6 +480,136 @@ public abstract class AbstractConverter
     return aSB.toString ();
   }
 
+  /**
+   * Check a single numeric value against the {@link NumericLimits} of the
+   * passed error list. If the value exceeds the limits, an error is added. If
+   * the error list has no limits, every value is admissible.
+   *
+   * @param aValue
+   *        The value to check. May be <code>null</code>.
+   * @param aTransformationErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @param sPattern
+   *        The error location pattern of the value.
+   * @param aIndices
+   *        The indices of the error location pattern.
+   * @return <code>true</code> if the value is admissible, <code>false</code>
+   *         if an error was added.
+   */
+  protected static final boolean checkNumericValue (@Nullable final BigDecimal aValue,
+                                                    @Nonnull final TransformationErrorList aTransformationErrorList,
+                                                    @Nonnull final String sPattern,
+                                                    @Nonnull final int... aIndices)
+  {
+    final NumericLimits aNumericLimits = aTransformationErrorList.getNumericLimits ();
+    if (aNumericLimits == null || aNumericLimits.isAdmissible (aValue))
+      return true;
+    aTransformationErrorList.addError (ErrorLocation.create (sPattern, aIndices),
+                                       EText.NUMERIC_VALUE_OUT_OF_RANGE,
+                                       Integer.toString (aNumericLimits.getMaxPrecision ()),
+                                       Integer.toString (aNumericLimits.getMaxExponent ()));
+    return false;
+  }
+
+  /**
+   * Check all numeric values of the document level tax totals, allowances and
+   * charges and monetary totals that are used in the conversion. These
+   * elements are identical for invoices and credit notes.
+   *
+   * @param aUBLTaxTotals
+   *        The document level tax totals. May not be <code>null</code>.
+   * @param aUBLAllowanceCharges
+   *        The document level allowances and charges. May not be
+   *        <code>null</code>.
+   * @param aUBLMonetaryTotal
+   *        The legal monetary total. May be <code>null</code>.
+   * @param aTransformationErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   */
+  protected static final void checkNumericValues (@Nonnull final List <TaxTotalType> aUBLTaxTotals,
+                                                  @Nonnull final List <AllowanceChargeType> aUBLAllowanceCharges,
+                                                  @Nullable final MonetaryTotalType aUBLMonetaryTotal,
+                                                  @Nonnull final TransformationErrorList aTransformationErrorList)
+  {
+    int nTaxTotalIndex = 0;
+    for (final TaxTotalType aUBLTaxTotal : aUBLTaxTotals)
+    {
+      checkNumericValue (aUBLTaxTotal.getTaxAmountValue (),
+                         aTransformationErrorList,
+                         "TaxTotal[*]/TaxAmount",
+                         nTaxTotalIndex);
+      int nTaxSubtotalIndex = 0;
+      for (final TaxSubtotalType aUBLSubtotal : aUBLTaxTotal.getTaxSubtotal ())
+      {
+        checkNumericValue (aUBLSubtotal.getTaxableAmountValue (),
+                           aTransformationErrorList,
+                           "TaxTotal[*]/TaxSubtotal[*]/TaxableAmount",
+                           nTaxTotalIndex,
+                           nTaxSubtotalIndex);
+        checkNumericValue (aUBLSubtotal.getTaxAmountValue (),
+                           aTransformationErrorList,
+                           "TaxTotal[*]/TaxSubtotal[*]/TaxAmount",
+                           nTaxTotalIndex,
+                           nTaxSubtotalIndex);
+        if (aUBLSubtotal.getTaxCategory () != null)
+          checkNumericValue (aUBLSubtotal.getTaxCategory ().getPercentValue (),
+                             aTransformationErrorList,
+                             "TaxTotal[*]/TaxSubtotal[*]/TaxCategory/Percent",
+                             nTaxTotalIndex,
+                             nTaxSubtotalIndex);
+        ++nTaxSubtotalIndex;
+      }
+      ++nTaxTotalIndex;
+    }
+
+    int nAllowanceChargeIndex = 0;
+    for (final AllowanceChargeType aUBLAllowanceCharge : aUBLAllowanceCharges)
+    {
+      checkNumericValue (aUBLAllowanceCharge.getAmountValue (),
+                         aTransformationErrorList,
+                         "AllowanceCharge[*]/Amount",
+                         nAllowanceChargeIndex);
+      checkNumericValue (aUBLAllowanceCharge.getBaseAmountValue (),
+                         aTransformationErrorList,
+                         "AllowanceCharge[*]/BaseAmount",
+                         nAllowanceChargeIndex);
+      checkNumericValue (aUBLAllowanceCharge.getMultiplierFactorNumericValue (),
+                         aTransformationErrorList,
+                         "AllowanceCharge[*]/MultiplierFactorNumeric",
+                         nAllowanceChargeIndex);
+      int nTaxCategoryIndex = 0;
+      for (final TaxCategoryType aUBLTaxCategory : aUBLAllowanceCharge.getTaxCategory ())
+      {
+        checkNumericValue (aUBLTaxCategory.getPercentValue (),
+                           aTransformationErrorList,
+                           "AllowanceCharge[*]/TaxCategory[*]/Percent",
+                           nAllowanceChargeIndex,
+                           nTaxCategoryIndex);
+        ++nTaxCategoryIndex;
+      }
+      ++nAllowanceChargeIndex;
+    }
+
+    if (aUBLMonetaryTotal != null)
+    {
+      checkNumericValue (aUBLMonetaryTotal.getLineExtensionAmountValue (),
+                         aTransformationErrorList,
+                         "LegalMonetaryTotal/LineExtensionAmount");
+      checkNumericValue (aUBLMonetaryTotal.getTaxExclusiveAmountValue (),
+                         aTransformationErrorList,
+                         "LegalMonetaryTotal/TaxExclusiveAmount");
+      checkNumericValue (aUBLMonetaryTotal.getTaxInclusiveAmountValue (),
+                         aTransformationErrorList,
+                         "LegalMonetaryTotal/TaxInclusiveAmount");
+      checkNumericValue (aUBLMonetaryTotal.getPrepaidAmountValue (),
+                         aTransformationErrorList,
+                         "LegalMonetaryTotal/PrepaidAmount");
+      checkNumericValue (aUBLMonetaryTotal.getPayableAmountValue (),
+                         aTransformationErrorList,
+                         "LegalMonetaryTotal/PayableAmount");
+    }
+  }
+
   protected static void convertRelatedDocuments (@Nonnull final List <BillingReferenceType> aUBLBillingReferences,
                                                  @Nonnull final Ebi41InvoiceType aEbiDoc)
   {
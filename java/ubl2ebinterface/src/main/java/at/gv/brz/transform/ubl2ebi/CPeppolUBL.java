@@ -32,6 +32,15 @@ public final class CPeppolUBL
   /** The UBL customization ID to use */
   public static final String CUSTOMIZATION_SCHEMEID = "PEPPOL";
 
+  /** The namespace URI of UBL 2.x invoices */
+  public static final String NAMESPACE_INVOICE = "urn:oasis:names:specification:ubl:schema:xsd:Invoice-2";
+  /** The namespace URI of UBL 2.x credit notes */
+  public static final String NAMESPACE_CREDIT_NOTE = "urn:oasis:names:specification:ubl:schema:xsd:CreditNote-2";
+  /** The namespace URI of the UBL 2.x common basic components */
+  public static final String NAMESPACE_CBC = "urn:oasis:names:specification:ubl:schema:xsd:CommonBasicComponents-2";
+  /** The namespace URI of the UBL 2.x common aggregate components */
+  public static final String NAMESPACE_CAC = "urn:oasis:names:specification:ubl:schema:xsd:CommonAggregateComponents-2";
+
   private CPeppolUBL ()
   {}
 }
@@ -0,0 +1,434 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi;
+
+import java.io.InputStream;
+import java.text.DateFormat;
+import java.text.MessageFormat;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.annotation.ReturnsMutableCopy;
+import com.helger.commons.io.resource.ClassPathResource;
+import com.helger.commons.io.resource.IReadableResource;
+import com.helger.commons.io.stream.StreamHelper;
+import com.helger.commons.string.ToStringGenerator;
+
+import at.gv.brz.transform.ubl2ebi.AbstractConverter.EText;
+
+/**
+ * Precompiled catalog of all {@link EText} messages. For each supported locale
+ * an array indexed by the ordinal of the {@link EText} constant holds the
+ * already parsed message, so that rendering a text is an array lookup plus the
+ * substitution of the arguments. The German and English texts are taken from
+ * {@link EText} itself, additional locales are read from
+ * {@link #DEFAULT_RESOURCE}.
+ *
+ * @author philip
+ */
+@ThreadSafe
+public final class ETextCatalog
+{
+  /** The classpath resource with the translations */
+  public static final String DEFAULT_RESOURCE = "translation/translatable-texts.xml";
+
+  private static final Logger s_aLogger = LoggerFactory.getLogger (ETextCatalog.class);
+  private static final String ITEM_ID_PREFIX = EText.class.getName () + ".";
+  private static final Locale LOCALE_DE = new Locale ("de");
+  private static final Locale LOCALE_EN = new Locale ("en");
+
+  private static final class SingletonHolder
+  {
+    static final ETextCatalog s_aInstance = new ETextCatalog (new ClassPathResource (DEFAULT_RESOURCE));
+  }
+
+  /**
+   * A single pre-parsed message. The pattern is split into literal parts and
+   * argument indices according to the rules of {@link MessageFormat}. Patterns
+   * that use format types or styles (e.g. <code>{0,number}</code>) are
+   * delegated to {@link MessageFormat}.
+   */
+  @Immutable
+  private static final class CompiledText
+  {
+    private final String m_sPattern;
+    // Either a String (literal) or an Integer (argument index)
+    private final Object [] m_aParts;
+    private final boolean m_bUseMessageFormat;
+
+    private static boolean _isArgumentIndex (@Nonnull final String s)
+    {
+      if (s.length () == 0)
+        return false;
+      for (final char c : s.toCharArray ())
+        if (c < '0' || c > '9')
+          return false;
+      return true;
+    }
+
+    CompiledText (@Nonnull final String sPattern)
+    {
+      m_sPattern = sPattern;
+      final List <Object> aParts = new ArrayList <Object> ();
+      final StringBuilder aLiteral = new StringBuilder ();
+      boolean bUseMessageFormat = false;
+      boolean bInQuote = false;
+      final int nLen = sPattern.length ();
+      for (int i = 0; i < nLen && !bUseMessageFormat; ++i)
+      {
+        final char c = sPattern.charAt (i);
+        if (c == '\'')
+        {
+          if (i + 1 < nLen && sPattern.charAt (i + 1) == '\'')
+          {
+            // Escaped quote
+            aLiteral.append ('\'');
+            ++i;
+          }
+          else
+            bInQuote = !bInQuote;
+        }
+        else
+          if (c == '{' && !bInQuote)
+          {
+            final int nEnd = sPattern.indexOf ('}', i);
+            final String sIndex = nEnd < 0 ? "" : sPattern.substring (i + 1, nEnd).trim ();
+            if (!_isArgumentIndex (sIndex))
+            {
+              // Something special - let MessageFormat handle it
+              bUseMessageFormat = true;
+            }
+            else
+            {
+              if (aLiteral.length () > 0)
+              {
+                aParts.add (aLiteral.toString ());
+                aLiteral.setLength (0);
+              }
+              aParts.add (Integer.valueOf (sIndex));
+              i = nEnd;
+            }
+          }
+          else
+            aLiteral.append (c);
+      }
+      if (aLiteral.length () > 0)
+        aParts.add (aLiteral.toString ());
+      m_aParts = aParts.toArray ();
+      m_bUseMessageFormat = bUseMessageFormat;
+    }
+
+    @Nonnull
+    String getPattern ()
+    {
+      return m_sPattern;
+    }
+
+    @Nonnull
+    String format (@Nonnull final Locale aLocale, @Nonnull final Object [] aArgs)
+    {
+      if (m_bUseMessageFormat)
+        return new MessageFormat (m_sPattern, aLocale).format (aArgs);
+
+      final StringBuilder aSB = new StringBuilder (m_sPattern.length () + 16 * aArgs.length);
+      for (final Object aPart : m_aParts)
+        if (aPart instanceof String)
+          aSB.append ((String) aPart);
+        else
+        {
+          final int nIndex = ((Integer) aPart).intValue ();
+          if (nIndex >= aArgs.length)
+          {
+            // Same as MessageFormat
+            aSB.append ('{').append (nIndex).append ('}');
+          }
+          else
+          {
+            final Object aArg = aArgs[nIndex];
+            if (aArg == null)
+              aSB.append ("null");
+            else
+              if (aArg instanceof Number)
+                aSB.append (NumberFormat.getInstance (aLocale).format (aArg));
+              else
+                if (aArg instanceof Date)
+                  aSB.append (DateFormat.getDateTimeInstance (DateFormat.SHORT, DateFormat.SHORT, aLocale)
+                                        .format (aArg));
+                else
+                  aSB.append (aArg.toString ());
+          }
+        }
+      return aSB.toString ();
+    }
+  }
+
+  private final Map <Locale, CompiledText []> m_aTexts;
+  // Cache for the resolution of requested locales to the supported locales
+  private final ConcurrentMap <Locale, CompiledText []> m_aResolved = new ConcurrentHashMap <Locale, CompiledText []> ();
+
+  /**
+   * Constructor
+   *
+   * @param aTranslations
+   *        The resource with additional translations in the format of
+   *        {@link #DEFAULT_RESOURCE}. May be <code>null</code>.
+   */
+  public ETextCatalog (@Nullable final IReadableResource aTranslations)
+  {
+    final EText [] aAll = EText.values ();
+    final Map <Locale, String []> aPatterns = new HashMap <Locale, String []> ();
+    if (aTranslations != null)
+      _readTranslations (aTranslations, aPatterns, aAll.length);
+
+    // The texts of the enum always take precedence
+    final String [] aDE = _getOrCreate (aPatterns, LOCALE_DE, aAll.length);
+    final String [] aEN = _getOrCreate (aPatterns, LOCALE_EN, aAll.length);
+    for (final EText eText : aAll)
+    {
+      aDE[eText.ordinal ()] = eText.getTemplate (LOCALE_DE);
+      aEN[eText.ordinal ()] = eText.getTemplate (LOCALE_EN);
+    }
+
+    m_aTexts = new HashMap <Locale, CompiledText []> ();
+    for (final Map.Entry <Locale, String []> aEntry : aPatterns.entrySet ())
+    {
+      final CompiledText [] aCompiled = new CompiledText [aAll.length];
+      final String [] aSrc = aEntry.getValue ();
+      for (int i = 0; i < aSrc.length; ++i)
+        if (aSrc[i] != null)
+          aCompiled[i] = new CompiledText (aSrc[i]);
+      m_aTexts.put (aEntry.getKey (), aCompiled);
+    }
+  }
+
+  @Nonnull
+  private static String [] _getOrCreate (@Nonnull final Map <Locale, String []> aMap,
+                                         @Nonnull final Locale aLocale,
+                                         final int nSize)
+  {
+    String [] ret = aMap.get (aLocale);
+    if (ret == null)
+    {
+      ret = new String [nSize];
+      aMap.put (aLocale, ret);
+    }
+    return ret;
+  }
+
+  @Nonnull
+  private static Locale _getLocale (@Nonnull final String sTagName)
+  {
+    final String [] aParts = sTagName.split ("_", 3);
+    if (aParts.length == 1)
+      return new Locale (aParts[0]);
+    if (aParts.length == 2)
+      return new Locale (aParts[0], aParts[1]);
+    return new Locale (aParts[0], aParts[1], aParts[2]);
+  }
+
+  private static void _readTranslations (@Nonnull final IReadableResource aRes,
+                                         @Nonnull final Map <Locale, String []> aTarget,
+                                         final int nSize)
+  {
+    final InputStream aIS = aRes.getInputStream ();
+    if (aIS == null)
+    {
+      s_aLogger.warn ("Failed to open translations " + aRes.getPath ());
+      return;
+    }
+
+    XMLStreamReader aReader = null;
+    try
+    {
+      final XMLInputFactory aFactory = XMLInputFactory.newInstance ();
+      aFactory.setProperty (XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+      aFactory.setProperty (XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+      aReader = aFactory.createXMLStreamReader (aIS);
+
+      EText eCurrent = null;
+      while (aReader.hasNext ())
+      {
+        if (aReader.next () != XMLStreamConstants.START_ELEMENT)
+          continue;
+
+        final String sTagName = aReader.getLocalName ();
+        if ("item".equals (sTagName))
+        {
+          eCurrent = null;
+          final String sID = aReader.getAttributeValue (null, "id");
+          if (sID != null && sID.startsWith (ITEM_ID_PREFIX))
+            try
+            {
+              eCurrent = EText.valueOf (sID.substring (ITEM_ID_PREFIX.length ()));
+            }
+            catch (final IllegalArgumentException ex)
+            {
+              s_aLogger.warn ("Ignoring translation of unknown text '" + sID + "'");
+            }
+        }
+        else
+          if (eCurrent != null)
+          {
+            // Element name is the locale
+            final String sText = aReader.getElementText ();
+            _getOrCreate (aTarget, _getLocale (sTagName), nSize)[eCurrent.ordinal ()] = sText;
+          }
+      }
+    }
+    catch (final XMLStreamException ex)
+    {
+      s_aLogger.error ("Failed to read translations " + aRes.getPath (), ex);
+    }
+    finally
+    {
+      if (aReader != null)
+        try
+        {
+          aReader.close ();
+        }
+        catch (final XMLStreamException ex)
+        {
+          // ignore
+        }
+      StreamHelper.close (aIS);
+    }
+  }
+
+  @Nullable
+  private CompiledText [] _resolve (@Nonnull final Locale aLocale)
+  {
+    CompiledText [] ret = m_aResolved.get (aLocale);
+    if (ret == null)
+    {
+      ret = m_aTexts.get (aLocale);
+      if (ret == null && aLocale.getVariant ().length () > 0)
+        ret = m_aTexts.get (new Locale (aLocale.getLanguage (), aLocale.getCountry ()));
+      if (ret == null && aLocale.getCountry ().length () > 0)
+        ret = m_aTexts.get (new Locale (aLocale.getLanguage ()));
+      if (ret == null)
+        return null;
+      m_aResolved.put (aLocale, ret);
+    }
+    return ret;
+  }
+
+  /**
+   * @return All locales for which at least one text is present. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public Set <Locale> getAllLocales ()
+  {
+    return new HashSet <Locale> (m_aTexts.keySet ());
+  }
+
+  /**
+   * Get the unformatted text of the passed constant.
+   *
+   * @param eText
+   *        The text to resolve. May not be <code>null</code>.
+   * @param aLocale
+   *        The locale to use. If no text for the exact locale is present, the
+   *        language only locale is used. May not be <code>null</code>.
+   * @return <code>null</code> if no such text is present.
+   */
+  @Nullable
+  public String getText (@Nonnull final EText eText, @Nonnull final Locale aLocale)
+  {
+    ValueEnforcer.notNull (eText, "Text");
+    ValueEnforcer.notNull (aLocale, "Locale");
+
+    final CompiledText [] aTexts = _resolve (aLocale);
+    if (aTexts == null)
+      return null;
+    final CompiledText aText = aTexts[eText.ordinal ()];
+    return aText == null ? null : aText.getPattern ();
+  }
+
+  /**
+   * Get the text of the passed constant with all arguments applied. The
+   * result is identical to the result of {@link MessageFormat} with the passed
+   * locale.
+   *
+   * @param eText
+   *        The text to resolve. May not be <code>null</code>.
+   * @param aLocale
+   *        The locale to use. If no text for the exact locale is present, the
+   *        language only locale is used. May not be <code>null</code>.
+   * @param aArgs
+   *        The arguments to apply. If no argument is passed, the unformatted
+   *        text is returned.
+   * @return <code>null</code> if no such text is present.
+   */
+  @Nullable
+  public String getTextWithArgs (@Nonnull final EText eText,
+                                 @Nonnull final Locale aLocale,
+                                 @Nullable final Object... aArgs)
+  {
+    ValueEnforcer.notNull (eText, "Text");
+    ValueEnforcer.notNull (aLocale, "Locale");
+
+    final CompiledText [] aTexts = _resolve (aLocale);
+    if (aTexts == null)
+      return null;
+    final CompiledText aText = aTexts[eText.ordinal ()];
+    if (aText == null)
+      return null;
+    if (aArgs == null || aArgs.length == 0)
+      return aText.getPattern ();
+    return aText.format (aLocale, aArgs);
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("locales", m_aTexts.keySet ()).toString ();
+  }
+
+  /**
+   * @return The global catalog that is initialized from
+   *         {@link #DEFAULT_RESOURCE}. Never <code>null</code>.
+   */
+  @Nonnull
+  public static ETextCatalog getInstance ()
+  {
+    return SingletonHolder.s_aInstance;
+  }
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.xml.namespace.QName;
+
+/**
+ * The UBL document types that can be converted to ebInterface.
+ *
+ * @author philip
+ */
+public enum EUBLDocumentType
+{
+  INVOICE (new QName (CPeppolUBL.NAMESPACE_INVOICE, "Invoice")),
+  CREDIT_NOTE (new QName (CPeppolUBL.NAMESPACE_CREDIT_NOTE, "CreditNote"));
+
+  private final QName m_aRootElementName;
+
+  private EUBLDocumentType (@Nonnull final QName aRootElementName)
+  {
+    m_aRootElementName = aRootElementName;
+  }
+
+  /**
+   * @return The qualified name of the root element of documents of this type.
+   *         Never <code>null</code>.
+   */
+  @Nonnull
+  public QName getRootElementName ()
+  {
+    return m_aRootElementName;
+  }
+
+  /**
+   * @return The local name of the root element. Never <code>null</code>.
+   */
+  @Nonnull
+  public String getLocalName ()
+  {
+    return m_aRootElementName.getLocalPart ();
+  }
+
+  /**
+   * Find the document type with the passed root element name.
+   *
+   * @param aRootElementName
+   *        The qualified name of the root element. May be <code>null</code>.
+   * @return <code>null</code> if no such document type exists.
+   */
+  @Nullable
+  public static EUBLDocumentType getFromRootElementNameOrNull (@Nullable final QName aRootElementName)
+  {
+    for (final EUBLDocumentType e : values ())
+      if (e.m_aRootElementName.equals (aRootElementName))
+        return e;
+    return null;
+  }
+}
@@ -0,0 +1,168 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.locale.country.CountryCache;
+import com.helger.ebinterface.v41.Ebi41AddressIdentifierTypeType;
+import com.helger.ebinterface.v41.Ebi41CountryCodeType;
+import com.helger.ebinterface.v41.Ebi41CurrencyType;
+
+/**
+ * Exception free lookups of the ebInterface 4.1 code list enumerations. The
+ * generated <code>fromValue</code> methods report unknown values by throwing
+ * an {@link IllegalArgumentException}, which is expensive for documents with
+ * many invalid codes. All lookup tables are created once and are shared by
+ * all converters.<br>
+ * Additionally the display names of all countries are cached per display
+ * locale, so that the address conversion does not need to call the JDK locale
+ * service providers for every address.
+ *
+ * @author philip
+ */
+@Immutable
+public final class EbInterface41CodeListHelper
+{
+  private static final Map <String, Ebi41CurrencyType> s_aCurrencies;
+  private static final Map <String, Ebi41CountryCodeType> s_aCountryCodes;
+  private static final Map <String, Ebi41AddressIdentifierTypeType> s_aAddressIdentifierTypes;
+  // Locale to country names indexed by Ebi41CountryCodeType ordinal
+  private static final ConcurrentMap <Locale, String []> s_aCountryNames = new ConcurrentHashMap <Locale, String []> ();
+
+  static
+  {
+    final Map <String, Ebi41CurrencyType> aCurrencies = new HashMap <String, Ebi41CurrencyType> ();
+    for (final Ebi41CurrencyType e : Ebi41CurrencyType.values ())
+      aCurrencies.put (e.value (), e);
+    s_aCurrencies = aCurrencies;
+
+    final Map <String, Ebi41CountryCodeType> aCountryCodes = new HashMap <String, Ebi41CountryCodeType> ();
+    for (final Ebi41CountryCodeType e : Ebi41CountryCodeType.values ())
+      aCountryCodes.put (e.value (), e);
+    s_aCountryCodes = aCountryCodes;
+
+    final Map <String, Ebi41AddressIdentifierTypeType> aAddressIdentifierTypes = new HashMap <String, Ebi41AddressIdentifierTypeType> ();
+    for (final Ebi41AddressIdentifierTypeType e : Ebi41AddressIdentifierTypeType.values ())
+      aAddressIdentifierTypes.put (_getCaseInsensitiveKey (e.value ()), e);
+    s_aAddressIdentifierTypes = aAddressIdentifierTypes;
+  }
+
+  private EbInterface41CodeListHelper ()
+  {}
+
+  @Nonnull
+  private static String _getCaseInsensitiveKey (@Nonnull final String s)
+  {
+    // Returns the same object if it is already in upper case
+    return s.toUpperCase (Locale.US);
+  }
+
+  /**
+   * Get the currency with the passed code.
+   *
+   * @param sCurrencyCode
+   *        The currency code (e.g. <code>EUR</code>). The comparison is case
+   *        sensitive. May be <code>null</code>.
+   * @return <code>null</code> if no such currency exists.
+   */
+  @Nullable
+  public static Ebi41CurrencyType getCurrencyOrNull (@Nullable final String sCurrencyCode)
+  {
+    return sCurrencyCode == null ? null : s_aCurrencies.get (sCurrencyCode);
+  }
+
+  /**
+   * Get the country with the passed code.
+   *
+   * @param sCountryCode
+   *        The ISO 3166-1 alpha-2 country code (e.g. <code>AT</code>). The
+   *        comparison is case sensitive. May be <code>null</code>.
+   * @return <code>null</code> if no such country exists.
+   */
+  @Nullable
+  public static Ebi41CountryCodeType getCountryCodeOrNull (@Nullable final String sCountryCode)
+  {
+    return sCountryCode == null ? null : s_aCountryCodes.get (sCountryCode);
+  }
+
+  /**
+   * Get the address identifier type with the passed value.
+   *
+   * @param sAddressIdentifierType
+   *        The address identifier type (e.g. <code>GLN</code>). The comparison
+   *        is case insensitive. May be <code>null</code>.
+   * @return <code>null</code> if no such address identifier type exists.
+   */
+  @Nullable
+  public static Ebi41AddressIdentifierTypeType getAddressIdentifierTypeOrNull (@Nullable final String sAddressIdentifierType)
+  {
+    return sAddressIdentifierType == null ? null
+                                          : s_aAddressIdentifierTypes.get (_getCaseInsensitiveKey (sAddressIdentifierType));
+  }
+
+  @Nonnull
+  private static String [] _getCountryNames (@Nonnull final Locale aDisplayLocale)
+  {
+    String [] ret = s_aCountryNames.get (aDisplayLocale);
+    if (ret == null)
+    {
+      // Resolve all names at once
+      final Ebi41CountryCodeType [] aCountryCodes = Ebi41CountryCodeType.values ();
+      final String [] aNames = new String [aCountryCodes.length];
+      for (final Ebi41CountryCodeType eCountryCode : aCountryCodes)
+      {
+        final Locale aCountry = CountryCache.getInstance ().getCountry (eCountryCode.value ());
+        if (aCountry != null)
+          aNames[eCountryCode.ordinal ()] = aCountry.getDisplayCountry (aDisplayLocale);
+      }
+      final String [] aOld = s_aCountryNames.putIfAbsent (aDisplayLocale, aNames);
+      ret = aOld != null ? aOld : aNames;
+    }
+    return ret;
+  }
+
+  /**
+   * Get the display name of the passed country. The names of all countries are
+   * resolved upon the first request for a display locale and are kept for the
+   * lifetime of the application.
+   *
+   * @param eCountryCode
+   *        The country to get the name of. May not be <code>null</code>.
+   * @param aDisplayLocale
+   *        The locale in which the name should be returned. May not be
+   *        <code>null</code>.
+   * @return <code>null</code> if the country code is unknown to the JDK.
+   */
+  @Nullable
+  public static String getCountryDisplayName (@Nonnull final Ebi41CountryCodeType eCountryCode,
+                                              @Nonnull final Locale aDisplayLocale)
+  {
+    ValueEnforcer.notNull (eCountryCode, "CountryCode");
+    ValueEnforcer.notNull (aDisplayLocale, "DisplayLocale");
+    return _getCountryNames (aDisplayLocale)[eCountryCode.ordinal ()];
+  }
+}
@@ -0,0 +1,200 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.hashcode.HashCodeGenerator;
+import com.helger.commons.string.ToStringGenerator;
+
+import at.gv.brz.transform.ubl2ebi.creditnote.CreditNoteToEbInterface41Converter;
+import at.gv.brz.transform.ubl2ebi.invoice.InvoiceToEbInterface41Converter;
+
+/**
+ * Registry for shared converter instances. All converters are immutable and
+ * keep no state between calls of <code>convertToEbInterface</code>, so a
+ * single instance per combination of display locale, content locale and
+ * strict ERB mode can be used by an arbitrary number of threads concurrently.
+ * Instances are created lazily upon the first request and are never removed
+ * (unless {@link #clear()} is called), so the number of distinct locales used
+ * should be limited.
+ *
+ * @author philip
+ */
+@ThreadSafe
+public final class EbInterface41ConverterRegistry
+{
+  /**
+   * The key of the converter maps.
+   */
+  @Immutable
+  private static final class ConverterKey
+  {
+    private final Locale m_aDisplayLocale;
+    private final Locale m_aContentLocale;
+    private final boolean m_bStrictERBMode;
+
+    ConverterKey (@Nonnull final Locale aDisplayLocale,
+                  @Nonnull final Locale aContentLocale,
+                  final boolean bStrictERBMode)
+    {
+      m_aDisplayLocale = ValueEnforcer.notNull (aDisplayLocale, "DisplayLocale");
+      m_aContentLocale = ValueEnforcer.notNull (aContentLocale, "ContentLocale");
+      m_bStrictERBMode = bStrictERBMode;
+    }
+
+    @Override
+    public boolean equals (final Object o)
+    {
+      if (o == this)
+        return true;
+      if (o == null || !getClass ().equals (o.getClass ()))
+        return false;
+      final ConverterKey rhs = (ConverterKey) o;
+      return m_aDisplayLocale.equals (rhs.m_aDisplayLocale) &&
+             m_aContentLocale.equals (rhs.m_aContentLocale) &&
+             m_bStrictERBMode == rhs.m_bStrictERBMode;
+    }
+
+    @Override
+    public int hashCode ()
+    {
+      return new HashCodeGenerator (this).append (m_aDisplayLocale)
+                                         .append (m_aContentLocale)
+                                         .append (m_bStrictERBMode)
+                                         .getHashCode ();
+    }
+
+    @Override
+    public String toString ()
+    {
+      return new ToStringGenerator (this).append ("displayLocale", m_aDisplayLocale)
+                                         .append ("contentLocale", m_aContentLocale)
+                                         .append ("strictERBMode", m_bStrictERBMode)
+                                         .toString ();
+    }
+  }
+
+  private static final EbInterface41ConverterRegistry s_aInstance = new EbInterface41ConverterRegistry ();
+
+  private final ConcurrentMap <ConverterKey, InvoiceToEbInterface41Converter> m_aInvoiceConverters = new ConcurrentHashMap <ConverterKey, InvoiceToEbInterface41Converter> ();
+  private final ConcurrentMap <ConverterKey, CreditNoteToEbInterface41Converter> m_aCreditNoteConverters = new ConcurrentHashMap <ConverterKey, CreditNoteToEbInterface41Converter> ();
+
+  public EbInterface41ConverterRegistry ()
+  {}
+
+  /**
+   * @return The global instance. Never <code>null</code>.
+   */
+  @Nonnull
+  public static EbInterface41ConverterRegistry getInstance ()
+  {
+    return s_aInstance;
+  }
+
+  /**
+   * Get the shared invoice converter for the passed parameters.
+   *
+   * @param aDisplayLocale
+   *        The locale for error messages. May not be <code>null</code>.
+   * @param aContentLocale
+   *        The locale for the created ebInterface files. May not be
+   *        <code>null</code>.
+   * @param bStrictERBMode
+   *        <code>true</code> if E-RECHNUNG.GV.AT specific checks should be
+   *        performed
+   * @return The shared converter. Never <code>null</code>. Multiple calls with
+   *         equal parameters return the same object.
+   */
+  @Nonnull
+  public InvoiceToEbInterface41Converter getInvoiceConverter (@Nonnull final Locale aDisplayLocale,
+                                                              @Nonnull final Locale aContentLocale,
+                                                              final boolean bStrictERBMode)
+  {
+    final ConverterKey aKey = new ConverterKey (aDisplayLocale, aContentLocale, bStrictERBMode);
+    InvoiceToEbInterface41Converter ret = m_aInvoiceConverters.get (aKey);
+    if (ret == null)
+    {
+      final InvoiceToEbInterface41Converter aNew = new InvoiceToEbInterface41Converter (aDisplayLocale,
+                                                                                        aContentLocale,
+                                                                                        bStrictERBMode);
+      ret = m_aInvoiceConverters.putIfAbsent (aKey, aNew);
+      if (ret == null)
+        ret = aNew;
+    }
+    return ret;
+  }
+
+  /**
+   * Get the shared credit note converter for the passed parameters.
+   *
+   * @param aDisplayLocale
+   *        The locale for error messages. May not be <code>null</code>.
+   * @param aContentLocale
+   *        The locale for the created ebInterface files. May not be
+   *        <code>null</code>.
+   * @param bStrictERBMode
+   *        <code>true</code> if E-RECHNUNG.GV.AT specific checks should be
+   *        performed
+   * @return The shared converter. Never <code>null</code>. Multiple calls with
+   *         equal parameters return the same object.
+   */
+  @Nonnull
+  public CreditNoteToEbInterface41Converter getCreditNoteConverter (@Nonnull final Locale aDisplayLocale,
+                                                                    @Nonnull final Locale aContentLocale,
+                                                                    final boolean bStrictERBMode)
+  {
+    final ConverterKey aKey = new ConverterKey (aDisplayLocale, aContentLocale, bStrictERBMode);
+    CreditNoteToEbInterface41Converter ret = m_aCreditNoteConverters.get (aKey);
+    if (ret == null)
+    {
+      final CreditNoteToEbInterface41Converter aNew = new CreditNoteToEbInterface41Converter (aDisplayLocale,
+                                                                                              aContentLocale,
+                                                                                              bStrictERBMode);
+      ret = m_aCreditNoteConverters.putIfAbsent (aKey, aNew);
+      if (ret == null)
+        ret = aNew;
+    }
+    return ret;
+  }
+
+  /**
+   * @return The number of invoice and credit note converters created so far.
+   */
+  @Nonnegative
+  public int getConverterCount ()
+  {
+    return m_aInvoiceConverters.size () + m_aCreditNoteConverters.size ();
+  }
+
+  /**
+   * Remove all cached converters.
+   */
+  public void clear ()
+  {
+    m_aInvoiceConverters.clear ();
+    m_aCreditNoteConverters.clear ();
+  }
+}
@@ -24,7 +24,6 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import com.helger.commons.collection.CollectionHelper;
-import com.helger.commons.locale.country.CountryCache;
 import com.helger.commons.string.StringHelper;
 import com.helger.ebinterface.v41.Ebi41AddressIdentifierType;
 import com.helger.ebinterface.v41.Ebi41AddressIdentifierTypeType;
@@ -35,6 +34,8 @@ import com.helger.ebinterface.v41.Ebi41DeliveryType;
 import com.helger.validation.error.ErrorList;
 
 import at.gv.brz.transform.ubl2ebi.AbstractConverter.EText;
+import at.gv.brz.transform.ubl2ebi.error.ErrorLocation;
+import at.gv.brz.transform.ubl2ebi.error.TransformationErrorList;
 import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.AddressType;
 import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.ContactType;
 import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.CustomerPartyType;
@@ -53,10 +54,9 @@ public final class EbInterface41Helper
 
   public static void setAddressData (@Nullable final AddressType aUBLAddress,
                                      @Nonnull final Ebi41AddressType aEbiAddress,
-                                     @Nonnull final String sPartyType,
-                                     @Nonnull final ErrorList aTransformationErrorList,
-                                     @Nonnull final Locale aContentLocale,
-                                     @Nonnull final Locale aDisplayLocale)
+                                     @Nonnull final ErrorLocation aPartyErrorLocation,
+                                     @Nonnull final TransformationErrorList aTransformationErrorList,
+                                     @Nonnull final Locale aContentLocale)
   {
     boolean bCountryErrorMsgEmitted = false;
 
@@ -75,16 +75,12 @@ public final class EbInterface41Helper
       {
         final Ebi41CountryType aEbiCountry = new Ebi41CountryType ();
         final String sCountryCode = StringHelper.trim (aUBLAddress.getCountry ().getIdentificationCodeValue ());
-        Ebi41CountryCodeType eEbiCountryCode = null;
-        try
+        final Ebi41CountryCodeType eEbiCountryCode = EbInterface41CodeListHelper.getCountryCodeOrNull (sCountryCode);
+        if (eEbiCountryCode == null)
         {
-          eEbiCountryCode = Ebi41CountryCodeType.fromValue (sCountryCode);
-        }
-        catch (final IllegalArgumentException ex)
-        {
-          aTransformationErrorList.addError (sPartyType + "/PostalAddress/Country/IdentificationCode",
-                                             EText.ADDRESS_INVALID_COUNTRY.getDisplayTextWithArgs (aDisplayLocale,
-                                                                                                   sCountryCode));
+          aTransformationErrorList.addError (aPartyErrorLocation.getChild ("/PostalAddress/Country/IdentificationCode"),
+                                             EText.ADDRESS_INVALID_COUNTRY,
+                                             sCountryCode);
           bCountryErrorMsgEmitted = true;
         }
         aEbiCountry.setCountryCode (eEbiCountryCode);
@@ -94,40 +90,76 @@ public final class EbInterface41Helper
         if (StringHelper.hasNoText (sCountryName) && eEbiCountryCode != null)
         {
           // Write locale of country in content locale
-          final Locale aLocale = CountryCache.getInstance ().getCountry (eEbiCountryCode.value ());
-          if (aLocale != null)
-            aEbiCountry.setContent (aLocale.getDisplayCountry (aContentLocale));
+          final String sDisplayCountry = EbInterface41CodeListHelper.getCountryDisplayName (eEbiCountryCode,
+                                                                                            aContentLocale);
+          if (sDisplayCountry != null)
+            aEbiCountry.setContent (sDisplayCountry);
         }
         aEbiAddress.setCountry (aEbiCountry);
       }
     }
 
     if (aEbiAddress.getStreet () == null)
-      aTransformationErrorList.addError (sPartyType + "/PostalAddress/StreetName",
-                                         EText.ADDRESS_NO_STREET.getDisplayText (aDisplayLocale));
+      aTransformationErrorList.addError (aPartyErrorLocation.getChild ("/PostalAddress/StreetName"),
+                                         EText.ADDRESS_NO_STREET);
     if (aEbiAddress.getTown () == null)
-      aTransformationErrorList.addError (sPartyType + "/PostalAddress/CityName",
-                                         EText.ADDRESS_NO_CITY.getDisplayText (aDisplayLocale));
+      aTransformationErrorList.addError (aPartyErrorLocation.getChild ("/PostalAddress/CityName"),
+                                         EText.ADDRESS_NO_CITY);
     if (aEbiAddress.getZIP () == null)
-      aTransformationErrorList.addError (sPartyType + "/PostalAddress/PostalZone",
-                                         EText.ADDRESS_NO_ZIPCODE.getDisplayText (aDisplayLocale));
+      aTransformationErrorList.addError (aPartyErrorLocation.getChild ("/PostalAddress/PostalZone"),
+                                         EText.ADDRESS_NO_ZIPCODE);
     if (aEbiAddress.getCountry () == null && !bCountryErrorMsgEmitted)
-      aTransformationErrorList.addError (sPartyType + "/PostalAddress/Country/IdentificationCode",
-                                         EText.ADDRESS_NO_COUNTRY.getDisplayText (aDisplayLocale));
+      aTransformationErrorList.addError (aPartyErrorLocation.getChild ("/PostalAddress/Country/IdentificationCode"),
+                                         EText.ADDRESS_NO_COUNTRY);
+  }
+
+  /**
+   * Adapter for callers that still use an {@link ErrorList}.
+   *
+   * @param aUBLAddress
+   *        The UBL address to convert. May be <code>null</code>.
+   * @param aEbiAddress
+   *        The ebInterface address to be filled. May not be <code>null</code>.
+   * @param sPartyType
+   *        The error location of the party, e.g.
+   *        <code>AccountingSupplierParty</code>. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @param aContentLocale
+   *        The locale of the created content. May not be <code>null</code>.
+   * @param aDisplayLocale
+   *        The locale of the error texts. May not be <code>null</code>.
+   * @deprecated Use
+   *             {@link #setAddressData(AddressType, Ebi41AddressType, ErrorLocation, TransformationErrorList, Locale)}
+   *             instead
+   */
+  @Deprecated
+  public static void setAddressData (@Nullable final AddressType aUBLAddress,
+                                     @Nonnull final Ebi41AddressType aEbiAddress,
+                                     @Nonnull final String sPartyType,
+                                     @Nonnull final ErrorList aErrorList,
+                                     @Nonnull final Locale aContentLocale,
+                                     @Nonnull final Locale aDisplayLocale)
+  {
+    final TransformationErrorList aTransformationErrorList = new TransformationErrorList ();
+    setAddressData (aUBLAddress,
+                    aEbiAddress,
+                    ErrorLocation.create (sPartyType),
+                    aTransformationErrorList,
+                    aContentLocale);
+    aTransformationErrorList.fillErrorList (aErrorList, aDisplayLocale);
   }
 
   @Nonnull
   public static Ebi41AddressType convertParty (@Nonnull final PartyType aUBLParty,
-                                               @Nonnull final String sPartyType,
-                                               @Nonnull final ErrorList aTransformationErrorList,
-                                               @Nonnull final Locale aContentLocale,
-                                               @Nonnull final Locale aDisplayLocale)
+                                               @Nonnull final ErrorLocation aPartyErrorLocation,
+                                               @Nonnull final TransformationErrorList aTransformationErrorList,
+                                               @Nonnull final Locale aContentLocale)
   {
     final Ebi41AddressType aEbiAddress = new Ebi41AddressType ();
 
     if (aUBLParty.getPartyNameCount () > 1)
-      aTransformationErrorList.addWarning (sPartyType + "/PartyName",
-                                           EText.MULTIPLE_PARTIES.getDisplayText (aDisplayLocale));
+      aTransformationErrorList.addWarning (aPartyErrorLocation.getChild ("/PartyName"), EText.MULTIPLE_PARTIES);
 
     // Convert name
     final PartyNameType aUBLPartyName = CollectionHelper.getSafe (aUBLParty.getPartyName (), 0);
@@ -135,15 +167,14 @@ public final class EbInterface41Helper
       aEbiAddress.setName (StringHelper.trim (aUBLPartyName.getNameValue ()));
 
     if (aEbiAddress.getName () == null)
-      aTransformationErrorList.addError (sPartyType, EText.PARTY_NO_NAME.getDisplayText (aDisplayLocale));
+      aTransformationErrorList.addError (aPartyErrorLocation, EText.PARTY_NO_NAME);
 
     // Convert main address
     setAddressData (aUBLParty.getPostalAddress (),
                     aEbiAddress,
-                    sPartyType,
+                    aPartyErrorLocation,
                     aTransformationErrorList,
-                    aContentLocale,
-                    aDisplayLocale);
+                    aContentLocale);
 
     // Contact
     final ContactType aUBLContact = aUBLParty.getContact ();
@@ -178,21 +209,20 @@ public final class EbInterface41Helper
         // Check all identifier types
         final String sSchemeIDToSearch = StringHelper.trim (aUBLParty.getEndpointID ().getSchemeID ());
 
-        for (final Ebi41AddressIdentifierTypeType eType : Ebi41AddressIdentifierTypeType.values ())
-          if (eType.value ().equalsIgnoreCase (sSchemeIDToSearch))
-          {
-            final Ebi41AddressIdentifierType aEbiType = new Ebi41AddressIdentifierType ();
-            aEbiType.setAddressIdentifierType (eType);
-            aEbiType.setValue (sEndpointID);
-            aEbiAddress.getAddressIdentifier ().add (aEbiType);
-          }
+        final Ebi41AddressIdentifierTypeType eType = EbInterface41CodeListHelper.getAddressIdentifierTypeOrNull (sSchemeIDToSearch);
+        if (eType != null)
+        {
+          final Ebi41AddressIdentifierType aEbiType = new Ebi41AddressIdentifierType ();
+          aEbiType.setAddressIdentifierType (eType);
+          aEbiType.setValue (sEndpointID);
+          aEbiAddress.getAddressIdentifier ().add (aEbiType);
+        }
 
         if (aEbiAddress.hasNoAddressIdentifierEntries ())
-          aTransformationErrorList.addWarning (sPartyType,
-                                               EText.PARTY_UNSUPPORTED_ENDPOINT.getDisplayTextWithArgs (aDisplayLocale,
-                                                                                                        sEndpointID,
-                                                                                                        aUBLParty.getEndpointID ()
-                                                                                                                 .getSchemeID ()));
+          aTransformationErrorList.addWarning (aPartyErrorLocation,
+                                               EText.PARTY_UNSUPPORTED_ENDPOINT,
+                                               sEndpointID,
+                                               aUBLParty.getEndpointID ().getSchemeID ());
       }
     }
 
@@ -203,21 +233,22 @@ public final class EbInterface41Helper
       for (final PartyIdentificationType aUBLPartyID : aUBLParty.getPartyIdentification ())
       {
         final String sUBLPartyID = StringHelper.trim (aUBLPartyID.getIDValue ());
-        for (final Ebi41AddressIdentifierTypeType eType : Ebi41AddressIdentifierTypeType.values ())
-          if (eType.value ().equalsIgnoreCase (aUBLPartyID.getID ().getSchemeID ()))
-          {
-            // Add GLN/DUNS number
-            final Ebi41AddressIdentifierType aEbiType = new Ebi41AddressIdentifierType ();
-            aEbiType.setAddressIdentifierType (eType);
-            aEbiType.setValue (sUBLPartyID);
-            aEbiAddress.getAddressIdentifier ().add (aEbiType);
-          }
+        final String sUBLPartySchemeID = aUBLPartyID.getID ().getSchemeID ();
+        final Ebi41AddressIdentifierTypeType eType = EbInterface41CodeListHelper.getAddressIdentifierTypeOrNull (sUBLPartySchemeID);
+        if (eType != null)
+        {
+          // Add GLN/DUNS number
+          final Ebi41AddressIdentifierType aEbiType = new Ebi41AddressIdentifierType ();
+          aEbiType.setAddressIdentifierType (eType);
+          aEbiType.setValue (sUBLPartyID);
+          aEbiAddress.getAddressIdentifier ().add (aEbiType);
+        }
         if (aEbiAddress.hasNoAddressIdentifierEntries ())
-          aTransformationErrorList.addWarning (sPartyType + "/PartyIdentification[" + nPartyIdentificationIndex + "]",
-                                               EText.PARTY_UNSUPPORTED_ADDRESS_IDENTIFIER.getDisplayTextWithArgs (aDisplayLocale,
-                                                                                                                  sUBLPartyID,
-                                                                                                                  aUBLPartyID.getID ()
-                                                                                                                             .getSchemeID ()));
+          aTransformationErrorList.addWarning (aPartyErrorLocation.getChild ("/PartyIdentification[*]",
+                                                                             nPartyIdentificationIndex),
+                                               EText.PARTY_UNSUPPORTED_ADDRESS_IDENTIFIER,
+                                               sUBLPartyID,
+                                               aUBLPartyID.getID ().getSchemeID ());
         ++nPartyIdentificationIndex;
       }
     }
@@ -225,6 +256,42 @@ public final class EbInterface41Helper
     return aEbiAddress;
   }
 
+  /**
+   * Adapter for callers that still use an {@link ErrorList}.
+   *
+   * @param aUBLParty
+   *        The UBL party to convert. May not be <code>null</code>.
+   * @param sPartyType
+   *        The error location of the party, e.g.
+   *        <code>AccountingSupplierParty</code>. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @param aContentLocale
+   *        The locale of the created content. May not be <code>null</code>.
+   * @param aDisplayLocale
+   *        The locale of the error texts. May not be <code>null</code>.
+   * @return The created ebInterface address. Never <code>null</code>.
+   * @deprecated Use
+   *             {@link #convertParty(PartyType, ErrorLocation, TransformationErrorList, Locale)}
+   *             instead
+   */
+  @Deprecated
+  @Nonnull
+  public static Ebi41AddressType convertParty (@Nonnull final PartyType aUBLParty,
+                                               @Nonnull final String sPartyType,
+                                               @Nonnull final ErrorList aErrorList,
+                                               @Nonnull final Locale aContentLocale,
+                                               @Nonnull final Locale aDisplayLocale)
+  {
+    final TransformationErrorList aTransformationErrorList = new TransformationErrorList ();
+    final Ebi41AddressType ret = convertParty (aUBLParty,
+                                               ErrorLocation.create (sPartyType),
+                                               aTransformationErrorList,
+                                               aContentLocale);
+    aTransformationErrorList.fillErrorList (aErrorList, aDisplayLocale);
+    return ret;
+  }
+
   @Nonnull
   protected static final String getAggregated (@Nonnull final List <DescriptionType> aList)
   {
@@ -240,11 +307,10 @@ public final class EbInterface41Helper
 
   @Nonnull
   public static Ebi41DeliveryType convertDelivery (@Nonnull final DeliveryType aUBLDelivery,
-                                                   @Nonnull final String sDeliveryType,
+                                                   @Nonnull final ErrorLocation aDeliveryErrorLocation,
                                                    @Nullable final CustomerPartyType aCustomerParty,
-                                                   @Nonnull final ErrorList aTransformationErrorList,
-                                                   @Nonnull final Locale aContentLocale,
-                                                   @Nonnull final Locale aDisplayLocale)
+                                                   @Nonnull final TransformationErrorList aTransformationErrorList,
+                                                   @Nonnull final Locale aContentLocale)
   {
     final Ebi41DeliveryType aEbiDelivery = new Ebi41DeliveryType ();
 
@@ -264,10 +330,9 @@ public final class EbInterface41Helper
       final Ebi41AddressType aEbiAddress = new Ebi41AddressType ();
       EbInterface41Helper.setAddressData (aUBLDeliveryLocation.getAddress (),
                                           aEbiAddress,
-                                          sDeliveryType,
+                                          aDeliveryErrorLocation,
                                           aTransformationErrorList,
-                                          aContentLocale,
-                                          aDisplayLocale);
+                                          aContentLocale);
 
       // Check delivery party
       String sAddressName = null;
@@ -296,12 +361,53 @@ public final class EbInterface41Helper
       aEbiAddress.setName (sAddressName);
 
       if (StringHelper.hasNoText (aEbiAddress.getName ()))
-        aTransformationErrorList.addError (sDeliveryType + "/DeliveryParty",
-                                           EText.DELIVERY_WITHOUT_NAME.getDisplayText (aDisplayLocale));
+        aTransformationErrorList.addError (aDeliveryErrorLocation.getChild ("/DeliveryParty"),
+                                           EText.DELIVERY_WITHOUT_NAME);
 
       aEbiDelivery.setAddress (aEbiAddress);
     }
 
     return aEbiDelivery;
   }
+
+  /**
+   * Adapter for callers that still use an {@link ErrorList}.
+   *
+   * @param aUBLDelivery
+   *        The UBL delivery to convert. May not be <code>null</code>.
+   * @param sDeliveryType
+   *        The error location of the delivery, e.g.
+   *        <code>Delivery[0]</code>. May not be <code>null</code>.
+   * @param aCustomerParty
+   *        The customer party that provides the fallback address name. May be
+   *        <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @param aContentLocale
+   *        The locale of the created content. May not be <code>null</code>.
+   * @param aDisplayLocale
+   *        The locale of the error texts. May not be <code>null</code>.
+   * @return The created ebInterface delivery. Never <code>null</code>.
+   * @deprecated Use
+   *             {@link #convertDelivery(DeliveryType, ErrorLocation, CustomerPartyType, TransformationErrorList, Locale)}
+   *             instead
+   */
+  @Deprecated
+  @Nonnull
+  public static Ebi41DeliveryType convertDelivery (@Nonnull final DeliveryType aUBLDelivery,
+                                                   @Nonnull final String sDeliveryType,
+                                                   @Nullable final CustomerPartyType aCustomerParty,
+                                                   @Nonnull final ErrorList aErrorList,
+                                                   @Nonnull final Locale aContentLocale,
+                                                   @Nonnull final Locale aDisplayLocale)
+  {
+    final TransformationErrorList aTransformationErrorList = new TransformationErrorList ();
+    final Ebi41DeliveryType ret = convertDelivery (aUBLDelivery,
+                                                   ErrorLocation.create (sDeliveryType),
+                                                   aCustomerParty,
+                                                   aTransformationErrorList,
+                                                   aContentLocale);
+    aTransformationErrorList.fillErrorList (aErrorList, aDisplayLocale);
+    return ret;
+  }
 }
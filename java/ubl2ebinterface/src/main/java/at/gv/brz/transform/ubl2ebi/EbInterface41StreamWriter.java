@@ -0,0 +1,137 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi;
+
+import java.io.OutputStream;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.state.ESuccess;
+import com.helger.ebinterface.v41.Ebi41InvoiceType;
+import com.helger.ebinterface.v41.ObjectFactory;
+
+/**
+ * Writes ebInterface 4.1 invoices directly to an {@link OutputStream} or an
+ * {@link XMLStreamWriter}. In contrast to <code>EbInterface41Marshaller</code>
+ * no intermediate DOM document is created and no XML Schema validation is
+ * performed. The prefixes of {@link EbiNamespacePrefixMapper} are used. The
+ * marshallers are taken from the {@link JAXBPool}.
+ *
+ * @author philip
+ */
+@Immutable
+public final class EbInterface41StreamWriter
+{
+  public static final String DEFAULT_ENCODING = JAXBPool.DEFAULT_ENCODING;
+
+  private static final Logger s_aLogger = LoggerFactory.getLogger (EbInterface41StreamWriter.class);
+  private static final ObjectFactory s_aObjectFactory = new ObjectFactory ();
+
+  private final boolean m_bFormattedOutput;
+
+  /**
+   * Constructor for formatted output.
+   */
+  public EbInterface41StreamWriter ()
+  {
+    this (true);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param bFormattedOutput
+   *        <code>true</code> to indent the created XML, <code>false</code> to
+   *        create the most compact output.
+   */
+  public EbInterface41StreamWriter (final boolean bFormattedOutput)
+  {
+    m_bFormattedOutput = bFormattedOutput;
+  }
+
+  public boolean isFormattedOutput ()
+  {
+    return m_bFormattedOutput;
+  }
+
+  /**
+   * Write the passed ebInterface invoice as UTF-8 encoded XML to the passed
+   * output stream.
+   *
+   * @param aEbiDoc
+   *        The invoice to write. May not be <code>null</code>.
+   * @param aOS
+   *        The output stream to write to. It is not closed by this method. May
+   *        not be <code>null</code>.
+   * @return {@link ESuccess}
+   */
+  @Nonnull
+  public ESuccess write (@Nonnull final Ebi41InvoiceType aEbiDoc, @Nonnull final OutputStream aOS)
+  {
+    ValueEnforcer.notNull (aEbiDoc, "EbiDoc");
+    ValueEnforcer.notNull (aOS, "OutputStream");
+
+    try
+    {
+      final Marshaller aMarshaller = JAXBPool.getEbInterface41Marshaller (m_bFormattedOutput, false);
+      aMarshaller.marshal (s_aObjectFactory.createInvoice (aEbiDoc), aOS);
+      return ESuccess.SUCCESS;
+    }
+    catch (final JAXBException ex)
+    {
+      s_aLogger.error ("Failed to write ebInterface 4.1 invoice", ex);
+      return ESuccess.FAILURE;
+    }
+  }
+
+  /**
+   * Write the passed ebInterface invoice to the passed XML stream writer. The
+   * caller is responsible for writing the start and the end of the document.
+   *
+   * @param aEbiDoc
+   *        The invoice to write. May not be <code>null</code>.
+   * @param aWriter
+   *        The stream writer to write to. May not be <code>null</code>.
+   * @return {@link ESuccess}
+   */
+  @Nonnull
+  public ESuccess write (@Nonnull final Ebi41InvoiceType aEbiDoc, @Nonnull final XMLStreamWriter aWriter)
+  {
+    ValueEnforcer.notNull (aEbiDoc, "EbiDoc");
+    ValueEnforcer.notNull (aWriter, "Writer");
+
+    try
+    {
+      final Marshaller aMarshaller = JAXBPool.getEbInterface41Marshaller (m_bFormattedOutput, true);
+      aMarshaller.marshal (s_aObjectFactory.createInvoice (aEbiDoc), aWriter);
+      return ESuccess.SUCCESS;
+    }
+    catch (final JAXBException ex)
+    {
+      s_aLogger.error ("Failed to write ebInterface 4.1 invoice", ex);
+      return ESuccess.FAILURE;
+    }
+  }
+}
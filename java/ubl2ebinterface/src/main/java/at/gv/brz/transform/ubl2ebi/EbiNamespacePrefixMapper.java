@@ -20,8 +20,17 @@ import com.helger.commons.xml.CXML;
 import com.helger.ebinterface.CEbInterface;
 import com.sun.xml.bind.marshaller.NamespacePrefixMapper;
 
+/**
+ * JAXB namespace prefix mapper that creates the commonly used prefixes
+ * <code>eb</code>, <code>xsi</code> and <code>dsig</code> for ebInterface
+ * documents.
+ *
+ * @author philip
+ */
 public class EbiNamespacePrefixMapper extends NamespacePrefixMapper
 {
+  public static final String NS_XMLDSIG = "http://www.w3.org/2000/09/xmldsig#";
+
   @Override
   public String getPreferredPrefix (final String sNamespaceUri, final String sSuggestion, final boolean requirePrefix)
   {
@@ -38,7 +47,7 @@ public class EbiNamespacePrefixMapper extends NamespacePrefixMapper
       return "eb";
 
     // XMLDsig
-    if (sNamespaceUri.equals ("http://www.w3.org/2000/09/xmldsig#"))
+    if (sNamespaceUri.equals (NS_XMLDSIG))
       return "dsig";
 
     return sSuggestion;
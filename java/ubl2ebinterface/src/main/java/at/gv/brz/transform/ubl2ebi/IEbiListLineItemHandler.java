@@ -0,0 +1,39 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi;
+
+import javax.annotation.Nonnull;
+
+import com.helger.ebinterface.v41.Ebi41ListLineItemType;
+
+/**
+ * Callback interface for the converted ebInterface line items. It can be
+ * passed to the conversion so that the line items are not collected inside
+ * the resulting document but e.g. directly written to an output.
+ *
+ * @author philip
+ */
+public interface IEbiListLineItemHandler
+{
+  /**
+   * Called for every converted line item in document order.
+   *
+   * @param aEbiListLineItem
+   *        The converted line item. Never <code>null</code>.
+   */
+  void onListLineItem (@Nonnull Ebi41ListLineItemType aEbiListLineItem);
+}
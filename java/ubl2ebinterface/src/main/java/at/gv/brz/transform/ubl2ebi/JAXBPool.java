@@ -0,0 +1,253 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+
+import com.helger.jaxb.JAXBMarshallerHelper;
+
+/**
+ * Central place for the JAXB objects of the conversion. The
+ * {@link JAXBContext}s for UBL 2.1 invoices, UBL 2.1 credit notes and
+ * ebInterface 4.1 are created once on first use and are shared by all
+ * threads. As {@link Marshaller} and {@link Unmarshaller} objects are not
+ * thread safe, every thread gets its own instances, which are created on first
+ * use and reused for all further documents of this thread. The ebInterface
+ * marshallers already use the {@link EbiNamespacePrefixMapper}.
+ * <p>
+ * The returned objects may only be used by the calling thread and only until
+ * the next document is read or written. The configuration of the returned
+ * objects must not be changed. The unmarshallers perform no XML Schema
+ * validation.
+ *
+ * @author philip
+ */
+@ThreadSafe
+public final class JAXBPool
+{
+  public static final String DEFAULT_ENCODING = "UTF-8";
+
+  private static final class UBLInvoiceHolder
+  {
+    static final JAXBContext s_aContext = _createContext (oasis.names.specification.ubl.schema.xsd.invoice_21.ObjectFactory.class,
+                                                          "UBL 2.1 invoice");
+  }
+
+  private static final class UBLCreditNoteHolder
+  {
+    static final JAXBContext s_aContext = _createContext (oasis.names.specification.ubl.schema.xsd.creditnote_21.ObjectFactory.class,
+                                                          "UBL 2.1 credit note");
+  }
+
+  private static final class EbInterface41Holder
+  {
+    static final JAXBContext s_aContext = _createContext (com.helger.ebinterface.v41.ObjectFactory.class,
+                                                          "ebInterface 4.1");
+  }
+
+  // Index 0 is for invoices, index 1 for credit notes
+  private static final ThreadLocal <Unmarshaller []> s_aUBLUnmarshallers = new ThreadLocal <Unmarshaller []> ()
+  {
+    @Override
+    protected Unmarshaller [] initialValue ()
+    {
+      return new Unmarshaller [2];
+    }
+  };
+  private static final ThreadLocal <Marshaller []> s_aUBLMarshallers = new ThreadLocal <Marshaller []> ()
+  {
+    @Override
+    protected Marshaller [] initialValue ()
+    {
+      return new Marshaller [2];
+    }
+  };
+  // Index is the combination of formatted output (1) and fragment (2)
+  private static final ThreadLocal <Marshaller []> s_aEbiMarshallers = new ThreadLocal <Marshaller []> ()
+  {
+    @Override
+    protected Marshaller [] initialValue ()
+    {
+      return new Marshaller [4];
+    }
+  };
+
+  private JAXBPool ()
+  {}
+
+  @Nonnull
+  private static JAXBContext _createContext (@Nonnull final Class <?> aObjectFactoryClass, @Nonnull final String sName)
+  {
+    try
+    {
+      return JAXBContext.newInstance (aObjectFactoryClass);
+    }
+    catch (final JAXBException ex)
+    {
+      throw new IllegalStateException ("Failed to create " + sName + " JAXB context", ex);
+    }
+  }
+
+  /**
+   * @return The shared JAXB context for UBL 2.1 invoices. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  public static JAXBContext getUBLInvoiceContext ()
+  {
+    return UBLInvoiceHolder.s_aContext;
+  }
+
+  /**
+   * @return The shared JAXB context for UBL 2.1 credit notes. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  public static JAXBContext getUBLCreditNoteContext ()
+  {
+    return UBLCreditNoteHolder.s_aContext;
+  }
+
+  /**
+   * @return The shared JAXB context for ebInterface 4.1. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  public static JAXBContext getEbInterface41Context ()
+  {
+    return EbInterface41Holder.s_aContext;
+  }
+
+  /**
+   * @return The unmarshaller for UBL 2.1 invoices of the current thread. Never
+   *         <code>null</code>.
+   * @throws JAXBException
+   *         If the unmarshaller cannot be created
+   */
+  @Nonnull
+  public static Unmarshaller getUBLInvoiceUnmarshaller () throws JAXBException
+  {
+    final Unmarshaller [] aUnmarshallers = s_aUBLUnmarshallers.get ();
+    if (aUnmarshallers[0] == null)
+      aUnmarshallers[0] = getUBLInvoiceContext ().createUnmarshaller ();
+    return aUnmarshallers[0];
+  }
+
+  /**
+   * @return The unmarshaller for UBL 2.1 credit notes of the current thread.
+   *         Never <code>null</code>.
+   * @throws JAXBException
+   *         If the unmarshaller cannot be created
+   */
+  @Nonnull
+  public static Unmarshaller getUBLCreditNoteUnmarshaller () throws JAXBException
+  {
+    final Unmarshaller [] aUnmarshallers = s_aUBLUnmarshallers.get ();
+    if (aUnmarshallers[1] == null)
+      aUnmarshallers[1] = getUBLCreditNoteContext ().createUnmarshaller ();
+    return aUnmarshallers[1];
+  }
+
+  @Nonnull
+  private static Marshaller _createUBLMarshaller (@Nonnull final JAXBContext aContext) throws JAXBException
+  {
+    final Marshaller aMarshaller = aContext.createMarshaller ();
+    aMarshaller.setProperty (Marshaller.JAXB_ENCODING, DEFAULT_ENCODING);
+    return aMarshaller;
+  }
+
+  /**
+   * @return The marshaller for UBL 2.1 invoices of the current thread. It
+   *         creates unformatted UTF-8 XML. Never <code>null</code>.
+   * @throws JAXBException
+   *         If the marshaller cannot be created
+   */
+  @Nonnull
+  public static Marshaller getUBLInvoiceMarshaller () throws JAXBException
+  {
+    final Marshaller [] aMarshallers = s_aUBLMarshallers.get ();
+    if (aMarshallers[0] == null)
+      aMarshallers[0] = _createUBLMarshaller (getUBLInvoiceContext ());
+    return aMarshallers[0];
+  }
+
+  /**
+   * @return The marshaller for UBL 2.1 credit notes of the current thread. It
+   *         creates unformatted UTF-8 XML. Never <code>null</code>.
+   * @throws JAXBException
+   *         If the marshaller cannot be created
+   */
+  @Nonnull
+  public static Marshaller getUBLCreditNoteMarshaller () throws JAXBException
+  {
+    final Marshaller [] aMarshallers = s_aUBLMarshallers.get ();
+    if (aMarshallers[1] == null)
+      aMarshallers[1] = _createUBLMarshaller (getUBLCreditNoteContext ());
+    return aMarshallers[1];
+  }
+
+  /**
+   * Get the ebInterface 4.1 marshaller of the current thread. It creates UTF-8
+   * XML with the prefixes of {@link EbiNamespacePrefixMapper}.
+   *
+   * @param bFormattedOutput
+   *        <code>true</code> to indent the created XML, <code>false</code> to
+   *        create the most compact output.
+   * @param bFragment
+   *        <code>true</code> if no XML declaration should be written, e.g.
+   *        when writing to an <code>XMLStreamWriter</code>.
+   * @return The marshaller of the current thread. Never <code>null</code>.
+   * @throws JAXBException
+   *         If the marshaller cannot be created
+   */
+  @Nonnull
+  public static Marshaller getEbInterface41Marshaller (final boolean bFormattedOutput,
+                                                       final boolean bFragment) throws JAXBException
+  {
+    final Marshaller [] aMarshallers = s_aEbiMarshallers.get ();
+    final int nIndex = (bFormattedOutput ? 1 : 0) | (bFragment ? 2 : 0);
+    Marshaller aMarshaller = aMarshallers[nIndex];
+    if (aMarshaller == null)
+    {
+      aMarshaller = getEbInterface41Context ().createMarshaller ();
+      aMarshaller.setProperty (Marshaller.JAXB_ENCODING, DEFAULT_ENCODING);
+      aMarshaller.setProperty (Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.valueOf (bFormattedOutput));
+      aMarshaller.setProperty (Marshaller.JAXB_FRAGMENT, Boolean.valueOf (bFragment));
+      JAXBMarshallerHelper.setSunNamespacePrefixMapper (aMarshaller, new EbiNamespacePrefixMapper ());
+      aMarshallers[nIndex] = aMarshaller;
+    }
+    return aMarshaller;
+  }
+
+  /**
+   * Remove all marshallers and unmarshallers of the current thread. This
+   * should be called before a thread of a container managed pool is returned,
+   * so that no class loader is kept alive after an undeployment. The shared
+   * contexts are not affected.
+   */
+  public static void removeCurrentThreadInstances ()
+  {
+    s_aUBLUnmarshallers.remove ();
+    s_aUBLMarshallers.remove ();
+    s_aEbiMarshallers.remove ();
+  }
+}
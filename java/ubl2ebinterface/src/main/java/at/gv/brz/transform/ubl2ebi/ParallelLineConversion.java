@@ -0,0 +1,512 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.state.ESuccess;
+import com.helger.commons.string.ToStringGenerator;
+import com.helger.ebinterface.v41.Ebi41ListLineItemType;
+
+import at.gv.brz.transform.ubl2ebi.error.TransformationError;
+import at.gv.brz.transform.ubl2ebi.error.TransformationErrorList;
+
+/**
+ * Settings and driver for the parallel conversion of invoice and credit note
+ * lines. Each line only depends on the read-only header data (e.g. the tax
+ * category index), so chunks of consecutive lines can be converted
+ * independently on the passed executor. The results are merged in document
+ * order on the calling thread:
+ * <ul>
+ * <li>The line items are passed to the handler in document order.</li>
+ * <li>Each chunk collects its errors in a separate error list. They are added
+ * to the error list of the conversion line by line, so the resulting error
+ * list (incl. aggregation and error budget) is identical to the one of a
+ * sequential conversion.</li>
+ * </ul>
+ * Parallel conversion only pays off for large documents, so it is only used if
+ * a document has at least {@link #getMinLineCount()} lines. To find out, the
+ * first lines are buffered. At most {@link #getMaxChunksInFlight()} chunks of
+ * {@link #getChunkSize()} lines are submitted at the same time, so that the
+ * number of UBL lines held in memory stays bounded also for streamed
+ * documents.
+ * <p>
+ * <b>Note:</b> the executor must not be the one that runs the document
+ * conversions, e.g. the executor passed to the
+ * <code>EbInterface41BatchConverter</code>. The converting thread blocks until
+ * its chunks are finished, so if all threads of the executor are busy with
+ * document conversions, the chunks can never be scheduled and all conversions
+ * wait forever. Use a separate executor for the lines.
+ *
+ * @author philip
+ */
+@Immutable
+public final class ParallelLineConversion
+{
+  /**
+   * Converts a single line.
+   *
+   * @author philip
+   * @param <LINETYPE>
+   *        The UBL line type
+   */
+  public static interface ILineConverter <LINETYPE>
+  {
+    /**
+     * Convert a single line. This method may be called concurrently from
+     * different threads and may therefore not modify any shared state.
+     *
+     * @param aUBLLine
+     *        The UBL line to convert. Never <code>null</code>.
+     * @param nLineIndex
+     *        The 0-based index of the line within the document.
+     * @param aTransformationErrorList
+     *        The error list to be filled. Never <code>null</code>.
+     * @return The created ebInterface line item or <code>null</code> if the
+     *         line was skipped.
+     */
+    @Nullable
+    Ebi41ListLineItemType convertLine (@Nonnull LINETYPE aUBLLine,
+                                       @Nonnegative int nLineIndex,
+                                       @Nonnull TransformationErrorList aTransformationErrorList);
+  }
+
+  /**
+   * The result of a single chunk.
+   */
+  private static final class ChunkResult
+  {
+    private final Ebi41ListLineItemType [] m_aItems;
+    // The number of errors in the chunk error list after each line
+    private final int [] m_aErrorEnds;
+    private final TransformationErrorList m_aErrorList;
+
+    ChunkResult (@Nonnegative final int nLineCount, @Nonnull final TransformationErrorList aErrorList)
+    {
+      m_aItems = new Ebi41ListLineItemType [nLineCount];
+      m_aErrorEnds = new int [nLineCount];
+      m_aErrorList = aErrorList;
+    }
+  }
+
+  /**
+   * A chunk of lines that is converted on the executor. The state allows an
+   * aborted conversion to wait until the chunk is no longer running.
+   */
+  private static final class ChunkTask <LINETYPE> implements Callable <ChunkResult>
+  {
+    private static final int STATE_PENDING = 0;
+    private static final int STATE_RUNNING = 1;
+    private static final int STATE_DONE = 2;
+
+    private final List <LINETYPE> m_aChunk;
+    private final int m_nFirstLineIndex;
+    private final ILineConverter <LINETYPE> m_aLineConverter;
+    private final TransformationErrorList m_aChunkErrorList;
+    private final AtomicInteger m_aState = new AtomicInteger (STATE_PENDING);
+    private final CountDownLatch m_aDoneLatch = new CountDownLatch (1);
+    private volatile boolean m_bAborted = false;
+    private Future <ChunkResult> m_aFuture;
+
+    ChunkTask (@Nonnull final List <LINETYPE> aChunk,
+               @Nonnegative final int nFirstLineIndex,
+               @Nonnull final ILineConverter <LINETYPE> aLineConverter,
+               @Nonnull final TransformationErrorList aTransformationErrorList)
+    {
+      m_aChunk = aChunk;
+      m_nFirstLineIndex = nFirstLineIndex;
+      m_aLineConverter = aLineConverter;
+      // Same settings as the main error list but no aggregation, so that the
+      // errors can be merged line by line
+      m_aChunkErrorList = new TransformationErrorList (false);
+      m_aChunkErrorList.setNumericLimits (aTransformationErrorList.getNumericLimits ());
+    }
+
+    @Nullable
+    public ChunkResult call ()
+    {
+      if (!m_aState.compareAndSet (STATE_PENDING, STATE_RUNNING))
+      {
+        // Aborted before it was started
+        return null;
+      }
+      try
+      {
+        final ChunkResult ret = new ChunkResult (m_aChunk.size (), m_aChunkErrorList);
+        int nIndex = 0;
+        for (final LINETYPE aUBLLine : m_aChunk)
+        {
+          if (m_bAborted)
+            break;
+          ret.m_aItems[nIndex] = m_aLineConverter.convertLine (aUBLLine,
+                                                               m_nFirstLineIndex + nIndex,
+                                                               m_aChunkErrorList);
+          ret.m_aErrorEnds[nIndex] = m_aChunkErrorList.getOccurrenceCount ();
+          nIndex++;
+        }
+        return ret;
+      }
+      finally
+      {
+        m_aState.set (STATE_DONE);
+        m_aDoneLatch.countDown ();
+      }
+    }
+
+    /**
+     * Abort this chunk and wait until it is no longer running. A running chunk
+     * stops after the current line. If the current thread is interrupted, it
+     * does not wait.
+     */
+    void abortAndWait ()
+    {
+      m_bAborted = true;
+      m_aFuture.cancel (false);
+      if (m_aState.compareAndSet (STATE_PENDING, STATE_DONE))
+      {
+        // Was never started and will never run
+        return;
+      }
+      try
+      {
+        m_aDoneLatch.await ();
+      }
+      catch (final InterruptedException ex)
+      {
+        Thread.currentThread ().interrupt ();
+      }
+    }
+  }
+
+  /** The default minimum number of lines for parallel conversion */
+  public static final int DEFAULT_MIN_LINE_COUNT = 1000;
+  /** The default number of lines per chunk */
+  public static final int DEFAULT_CHUNK_SIZE = 250;
+  /** The default maximum number of chunks in flight: 2 per processor */
+  public static final int DEFAULT_MAX_CHUNKS_IN_FLIGHT = 2 * Runtime.getRuntime ().availableProcessors ();
+
+  private final ExecutorService m_aExecutor;
+  private final int m_nMinLineCount;
+  private final int m_nChunkSize;
+  private final int m_nMaxChunksInFlight;
+
+  /**
+   * Constructor with default line count threshold, chunk size and maximum
+   * number of chunks in flight.
+   *
+   * @param aExecutor
+   *        The executor to run the chunks on. May not be <code>null</code>.
+   *        The executor is not shut down by this class.
+   */
+  public ParallelLineConversion (@Nonnull final ExecutorService aExecutor)
+  {
+    this (aExecutor, DEFAULT_MIN_LINE_COUNT, DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * Constructor with the default maximum number of chunks in flight.
+   *
+   * @param aExecutor
+   *        The executor to run the chunks on. May not be <code>null</code>.
+   *        The executor is not shut down by this class.
+   * @param nMinLineCount
+   *        The minimum number of lines of a document to convert it in
+   *        parallel. Documents with less lines are converted sequentially.
+   *        Must be &gt; 0.
+   * @param nChunkSize
+   *        The number of consecutive lines that are converted in one task.
+   *        Must be &gt; 0.
+   */
+  public ParallelLineConversion (@Nonnull final ExecutorService aExecutor,
+                                 @Nonnegative final int nMinLineCount,
+                                 @Nonnegative final int nChunkSize)
+  {
+    this (aExecutor, nMinLineCount, nChunkSize, DEFAULT_MAX_CHUNKS_IN_FLIGHT);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param aExecutor
+   *        The executor to run the chunks on. May not be <code>null</code>.
+   *        The executor is not shut down by this class.
+   * @param nMinLineCount
+   *        The minimum number of lines of a document to convert it in
+   *        parallel. Documents with less lines are converted sequentially.
+   *        Must be &gt; 0.
+   * @param nChunkSize
+   *        The number of consecutive lines that are converted in one task.
+   *        Must be &gt; 0.
+   * @param nMaxChunksInFlight
+   *        The maximum number of chunks that are submitted to the executor at
+   *        the same time. Together with the chunk size it limits the number of
+   *        UBL lines held in memory per document. Must be &gt; 0.
+   */
+  public ParallelLineConversion (@Nonnull final ExecutorService aExecutor,
+                                 @Nonnegative final int nMinLineCount,
+                                 @Nonnegative final int nChunkSize,
+                                 @Nonnegative final int nMaxChunksInFlight)
+  {
+    ValueEnforcer.notNull (aExecutor, "Executor");
+    ValueEnforcer.isGT0 (nMinLineCount, "MinLineCount");
+    ValueEnforcer.isGT0 (nChunkSize, "ChunkSize");
+    ValueEnforcer.isGT0 (nMaxChunksInFlight, "MaxChunksInFlight");
+    m_aExecutor = aExecutor;
+    m_nMinLineCount = nMinLineCount;
+    m_nChunkSize = nChunkSize;
+    m_nMaxChunksInFlight = nMaxChunksInFlight;
+  }
+
+  /**
+   * @return The executor to run the chunks on. Never <code>null</code>.
+   */
+  @Nonnull
+  public ExecutorService getExecutor ()
+  {
+    return m_aExecutor;
+  }
+
+  /**
+   * @return The minimum number of lines of a document to convert it in
+   *         parallel. Always &gt; 0.
+   */
+  @Nonnegative
+  public int getMinLineCount ()
+  {
+    return m_nMinLineCount;
+  }
+
+  /**
+   * @return The number of consecutive lines that are converted in one task.
+   *         Always &gt; 0.
+   */
+  @Nonnegative
+  public int getChunkSize ()
+  {
+    return m_nChunkSize;
+  }
+
+  /**
+   * @return The maximum number of chunks that are submitted to the executor at
+   *         the same time. Always &gt; 0.
+   */
+  @Nonnegative
+  public int getMaxChunksInFlight ()
+  {
+    return m_nMaxChunksInFlight;
+  }
+
+  /**
+   * Convert all lines on the current thread.
+   *
+   * @param aUBLLines
+   *        The lines to convert in document order. May not be
+   *        <code>null</code>.
+   * @param nFirstLineIndex
+   *        The 0-based index of the first line.
+   * @param aLineConverter
+   *        The converter for a single line. May not be <code>null</code>.
+   * @param aLineItemHandler
+   *        The handler for the converted line items. May not be
+   *        <code>null</code>.
+   * @param aTransformationErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return {@link ESuccess#FAILURE} if the conversion was aborted because the
+   *         error budget is exhausted.
+   */
+  @Nonnull
+  public static <LINETYPE> ESuccess convertAllLinesSequentially (@Nonnull final Iterator <? extends LINETYPE> aUBLLines,
+                                                                 @Nonnegative final int nFirstLineIndex,
+                                                                 @Nonnull final ILineConverter <LINETYPE> aLineConverter,
+                                                                 @Nonnull final IEbiListLineItemHandler aLineItemHandler,
+                                                                 @Nonnull final TransformationErrorList aTransformationErrorList)
+  {
+    int nLineIndex = nFirstLineIndex;
+    while (aUBLLines.hasNext ())
+    {
+      final Ebi41ListLineItemType aEbiListLineItem = aLineConverter.convertLine (aUBLLines.next (),
+                                                                                 nLineIndex,
+                                                                                 aTransformationErrorList);
+      if (aTransformationErrorList.isErrorBudgetExhausted ())
+      {
+        // Don't read the remaining lines
+        return ESuccess.FAILURE;
+      }
+      if (aEbiListLineItem != null)
+        aLineItemHandler.onListLineItem (aEbiListLineItem);
+      nLineIndex++;
+    }
+    return ESuccess.SUCCESS;
+  }
+
+  @Nonnull
+  private static ChunkResult _getResult (@Nonnull final Future <ChunkResult> aFuture)
+  {
+    try
+    {
+      return aFuture.get ();
+    }
+    catch (final InterruptedException ex)
+    {
+      Thread.currentThread ().interrupt ();
+      throw new IllegalStateException ("Interrupted while waiting for the line conversion", ex);
+    }
+    catch (final ExecutionException ex)
+    {
+      final Throwable aCause = ex.getCause ();
+      if (aCause instanceof RuntimeException)
+        throw (RuntimeException) aCause;
+      if (aCause instanceof Error)
+        throw (Error) aCause;
+      throw new IllegalStateException ("Failed to convert lines", aCause);
+    }
+  }
+
+  /**
+   * Merge a single chunk result into the main error list and pass the line
+   * items to the handler.
+   *
+   * @return {@link ESuccess#FAILURE} if the error budget is exhausted
+   */
+  @Nonnull
+  private static ESuccess _merge (@Nonnull final ChunkResult aResult,
+                                  @Nonnull final IEbiListLineItemHandler aLineItemHandler,
+                                  @Nonnull final TransformationErrorList aTransformationErrorList)
+  {
+    final Iterator <TransformationError> aErrors = aResult.m_aErrorList.iterator ();
+    int nErrorIndex = 0;
+    for (int nIndex = 0; nIndex < aResult.m_aItems.length; ++nIndex)
+    {
+      // Add all errors of this line
+      for (; nErrorIndex < aResult.m_aErrorEnds[nIndex]; ++nErrorIndex)
+        aTransformationErrorList.add (aErrors.next ());
+      if (aTransformationErrorList.isErrorBudgetExhausted ())
+        return ESuccess.FAILURE;
+      if (aResult.m_aItems[nIndex] != null)
+        aLineItemHandler.onListLineItem (aResult.m_aItems[nIndex]);
+    }
+    return ESuccess.SUCCESS;
+  }
+
+  /**
+   * Convert all lines. If the number of lines is below the threshold, the
+   * lines are converted on the current thread. Otherwise chunks of lines are
+   * converted in parallel on the executor. If the conversion is aborted
+   * because the error budget is exhausted or a line conversion failed, the
+   * remaining chunks are aborted and this method returns only after no chunk
+   * of this conversion is running anymore.
+   *
+   * @param aUBLLines
+   *        The lines to convert in document order. May not be
+   *        <code>null</code>.
+   * @param aLineConverter
+   *        The converter for a single line. Must be thread-safe. May not be
+   *        <code>null</code>.
+   * @param aLineItemHandler
+   *        The handler for the converted line items. Is only invoked on the
+   *        current thread and in document order. May not be
+   *        <code>null</code>.
+   * @param aTransformationErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return {@link ESuccess#FAILURE} if the conversion was aborted because the
+   *         error budget is exhausted.
+   */
+  @Nonnull
+  public <LINETYPE> ESuccess convertAllLines (@Nonnull final Iterator <? extends LINETYPE> aUBLLines,
+                                              @Nonnull final ILineConverter <LINETYPE> aLineConverter,
+                                              @Nonnull final IEbiListLineItemHandler aLineItemHandler,
+                                              @Nonnull final TransformationErrorList aTransformationErrorList)
+  {
+    // Buffer the first lines to determine whether parallel conversion is worth
+    // it
+    final List <LINETYPE> aFirstLines = new ArrayList <LINETYPE> ();
+    while (aFirstLines.size () < m_nMinLineCount && aUBLLines.hasNext ())
+      aFirstLines.add (aUBLLines.next ());
+    if (aFirstLines.size () < m_nMinLineCount)
+      return convertAllLinesSequentially (aFirstLines.iterator (),
+                                          0,
+                                          aLineConverter,
+                                          aLineItemHandler,
+                                          aTransformationErrorList);
+
+    final Iterator <LINETYPE> aFirstLinesIt = aFirstLines.iterator ();
+    final LinkedList <ChunkTask <LINETYPE>> aInFlight = new LinkedList <ChunkTask <LINETYPE>> ();
+    int nNextLineIndex = 0;
+    try
+    {
+      while (true)
+      {
+        // Fill up the chunks in flight
+        while (aInFlight.size () < m_nMaxChunksInFlight && (aFirstLinesIt.hasNext () || aUBLLines.hasNext ()))
+        {
+          final List <LINETYPE> aChunk = new ArrayList <LINETYPE> (m_nChunkSize);
+          while (aChunk.size () < m_nChunkSize && aFirstLinesIt.hasNext ())
+            aChunk.add (aFirstLinesIt.next ());
+          while (aChunk.size () < m_nChunkSize && aUBLLines.hasNext ())
+            aChunk.add (aUBLLines.next ());
+          final ChunkTask <LINETYPE> aTask = new ChunkTask <LINETYPE> (aChunk,
+                                                                       nNextLineIndex,
+                                                                       aLineConverter,
+                                                                       aTransformationErrorList);
+          aTask.m_aFuture = m_aExecutor.submit (aTask);
+          aInFlight.add (aTask);
+          nNextLineIndex += aChunk.size ();
+        }
+        if (aInFlight.isEmpty ())
+          break;
+
+        // Merge the oldest chunk
+        final ChunkResult aResult = _getResult (aInFlight.removeFirst ().m_aFuture);
+        if (_merge (aResult, aLineItemHandler, aTransformationErrorList).isFailure ())
+          return ESuccess.FAILURE;
+      }
+      return ESuccess.SUCCESS;
+    }
+    finally
+    {
+      // In case of an error or an exhausted error budget: don't return while
+      // chunks of this conversion are still running on the executor
+      for (final ChunkTask <LINETYPE> aTask : aInFlight)
+        aTask.abortAndWait ();
+    }
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("executor", m_aExecutor)
+                                       .append ("minLineCount", m_nMinLineCount)
+                                       .append ("chunkSize", m_nChunkSize)
+                                       .append ("maxChunksInFlight", m_nMaxChunksInFlight)
+                                       .toString ();
+  }
+}
@@ -0,0 +1,351 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Locale;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.stream.StreamSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.string.ToStringGenerator;
+import com.helger.ebinterface.v41.Ebi41InvoiceType;
+import com.helger.ubl21.UBL21Reader;
+
+import at.gv.brz.transform.ubl2ebi.AbstractConverter.EText;
+import at.gv.brz.transform.ubl2ebi.creditnote.CreditNoteToEbInterface41Converter;
+import at.gv.brz.transform.ubl2ebi.error.ErrorLocation;
+import at.gv.brz.transform.ubl2ebi.error.TransformationErrorList;
+import at.gv.brz.transform.ubl2ebi.invoice.InvoiceToEbInterface41Converter;
+import at.gv.brz.transform.ubl2ebi.metrics.ConversionMetricsRecorder;
+import at.gv.brz.transform.ubl2ebi.metrics.EConversionStage;
+import at.gv.brz.transform.ubl2ebi.metrics.IConversionMetricsListener;
+import oasis.names.specification.ubl.schema.xsd.creditnote_21.CreditNoteType;
+import oasis.names.specification.ubl.schema.xsd.invoice_21.InvoiceType;
+
+/**
+ * Converts UBL invoices and credit notes without knowing the document type in
+ * advance. The document type is determined by reading only the root element
+ * from the raw XML, so each document is unmarshalled exactly once with the
+ * matching <code>UBL21Reader</code> method and converted with the matching
+ * shared converter of {@link EbInterface41ConverterRegistry}. Documents with
+ * an unsupported root element are rejected without unmarshalling them. If an
+ * {@link IConversionMetricsListener} is present, the parsing and all stages
+ * of the conversion are reported to it.
+ *
+ * @author philip
+ */
+@Immutable
+public final class UBLDocumentDispatcher
+{
+  private static final Logger s_aLogger = LoggerFactory.getLogger (UBLDocumentDispatcher.class);
+
+  private static final class SingletonHolder
+  {
+    static final XMLInputFactory s_aInputFactory;
+    static
+    {
+      s_aInputFactory = XMLInputFactory.newInstance ();
+      s_aInputFactory.setProperty (XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+      // No DTDs and no external entities
+      s_aInputFactory.setProperty (XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+      s_aInputFactory.setProperty (XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+    }
+  }
+
+  private final Locale m_aDisplayLocale;
+  private final Locale m_aContentLocale;
+  private final boolean m_bStrictERBMode;
+  private final IConversionMetricsListener m_aMetricsListener;
+  private final InvoiceToEbInterface41Converter m_aInvoiceConverter;
+  private final CreditNoteToEbInterface41Converter m_aCreditNoteConverter;
+
+  /**
+   * Constructor
+   *
+   * @param aDisplayLocale
+   *        The locale for error messages. May not be <code>null</code>.
+   * @param aContentLocale
+   *        The locale for the created ebInterface files. May not be
+   *        <code>null</code>.
+   * @param bStrictERBMode
+   *        <code>true</code> if E-RECHNUNG.GV.AT specific checks should be
+   *        performed
+   */
+  public UBLDocumentDispatcher (@Nonnull final Locale aDisplayLocale,
+                                @Nonnull final Locale aContentLocale,
+                                final boolean bStrictERBMode)
+  {
+    this (aDisplayLocale, aContentLocale, bStrictERBMode, null);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param aDisplayLocale
+   *        The locale for error messages. May not be <code>null</code>.
+   * @param aContentLocale
+   *        The locale for the created ebInterface files. May not be
+   *        <code>null</code>.
+   * @param bStrictERBMode
+   *        <code>true</code> if E-RECHNUNG.GV.AT specific checks should be
+   *        performed
+   * @param aMetricsListener
+   *        The listener for the timings and counts of each conversion. May be
+   *        <code>null</code> if no metrics are needed. If present, the
+   *        dispatcher uses its own converters instead of the shared ones.
+   */
+  public UBLDocumentDispatcher (@Nonnull final Locale aDisplayLocale,
+                                @Nonnull final Locale aContentLocale,
+                                final boolean bStrictERBMode,
+                                @Nullable final IConversionMetricsListener aMetricsListener)
+  {
+    m_aDisplayLocale = ValueEnforcer.notNull (aDisplayLocale, "DisplayLocale");
+    m_aContentLocale = ValueEnforcer.notNull (aContentLocale, "ContentLocale");
+    m_bStrictERBMode = bStrictERBMode;
+    m_aMetricsListener = aMetricsListener;
+    if (aMetricsListener == null)
+    {
+      final EbInterface41ConverterRegistry aRegistry = EbInterface41ConverterRegistry.getInstance ();
+      m_aInvoiceConverter = aRegistry.getInvoiceConverter (aDisplayLocale, aContentLocale, bStrictERBMode);
+      m_aCreditNoteConverter = aRegistry.getCreditNoteConverter (aDisplayLocale, aContentLocale, bStrictERBMode);
+    }
+    else
+    {
+      m_aInvoiceConverter = new InvoiceToEbInterface41Converter (aDisplayLocale,
+                                                                 aContentLocale,
+                                                                 bStrictERBMode,
+                                                                 null,
+                                                                 aMetricsListener);
+      m_aCreditNoteConverter = new CreditNoteToEbInterface41Converter (aDisplayLocale,
+                                                                       aContentLocale,
+                                                                       bStrictERBMode,
+                                                                       null,
+                                                                       aMetricsListener);
+    }
+  }
+
+  @Nonnull
+  public Locale getDisplayLocale ()
+  {
+    return m_aDisplayLocale;
+  }
+
+  @Nonnull
+  public Locale getContentLocale ()
+  {
+    return m_aContentLocale;
+  }
+
+  public boolean isStrictERBMode ()
+  {
+    return m_bStrictERBMode;
+  }
+
+  @Nullable
+  public IConversionMetricsListener getMetricsListener ()
+  {
+    return m_aMetricsListener;
+  }
+
+  /**
+   * Determine the document type from the root element of the passed XML
+   * document. Only the root element is read.
+   *
+   * @param aIS
+   *        The input stream to read from. It is not closed by this method and
+   *        is usually not read until the end. May not be <code>null</code>.
+   * @param aTransformationErrorList
+   *        The error list to be filled if the root element could not be read
+   *        or is not supported. May not be <code>null</code>.
+   * @return <code>null</code> if the document is neither a UBL invoice nor a
+   *         UBL credit note or if it could not be read.
+   */
+  @Nullable
+  public static EUBLDocumentType getDocumentType (@Nonnull final InputStream aIS,
+                                                  @Nonnull final TransformationErrorList aTransformationErrorList)
+  {
+    ValueEnforcer.notNull (aIS, "InputStream");
+    ValueEnforcer.notNull (aTransformationErrorList, "TransformationErrorList");
+
+    final ErrorLocation aLocation = ErrorLocation.create (EUBLDocumentType.INVOICE.getLocalName ());
+    QName aRootName = null;
+    XMLStreamReader aReader = null;
+    try
+    {
+      aReader = SingletonHolder.s_aInputFactory.createXMLStreamReader (aIS);
+      while (aReader.hasNext ())
+        if (aReader.next () == XMLStreamConstants.START_ELEMENT)
+        {
+          aRootName = aReader.getName ();
+          break;
+        }
+    }
+    catch (final XMLStreamException ex)
+    {
+      s_aLogger.warn ("Failed to read UBL document root element", ex);
+      aTransformationErrorList.addError (aLocation, EText.XML_READ_ERROR, ex.getMessage ());
+      return null;
+    }
+    finally
+    {
+      if (aReader != null)
+        try
+        {
+          aReader.close ();
+        }
+        catch (final XMLStreamException ex)
+        {
+          // ignore
+        }
+    }
+
+    final EUBLDocumentType ret = EUBLDocumentType.getFromRootElementNameOrNull (aRootName);
+    if (ret == null)
+      aTransformationErrorList.addError (aLocation,
+                                         EText.INVALID_ROOT_ELEMENT,
+                                         aRootName,
+                                         EUBLDocumentType.INVOICE.getRootElementName () +
+                                             ", " +
+                                             EUBLDocumentType.CREDIT_NOTE.getRootElementName ());
+    return ret;
+  }
+
+  /**
+   * Determine the document type from the root element of the passed XML
+   * document. Only the root element is read.
+   *
+   * @param aBytes
+   *        The XML document. May not be <code>null</code>.
+   * @param aTransformationErrorList
+   *        The error list to be filled if the root element could not be read
+   *        or is not supported. May not be <code>null</code>.
+   * @return <code>null</code> if the document is neither a UBL invoice nor a
+   *         UBL credit note or if it could not be read.
+   */
+  @Nullable
+  public static EUBLDocumentType getDocumentType (@Nonnull final byte [] aBytes,
+                                                  @Nonnull final TransformationErrorList aTransformationErrorList)
+  {
+    ValueEnforcer.notNull (aBytes, "Bytes");
+    return getDocumentType (new ByteArrayInputStream (aBytes), aTransformationErrorList);
+  }
+
+  /**
+   * Read and convert the passed document of a known type.
+   *
+   * @param eDocumentType
+   *        The document type as determined by
+   *        {@link #getDocumentType(byte[], TransformationErrorList)}. May not be
+   *        <code>null</code>.
+   * @param aBytes
+   *        The XML document. May not be <code>null</code>.
+   * @param aTransformationErrorList
+   *        Error list. Must be empty!
+   * @return The created ebInterface 4.1 document or <code>null</code> in case
+   *         the document could not be read or in case of a severe error.
+   */
+  @Nullable
+  public Ebi41InvoiceType convertToEbInterface (@Nonnull final EUBLDocumentType eDocumentType,
+                                                @Nonnull final byte [] aBytes,
+                                                @Nonnull final TransformationErrorList aTransformationErrorList)
+  {
+    ValueEnforcer.notNull (eDocumentType, "DocumentType");
+    ValueEnforcer.notNull (aBytes, "Bytes");
+    ValueEnforcer.notNull (aTransformationErrorList, "TransformationErrorList");
+
+    // Only reports the parsing - the conversion is reported by the converter
+    final ConversionMetricsRecorder aRecorder = ConversionMetricsRecorder.create (m_aMetricsListener);
+    aRecorder.startStage (EConversionStage.PARSE);
+    switch (eDocumentType)
+    {
+      case INVOICE:
+      {
+        final InvoiceType aUBLInvoice = UBL21Reader.readInvoice (new StreamSource (new ByteArrayInputStream (aBytes)));
+        if (aUBLInvoice == null)
+        {
+          aTransformationErrorList.addError (ErrorLocation.create (eDocumentType.getLocalName ()),
+                                             EText.UBL_READ_ERROR,
+                                             eDocumentType.getLocalName ());
+          aRecorder.onDocumentConverted (eDocumentType, null, m_bStrictERBMode, false, aTransformationErrorList);
+          return null;
+        }
+        aRecorder.endStage ();
+        return m_aInvoiceConverter.convertToEbInterface (aUBLInvoice, aTransformationErrorList);
+      }
+      case CREDIT_NOTE:
+      {
+        final CreditNoteType aUBLCreditNote = UBL21Reader.readCreditNote (new StreamSource (new ByteArrayInputStream (aBytes)));
+        if (aUBLCreditNote == null)
+        {
+          aTransformationErrorList.addError (ErrorLocation.create (eDocumentType.getLocalName ()),
+                                             EText.UBL_READ_ERROR,
+                                             eDocumentType.getLocalName ());
+          aRecorder.onDocumentConverted (eDocumentType, null, m_bStrictERBMode, false, aTransformationErrorList);
+          return null;
+        }
+        aRecorder.endStage ();
+        return m_aCreditNoteConverter.convertToEbInterface (aUBLCreditNote, aTransformationErrorList);
+      }
+      default:
+        throw new IllegalStateException ("Unsupported document type " + eDocumentType);
+    }
+  }
+
+  /**
+   * Determine the type of the passed document, read it and convert it.
+   *
+   * @param aBytes
+   *        The XML document. May not be <code>null</code>.
+   * @param aTransformationErrorList
+   *        Error list. Must be empty!
+   * @return The created ebInterface 4.1 document or <code>null</code> in case
+   *         the document type is not supported, the document could not be
+   *         read or in case of a severe error.
+   */
+  @Nullable
+  public Ebi41InvoiceType convertToEbInterface (@Nonnull final byte [] aBytes,
+                                                @Nonnull final TransformationErrorList aTransformationErrorList)
+  {
+    final EUBLDocumentType eDocumentType = getDocumentType (aBytes, aTransformationErrorList);
+    if (eDocumentType == null)
+      return null;
+    return convertToEbInterface (eDocumentType, aBytes, aTransformationErrorList);
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("displayLocale", m_aDisplayLocale)
+                                       .append ("contentLocale", m_aContentLocale)
+                                       .append ("strictERBMode", m_bStrictERBMode)
+                                       .appendIfNotNull ("metricsListener", m_aMetricsListener)
+                                       .toString ();
+  }
+}
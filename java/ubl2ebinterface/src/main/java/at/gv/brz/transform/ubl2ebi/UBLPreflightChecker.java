@@ -0,0 +1,316 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi;
+
+import java.io.InputStream;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.state.ESuccess;
+
+import at.gv.brz.transform.ubl2ebi.AbstractConverter.EText;
+import at.gv.brz.transform.ubl2ebi.creditnote.AbstractCreditNoteConverter;
+import at.gv.brz.transform.ubl2ebi.error.ErrorLocation;
+import at.gv.brz.transform.ubl2ebi.error.TransformationErrorList;
+import at.gv.brz.transform.ubl2ebi.invoice.AbstractInvoiceConverter;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.CustomizationIDType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.InvoiceTypeCodeType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.ProfileIDType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.UBLVersionIDType;
+import oasis.names.specification.ubl.schema.xsd.creditnote_21.CreditNoteType;
+import oasis.names.specification.ubl.schema.xsd.invoice_21.InvoiceType;
+
+/**
+ * Performs the consistency checks of the converters (UBL version, profile and
+ * invoice type code) directly on the raw XML stream, without unmarshalling
+ * the whole document. Only the root element and its leading basic components
+ * are read: reading stops at the first aggregate component (e.g.
+ * <code>InvoicePeriod</code> or <code>AccountingSupplierParty</code>) and
+ * hence always before the first line. This allows to reject documents with an
+ * unsupported version or profile before spending any time on them.<br>
+ * Note: no XML Schema validation is performed. A successful preflight check
+ * does not mean that the conversion will succeed.
+ *
+ * @author philip
+ */
+@Immutable
+public final class UBLPreflightChecker
+{
+  public static final QName QNAME_INVOICE = EUBLDocumentType.INVOICE.getRootElementName ();
+  public static final QName QNAME_CREDIT_NOTE = EUBLDocumentType.CREDIT_NOTE.getRootElementName ();
+
+  private static final Logger s_aLogger = LoggerFactory.getLogger (UBLPreflightChecker.class);
+
+  private static final class SingletonHolder
+  {
+    static final XMLInputFactory s_aInputFactory;
+    static
+    {
+      s_aInputFactory = XMLInputFactory.newInstance ();
+      s_aInputFactory.setProperty (XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+      // No DTDs and no external entities
+      s_aInputFactory.setProperty (XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+      s_aInputFactory.setProperty (XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+    }
+  }
+
+  /**
+   * The header values relevant for the consistency checks. A value is
+   * <code>null</code> if the respective element is not present.
+   */
+  @NotThreadSafe
+  private static final class HeaderValues
+  {
+    private String m_sUBLVersionID;
+    private String m_sCustomizationID;
+    private String m_sCustomizationSchemeID;
+    private String m_sProfileID;
+    private String m_sInvoiceTypeCode;
+
+    @Nullable
+    UBLVersionIDType getUBLVersionID ()
+    {
+      if (m_sUBLVersionID == null)
+        return null;
+      final UBLVersionIDType ret = new UBLVersionIDType ();
+      ret.setValue (m_sUBLVersionID);
+      return ret;
+    }
+
+    @Nullable
+    CustomizationIDType getCustomizationID ()
+    {
+      if (m_sCustomizationID == null)
+        return null;
+      final CustomizationIDType ret = new CustomizationIDType ();
+      ret.setValue (m_sCustomizationID);
+      ret.setSchemeID (m_sCustomizationSchemeID);
+      return ret;
+    }
+
+    @Nullable
+    ProfileIDType getProfileID ()
+    {
+      if (m_sProfileID == null)
+        return null;
+      final ProfileIDType ret = new ProfileIDType ();
+      ret.setValue (m_sProfileID);
+      return ret;
+    }
+
+    @Nullable
+    InvoiceTypeCodeType getInvoiceTypeCode ()
+    {
+      if (m_sInvoiceTypeCode == null)
+        return null;
+      final InvoiceTypeCodeType ret = new InvoiceTypeCodeType ();
+      ret.setValue (m_sInvoiceTypeCode);
+      return ret;
+    }
+  }
+
+  private UBLPreflightChecker ()
+  {}
+
+  /**
+   * Skip the element the reader is currently positioned on, including all
+   * children.
+   */
+  private static void _skipElement (@Nonnull final XMLStreamReader aReader) throws XMLStreamException
+  {
+    int nDepth = 1;
+    while (nDepth > 0)
+    {
+      final int nEventType = aReader.next ();
+      if (nEventType == XMLStreamConstants.START_ELEMENT)
+        nDepth++;
+      else
+        if (nEventType == XMLStreamConstants.END_ELEMENT)
+          nDepth--;
+    }
+  }
+
+  /**
+   * Read the basic components that are direct children of the root element.
+   * The reader must be positioned on the root element.
+   *
+   * @param aReader
+   *        The reader to use.
+   * @param sLastElement
+   *        The local name of the last basic component that is relevant. No
+   *        further elements are read after it.
+   * @return The read values. Never <code>null</code>.
+   */
+  @Nonnull
+  private static HeaderValues _readHeader (@Nonnull final XMLStreamReader aReader,
+                                           @Nonnull final String sLastElement) throws XMLStreamException
+  {
+    final HeaderValues ret = new HeaderValues ();
+    while (aReader.hasNext ())
+    {
+      final int nEventType = aReader.next ();
+      if (nEventType == XMLStreamConstants.END_ELEMENT)
+      {
+        // End of root element
+        break;
+      }
+      if (nEventType != XMLStreamConstants.START_ELEMENT)
+      {
+        // Whitespaces, comments etc.
+        continue;
+      }
+
+      final String sNamespaceURI = aReader.getNamespaceURI ();
+      if (CPeppolUBL.NAMESPACE_CAC.equals (sNamespaceURI))
+      {
+        // All relevant basic components precede the first aggregate component
+        break;
+      }
+      if (!CPeppolUBL.NAMESPACE_CBC.equals (sNamespaceURI))
+      {
+        // E.g. UBLExtensions
+        _skipElement (aReader);
+        continue;
+      }
+
+      final String sLocalName = aReader.getLocalName ();
+      if ("UBLVersionID".equals (sLocalName))
+        ret.m_sUBLVersionID = aReader.getElementText ();
+      else
+        if ("CustomizationID".equals (sLocalName))
+        {
+          ret.m_sCustomizationSchemeID = aReader.getAttributeValue (null, "schemeID");
+          ret.m_sCustomizationID = aReader.getElementText ();
+        }
+        else
+          if ("ProfileID".equals (sLocalName))
+            ret.m_sProfileID = aReader.getElementText ();
+          else
+            if ("InvoiceTypeCode".equals (sLocalName))
+              ret.m_sInvoiceTypeCode = aReader.getElementText ();
+            else
+              _skipElement (aReader);
+
+      if (sLastElement.equals (sLocalName))
+        break;
+    }
+    return ret;
+  }
+
+  /**
+   * Check the header of the UBL invoice or credit note contained in the passed
+   * input stream. The same checks as in
+   * {@link AbstractInvoiceConverter#checkConsistency(InvoiceType, TransformationErrorList)}
+   * respectively
+   * {@link AbstractCreditNoteConverter#checkConsistency(CreditNoteType, TransformationErrorList)}
+   * are performed.
+   *
+   * @param aIS
+   *        The input stream to read from. It is not closed by this method and
+   *        is usually not read until the end. May not be <code>null</code>.
+   * @param aTransformationErrorList
+   *        Error list. Must be empty!
+   * @return {@link ESuccess#SUCCESS} if the header contains no error,
+   *         {@link ESuccess#FAILURE} if the document is neither an invoice nor
+   *         a credit note, if it could not be read or if the header contains
+   *         an error.
+   */
+  @Nonnull
+  public static ESuccess check (@Nonnull final InputStream aIS,
+                                @Nonnull final TransformationErrorList aTransformationErrorList)
+  {
+    ValueEnforcer.notNull (aIS, "InputStream");
+    ValueEnforcer.notNull (aTransformationErrorList, "TransformationErrorList");
+    if (!aTransformationErrorList.isEmpty ())
+      throw new IllegalArgumentException ("TransformationErrorList must be empty!");
+
+    String sRootLocation = QNAME_INVOICE.getLocalPart ();
+    XMLStreamReader aReader = null;
+    try
+    {
+      aReader = SingletonHolder.s_aInputFactory.createXMLStreamReader (aIS);
+
+      // Find the root element
+      QName aRootName = null;
+      while (aReader.hasNext ())
+        if (aReader.next () == XMLStreamConstants.START_ELEMENT)
+        {
+          aRootName = aReader.getName ();
+          break;
+        }
+
+      if (QNAME_INVOICE.equals (aRootName))
+      {
+        final HeaderValues aValues = _readHeader (aReader, "InvoiceTypeCode");
+        final InvoiceType aUBLInvoice = new InvoiceType ();
+        aUBLInvoice.setUBLVersionID (aValues.getUBLVersionID ());
+        aUBLInvoice.setCustomizationID (aValues.getCustomizationID ());
+        aUBLInvoice.setProfileID (aValues.getProfileID ());
+        aUBLInvoice.setInvoiceTypeCode (aValues.getInvoiceTypeCode ());
+        AbstractInvoiceConverter.checkConsistency (aUBLInvoice, aTransformationErrorList);
+      }
+      else
+        if (QNAME_CREDIT_NOTE.equals (aRootName))
+        {
+          sRootLocation = QNAME_CREDIT_NOTE.getLocalPart ();
+          final HeaderValues aValues = _readHeader (aReader, "ProfileID");
+          final CreditNoteType aUBLCreditNote = new CreditNoteType ();
+          aUBLCreditNote.setUBLVersionID (aValues.getUBLVersionID ());
+          aUBLCreditNote.setCustomizationID (aValues.getCustomizationID ());
+          aUBLCreditNote.setProfileID (aValues.getProfileID ());
+          AbstractCreditNoteConverter.checkConsistency (aUBLCreditNote, aTransformationErrorList);
+        }
+        else
+        {
+          aTransformationErrorList.addError (ErrorLocation.create (sRootLocation),
+                                             EText.INVALID_ROOT_ELEMENT,
+                                             aRootName,
+                                             QNAME_INVOICE + ", " + QNAME_CREDIT_NOTE);
+        }
+    }
+    catch (final XMLStreamException ex)
+    {
+      s_aLogger.warn ("Failed to read UBL document header", ex);
+      aTransformationErrorList.addError (ErrorLocation.create (sRootLocation), EText.XML_READ_ERROR, ex.getMessage ());
+    }
+    finally
+    {
+      if (aReader != null)
+        try
+        {
+          aReader.close ();
+        }
+        catch (final XMLStreamException ex)
+        {
+          // ignore
+        }
+    }
+    return ESuccess.valueOf (!aTransformationErrorList.containsAtLeastOneError ());
+  }
+}
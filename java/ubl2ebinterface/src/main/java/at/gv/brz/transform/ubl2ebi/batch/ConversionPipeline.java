@@ -0,0 +1,354 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.batch;
+
+import java.io.InputStream;
+import java.util.Locale;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.io.resource.IReadableResource;
+import com.helger.commons.io.stream.NonBlockingByteArrayOutputStream;
+import com.helger.commons.io.stream.StreamHelper;
+import com.helger.commons.string.ToStringGenerator;
+import com.helger.ebinterface.v41.Ebi41InvoiceType;
+
+import at.gv.brz.transform.ubl2ebi.AbstractConverter.EText;
+import at.gv.brz.transform.ubl2ebi.EUBLDocumentType;
+import at.gv.brz.transform.ubl2ebi.EbInterface41StreamWriter;
+import at.gv.brz.transform.ubl2ebi.UBLDocumentDispatcher;
+import at.gv.brz.transform.ubl2ebi.error.ErrorLocation;
+import at.gv.brz.transform.ubl2ebi.error.TransformationErrorList;
+import at.gv.brz.transform.ubl2ebi.error.TransformationErrorListSettings;
+import at.gv.brz.transform.ubl2ebi.metrics.ConversionMetricsRecorder;
+import at.gv.brz.transform.ubl2ebi.metrics.EConversionStage;
+import at.gv.brz.transform.ubl2ebi.metrics.IConversionMetricsListener;
+
+/**
+ * Converts a single UBL document from its serialized form to a serialized
+ * ebInterface 4.1 document: the document is read and converted by a
+ * {@link UBLDocumentDispatcher} and finally serialized with
+ * {@link EbInterface41StreamWriter}. All problems are reported in the
+ * {@link TransformationErrorList} of the result, so a single broken document
+ * never aborts a batch.
+ * <p>
+ * The error list of each document is created with the
+ * {@link TransformationErrorListSettings} of the pipeline. Use
+ * {@link TransformationErrorListSettings#UNTRUSTED} to apply the numeric limits
+ * to documents from untrusted sources.
+ *
+ * @author philip
+ */
+@Immutable
+public final class ConversionPipeline
+{
+  private static final Logger s_aLogger = LoggerFactory.getLogger (ConversionPipeline.class);
+
+  private final UBLDocumentDispatcher m_aDispatcher;
+  private final EbInterface41StreamWriter m_aWriter;
+  private final ConversionResultCache m_aCache;
+  private final TransformationErrorListSettings m_aErrorListSettings;
+
+  /**
+   * Constructor
+   *
+   * @param aDisplayLocale
+   *        The locale for error messages. May not be <code>null</code>.
+   * @param aContentLocale
+   *        The locale for the created ebInterface files. May not be
+   *        <code>null</code>.
+   * @param bStrictERBMode
+   *        <code>true</code> if E-RECHNUNG.GV.AT specific checks should be
+   *        performed
+   * @param bFormattedOutput
+   *        <code>true</code> to indent the created XML, <code>false</code> to
+   *        create the most compact output.
+   */
+  public ConversionPipeline (@Nonnull final Locale aDisplayLocale,
+                             @Nonnull final Locale aContentLocale,
+                             final boolean bStrictERBMode,
+                             final boolean bFormattedOutput)
+  {
+    this (aDisplayLocale, aContentLocale, bStrictERBMode, bFormattedOutput, null);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param aDisplayLocale
+   *        The locale for error messages. May not be <code>null</code>.
+   * @param aContentLocale
+   *        The locale for the created ebInterface files. May not be
+   *        <code>null</code>.
+   * @param bStrictERBMode
+   *        <code>true</code> if E-RECHNUNG.GV.AT specific checks should be
+   *        performed
+   * @param bFormattedOutput
+   *        <code>true</code> to indent the created XML, <code>false</code> to
+   *        create the most compact output.
+   * @param aCache
+   *        The optional cache for conversion results. May be
+   *        <code>null</code>. The same cache may be shared between pipelines
+   *        with different settings.
+   */
+  public ConversionPipeline (@Nonnull final Locale aDisplayLocale,
+                             @Nonnull final Locale aContentLocale,
+                             final boolean bStrictERBMode,
+                             final boolean bFormattedOutput,
+                             @Nullable final ConversionResultCache aCache)
+  {
+    this (aDisplayLocale, aContentLocale, bStrictERBMode, bFormattedOutput, aCache, null);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param aDisplayLocale
+   *        The locale for error messages. May not be <code>null</code>.
+   * @param aContentLocale
+   *        The locale for the created ebInterface files. May not be
+   *        <code>null</code>.
+   * @param bStrictERBMode
+   *        <code>true</code> if E-RECHNUNG.GV.AT specific checks should be
+   *        performed
+   * @param bFormattedOutput
+   *        <code>true</code> to indent the created XML, <code>false</code> to
+   *        create the most compact output.
+   * @param aCache
+   *        The optional cache for conversion results. May be
+   *        <code>null</code>. The same cache may be shared between pipelines
+   *        with different settings.
+   * @param aMetricsListener
+   *        The listener for the timings and counts of each conversion,
+   *        including the parsing and the writing. May be <code>null</code> if
+   *        no metrics are needed. Results taken from the cache are not
+   *        reported.
+   */
+  public ConversionPipeline (@Nonnull final Locale aDisplayLocale,
+                             @Nonnull final Locale aContentLocale,
+                             final boolean bStrictERBMode,
+                             final boolean bFormattedOutput,
+                             @Nullable final ConversionResultCache aCache,
+                             @Nullable final IConversionMetricsListener aMetricsListener)
+  {
+    this (aDisplayLocale,
+          aContentLocale,
+          bStrictERBMode,
+          bFormattedOutput,
+          aCache,
+          aMetricsListener,
+          TransformationErrorListSettings.DEFAULT);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param aDisplayLocale
+   *        The locale for error messages. May not be <code>null</code>.
+   * @param aContentLocale
+   *        The locale for the created ebInterface files. May not be
+   *        <code>null</code>.
+   * @param bStrictERBMode
+   *        <code>true</code> if E-RECHNUNG.GV.AT specific checks should be
+   *        performed
+   * @param bFormattedOutput
+   *        <code>true</code> to indent the created XML, <code>false</code> to
+   *        create the most compact output.
+   * @param aCache
+   *        The optional cache for conversion results. May be
+   *        <code>null</code>. The same cache may be shared between pipelines
+   *        with different settings. Results of aggregating error lists are
+   *        not cached, as the aggregates cannot be restored.
+   * @param aMetricsListener
+   *        The listener for the timings and counts of each conversion,
+   *        including the parsing and the writing. May be <code>null</code> if
+   *        no metrics are needed. Results taken from the cache are not
+   *        reported.
+   * @param aErrorListSettings
+   *        The settings for the error list of each document, including the
+   *        aggregation of repeated errors, the error budget and the numeric
+   *        limits. May not be <code>null</code>.
+   */
+  public ConversionPipeline (@Nonnull final Locale aDisplayLocale,
+                             @Nonnull final Locale aContentLocale,
+                             final boolean bStrictERBMode,
+                             final boolean bFormattedOutput,
+                             @Nullable final ConversionResultCache aCache,
+                             @Nullable final IConversionMetricsListener aMetricsListener,
+                             @Nonnull final TransformationErrorListSettings aErrorListSettings)
+  {
+    ValueEnforcer.notNull (aErrorListSettings, "ErrorListSettings");
+    m_aDispatcher = new UBLDocumentDispatcher (aDisplayLocale, aContentLocale, bStrictERBMode, aMetricsListener);
+    m_aWriter = new EbInterface41StreamWriter (bFormattedOutput);
+    m_aCache = aCache;
+    m_aErrorListSettings = aErrorListSettings;
+  }
+
+  @Nonnull
+  public UBLDocumentDispatcher getDispatcher ()
+  {
+    return m_aDispatcher;
+  }
+
+  public boolean isFormattedOutput ()
+  {
+    return m_aWriter.isFormattedOutput ();
+  }
+
+  /**
+   * @return The listener for the timings and counts of each conversion or
+   *         <code>null</code> if no metrics are recorded.
+   */
+  @Nullable
+  public IConversionMetricsListener getMetricsListener ()
+  {
+    return m_aDispatcher.getMetricsListener ();
+  }
+
+  /**
+   * @return The cache for conversion results or <code>null</code> if no cache
+   *         is used.
+   */
+  @Nullable
+  public ConversionResultCache getCache ()
+  {
+    return m_aCache;
+  }
+
+  /**
+   * @return The settings for the error list of each document. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  public TransformationErrorListSettings getErrorListSettings ()
+  {
+    return m_aErrorListSettings;
+  }
+
+  /**
+   * Convert the passed document. This method may be called concurrently.
+   *
+   * @param nIndex
+   *        The 0-based index of the document within the batch.
+   * @param aSource
+   *        The UBL invoice or credit note to convert. May not be
+   *        <code>null</code>.
+   * @return The conversion result. Never <code>null</code>.
+   */
+  @Nonnull
+  public ConversionResult convert (@Nonnegative final int nIndex, @Nonnull final IReadableResource aSource)
+  {
+    ValueEnforcer.notNull (aSource, "Source");
+
+    final IConversionMetricsListener aMetricsListener = getMetricsListener ();
+    final long nStartNanos = aMetricsListener == null ? 0 : System.nanoTime ();
+    final TransformationErrorList aTransformationErrorList = m_aErrorListSettings.createTransformationErrorList ();
+    EUBLDocumentType eDocumentType = null;
+    Ebi41InvoiceType aEbiDoc = null;
+    byte [] aEbiBytes = null;
+    long nBytesIn = 0;
+    try
+    {
+      final InputStream aIS = aSource.getInputStream ();
+      final byte [] aBytes = aIS == null ? null : StreamHelper.getAllBytes (aIS);
+      if (aBytes != null)
+        nBytesIn = aBytes.length;
+      if (aBytes == null)
+      {
+        aTransformationErrorList.addError (ErrorLocation.create (EUBLDocumentType.INVOICE.getLocalName ()),
+                                           EText.XML_READ_ERROR,
+                                           aSource.getPath ());
+      }
+      else
+      {
+        String sCacheKey = null;
+        if (m_aCache != null && !m_aErrorListSettings.isAggregateRepeated ())
+        {
+          sCacheKey = ConversionResultCache.createKey (aBytes,
+                                                       m_aDispatcher.getDisplayLocale (),
+                                                       m_aDispatcher.getContentLocale (),
+                                                       m_aDispatcher.isStrictERBMode (),
+                                                       isFormattedOutput (),
+                                                       m_aErrorListSettings);
+          final ConversionResultCache.Entry aEntry = m_aCache.get (sCacheKey);
+          if (aEntry != null)
+            return new ConversionResult (nIndex,
+                                         aSource,
+                                         aEntry.getDocumentType (),
+                                         null,
+                                         aEntry.getEbInterfaceBytes (),
+                                         aEntry.getTransformationErrorList (m_aErrorListSettings),
+                                         true);
+        }
+
+        eDocumentType = UBLDocumentDispatcher.getDocumentType (aBytes, aTransformationErrorList);
+        if (eDocumentType != null)
+        {
+          aEbiDoc = m_aDispatcher.convertToEbInterface (eDocumentType, aBytes, aTransformationErrorList);
+          if (aEbiDoc != null)
+          {
+            final ConversionMetricsRecorder aRecorder = ConversionMetricsRecorder.create (aMetricsListener);
+            aRecorder.startStage (EConversionStage.MARSHAL);
+            final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ();
+            if (m_aWriter.write (aEbiDoc, aBAOS).isSuccess ())
+              aEbiBytes = aBAOS.toByteArray ();
+            else
+              aTransformationErrorList.addError (ErrorLocation.create (eDocumentType.getLocalName ()),
+                                                 EText.EBI_WRITE_ERROR);
+            aRecorder.endStage ();
+          }
+        }
+
+        // Unexpected runtime exceptions are not cached
+        if (sCacheKey != null)
+          m_aCache.put (sCacheKey, eDocumentType, aEbiBytes, aTransformationErrorList);
+      }
+    }
+    catch (final RuntimeException ex)
+    {
+      s_aLogger.error ("Failed to convert " + aSource.getPath (), ex);
+      aTransformationErrorList.addError (ErrorLocation.create (eDocumentType == null ? EUBLDocumentType.INVOICE.getLocalName ()
+                                                                                     : eDocumentType.getLocalName ()),
+                                         EText.CONVERSION_FAILED,
+                                         ex.toString ());
+      aEbiDoc = null;
+      aEbiBytes = null;
+    }
+    if (aMetricsListener != null)
+      aMetricsListener.onDocumentProcessed (System.nanoTime () - nStartNanos,
+                                            nBytesIn,
+                                            aEbiBytes == null ? 0 : aEbiBytes.length);
+    return new ConversionResult (nIndex, aSource, eDocumentType, aEbiDoc, aEbiBytes, aTransformationErrorList);
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("dispatcher", m_aDispatcher)
+                                       .append ("formattedOutput", isFormattedOutput ())
+                                       .appendIfNotNull ("cache", m_aCache)
+                                       .append ("errorListSettings", m_aErrorListSettings)
+                                       .toString ();
+  }
+}
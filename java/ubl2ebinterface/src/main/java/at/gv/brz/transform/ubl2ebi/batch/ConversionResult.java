@@ -0,0 +1,208 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.batch;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.annotation.ReturnsMutableObject;
+import com.helger.commons.io.resource.IReadableResource;
+import com.helger.commons.string.ToStringGenerator;
+import com.helger.ebinterface.v41.Ebi41InvoiceType;
+
+import at.gv.brz.transform.ubl2ebi.EUBLDocumentType;
+import at.gv.brz.transform.ubl2ebi.error.TransformationErrorList;
+
+/**
+ * The result of the conversion of a single UBL document.
+ *
+ * @author philip
+ */
+@Immutable
+public final class ConversionResult
+{
+  private final int m_nIndex;
+  private final IReadableResource m_aSource;
+  private final EUBLDocumentType m_eDocumentType;
+  private final Ebi41InvoiceType m_aEbiDoc;
+  private final byte [] m_aEbiBytes;
+  private final TransformationErrorList m_aTransformationErrorList;
+  private final boolean m_bFromCache;
+
+  /**
+   * Constructor
+   *
+   * @param nIndex
+   *        The 0-based index of the source document in the order of
+   *        submission.
+   * @param aSource
+   *        The source document. May not be <code>null</code>.
+   * @param eDocumentType
+   *        The detected document type. May be <code>null</code> if the
+   *        document type could not be determined.
+   * @param aEbiDoc
+   *        The created ebInterface document. May be <code>null</code>.
+   * @param aEbiBytes
+   *        The serialized ebInterface document. May be <code>null</code>.
+   * @param aTransformationErrorList
+   *        The diagnostics of the conversion. May not be <code>null</code>.
+   */
+  public ConversionResult (@Nonnegative final int nIndex,
+                           @Nonnull final IReadableResource aSource,
+                           @Nullable final EUBLDocumentType eDocumentType,
+                           @Nullable final Ebi41InvoiceType aEbiDoc,
+                           @Nullable final byte [] aEbiBytes,
+                           @Nonnull final TransformationErrorList aTransformationErrorList)
+  {
+    this (nIndex, aSource, eDocumentType, aEbiDoc, aEbiBytes, aTransformationErrorList, false);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param nIndex
+   *        The 0-based index of the source document in the order of
+   *        submission.
+   * @param aSource
+   *        The source document. May not be <code>null</code>.
+   * @param eDocumentType
+   *        The detected document type. May be <code>null</code> if the
+   *        document type could not be determined.
+   * @param aEbiDoc
+   *        The created ebInterface document. May be <code>null</code>.
+   * @param aEbiBytes
+   *        The serialized ebInterface document. May be <code>null</code>.
+   * @param aTransformationErrorList
+   *        The diagnostics of the conversion. May not be <code>null</code>.
+   * @param bFromCache
+   *        <code>true</code> if the result was taken from a
+   *        {@link ConversionResultCache}.
+   */
+  public ConversionResult (@Nonnegative final int nIndex,
+                           @Nonnull final IReadableResource aSource,
+                           @Nullable final EUBLDocumentType eDocumentType,
+                           @Nullable final Ebi41InvoiceType aEbiDoc,
+                           @Nullable final byte [] aEbiBytes,
+                           @Nonnull final TransformationErrorList aTransformationErrorList,
+                           final boolean bFromCache)
+  {
+    ValueEnforcer.isGE0 (nIndex, "Index");
+    ValueEnforcer.notNull (aSource, "Source");
+    ValueEnforcer.notNull (aTransformationErrorList, "TransformationErrorList");
+    m_nIndex = nIndex;
+    m_aSource = aSource;
+    m_eDocumentType = eDocumentType;
+    m_aEbiDoc = aEbiDoc;
+    m_aEbiBytes = aEbiBytes;
+    m_aTransformationErrorList = aTransformationErrorList;
+    m_bFromCache = bFromCache;
+  }
+
+  /**
+   * @return The 0-based index of the source document in the order of
+   *         submission.
+   */
+  @Nonnegative
+  public int getIndex ()
+  {
+    return m_nIndex;
+  }
+
+  /**
+   * @return The source document. Never <code>null</code>.
+   */
+  @Nonnull
+  public IReadableResource getSource ()
+  {
+    return m_aSource;
+  }
+
+  /**
+   * @return The detected document type or <code>null</code> if the document
+   *         is neither an invoice nor a credit note or if it could not be
+   *         read.
+   */
+  @Nullable
+  public EUBLDocumentType getDocumentType ()
+  {
+    return m_eDocumentType;
+  }
+
+  /**
+   * @return The created ebInterface document or <code>null</code> if the
+   *         conversion failed or if the result was taken from a cache.
+   */
+  @Nullable
+  public Ebi41InvoiceType getEbInterfaceDocument ()
+  {
+    return m_aEbiDoc;
+  }
+
+  /**
+   * @return The UTF-8 encoded ebInterface document or <code>null</code> if the
+   *         conversion or the serialization failed.
+   */
+  @Nullable
+  @ReturnsMutableObject ("performance")
+  public byte [] getEbInterfaceBytes ()
+  {
+    return m_aEbiBytes;
+  }
+
+  /**
+   * @return The errors and warnings of the conversion. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  public TransformationErrorList getTransformationErrorList ()
+  {
+    return m_aTransformationErrorList;
+  }
+
+  /**
+   * @return <code>true</code> if the result was taken from a
+   *         {@link ConversionResultCache} instead of converting the document.
+   */
+  public boolean isFromCache ()
+  {
+    return m_bFromCache;
+  }
+
+  /**
+   * @return <code>true</code> if the serialized ebInterface document is
+   *         present and the conversion did not report any error.
+   */
+  public boolean isSuccess ()
+  {
+    return m_aEbiBytes != null && !m_aTransformationErrorList.containsAtLeastOneError ();
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("index", m_nIndex)
+                                       .append ("source", m_aSource)
+                                       .append ("documentType", m_eDocumentType)
+                                       .append ("ebiBytes#", m_aEbiBytes == null ? -1 : m_aEbiBytes.length)
+                                       .append ("transformationErrorList", m_aTransformationErrorList)
+                                       .append ("fromCache", m_bFromCache)
+                                       .toString ();
+  }
+}
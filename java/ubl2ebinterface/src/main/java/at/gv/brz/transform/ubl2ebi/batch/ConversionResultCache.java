@@ -0,0 +1,881 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.batch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.annotation.ReturnsMutableObject;
+import com.helger.commons.error.EErrorLevel;
+import com.helger.commons.io.stream.StreamHelper;
+import com.helger.commons.string.ToStringGenerator;
+
+import at.gv.brz.transform.ubl2ebi.AbstractConverter.EText;
+import at.gv.brz.transform.ubl2ebi.EUBLDocumentType;
+import at.gv.brz.transform.ubl2ebi.error.ErrorLocation;
+import at.gv.brz.transform.ubl2ebi.error.TransformationError;
+import at.gv.brz.transform.ubl2ebi.error.TransformationErrorList;
+import at.gv.brz.transform.ubl2ebi.error.TransformationErrorListSettings;
+
+/**
+ * Content addressed cache for conversion results. Access points often deliver
+ * the same document several times, e.g. on retries. The key is the SHA-256
+ * hash of the source bytes together with the conversion settings (locales,
+ * strict ERB mode, output formatting and the
+ * {@link TransformationErrorListSettings}) and {@link #CONVERTER_VERSION}.
+ * The value is the serialized ebInterface document and the diagnostics of the
+ * conversion.
+ * <p>
+ * The entries are kept in memory in least-recently-used order, bounded by the
+ * approximate number of bytes of all entries. Optionally the entries are
+ * additionally stored in a directory, so that they survive a restart. Entries
+ * that cannot be read from the directory are treated as missing. The files use
+ * a simple typed format, so no Java deserialization takes place. If a maximum
+ * directory size is configured, the least recently used files are deleted when
+ * it is exceeded. Otherwise the directory is never cleaned up by this class
+ * and cleaning it up is the job of the caller.
+ * <p>
+ * Only the diagnostics of non-aggregating {@link TransformationErrorList}s
+ * can be restored exactly.
+ *
+ * @author philip
+ */
+@ThreadSafe
+public final class ConversionResultCache
+{
+  /**
+   * The version of the conversion. It is part of each key and must be changed
+   * whenever the output of the conversion changes, so that no stale results
+   * are returned from the directory.
+   */
+  public static final String CONVERTER_VERSION = "2.0.0-1";
+
+  /** The file extension of the entries in the directory */
+  public static final String FILE_EXTENSION = ".ebicache";
+
+  private static final Logger s_aLogger = LoggerFactory.getLogger (ConversionResultCache.class);
+  private static final Charset UTF8 = Charset.forName ("UTF-8");
+  private static final int FORMAT_VERSION = 2;
+  // The types of the error arguments in the directory
+  private static final byte ARG_NULL = 0;
+  private static final byte ARG_STRING = 1;
+  private static final byte ARG_INTEGER = 2;
+  private static final byte ARG_LONG = 3;
+  private static final byte ARG_BIGDECIMAL = 4;
+  private static final byte ARG_DATE = 5;
+  private static final FileFilter CACHE_FILE_FILTER = new FileFilter ()
+  {
+    public boolean accept (@Nonnull final File aFile)
+    {
+      return aFile.isFile () && aFile.getName ().endsWith (FILE_EXTENSION);
+    }
+  };
+  // The approximate overhead of an entry in memory
+  private static final int ENTRY_OVERHEAD = 256;
+  private static final int ERROR_OVERHEAD = 128;
+
+  /**
+   * A single cached conversion result.
+   */
+  @Immutable
+  public static final class Entry
+  {
+    private final EUBLDocumentType m_eDocumentType;
+    private final byte [] m_aEbiBytes;
+    private final List <TransformationError> m_aErrors;
+    private final long m_nSize;
+
+    Entry (@Nullable final EUBLDocumentType eDocumentType,
+           @Nullable final byte [] aEbiBytes,
+           @Nonnull final List <TransformationError> aErrors)
+    {
+      m_eDocumentType = eDocumentType;
+      m_aEbiBytes = aEbiBytes;
+      m_aErrors = aErrors;
+      m_nSize = ENTRY_OVERHEAD + (aEbiBytes == null ? 0 : aEbiBytes.length) + aErrors.size () * ERROR_OVERHEAD;
+    }
+
+    @Nullable
+    public EUBLDocumentType getDocumentType ()
+    {
+      return m_eDocumentType;
+    }
+
+    /**
+     * @return The serialized ebInterface document or <code>null</code>. The
+     *         array is shared between all users of the entry and may not be
+     *         modified.
+     */
+    @Nullable
+    @ReturnsMutableObject ("performance")
+    public byte [] getEbInterfaceBytes ()
+    {
+      return m_aEbiBytes;
+    }
+
+    /**
+     * @return A new error list containing all cached diagnostics. Never
+     *         <code>null</code>.
+     */
+    @Nonnull
+    public TransformationErrorList getTransformationErrorList ()
+    {
+      return getTransformationErrorList (TransformationErrorListSettings.DEFAULT);
+    }
+
+    /**
+     * @param aErrorListSettings
+     *        The settings of the created error list. Should be the settings
+     *        the entry was created with. May not be <code>null</code>.
+     * @return A new error list containing all cached diagnostics. Never
+     *         <code>null</code>.
+     */
+    @Nonnull
+    public TransformationErrorList getTransformationErrorList (@Nonnull final TransformationErrorListSettings aErrorListSettings)
+    {
+      final TransformationErrorList ret = aErrorListSettings.createTransformationErrorList ();
+      for (final TransformationError aError : m_aErrors)
+        ret.add (aError);
+      return ret;
+    }
+
+    /**
+     * @return The approximate number of bytes this entry occupies in memory.
+     */
+    @Nonnegative
+    public long getSize ()
+    {
+      return m_nSize;
+    }
+  }
+
+  private final long m_nMaxMemoryBytes;
+  private final File m_aDirectory;
+  private final long m_nMaxDirectoryBytes;
+  private final Lock m_aLock = new ReentrantLock ();
+  private final Lock m_aDirectoryLock = new ReentrantLock ();
+  private final AtomicLong m_aDirectoryBytes = new AtomicLong ();
+  private final LinkedHashMap <String, Entry> m_aMap = new LinkedHashMap <String, Entry> (16, 0.75f, true);
+  private long m_nMemoryBytes = 0;
+  private final AtomicLong m_aMemoryHits = new AtomicLong ();
+  private final AtomicLong m_aDiskHits = new AtomicLong ();
+  private final AtomicLong m_aMisses = new AtomicLong ();
+  private final AtomicLong m_aEvictions = new AtomicLong ();
+
+  /**
+   * Constructor without a limit for the directory. The files in the directory
+   * are never deleted by this class, so the caller is responsible for cleaning
+   * it up.
+   *
+   * @param nMaxMemoryBytes
+   *        The maximum approximate number of bytes of all entries in memory.
+   *        Must be &ge; 0. 0 means that no entries are kept in memory.
+   * @param aDirectory
+   *        The optional directory for the persistent entries. It is created if
+   *        it does not exist. May be <code>null</code>.
+   */
+  public ConversionResultCache (@Nonnegative final long nMaxMemoryBytes, @Nullable final File aDirectory)
+  {
+    this (nMaxMemoryBytes, aDirectory, Long.MAX_VALUE);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param nMaxMemoryBytes
+   *        The maximum approximate number of bytes of all entries in memory.
+   *        Must be &ge; 0. 0 means that no entries are kept in memory.
+   * @param aDirectory
+   *        The optional directory for the persistent entries. It is created if
+   *        it does not exist. May be <code>null</code>.
+   * @param nMaxDirectoryBytes
+   *        The maximum number of bytes of all entries in the directory. If it
+   *        is exceeded, the least recently used files are deleted. Must be
+   *        &gt; 0. Use {@link Long#MAX_VALUE} for no limit.
+   */
+  public ConversionResultCache (@Nonnegative final long nMaxMemoryBytes,
+                                @Nullable final File aDirectory,
+                                @Nonnegative final long nMaxDirectoryBytes)
+  {
+    ValueEnforcer.isGE0 (nMaxMemoryBytes, "MaxMemoryBytes");
+    ValueEnforcer.isGT0 (nMaxDirectoryBytes, "MaxDirectoryBytes");
+    if (aDirectory != null && !aDirectory.isDirectory () && !aDirectory.mkdirs ())
+      throw new IllegalArgumentException ("Failed to create cache directory " + aDirectory);
+    m_nMaxMemoryBytes = nMaxMemoryBytes;
+    m_aDirectory = aDirectory;
+    m_nMaxDirectoryBytes = nMaxDirectoryBytes;
+    if (aDirectory != null && nMaxDirectoryBytes != Long.MAX_VALUE)
+      m_aDirectoryBytes.set (_getDirectoryBytes (_getAllFiles ()));
+  }
+
+  @Nonnegative
+  public long getMaxMemoryBytes ()
+  {
+    return m_nMaxMemoryBytes;
+  }
+
+  @Nullable
+  public File getDirectory ()
+  {
+    return m_aDirectory;
+  }
+
+  /**
+   * @return The maximum number of bytes of all entries in the directory.
+   *         {@link Long#MAX_VALUE} if there is no limit.
+   */
+  @Nonnegative
+  public long getMaxDirectoryBytes ()
+  {
+    return m_nMaxDirectoryBytes;
+  }
+
+  /**
+   * Create the cache key for the passed document and conversion settings
+   * using {@link TransformationErrorListSettings#DEFAULT}.
+   *
+   * @param aSourceBytes
+   *        The source document. May not be <code>null</code>.
+   * @param aDisplayLocale
+   *        The display locale of the conversion. May not be <code>null</code>.
+   * @param aContentLocale
+   *        The content locale of the conversion. May not be <code>null</code>.
+   * @param bStrictERBMode
+   *        The strict ERB mode of the conversion.
+   * @param bFormattedOutput
+   *        Whether the ebInterface document is serialized with indentation.
+   * @return The hex encoded key. Never <code>null</code>.
+   */
+  @Nonnull
+  public static String createKey (@Nonnull final byte [] aSourceBytes,
+                                  @Nonnull final Locale aDisplayLocale,
+                                  @Nonnull final Locale aContentLocale,
+                                  final boolean bStrictERBMode,
+                                  final boolean bFormattedOutput)
+  {
+    return createKey (aSourceBytes,
+                      aDisplayLocale,
+                      aContentLocale,
+                      bStrictERBMode,
+                      bFormattedOutput,
+                      TransformationErrorListSettings.DEFAULT);
+  }
+
+  /**
+   * Create the cache key for the passed document and conversion settings.
+   *
+   * @param aSourceBytes
+   *        The source document. May not be <code>null</code>.
+   * @param aDisplayLocale
+   *        The display locale of the conversion. May not be <code>null</code>.
+   * @param aContentLocale
+   *        The content locale of the conversion. May not be <code>null</code>.
+   * @param bStrictERBMode
+   *        The strict ERB mode of the conversion.
+   * @param bFormattedOutput
+   *        Whether the ebInterface document is serialized with indentation.
+   * @param aErrorListSettings
+   *        The settings of the error list of the conversion. They change the
+   *        reported diagnostics. May not be <code>null</code>.
+   * @return The hex encoded key. Never <code>null</code>.
+   */
+  @Nonnull
+  public static String createKey (@Nonnull final byte [] aSourceBytes,
+                                  @Nonnull final Locale aDisplayLocale,
+                                  @Nonnull final Locale aContentLocale,
+                                  final boolean bStrictERBMode,
+                                  final boolean bFormattedOutput,
+                                  @Nonnull final TransformationErrorListSettings aErrorListSettings)
+  {
+    ValueEnforcer.notNull (aSourceBytes, "SourceBytes");
+    ValueEnforcer.notNull (aDisplayLocale, "DisplayLocale");
+    ValueEnforcer.notNull (aContentLocale, "ContentLocale");
+    ValueEnforcer.notNull (aErrorListSettings, "ErrorListSettings");
+
+    final MessageDigest aMD;
+    try
+    {
+      aMD = MessageDigest.getInstance ("SHA-256");
+    }
+    catch (final NoSuchAlgorithmException ex)
+    {
+      throw new IllegalStateException ("SHA-256 is not supported", ex);
+    }
+    aMD.update (aSourceBytes);
+    aMD.update ((byte) 0);
+    aMD.update ((aDisplayLocale.toString () +
+                 '\0' +
+                 aContentLocale.toString () +
+                 '\0' +
+                 bStrictERBMode +
+                 '\0' +
+                 bFormattedOutput +
+                 '\0' +
+                 aErrorListSettings.getAsKeyString () +
+                 '\0' +
+                 CONVERTER_VERSION).getBytes (UTF8));
+
+    final byte [] aDigest = aMD.digest ();
+    final StringBuilder aSB = new StringBuilder (aDigest.length * 2);
+    for (final byte b : aDigest)
+    {
+      aSB.append (Character.forDigit ((b >> 4) & 0xf, 16));
+      aSB.append (Character.forDigit (b & 0xf, 16));
+    }
+    return aSB.toString ();
+  }
+
+  @Nonnull
+  private File _getFile (@Nonnull final String sKey)
+  {
+    return new File (m_aDirectory, sKey + FILE_EXTENSION);
+  }
+
+  private void _putInMemory (@Nonnull final String sKey, @Nonnull final Entry aEntry)
+  {
+    if (aEntry.getSize () > m_nMaxMemoryBytes)
+      return;
+
+    m_aLock.lock ();
+    try
+    {
+      final Entry aOld = m_aMap.put (sKey, aEntry);
+      if (aOld != null)
+        m_nMemoryBytes -= aOld.getSize ();
+      m_nMemoryBytes += aEntry.getSize ();
+
+      // Evict the least recently used entries
+      while (m_nMemoryBytes > m_nMaxMemoryBytes)
+      {
+        final Map.Entry <String, Entry> aEldest = m_aMap.entrySet ().iterator ().next ();
+        m_aMap.remove (aEldest.getKey ());
+        m_nMemoryBytes -= aEldest.getValue ().getSize ();
+        m_aEvictions.incrementAndGet ();
+      }
+    }
+    finally
+    {
+      m_aLock.unlock ();
+    }
+  }
+
+  private static void _writeArg (@Nonnull final DataOutputStream aDOS, @Nullable final Object aArg) throws IOException
+  {
+    // Numbers and dates keep their type, as they are formatted differently
+    // than strings. All other objects are stored as strings.
+    if (aArg == null)
+      aDOS.writeByte (ARG_NULL);
+    else
+      if (aArg instanceof Integer)
+      {
+        aDOS.writeByte (ARG_INTEGER);
+        aDOS.writeInt (((Integer) aArg).intValue ());
+      }
+      else
+        if (aArg instanceof Long)
+        {
+          aDOS.writeByte (ARG_LONG);
+          aDOS.writeLong (((Long) aArg).longValue ());
+        }
+        else
+          if (aArg instanceof BigDecimal)
+          {
+            aDOS.writeByte (ARG_BIGDECIMAL);
+            aDOS.writeUTF (aArg.toString ());
+          }
+          else
+            if (aArg instanceof Date)
+            {
+              aDOS.writeByte (ARG_DATE);
+              aDOS.writeLong (((Date) aArg).getTime ());
+            }
+            else
+            {
+              aDOS.writeByte (ARG_STRING);
+              aDOS.writeUTF (String.valueOf (aArg));
+            }
+  }
+
+  @Nullable
+  private static Object _readArg (@Nonnull final DataInputStream aDIS) throws IOException
+  {
+    final byte nType = aDIS.readByte ();
+    switch (nType)
+    {
+      case ARG_NULL:
+        return null;
+      case ARG_STRING:
+        return aDIS.readUTF ();
+      case ARG_INTEGER:
+        return Integer.valueOf (aDIS.readInt ());
+      case ARG_LONG:
+        return Long.valueOf (aDIS.readLong ());
+      case ARG_BIGDECIMAL:
+        try
+        {
+          return new BigDecimal (aDIS.readUTF ());
+        }
+        catch (final NumberFormatException ex)
+        {
+          throw new IOException ("Invalid number argument", ex);
+        }
+      case ARG_DATE:
+        return new Date (aDIS.readLong ());
+      default:
+        throw new IOException ("Invalid argument type " + nType);
+    }
+  }
+
+  /**
+   * Read a count from the file. As every counted item occupies at least one
+   * byte, a count larger than the file is corrupt.
+   */
+  @Nonnegative
+  private static int _readCount (@Nonnull final DataInputStream aDIS, final long nFileLength) throws IOException
+  {
+    final int ret = aDIS.readInt ();
+    if (ret < 0 || ret > nFileLength)
+      throw new IOException ("Invalid count " + ret);
+    return ret;
+  }
+
+  private static void _writeLocation (@Nonnull final DataOutputStream aDOS,
+                                      @Nonnull final ErrorLocation aLocation) throws IOException
+  {
+    // Write the parents first
+    final ErrorLocation aParent = aLocation.getParent ();
+    if (aParent != null)
+      _writeLocation (aDOS, aParent);
+
+    final int [] aAllIndices = aLocation.getAllIndices ();
+    final int nFirstLocalIndex = aParent == null ? 0 : aParent.getIndexCount ();
+    aDOS.writeUTF (aLocation.getLocalPattern ());
+    aDOS.writeInt (aAllIndices.length - nFirstLocalIndex);
+    for (int i = nFirstLocalIndex; i < aAllIndices.length; ++i)
+      aDOS.writeInt (aAllIndices[i]);
+  }
+
+  private static int _getDepth (@Nonnull final ErrorLocation aLocation)
+  {
+    return aLocation.getParent () == null ? 1 : 1 + _getDepth (aLocation.getParent ());
+  }
+
+  @Nonnull
+  private static ErrorLocation _readLocation (@Nonnull final DataInputStream aDIS,
+                                              final long nFileLength) throws IOException
+  {
+    final int nDepth = _readCount (aDIS, nFileLength);
+    ErrorLocation ret = null;
+    for (int nLevel = 0; nLevel < nDepth; ++nLevel)
+    {
+      final String sPattern = aDIS.readUTF ();
+      final int [] aIndices = new int [_readCount (aDIS, nFileLength)];
+      for (int i = 0; i < aIndices.length; ++i)
+        aIndices[i] = aDIS.readInt ();
+      try
+      {
+        ret = ret == null ? ErrorLocation.create (sPattern, aIndices) : ret.getChild (sPattern, aIndices);
+      }
+      catch (final IllegalArgumentException ex)
+      {
+        throw new IOException ("Invalid error location " + sPattern, ex);
+      }
+    }
+    if (ret == null)
+      throw new IOException ("Empty error location");
+    return ret;
+  }
+
+  @Nonnull
+  private File [] _getAllFiles ()
+  {
+    final File [] ret = m_aDirectory.listFiles (CACHE_FILE_FILTER);
+    return ret == null ? new File [0] : ret;
+  }
+
+  private static long _getDirectoryBytes (@Nonnull final File [] aFiles)
+  {
+    long ret = 0;
+    for (final File aFile : aFiles)
+      ret += aFile.length ();
+    return ret;
+  }
+
+  /**
+   * Delete the least recently used files until the directory is within its
+   * limit. Only one thread cleans up at a time.
+   */
+  private void _trimDirectory ()
+  {
+    if (!m_aDirectoryLock.tryLock ())
+      return;
+    try
+    {
+      final File [] aFiles = _getAllFiles ();
+      long nBytes = _getDirectoryBytes (aFiles);
+      if (nBytes > m_nMaxDirectoryBytes)
+      {
+        final long [] aLastModified = new long [aFiles.length];
+        final Integer [] aOrder = new Integer [aFiles.length];
+        for (int i = 0; i < aFiles.length; ++i)
+        {
+          aLastModified[i] = aFiles[i].lastModified ();
+          aOrder[i] = Integer.valueOf (i);
+        }
+        // Oldest first
+        Arrays.sort (aOrder, new Comparator <Integer> ()
+        {
+          public int compare (@Nonnull final Integer aIndex1, @Nonnull final Integer aIndex2)
+          {
+            final long n1 = aLastModified[aIndex1.intValue ()];
+            final long n2 = aLastModified[aIndex2.intValue ()];
+            return n1 < n2 ? -1 : n1 == n2 ? 0 : 1;
+          }
+        });
+        for (final Integer aIndex : aOrder)
+        {
+          if (nBytes <= m_nMaxDirectoryBytes)
+            break;
+          final File aFile = aFiles[aIndex.intValue ()];
+          final long nLength = aFile.length ();
+          if (aFile.delete ())
+            nBytes -= nLength;
+        }
+      }
+      m_aDirectoryBytes.set (nBytes);
+    }
+    finally
+    {
+      m_aDirectoryLock.unlock ();
+    }
+  }
+
+  private void _writeToDisk (@Nonnull final String sKey, @Nonnull final Entry aEntry)
+  {
+    final File aFile = _getFile (sKey);
+    final File aTempFile = new File (m_aDirectory, sKey + ".tmp" + Thread.currentThread ().getId ());
+    DataOutputStream aDOS = null;
+    try
+    {
+      aDOS = new DataOutputStream (new BufferedOutputStream (new FileOutputStream (aTempFile)));
+      aDOS.writeInt (FORMAT_VERSION);
+      aDOS.writeUTF (aEntry.m_eDocumentType == null ? "" : aEntry.m_eDocumentType.name ());
+      aDOS.writeInt (aEntry.m_aEbiBytes == null ? -1 : aEntry.m_aEbiBytes.length);
+      if (aEntry.m_aEbiBytes != null)
+        aDOS.write (aEntry.m_aEbiBytes);
+      aDOS.writeInt (aEntry.m_aErrors.size ());
+      for (final TransformationError aError : aEntry.m_aErrors)
+      {
+        aDOS.writeUTF (aError.getErrorLevel ().name ());
+        aDOS.writeUTF (aError.getText ().name ());
+        aDOS.writeInt (_getDepth (aError.getLocation ()));
+        _writeLocation (aDOS, aError.getLocation ());
+        final Object [] aArgs = aError.getAllArgs ();
+        aDOS.writeInt (aArgs.length);
+        for (final Object aArg : aArgs)
+          _writeArg (aDOS, aArg);
+      }
+      aDOS.close ();
+      aDOS = null;
+
+      // Replace atomically so that concurrent readers never see partial files
+      final long nOldLength = aFile.length ();
+      final long nNewLength = aTempFile.length ();
+      if (!aTempFile.renameTo (aFile))
+      {
+        aFile.delete ();
+        if (!aTempFile.renameTo (aFile))
+          s_aLogger.warn ("Failed to store cache entry " + aFile);
+      }
+
+      if (m_nMaxDirectoryBytes != Long.MAX_VALUE &&
+          m_aDirectoryBytes.addAndGet (nNewLength - nOldLength) > m_nMaxDirectoryBytes)
+        _trimDirectory ();
+    }
+    catch (final IOException ex)
+    {
+      s_aLogger.warn ("Failed to write cache entry " + aFile, ex);
+    }
+    finally
+    {
+      StreamHelper.close (aDOS);
+      aTempFile.delete ();
+    }
+  }
+
+  @Nullable
+  private Entry _readFromDisk (@Nonnull final String sKey)
+  {
+    final File aFile = _getFile (sKey);
+    if (!aFile.isFile ())
+      return null;
+
+    final long nFileLength = aFile.length ();
+    DataInputStream aDIS = null;
+    try
+    {
+      aDIS = new DataInputStream (new BufferedInputStream (new FileInputStream (aFile)));
+      if (aDIS.readInt () != FORMAT_VERSION)
+        return null;
+      final String sDocumentType = aDIS.readUTF ();
+      final EUBLDocumentType eDocumentType = sDocumentType.length () == 0 ? null
+                                                                          : EUBLDocumentType.valueOf (sDocumentType);
+      final int nEbiLength = aDIS.readInt ();
+      byte [] aEbiBytes = null;
+      if (nEbiLength > nFileLength)
+        throw new IOException ("Invalid document length " + nEbiLength);
+      if (nEbiLength >= 0)
+      {
+        aEbiBytes = new byte [nEbiLength];
+        aDIS.readFully (aEbiBytes);
+      }
+      final int nErrorCount = _readCount (aDIS, nFileLength);
+      final List <TransformationError> aErrors = new ArrayList <TransformationError> (nErrorCount);
+      for (int i = 0; i < nErrorCount; ++i)
+      {
+        final EErrorLevel eErrorLevel = EErrorLevel.valueOf (aDIS.readUTF ());
+        final EText eText = EText.valueOf (aDIS.readUTF ());
+        final ErrorLocation aLocation = _readLocation (aDIS, nFileLength);
+        final Object [] aArgs = new Object [_readCount (aDIS, nFileLength)];
+        for (int j = 0; j < aArgs.length; ++j)
+          aArgs[j] = _readArg (aDIS);
+        aErrors.add (new TransformationError (eErrorLevel, aLocation, eText, aArgs));
+      }
+      if (m_nMaxDirectoryBytes != Long.MAX_VALUE)
+      {
+        // Used for the least recently used order of the files
+        aFile.setLastModified (System.currentTimeMillis ());
+      }
+      return new Entry (eDocumentType, aEbiBytes, aErrors);
+    }
+    catch (final Exception ex)
+    {
+      // Unreadable or from an incompatible version
+      s_aLogger.warn ("Failed to read cache entry " + aFile + ": " + ex.getMessage ());
+      return null;
+    }
+    finally
+    {
+      StreamHelper.close (aDIS);
+    }
+  }
+
+  /**
+   * Get a cached result.
+   *
+   * @param sKey
+   *        The key as created by
+   *        {@link #createKey(byte[], Locale, Locale, boolean, boolean, TransformationErrorListSettings)}.
+   *        May not be <code>null</code>.
+   * @return <code>null</code> if no such entry is cached.
+   */
+  @Nullable
+  public Entry get (@Nonnull final String sKey)
+  {
+    ValueEnforcer.notNull (sKey, "Key");
+
+    Entry ret;
+    m_aLock.lock ();
+    try
+    {
+      ret = m_aMap.get (sKey);
+    }
+    finally
+    {
+      m_aLock.unlock ();
+    }
+    if (ret != null)
+    {
+      m_aMemoryHits.incrementAndGet ();
+      return ret;
+    }
+
+    if (m_aDirectory != null)
+    {
+      ret = _readFromDisk (sKey);
+      if (ret != null)
+      {
+        m_aDiskHits.incrementAndGet ();
+        _putInMemory (sKey, ret);
+        return ret;
+      }
+    }
+    m_aMisses.incrementAndGet ();
+    return null;
+  }
+
+  /**
+   * Add a conversion result to the cache.
+   *
+   * @param sKey
+   *        The key as created by
+   *        {@link #createKey(byte[], Locale, Locale, boolean, boolean, TransformationErrorListSettings)}.
+   *        May not be <code>null</code>.
+   * @param eDocumentType
+   *        The detected document type. May be <code>null</code>.
+   * @param aEbiBytes
+   *        The serialized ebInterface document. May be <code>null</code>.
+   * @param aTransformationErrorList
+   *        The diagnostics of the conversion. May not be <code>null</code>.
+   */
+  public void put (@Nonnull final String sKey,
+                   @Nullable final EUBLDocumentType eDocumentType,
+                   @Nullable final byte [] aEbiBytes,
+                   @Nonnull final TransformationErrorList aTransformationErrorList)
+  {
+    ValueEnforcer.notNull (sKey, "Key");
+    ValueEnforcer.notNull (aTransformationErrorList, "TransformationErrorList");
+
+    final Entry aEntry = new Entry (eDocumentType, aEbiBytes, aTransformationErrorList.getAllItems ());
+    _putInMemory (sKey, aEntry);
+    if (m_aDirectory != null)
+      _writeToDisk (sKey, aEntry);
+  }
+
+  /**
+   * Remove all entries from memory. The entries in the directory are kept.
+   */
+  public void clearMemory ()
+  {
+    m_aLock.lock ();
+    try
+    {
+      m_aMap.clear ();
+      m_nMemoryBytes = 0;
+    }
+    finally
+    {
+      m_aLock.unlock ();
+    }
+  }
+
+  /**
+   * @return The number of entries in memory.
+   */
+  @Nonnegative
+  public int getMemoryEntryCount ()
+  {
+    m_aLock.lock ();
+    try
+    {
+      return m_aMap.size ();
+    }
+    finally
+    {
+      m_aLock.unlock ();
+    }
+  }
+
+  /**
+   * @return The approximate number of bytes of all entries in memory.
+   */
+  @Nonnegative
+  public long getMemoryBytes ()
+  {
+    m_aLock.lock ();
+    try
+    {
+      return m_nMemoryBytes;
+    }
+    finally
+    {
+      m_aLock.unlock ();
+    }
+  }
+
+  /**
+   * @return The number of lookups that were answered from memory.
+   */
+  @Nonnegative
+  public long getMemoryHitCount ()
+  {
+    return m_aMemoryHits.get ();
+  }
+
+  /**
+   * @return The number of lookups that were answered from the directory.
+   */
+  @Nonnegative
+  public long getDiskHitCount ()
+  {
+    return m_aDiskHits.get ();
+  }
+
+  /**
+   * @return The number of lookups that found no entry.
+   */
+  @Nonnegative
+  public long getMissCount ()
+  {
+    return m_aMisses.get ();
+  }
+
+  /**
+   * @return The number of entries that were removed from memory to stay
+   *         within the size limit.
+   */
+  @Nonnegative
+  public long getEvictionCount ()
+  {
+    return m_aEvictions.get ();
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("maxMemoryBytes", m_nMaxMemoryBytes)
+                                       .append ("directory", m_aDirectory)
+                                       .append ("maxDirectoryBytes", m_nMaxDirectoryBytes)
+                                       .append ("memoryHits", m_aMemoryHits.get ())
+                                       .append ("diskHits", m_aDiskHits.get ())
+                                       .append ("misses", m_aMisses.get ())
+                                       .append ("evictions", m_aEvictions.get ())
+                                       .toString ();
+  }
+}
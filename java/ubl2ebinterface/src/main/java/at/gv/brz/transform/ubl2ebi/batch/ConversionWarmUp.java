@@ -0,0 +1,184 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.batch;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.io.resource.inmemory.ReadableResourceByteArray;
+import com.helger.ebinterface.v41.Ebi41CountryCodeType;
+import com.helger.peppol.codelist.ETaxSchemeID;
+import com.helger.peppol.identifier.process.PredefinedProcessIdentifierManager;
+import com.helger.ubl21.codelist.EPaymentMeansCode21;
+import com.helger.ubl21.codelist.EUnitOfMeasureCode21;
+
+import at.gv.brz.transform.ubl2ebi.AbstractConverter.EText;
+import at.gv.brz.transform.ubl2ebi.EbInterface41CodeListHelper;
+import at.gv.brz.transform.ubl2ebi.JAXBPool;
+import at.gv.brz.transform.ubl2ebi.UBLDocumentDispatcher;
+import at.gv.brz.transform.ubl2ebi.synthetic.SyntheticDocumentGenerator;
+import at.gv.brz.transform.ubl2ebi.synthetic.SyntheticDocumentSettings;
+
+/**
+ * Initializes all lazily created structures of the conversion before the
+ * first real document arrives: the JAXB contexts, the texts, the country
+ * names, the code lists and the predefined process identifiers. Afterwards a
+ * number of synthetic invoices and credit notes is converted, so that the JIT
+ * compiler already optimized the conversion code. Readiness checks can use
+ * {@link #isWarmedUp()} to only accept traffic after the warm-up.
+ * <p>
+ * The synthetic documents are converted with a separate pipeline with the
+ * same settings as the passed pipeline, so they are neither cached nor passed
+ * to a metrics listener.
+ *
+ * @author philip
+ */
+@ThreadSafe
+public final class ConversionWarmUp
+{
+  /** The default number of synthetic documents to convert */
+  public static final int DEFAULT_DOCUMENT_COUNT = 20;
+
+  private static final Logger s_aLogger = LoggerFactory.getLogger (ConversionWarmUp.class);
+
+  private static final AtomicLong s_aDurationNanos = new AtomicLong (-1);
+
+  private ConversionWarmUp ()
+  {}
+
+  private static void _initStatic (@Nonnull final Locale aDisplayLocale, @Nonnull final Locale aContentLocale)
+  {
+    JAXBPool.getUBLInvoiceContext ();
+    JAXBPool.getUBLCreditNoteContext ();
+    JAXBPool.getEbInterface41Context ();
+
+    for (final EText eText : EText.values ())
+    {
+      eText.getDisplayText (aDisplayLocale);
+      eText.getDisplayText (aContentLocale);
+    }
+
+    // Also fills the CountryCache
+    EbInterface41CodeListHelper.getCountryDisplayName (Ebi41CountryCodeType.AT, aDisplayLocale);
+
+    ETaxSchemeID.getFromIDOrNull (ETaxSchemeID.VALUE_ADDED_TAX.getID ());
+    EPaymentMeansCode21.getFromIDOrNull (EPaymentMeansCode21._31.getID ());
+    EUnitOfMeasureCode21.getFromIDOrNull (EUnitOfMeasureCode21.C62.getID ());
+    PredefinedProcessIdentifierManager.getProcessIdentifierOfID (SyntheticDocumentGenerator.PROFILE_ID);
+  }
+
+  /**
+   * Warm-up with {@link #DEFAULT_DOCUMENT_COUNT} synthetic documents.
+   *
+   * @param aPipeline
+   *        The pipeline that will be used for the conversion. Only its
+   *        settings are used. May not be <code>null</code>.
+   * @return The duration of the warm-up in milliseconds.
+   * @see #warmUp(ConversionPipeline, int)
+   */
+  @Nonnegative
+  public static long warmUp (@Nonnull final ConversionPipeline aPipeline)
+  {
+    return warmUp (aPipeline, DEFAULT_DOCUMENT_COUNT);
+  }
+
+  /**
+   * Initialize all lazily created structures and convert the passed number of
+   * synthetic documents, alternating between invoices and credit notes.
+   * Conversion errors of the synthetic documents (e.g. in strict ERB mode) are
+   * ignored.
+   *
+   * @param aPipeline
+   *        The pipeline that will be used for the conversion. Only its
+   *        settings are used. May not be <code>null</code>.
+   * @param nDocumentCount
+   *        The number of synthetic documents to convert. Must be &ge; 0.
+   * @return The duration of the warm-up in milliseconds.
+   */
+  @Nonnegative
+  public static long warmUp (@Nonnull final ConversionPipeline aPipeline, @Nonnegative final int nDocumentCount)
+  {
+    ValueEnforcer.notNull (aPipeline, "Pipeline");
+    ValueEnforcer.isGE0 (nDocumentCount, "DocumentCount");
+
+    final long nStartNanos = System.nanoTime ();
+    final UBLDocumentDispatcher aDispatcher = aPipeline.getDispatcher ();
+    _initStatic (aDispatcher.getDisplayLocale (), aDispatcher.getContentLocale ());
+
+    final ConversionPipeline aWarmUpPipeline = new ConversionPipeline (aDispatcher.getDisplayLocale (),
+                                                                       aDispatcher.getContentLocale (),
+                                                                       aDispatcher.isStrictERBMode (),
+                                                                       aPipeline.isFormattedOutput (),
+                                                                       null,
+                                                                       null,
+                                                                       aPipeline.getErrorListSettings ());
+    int nSuccessCount = 0;
+    for (int i = 0; i < nDocumentCount; ++i)
+    {
+      // Vary the documents so that all parts of the converter are used
+      final SyntheticDocumentSettings aSettings = new SyntheticDocumentSettings ().setSeed (i)
+                                                                                  .setLineCount (1 + (i % 5) * 10)
+                                                                                  .setTaxCategoryCount (1 + i % 3)
+                                                                                  .setAllowanceChargeDensity ((i % 3) * 0.25)
+                                                                                  .setLineDeliveryDensity ((i % 4) * 0.25)
+                                                                                  .setOrderLineReferenceDensity ((i % 2) * 0.5);
+      final SyntheticDocumentGenerator aGenerator = new SyntheticDocumentGenerator (aSettings);
+      final byte [] aBytes = (i % 2) == 0 ? aGenerator.createInvoiceBytes () : aGenerator.createCreditNoteBytes ();
+      if (aWarmUpPipeline.convert (i, new ReadableResourceByteArray (aBytes)).isSuccess ())
+        nSuccessCount++;
+    }
+
+    final long nDurationNanos = System.nanoTime () - nStartNanos;
+    s_aDurationNanos.set (nDurationNanos);
+    final long nDurationMillis = TimeUnit.NANOSECONDS.toMillis (nDurationNanos);
+    s_aLogger.info ("Warm-up with " +
+                    nDocumentCount +
+                    " synthetic documents (" +
+                    nSuccessCount +
+                    " successful) finished after " +
+                    nDurationMillis +
+                    " ms");
+    return nDurationMillis;
+  }
+
+  /**
+   * @return <code>true</code> if a warm-up was finished in this JVM.
+   */
+  public static boolean isWarmedUp ()
+  {
+    return s_aDurationNanos.get () >= 0;
+  }
+
+  /**
+   * @return The duration of the last finished warm-up in milliseconds or -1 if
+   *         no warm-up was finished yet.
+   */
+  public static long getWarmUpDurationMillis ()
+  {
+    final long nDurationNanos = s_aDurationNanos.get ();
+    return nDurationNanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis (nDurationNanos);
+  }
+}
@@ -0,0 +1,34 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.batch;
+
+/**
+ * The order in which the results of a batch conversion are passed to the
+ * {@link IConversionResultSink}.
+ *
+ * @author philip
+ */
+public enum EResultOrder
+{
+  /** In the order the documents were submitted */
+  SUBMISSION,
+  /**
+   * In the order the conversions finish. Slow documents don't hold back the
+   * results of faster ones.
+   */
+  COMPLETION;
+}
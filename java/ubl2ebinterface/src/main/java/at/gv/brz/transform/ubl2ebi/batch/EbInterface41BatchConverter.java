@@ -0,0 +1,238 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.batch;
+
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.io.resource.IReadableResource;
+import com.helger.commons.string.ToStringGenerator;
+
+/**
+ * Converts an arbitrary number of UBL invoices and credit notes to
+ * ebInterface 4.1. Each document is read, converted and serialized by a
+ * {@link ConversionPipeline} on the passed executor. The source documents are
+ * read lazily from the passed {@link Iterable} and at most
+ * {@link #getMaxInFlight()} documents are in progress at any time, so that the
+ * memory consumption stays bounded independent of the batch size. If the
+ * executor is busy, the calling thread waits for a result before the next
+ * document is submitted.<br>
+ * Documents in memory can be passed as
+ * <code>ReadableResourceByteArray</code>.
+ * <p>
+ * The numeric limits, the error budget and the aggregation of repeated errors
+ * are taken from {@link ConversionPipeline#getErrorListSettings()}.
+ *
+ * @author philip
+ */
+@Immutable
+public final class EbInterface41BatchConverter
+{
+  private final ConversionPipeline m_aPipeline;
+  private final ExecutorService m_aExecutor;
+  private final int m_nMaxInFlight;
+  private final EResultOrder m_eResultOrder;
+
+  /**
+   * Constructor
+   *
+   * @param aPipeline
+   *        The pipeline used to convert each document. May not be
+   *        <code>null</code>.
+   * @param aExecutor
+   *        The executor to run the conversions on. Should have a bounded
+   *        number of threads. The executor is not shut down by this class. May
+   *        not be <code>null</code>.
+   * @param nMaxInFlight
+   *        The maximum number of documents that are submitted to the executor
+   *        but whose result was not yet passed to the sink. Must be &gt; 0.
+   * @param eResultOrder
+   *        The order in which the results are passed to the sink. May not be
+   *        <code>null</code>.
+   */
+  public EbInterface41BatchConverter (@Nonnull final ConversionPipeline aPipeline,
+                                      @Nonnull final ExecutorService aExecutor,
+                                      @Nonnegative final int nMaxInFlight,
+                                      @Nonnull final EResultOrder eResultOrder)
+  {
+    ValueEnforcer.notNull (aPipeline, "Pipeline");
+    ValueEnforcer.notNull (aExecutor, "Executor");
+    ValueEnforcer.isGT0 (nMaxInFlight, "MaxInFlight");
+    ValueEnforcer.notNull (eResultOrder, "ResultOrder");
+    m_aPipeline = aPipeline;
+    m_aExecutor = aExecutor;
+    m_nMaxInFlight = nMaxInFlight;
+    m_eResultOrder = eResultOrder;
+  }
+
+  @Nonnull
+  public ConversionPipeline getPipeline ()
+  {
+    return m_aPipeline;
+  }
+
+  @Nonnull
+  public ExecutorService getExecutor ()
+  {
+    return m_aExecutor;
+  }
+
+  @Nonnegative
+  public int getMaxInFlight ()
+  {
+    return m_nMaxInFlight;
+  }
+
+  @Nonnull
+  public EResultOrder getResultOrder ()
+  {
+    return m_eResultOrder;
+  }
+
+  @Nonnull
+  private static ConversionResult _getResult (@Nonnull final Future <ConversionResult> aFuture)
+  {
+    try
+    {
+      return aFuture.get ();
+    }
+    catch (final InterruptedException ex)
+    {
+      Thread.currentThread ().interrupt ();
+      throw new IllegalStateException ("Interrupted while waiting for a conversion result", ex);
+    }
+    catch (final ExecutionException ex)
+    {
+      // The pipeline reports all problems in the result
+      final Throwable aCause = ex.getCause ();
+      if (aCause instanceof RuntimeException)
+        throw (RuntimeException) aCause;
+      if (aCause instanceof Error)
+        throw (Error) aCause;
+      throw new IllegalStateException ("Failed to convert document", aCause);
+    }
+  }
+
+  @Nonnull
+  private static Future <ConversionResult> _take (@Nonnull final CompletionService <ConversionResult> aCompletionService)
+  {
+    try
+    {
+      return aCompletionService.take ();
+    }
+    catch (final InterruptedException ex)
+    {
+      Thread.currentThread ().interrupt ();
+      throw new IllegalStateException ("Interrupted while waiting for a conversion result", ex);
+    }
+  }
+
+  /**
+   * Wait for the next result according to the result order and pass it to the
+   * sink.
+   */
+  private static void _deliverNext (@Nonnull final LinkedList <Future <ConversionResult>> aInFlight,
+                                    @Nullable final CompletionService <ConversionResult> aCompletionService,
+                                    @Nonnull final IConversionResultSink aSink)
+  {
+    final Future <ConversionResult> aFuture;
+    if (aCompletionService != null)
+    {
+      aFuture = _take (aCompletionService);
+      aInFlight.remove (aFuture);
+    }
+    else
+      aFuture = aInFlight.removeFirst ();
+    aSink.onResult (_getResult (aFuture));
+  }
+
+  /**
+   * Convert all passed documents. This method returns after the results of all
+   * documents were passed to the sink. The sink is only invoked on the calling
+   * thread.
+   *
+   * @param aSources
+   *        The UBL invoices and credit notes to convert. They are iterated on
+   *        the calling thread. May not be <code>null</code>.
+   * @param aSink
+   *        The sink for the conversion results. May not be <code>null</code>.
+   * @return The number of converted documents.
+   */
+  @Nonnegative
+  public int convertAll (@Nonnull final Iterable <? extends IReadableResource> aSources,
+                         @Nonnull final IConversionResultSink aSink)
+  {
+    ValueEnforcer.notNull (aSources, "Sources");
+    ValueEnforcer.notNull (aSink, "Sink");
+
+    final CompletionService <ConversionResult> aCompletionService = m_eResultOrder == EResultOrder.COMPLETION ? new ExecutorCompletionService <ConversionResult> (m_aExecutor)
+                                                                                                               : null;
+    final LinkedList <Future <ConversionResult>> aInFlight = new LinkedList <Future <ConversionResult>> ();
+    int nIndex = 0;
+    try
+    {
+      for (final IReadableResource aSource : aSources)
+      {
+        // Back pressure
+        if (aInFlight.size () >= m_nMaxInFlight)
+          _deliverNext (aInFlight, aCompletionService, aSink);
+
+        final int nSourceIndex = nIndex;
+        final Callable <ConversionResult> aTask = new Callable <ConversionResult> ()
+        {
+          public ConversionResult call ()
+          {
+            return m_aPipeline.convert (nSourceIndex, aSource);
+          }
+        };
+        aInFlight.add (aCompletionService != null ? aCompletionService.submit (aTask) : m_aExecutor.submit (aTask));
+        nIndex++;
+      }
+
+      while (!aInFlight.isEmpty ())
+        _deliverNext (aInFlight, aCompletionService, aSink);
+      return nIndex;
+    }
+    finally
+    {
+      // In case the sink or the iterator failed
+      for (final Future <ConversionResult> aFuture : aInFlight)
+        aFuture.cancel (true);
+    }
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("pipeline", m_aPipeline)
+                                       .append ("executor", m_aExecutor)
+                                       .append ("maxInFlight", m_nMaxInFlight)
+                                       .append ("resultOrder", m_eResultOrder)
+                                       .toString ();
+  }
+}
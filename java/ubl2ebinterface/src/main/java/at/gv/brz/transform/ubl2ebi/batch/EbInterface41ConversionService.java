@@ -0,0 +1,231 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.batch;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.io.resource.IReadableResource;
+import com.helger.commons.string.ToStringGenerator;
+
+/**
+ * Service facade for callers that convert single documents from many threads,
+ * e.g. from request handlers that block on I/O before and after the
+ * conversion. Documents are converted with a {@link ConversionPipeline} either
+ * on the calling thread or asynchronously on an arbitrary {@link Executor}.
+ * Independent of the number of threads, at most
+ * {@link #getMaxConcurrentConversions()} conversions run at the same time.
+ * The default is derived from the maximum heap size, so that a large number
+ * of waiting callers cannot exhaust the memory. Callers that are waiting for a
+ * permit don't hold any document in memory.
+ * <p>
+ * The numeric limits, the error budget and the aggregation of repeated errors
+ * are taken from {@link ConversionPipeline#getErrorListSettings()}.
+ *
+ * @author philip
+ */
+@ThreadSafe
+public final class EbInterface41ConversionService
+{
+  /** The heap size that is reserved for each concurrent conversion */
+  public static final long DEFAULT_HEAP_PER_CONVERSION = 16L * 1024 * 1024;
+
+  private final ConversionPipeline m_aPipeline;
+  private final Executor m_aExecutor;
+  private final int m_nMaxConcurrentConversions;
+  private final Semaphore m_aPermits;
+  private final AtomicInteger m_aNextIndex = new AtomicInteger (0);
+
+  /**
+   * Constructor using {@link #getDefaultMaxConcurrentConversions()}.
+   *
+   * @param aPipeline
+   *        The pipeline used to convert each document. May not be
+   *        <code>null</code>.
+   * @param aExecutor
+   *        The executor for asynchronous conversions. Each conversion occupies
+   *        a thread of the executor while waiting for a permit. May not be
+   *        <code>null</code>.
+   */
+  public EbInterface41ConversionService (@Nonnull final ConversionPipeline aPipeline,
+                                         @Nonnull final Executor aExecutor)
+  {
+    this (aPipeline, aExecutor, getDefaultMaxConcurrentConversions ());
+  }
+
+  /**
+   * Constructor
+   *
+   * @param aPipeline
+   *        The pipeline used to convert each document. May not be
+   *        <code>null</code>.
+   * @param aExecutor
+   *        The executor for asynchronous conversions. Each conversion occupies
+   *        a thread of the executor while waiting for a permit. May not be
+   *        <code>null</code>.
+   * @param nMaxConcurrentConversions
+   *        The maximum number of conversions that may run at the same time.
+   *        Must be &gt; 0.
+   */
+  public EbInterface41ConversionService (@Nonnull final ConversionPipeline aPipeline,
+                                         @Nonnull final Executor aExecutor,
+                                         @Nonnegative final int nMaxConcurrentConversions)
+  {
+    ValueEnforcer.notNull (aPipeline, "Pipeline");
+    ValueEnforcer.notNull (aExecutor, "Executor");
+    ValueEnforcer.isGT0 (nMaxConcurrentConversions, "MaxConcurrentConversions");
+    m_aPipeline = aPipeline;
+    m_aExecutor = aExecutor;
+    m_nMaxConcurrentConversions = nMaxConcurrentConversions;
+    m_aPermits = new Semaphore (nMaxConcurrentConversions, true);
+  }
+
+  /**
+   * @return The maximum number of concurrent conversions so that each
+   *         conversion has {@link #DEFAULT_HEAP_PER_CONVERSION} bytes of the
+   *         maximum heap size available. Always &gt; 0.
+   */
+  @Nonnegative
+  public static int getDefaultMaxConcurrentConversions ()
+  {
+    final long nMaxMemory = Runtime.getRuntime ().maxMemory ();
+    if (nMaxMemory == Long.MAX_VALUE)
+    {
+      // No limit - use the number of processors
+      return Runtime.getRuntime ().availableProcessors ();
+    }
+    return (int) Math.max (1, Math.min (Integer.MAX_VALUE, nMaxMemory / DEFAULT_HEAP_PER_CONVERSION));
+  }
+
+  @Nonnull
+  public ConversionPipeline getPipeline ()
+  {
+    return m_aPipeline;
+  }
+
+  @Nonnull
+  public Executor getExecutor ()
+  {
+    return m_aExecutor;
+  }
+
+  /**
+   * @return The maximum number of conversions that may run at the same time.
+   *         Always &gt; 0.
+   */
+  @Nonnegative
+  public int getMaxConcurrentConversions ()
+  {
+    return m_nMaxConcurrentConversions;
+  }
+
+  /**
+   * @return The number of conversions running at the moment.
+   */
+  @Nonnegative
+  public int getActiveConversionCount ()
+  {
+    return m_nMaxConcurrentConversions - m_aPermits.availablePermits ();
+  }
+
+  @Nonnull
+  private ConversionResult _convert (@Nonnegative final int nIndex,
+                                     @Nonnull final IReadableResource aSource) throws InterruptedException
+  {
+    m_aPermits.acquire ();
+    try
+    {
+      return m_aPipeline.convert (nIndex, aSource);
+    }
+    finally
+    {
+      m_aPermits.release ();
+    }
+  }
+
+  /**
+   * Convert the passed document on the calling thread. Blocks until a permit
+   * is available.
+   *
+   * @param aSource
+   *        The UBL invoice or credit note to convert. May not be
+   *        <code>null</code>.
+   * @return The conversion result. Never <code>null</code>.
+   * @throws InterruptedException
+   *         If the calling thread was interrupted while waiting for a permit
+   */
+  @Nonnull
+  public ConversionResult convert (@Nonnull final IReadableResource aSource) throws InterruptedException
+  {
+    ValueEnforcer.notNull (aSource, "Source");
+    return _convert (m_aNextIndex.getAndIncrement (), aSource);
+  }
+
+  /**
+   * Convert the passed document asynchronously on the executor. This method
+   * never blocks.
+   *
+   * @param aSource
+   *        The UBL invoice or credit note to convert. May not be
+   *        <code>null</code>.
+   * @param aCallback
+   *        An optional callback that is invoked with the result as soon as
+   *        the conversion finished. It is invoked on the executor thread and
+   *        must therefore be thread-safe. May be <code>null</code>.
+   * @return The future result. Never <code>null</code>. Cancelling the future
+   *         of a conversion that waits for a permit removes it from the queue.
+   */
+  @Nonnull
+  public Future <ConversionResult> submit (@Nonnull final IReadableResource aSource,
+                                           @Nullable final IConversionResultSink aCallback)
+  {
+    ValueEnforcer.notNull (aSource, "Source");
+
+    final int nIndex = m_aNextIndex.getAndIncrement ();
+    final FutureTask <ConversionResult> aTask = new FutureTask <ConversionResult> (new Callable <ConversionResult> ()
+    {
+      public ConversionResult call () throws InterruptedException
+      {
+        final ConversionResult aResult = _convert (nIndex, aSource);
+        if (aCallback != null)
+          aCallback.onResult (aResult);
+        return aResult;
+      }
+    });
+    m_aExecutor.execute (aTask);
+    return aTask;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("pipeline", m_aPipeline)
+                                       .append ("executor", m_aExecutor)
+                                       .append ("maxConcurrentConversions", m_nMaxConcurrentConversions)
+                                       .toString ();
+  }
+}
@@ -0,0 +1,39 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.batch;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Callback for conversion results. {@link EbInterface41BatchConverter} passes
+ * all results of a batch to the sink on the thread that started the batch, so
+ * implementations don't need to be thread-safe. In contrast,
+ * {@link EbInterface41ConversionService} invokes the callback on the executor
+ * threads.
+ *
+ * @author philip
+ */
+public interface IConversionResultSink
+{
+  /**
+   * Called for each converted document.
+   *
+   * @param aResult
+   *        The conversion result. Never <code>null</code>.
+   */
+  void onResult (@Nonnull ConversionResult aResult);
+}
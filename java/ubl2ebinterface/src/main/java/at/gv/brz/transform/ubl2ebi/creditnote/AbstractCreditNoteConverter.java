@@ -19,16 +19,28 @@ package at.gv.brz.transform.ubl2ebi.creditnote;
 import java.util.Locale;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 
+import com.helger.commons.state.ESuccess;
 import com.helger.commons.string.StringHelper;
 import com.helger.peppol.identifier.doctype.IPeppolPredefinedDocumentTypeIdentifier;
 import com.helger.peppol.identifier.process.IPeppolPredefinedProcessIdentifier;
 import com.helger.peppol.identifier.process.PredefinedProcessIdentifierManager;
-import com.helger.validation.error.ErrorList;
 
 import at.gv.brz.transform.ubl2ebi.AbstractConverter;
 import at.gv.brz.transform.ubl2ebi.CPeppolUBL;
+import at.gv.brz.transform.ubl2ebi.ParallelLineConversion;
+import at.gv.brz.transform.ubl2ebi.UBLPreflightChecker;
+import at.gv.brz.transform.ubl2ebi.error.ErrorLocation;
+import at.gv.brz.transform.ubl2ebi.error.TransformationErrorList;
+import at.gv.brz.transform.ubl2ebi.helper.NumericLimits;
+import at.gv.brz.transform.ubl2ebi.metrics.IConversionMetricsListener;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.AllowanceChargeType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.CreditNoteLineType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.TaxCategoryType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.TaxSubtotalType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.TaxTotalType;
 import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.CustomizationIDType;
 import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.ProfileIDType;
 import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.UBLVersionIDType;
@@ -62,33 +74,88 @@ public abstract class AbstractCreditNoteConverter extends AbstractConverter
   }
 
   /**
-   * Check if the passed UBL invoice is transformable
+   * Constructor
+   *
+   * @param aDisplayLocale
+   *        The locale for error messages. May not be <code>null</code>.
+   * @param aContentLocale
+   *        The locale for the created ebInterface files. May not be
+   *        <code>null</code>.
+   * @param bStrictERBMode
+   *        <code>true</code> if E-RECHNUNG.GV.AT specific checks should be
+   *        performed
+   * @param aParallelLineConversion
+   *        The settings for the parallel conversion of lines. May be
+   *        <code>null</code> to convert all lines sequentially.
+   */
+  public AbstractCreditNoteConverter (@Nonnull final Locale aDisplayLocale,
+                                      @Nonnull final Locale aContentLocale,
+                                      final boolean bStrictERBMode,
+                                      @Nullable final ParallelLineConversion aParallelLineConversion)
+  {
+    super (aDisplayLocale, aContentLocale, bStrictERBMode, aParallelLineConversion);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param aDisplayLocale
+   *        The locale for error messages. May not be <code>null</code>.
+   * @param aContentLocale
+   *        The locale for the created ebInterface files. May not be
+   *        <code>null</code>.
+   * @param bStrictERBMode
+   *        <code>true</code> if E-RECHNUNG.GV.AT specific checks should be
+   *        performed
+   * @param aParallelLineConversion
+   *        The settings for the parallel conversion of lines. May be
+   *        <code>null</code> to convert all lines sequentially.
+   * @param aMetricsListener
+   *        The listener for the timings and counts of each conversion. May be
+   *        <code>null</code> if no metrics are needed.
+   */
+  public AbstractCreditNoteConverter (@Nonnull final Locale aDisplayLocale,
+                                      @Nonnull final Locale aContentLocale,
+                                      final boolean bStrictERBMode,
+                                      @Nullable final ParallelLineConversion aParallelLineConversion,
+                                      @Nullable final IConversionMetricsListener aMetricsListener)
+  {
+    super (aDisplayLocale, aContentLocale, bStrictERBMode, aParallelLineConversion, aMetricsListener);
+  }
+
+  /**
+   * Check if the passed UBL credit note is transformable. Only the header
+   * elements <code>UBLVersionID</code>, <code>CustomizationID</code> and
+   * <code>ProfileID</code> are evaluated, so the passed credit note may also
+   * be a header only object as created by {@link UBLPreflightChecker}.
    *
    * @param aUBLCreditNote
-   *        The UBL invoice to check
+   *        The UBL credit note to check
+   * @param aTransformationErrorList
+   *        The error list to be filled. May not be <code>null</code>.
    */
-  protected final void _checkConsistency (@Nonnull final CreditNoteType aUBLCreditNote,
-                                          @Nonnull final ErrorList aTransformationErrorList)
+  public static void checkConsistency (@Nonnull final CreditNoteType aUBLCreditNote,
+                                       @Nonnull final TransformationErrorList aTransformationErrorList)
   {
     // Check UBLVersionID
     final UBLVersionIDType aUBLVersionID = aUBLCreditNote.getUBLVersionID ();
     if (aUBLVersionID == null)
     {
-      aTransformationErrorList.addError ("UBLVersionID",
-                                         EText.NO_UBL_VERSION_ID.getDisplayTextWithArgs (m_aDisplayLocale,
-                                                                                         CPeppolUBL.UBL_VERSION_20,
-                                                                                         CPeppolUBL.UBL_VERSION_21));
+      aTransformationErrorList.addError (ErrorLocation.create ("UBLVersionID"),
+                                         EText.NO_UBL_VERSION_ID,
+                                         CPeppolUBL.UBL_VERSION_20,
+                                         CPeppolUBL.UBL_VERSION_21);
     }
     else
     {
       final String sUBLVersionID = StringHelper.trim (aUBLVersionID.getValue ());
       if (!CPeppolUBL.UBL_VERSION_20.equals (sUBLVersionID) && !CPeppolUBL.UBL_VERSION_21.equals (sUBLVersionID))
       {
-        aTransformationErrorList.addError ("UBLVersionID",
-                                           EText.INVALID_UBL_VERSION_ID.getDisplayTextWithArgs (m_aDisplayLocale,
-                                                                                                sUBLVersionID,
-                                                                                                CPeppolUBL.UBL_VERSION_20,
-                                                                                                CPeppolUBL.UBL_VERSION_21));
+        aTransformationErrorList.addError (ErrorLocation.create ("UBLVersionID"),
+                                           EText.INVALID_UBL_VERSION_ID,
+                                           sUBLVersionID,
+                                           CPeppolUBL.UBL_VERSION_20,
+                                           CPeppolUBL.UBL_VERSION_21);
       }
     }
 
@@ -97,7 +164,7 @@ public abstract class AbstractCreditNoteConverter extends AbstractConverter
     final ProfileIDType aProfileID = aUBLCreditNote.getProfileID ();
     if (aProfileID == null)
     {
-      aTransformationErrorList.addError ("ProfileID", EText.NO_PROFILE_ID.getDisplayText (m_aDisplayLocale));
+      aTransformationErrorList.addError (ErrorLocation.create ("ProfileID"), EText.NO_PROFILE_ID);
     }
     else
     {
@@ -105,9 +172,7 @@ public abstract class AbstractCreditNoteConverter extends AbstractConverter
       aProcID = PredefinedProcessIdentifierManager.getProcessIdentifierOfID (sProfileID);
       if (aProcID == null)
       {
-        aTransformationErrorList.addError ("ProfileID",
-                                           EText.INVALID_PROFILE_ID.getDisplayTextWithArgs (m_aDisplayLocale,
-                                                                                            sProfileID));
+        aTransformationErrorList.addError (ErrorLocation.create ("ProfileID"), EText.INVALID_PROFILE_ID, sProfileID);
       }
     }
 
@@ -117,14 +182,13 @@ public abstract class AbstractCreditNoteConverter extends AbstractConverter
     {
       final CustomizationIDType aCustomizationID = aUBLCreditNote.getCustomizationID ();
       if (aCustomizationID == null)
-        aTransformationErrorList.addError ("CustomizationID",
-                                           EText.NO_CUSTOMIZATION_ID.getDisplayText (m_aDisplayLocale));
+        aTransformationErrorList.addError (ErrorLocation.create ("CustomizationID"), EText.NO_CUSTOMIZATION_ID);
       else
         if (!CPeppolUBL.CUSTOMIZATION_SCHEMEID.equals (aCustomizationID.getSchemeID ()))
-          aTransformationErrorList.addError ("CustomizationID/schemeID",
-                                             EText.INVALID_CUSTOMIZATION_SCHEME_ID.getDisplayTextWithArgs (m_aDisplayLocale,
-                                                                                                           aCustomizationID.getSchemeID (),
-                                                                                                           CPeppolUBL.CUSTOMIZATION_SCHEMEID));
+          aTransformationErrorList.addError (ErrorLocation.create ("CustomizationID/schemeID"),
+                                             EText.INVALID_CUSTOMIZATION_SCHEME_ID,
+                                             aCustomizationID.getSchemeID (),
+                                             CPeppolUBL.CUSTOMIZATION_SCHEMEID);
         else
           if (aProcID != null)
           {
@@ -138,10 +202,131 @@ public abstract class AbstractCreditNoteConverter extends AbstractConverter
                 break;
               }
             if (aMatchingDocID == null)
-              aTransformationErrorList.addError ("CustomizationID",
-                                                 EText.INVALID_CUSTOMIZATION_ID.getDisplayTextWithArgs (m_aDisplayLocale,
-                                                                                                        sCustomizationID));
+              aTransformationErrorList.addError (ErrorLocation.create ("CustomizationID"),
+                                                 EText.INVALID_CUSTOMIZATION_ID,
+                                                 sCustomizationID);
           }
     }
   }
+
+  /**
+   * Check all numeric values of the credit note header against the
+   * {@link NumericLimits} of the passed error list, if any. Credit note lines
+   * are not checked - use
+   * {@link #checkNumericValues(CreditNoteLineType, int, TransformationErrorList)}
+   * for each line.
+   *
+   * @param aUBLCreditNote
+   *        The UBL credit note to check
+   * @param aTransformationErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   */
+  public static void checkNumericValues (@Nonnull final CreditNoteType aUBLCreditNote,
+                                         @Nonnull final TransformationErrorList aTransformationErrorList)
+  {
+    if (aTransformationErrorList.getNumericLimits () == null)
+      return;
+
+    checkNumericValues (aUBLCreditNote.getTaxTotal (),
+                        aUBLCreditNote.getAllowanceCharge (),
+                        aUBLCreditNote.getLegalMonetaryTotal (),
+                        aTransformationErrorList);
+  }
+
+  /**
+   * Check all numeric values of a single credit note line against the
+   * {@link NumericLimits} of the passed error list, if any.
+   *
+   * @param aUBLLine
+   *        The UBL credit note line to check
+   * @param nLineIndex
+   *        The 0-based index of the line within the credit note.
+   * @param aTransformationErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return {@link ESuccess#FAILURE} if at least one value exceeds the limits.
+   *         In this case no arithmetic must be performed on this line.
+   */
+  @Nonnull
+  public static ESuccess checkNumericValues (@Nonnull final CreditNoteLineType aUBLLine,
+                                             final int nLineIndex,
+                                             @Nonnull final TransformationErrorList aTransformationErrorList)
+  {
+    if (aTransformationErrorList.getNumericLimits () == null)
+      return ESuccess.SUCCESS;
+
+    final int nErrorCount = aTransformationErrorList.getErrorCount ();
+    checkNumericValue (aUBLLine.getCreditedQuantityValue (),
+                       aTransformationErrorList,
+                       "CreditNoteLine[*]/InvoicedQuantity",
+                       nLineIndex);
+    checkNumericValue (aUBLLine.getLineExtensionAmountValue (),
+                       aTransformationErrorList,
+                       "CreditNoteLine[*]/LineExtensionAmount",
+                       nLineIndex);
+    if (aUBLLine.getPrice () != null)
+    {
+      checkNumericValue (aUBLLine.getPrice ().getPriceAmountValue (),
+                         aTransformationErrorList,
+                         "CreditNoteLine[*]/Price/PriceAmount",
+                         nLineIndex);
+      checkNumericValue (aUBLLine.getPrice ().getBaseQuantityValue (),
+                         aTransformationErrorList,
+                         "CreditNoteLine[*]/Price/BaseQuantity",
+                         nLineIndex);
+    }
+
+    int nAllowanceChargeIndex = 0;
+    for (final AllowanceChargeType aUBLAllowanceCharge : aUBLLine.getAllowanceCharge ())
+    {
+      checkNumericValue (aUBLAllowanceCharge.getAmountValue (),
+                         aTransformationErrorList,
+                         "CreditNoteLine[*]/AllowanceCharge[*]/Amount",
+                         nLineIndex,
+                         nAllowanceChargeIndex);
+      checkNumericValue (aUBLAllowanceCharge.getBaseAmountValue (),
+                         aTransformationErrorList,
+                         "CreditNoteLine[*]/AllowanceCharge[*]/BaseAmount",
+                         nLineIndex,
+                         nAllowanceChargeIndex);
+      checkNumericValue (aUBLAllowanceCharge.getMultiplierFactorNumericValue (),
+                         aTransformationErrorList,
+                         "CreditNoteLine[*]/AllowanceCharge[*]/MultiplierFactorNumeric",
+                         nLineIndex,
+                         nAllowanceChargeIndex);
+      ++nAllowanceChargeIndex;
+    }
+
+    if (aUBLLine.getItem () != null)
+    {
+      int nTaxCategoryIndex = 0;
+      for (final TaxCategoryType aUBLTaxCategory : aUBLLine.getItem ().getClassifiedTaxCategory ())
+      {
+        checkNumericValue (aUBLTaxCategory.getPercentValue (),
+                           aTransformationErrorList,
+                           "CreditNoteLine[*]/Item/ClassifiedTaxCategory[*]/Percent",
+                           nLineIndex,
+                           nTaxCategoryIndex);
+        ++nTaxCategoryIndex;
+      }
+    }
+
+    int nTaxTotalIndex = 0;
+    for (final TaxTotalType aUBLTaxTotal : aUBLLine.getTaxTotal ())
+    {
+      int nTaxSubtotalIndex = 0;
+      for (final TaxSubtotalType aUBLSubtotal : aUBLTaxTotal.getTaxSubtotal ())
+      {
+        if (aUBLSubtotal.getTaxCategory () != null)
+          checkNumericValue (aUBLSubtotal.getTaxCategory ().getPercentValue (),
+                             aTransformationErrorList,
+                             "CreditNoteLine[*]/TaxTotal[*]/TaxSubtotal[*]/TaxCategory/Percent",
+                             nLineIndex,
+                             nTaxTotalIndex,
+                             nTaxSubtotalIndex);
+        ++nTaxSubtotalIndex;
+      }
+      ++nTaxTotalIndex;
+    }
+    return ESuccess.valueOf (aTransformationErrorList.getErrorCount () == nErrorCount);
+  }
 }
@@ -19,10 +19,8 @@ package at.gv.brz.transform.ubl2ebi.creditnote;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -70,9 +68,17 @@ import com.helger.peppol.codelist.ETaxSchemeID;
 import com.helger.ubl21.codelist.EUnitOfMeasureCode21;
 import com.helger.validation.error.ErrorList;
 
+import at.gv.brz.transform.ubl2ebi.EUBLDocumentType;
+import at.gv.brz.transform.ubl2ebi.EbInterface41CodeListHelper;
+import at.gv.brz.transform.ubl2ebi.EbInterface41ConverterRegistry;
 import at.gv.brz.transform.ubl2ebi.EbInterface41Helper;
-import at.gv.brz.transform.ubl2ebi.helper.SchemedID;
-import at.gv.brz.transform.ubl2ebi.helper.TaxCategoryKey;
+import at.gv.brz.transform.ubl2ebi.ParallelLineConversion;
+import at.gv.brz.transform.ubl2ebi.error.ErrorLocation;
+import at.gv.brz.transform.ubl2ebi.error.TransformationErrorList;
+import at.gv.brz.transform.ubl2ebi.helper.TaxCategoryIndex;
+import at.gv.brz.transform.ubl2ebi.metrics.ConversionMetricsRecorder;
+import at.gv.brz.transform.ubl2ebi.metrics.EConversionStage;
+import at.gv.brz.transform.ubl2ebi.metrics.IConversionMetricsListener;
 import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.AllowanceChargeType;
 import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.CreditNoteLineType;
 import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.CustomerPartyType;
@@ -95,6 +101,11 @@ import oasis.names.specification.ubl.schema.xsd.creditnote_21.CreditNoteType;
 /**
  * Main converter between UBL 2.1 credit note and ebInterface 4.1 credit note.
  *
+ * Instances are immutable and no state is kept between calls of
+ * <code>convertToEbInterface</code>, so a single instance can be used by
+ * multiple threads concurrently. Use {@link EbInterface41ConverterRegistry} to
+ * get shared instances.
+ *
  * @author philip
  */
 @Immutable
@@ -119,7 +130,57 @@ public final class CreditNoteToEbInterface41Converter extends AbstractCreditNote
     super (aDisplayLocale, aContentLocale, bStrictERBMode);
   }
 
-  private void _convertPayment (final ErrorList aTransformationErrorList, final Ebi41InvoiceType aEbiDoc)
+  /**
+   * Constructor
+   *
+   * @param aDisplayLocale
+   *        The locale for error messages. May not be <code>null</code>.
+   * @param aContentLocale
+   *        The locale for the created ebInterface files. May not be
+   *        <code>null</code>.
+   * @param bStrictERBMode
+   *        <code>true</code> if E-RECHNUNG.GV.AT specific checks should be
+   *        performed
+   * @param aParallelLineConversion
+   *        The settings for the parallel conversion of lines. May be
+   *        <code>null</code> to convert all lines sequentially.
+   */
+  public CreditNoteToEbInterface41Converter (@Nonnull final Locale aDisplayLocale,
+                                             @Nonnull final Locale aContentLocale,
+                                             final boolean bStrictERBMode,
+                                             @Nullable final ParallelLineConversion aParallelLineConversion)
+  {
+    super (aDisplayLocale, aContentLocale, bStrictERBMode, aParallelLineConversion);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param aDisplayLocale
+   *        The locale for error messages. May not be <code>null</code>.
+   * @param aContentLocale
+   *        The locale for the created ebInterface files. May not be
+   *        <code>null</code>.
+   * @param bStrictERBMode
+   *        <code>true</code> if E-RECHNUNG.GV.AT specific checks should be
+   *        performed
+   * @param aParallelLineConversion
+   *        The settings for the parallel conversion of lines. May be
+   *        <code>null</code> to convert all lines sequentially.
+   * @param aMetricsListener
+   *        The listener for the timings and counts of each conversion. May be
+   *        <code>null</code> if no metrics are needed.
+   */
+  public CreditNoteToEbInterface41Converter (@Nonnull final Locale aDisplayLocale,
+                                             @Nonnull final Locale aContentLocale,
+                                             final boolean bStrictERBMode,
+                                             @Nullable final ParallelLineConversion aParallelLineConversion,
+                                             @Nullable final IConversionMetricsListener aMetricsListener)
+  {
+    super (aDisplayLocale, aContentLocale, bStrictERBMode, aParallelLineConversion, aMetricsListener);
+  }
+
+  private void _convertPayment (final TransformationErrorList aTransformationErrorList, final Ebi41InvoiceType aEbiDoc)
   {
     // Always no payment
     final Ebi41PaymentMethodType aEbiPaymentMethod = new Ebi41PaymentMethodType ();
@@ -132,8 +193,8 @@ public final class CreditNoteToEbInterface41Converter extends AbstractCreditNote
     {
       // ebInterface requires due date
       if (aEbiPaymentConditions.hasDiscountEntries ())
-        aTransformationErrorList.addError ("PaymentMeans/PaymentDueDate",
-                                           EText.DISCOUNT_WITHOUT_DUEDATE.getDisplayTextWithArgs (m_aDisplayLocale));
+        aTransformationErrorList.addError (ErrorLocation.create ("PaymentMeans/PaymentDueDate"),
+                                           EText.DISCOUNT_WITHOUT_DUEDATE);
     }
     else
     {
@@ -142,6 +203,331 @@ public final class CreditNoteToEbInterface41Converter extends AbstractCreditNote
     }
   }
 
+  /**
+   * Converts the lines of a single credit note. Only refers to read-only data
+   * of the credit note header, so it may be used concurrently.
+   */
+  private final class CreditNoteLineConverter implements ParallelLineConversion.ILineConverter <CreditNoteLineType>
+  {
+    private final TaxCategoryIndex m_aTaxCategoryIndex;
+    private final String m_sUBLHeaderOrderReferenceID;
+    private final CustomerPartyType m_aUBLCustomer;
+
+    CreditNoteLineConverter (@Nonnull final TaxCategoryIndex aTaxCategoryIndex,
+                             @Nullable final String sUBLHeaderOrderReferenceID,
+                             @Nonnull final CustomerPartyType aUBLCustomer)
+    {
+      m_aTaxCategoryIndex = aTaxCategoryIndex;
+      m_sUBLHeaderOrderReferenceID = sUBLHeaderOrderReferenceID;
+      m_aUBLCustomer = aUBLCustomer;
+    }
+
+    @Nullable
+    public Ebi41ListLineItemType convertLine (@Nonnull final CreditNoteLineType aUBLLine,
+                                              final int nLineIndex,
+                                              @Nonnull final TransformationErrorList aTransformationErrorList)
+    {
+      if (checkNumericValues (aUBLLine, nLineIndex, aTransformationErrorList).isFailure ())
+      {
+        // Don't perform any arithmetic on this line
+        return null;
+      }
+      return _convertLine (aUBLLine,
+                           nLineIndex,
+                           m_aTaxCategoryIndex,
+                           m_sUBLHeaderOrderReferenceID,
+                           m_aUBLCustomer,
+                           aTransformationErrorList);
+    }
+  }
+
+  /**
+   * Convert a single credit note line. This method does not touch any state
+   * apart from the passed error list.
+   *
+   * @param aUBLLine
+   *        The UBL credit note line to convert. May not be <code>null</code>.
+   * @param nLineIndex
+   *        The 0-based index of the line within the credit note.
+   * @param aTaxCategoryIndex
+   *        The tax category index from the tax totals.
+   * @param sUBLHeaderOrderReferenceID
+   *        The order reference ID of the document header. May be
+   *        <code>null</code>.
+   * @param aUBLCustomer
+   *        The accounting customer party of the document.
+   * @param aTransformationErrorList
+   *        The error list to be filled.
+   * @return The created ebInterface line item. Never <code>null</code>.
+   */
+  @Nonnull
+  private Ebi41ListLineItemType _convertLine (@Nonnull final CreditNoteLineType aUBLLine,
+                                              final int nLineIndex,
+                                              @Nonnull final TaxCategoryIndex aTaxCategoryIndex,
+                                              @Nullable final String sUBLHeaderOrderReferenceID,
+                                              @Nonnull final CustomerPartyType aUBLCustomer,
+                                              @Nonnull final TransformationErrorList aTransformationErrorList)
+  {
+    // Try to resolve tax category
+    TaxCategoryType aUBLTaxCategory = CollectionHelper.getSafe (aUBLLine.getItem ().getClassifiedTaxCategory (), 0);
+    if (aUBLTaxCategory == null)
+    {
+      // No direct tax category -> check if it is somewhere in the tax total
+      outer: for (final TaxTotalType aUBLTaxTotal : aUBLLine.getTaxTotal ())
+        for (final TaxSubtotalType aUBLTaxSubTotal : aUBLTaxTotal.getTaxSubtotal ())
+        {
+          // Only handle VAT items
+          if (SUPPORTED_TAX_SCHEME_ID.getID ()
+                                     .equals (aUBLTaxSubTotal.getTaxCategory ().getTaxScheme ().getIDValue ()))
+          {
+            // We found one -> just use it
+            aUBLTaxCategory = aUBLTaxSubTotal.getTaxCategory ();
+            break outer;
+          }
+        }
+    }
+
+    // Try to resolve tax percentage
+    BigDecimal aUBLPercent = null;
+    if (aUBLTaxCategory != null)
+    {
+      // Specified at tax category?
+      if (aUBLTaxCategory.getPercent () != null)
+        aUBLPercent = aUBLTaxCategory.getPercentValue ();
+
+      if (aUBLPercent == null)
+      {
+        // Not specified - check from the tax totals
+        aUBLPercent = aTaxCategoryIndex.getPercentage (aUBLTaxCategory);
+      }
+    }
+    if (aUBLPercent == null)
+    {
+      aUBLPercent = BigDecimal.ZERO;
+      aTransformationErrorList.addWarning (ErrorLocation.create ("CreditNoteLine[*]/Item/ClassifiedTaxCategory",
+                                                                 nLineIndex),
+                                           EText.DETAILS_TAX_PERCENTAGE_NOT_FOUND,
+                                           aUBLPercent);
+    }
+
+    // Start creating ebInterface line
+    final Ebi41ListLineItemType aEbiListLineItem = new Ebi41ListLineItemType ();
+
+    // CreditNote line number
+    final String sUBLPositionNumber = StringHelper.trim (aUBLLine.getIDValue ());
+    BigInteger aUBLPositionNumber = StringParser.parseBigInteger (sUBLPositionNumber);
+    if (aUBLPositionNumber == null)
+    {
+      aUBLPositionNumber = BigInteger.valueOf (nLineIndex + 1);
+      aTransformationErrorList.addWarning (ErrorLocation.create ("CreditNoteLine[*]/ID", nLineIndex),
+                                           EText.DETAILS_INVALID_POSITION,
+                                           sUBLPositionNumber,
+                                           aUBLPositionNumber);
+    }
+    aEbiListLineItem.setPositionNumber (aUBLPositionNumber);
+
+    // Descriptions
+    for (final DescriptionType aUBLDescription : aUBLLine.getItem ().getDescription ())
+      aEbiListLineItem.getDescription ().add (StringHelper.trim (aUBLDescription.getValue ()));
+    if (aEbiListLineItem.getDescription ().isEmpty ())
+    {
+      // Use item name as description
+      final NameType aUBLName = aUBLLine.getItem ().getName ();
+      if (aUBLName != null)
+        aEbiListLineItem.getDescription ().add (StringHelper.trim (aUBLName.getValue ()));
+    }
+
+    // Quantity
+    final Ebi41UnitType aEbiQuantity = new Ebi41UnitType ();
+    if (aUBLLine.getCreditedQuantity () != null)
+    {
+      // Unit code is optional
+      if (aUBLLine.getCreditedQuantity ().getUnitCode () != null)
+        aEbiQuantity.setUnit (StringHelper.trim (aUBLLine.getCreditedQuantity ().getUnitCode ()));
+      aEbiQuantity.setValue (aUBLLine.getCreditedQuantityValue ());
+    }
+    if (aEbiQuantity.getUnit () == null)
+    {
+      // ebInterface requires a quantity!
+      aEbiQuantity.setUnit (EUnitOfMeasureCode21.C62.getID ());
+      aTransformationErrorList.addWarning (ErrorLocation.create ("CreditNoteLine[*]/CreditNotedQuantity/UnitCode",
+                                                                 nLineIndex),
+                                           EText.DETAILS_INVALID_UNIT,
+                                           aEbiQuantity.getUnit ());
+    }
+    if (aEbiQuantity.getValue () == null)
+    {
+      aEbiQuantity.setValue (BigDecimal.ONE);
+      aTransformationErrorList.addWarning (ErrorLocation.create ("CreditNoteLine[*]/CreditNotedQuantity",
+                                                                 nLineIndex),
+                                           EText.DETAILS_INVALID_QUANTITY,
+                                           aEbiQuantity.getValue ());
+    }
+    aEbiListLineItem.setQuantity (aEbiQuantity);
+
+    // Unit price
+    if (aUBLLine.getPrice () != null)
+    {
+      final Ebi41UnitPriceType aEbiUnitPrice = new Ebi41UnitPriceType ();
+      // Unit price = priceAmount/baseQuantity (mandatory)
+      final BigDecimal aUBLPriceAmount = aUBLLine.getPrice ().getPriceAmountValue ();
+      aEbiUnitPrice.setValue (aUBLPriceAmount);
+      // If no base quantity is present, assume 1 (optional)
+      final BigDecimal aUBLBaseQuantity = aUBLLine.getPrice ().getBaseQuantityValue ();
+      if (aUBLBaseQuantity != null)
+      {
+        aEbiUnitPrice.setBaseQuantity (aUBLBaseQuantity);
+        if (MathHelper.isEqualToZero (aUBLBaseQuantity))
+          aEbiUnitPrice.setValue (BigDecimal.ZERO);
+      }
+      aEbiListLineItem.setUnitPrice (aEbiUnitPrice);
+    }
+    else
+    {
+      // Unit price = lineExtensionAmount / quantity (mandatory)
+      final BigDecimal aUBLLineExtensionAmount = aUBLLine.getLineExtensionAmountValue ();
+      final Ebi41UnitPriceType aEbiUnitPrice = new Ebi41UnitPriceType ();
+      if (MathHelper.isEqualToZero (aEbiQuantity.getValue ()))
+        aEbiUnitPrice.setValue (BigDecimal.ZERO);
+      else
+        aEbiUnitPrice.setValue (aUBLLineExtensionAmount.divide (aEbiQuantity.getValue (),
+                                                                SCALE_PRICE4,
+                                                                ROUNDING_MODE));
+      aEbiListLineItem.setUnitPrice (aEbiUnitPrice);
+    }
+
+    BigDecimal aEbiUnitPriceValue = aEbiListLineItem.getUnitPrice ().getValue ();
+    if (aEbiListLineItem.getUnitPrice ().getBaseQuantity () != null)
+      aEbiUnitPriceValue = aEbiUnitPriceValue.divide (aEbiListLineItem.getUnitPrice ().getBaseQuantity (),
+                                                      SCALE_PRICE4,
+                                                      ROUNDING_MODE);
+
+    // Tax rate (mandatory)
+    final Ebi41VATRateType aEbiVATRate = new Ebi41VATRateType ();
+    aEbiVATRate.setValue (aUBLPercent);
+    if (aUBLTaxCategory != null)
+                                 // Optional
+                                 if (false)
+        aEbiVATRate.setTaxCode (aUBLTaxCategory.getIDValue ());
+    aEbiListLineItem.setVATRate (aEbiVATRate);
+
+    // Line item amount (quantity * unit price +- reduction / surcharge)
+    aEbiListLineItem.setLineItemAmount (aUBLLine.getLineExtensionAmountValue ().setScale (SCALE_PRICE2,
+                                                                                          ROUNDING_MODE));
+
+    // Order reference per line (UBL 2.1 only)
+    for (final OrderLineReferenceType aUBLOrderLineReference : aUBLLine.getOrderLineReference ())
+      if (StringHelper.hasText (aUBLOrderLineReference.getLineIDValue ()))
+      {
+        final Ebi41OrderReferenceDetailType aEbiOrderRefDetail = new Ebi41OrderReferenceDetailType ();
+
+        // order reference
+        String sUBLLineOrderReferenceID = null;
+        if (aUBLOrderLineReference.getOrderReference () != null)
+          sUBLLineOrderReferenceID = StringHelper.trim (aUBLOrderLineReference.getOrderReference ().getIDValue ());
+        if (StringHelper.hasNoText (sUBLLineOrderReferenceID))
+        {
+          // Use the global order reference from header level
+          sUBLLineOrderReferenceID = sUBLHeaderOrderReferenceID;
+        }
+        aEbiOrderRefDetail.setOrderID (sUBLLineOrderReferenceID);
+
+        // Order position number
+        final String sOrderPosNumber = StringHelper.trim (aUBLOrderLineReference.getLineIDValue ());
+        if (sOrderPosNumber != null)
+        {
+          if (sOrderPosNumber.length () == 0)
+          {
+            aTransformationErrorList.addError (ErrorLocation.create ("CreditNoteLine[*]/OrderLineReference/LineID",
+                                                                     nLineIndex),
+                                               EText.ORDERLINE_REF_ID_EMPTY);
+          }
+          else
+          {
+            aEbiOrderRefDetail.setOrderPositionNumber (sOrderPosNumber);
+          }
+        }
+        aEbiListLineItem.setInvoiceRecipientsOrderReference (aEbiOrderRefDetail);
+        break;
+      }
+
+    // Reduction and surcharge (UBL 2.1 only)
+    if (aUBLLine.hasAllowanceChargeEntries ())
+    {
+      // Start with quantity*unitPrice for base amount
+      BigDecimal aEbiBaseAmount = aEbiListLineItem.getQuantity ().getValue ().multiply (aEbiUnitPriceValue);
+      final Ebi41ReductionAndSurchargeListLineItemDetailsType aEbiRSDetails = new Ebi41ReductionAndSurchargeListLineItemDetailsType ();
+
+      // ebInterface can handle only Reduction or only Surcharge
+      ETriState eSurcharge = ETriState.UNDEFINED;
+      for (final AllowanceChargeType aUBLAllowanceCharge : aUBLLine.getAllowanceCharge ())
+      {
+        final boolean bItemIsSurcharge = aUBLAllowanceCharge.getChargeIndicator ().isValue ();
+
+        // Remember for next item
+        if (eSurcharge.isUndefined ())
+          eSurcharge = ETriState.valueOf (bItemIsSurcharge);
+        final boolean bSwapSigns = bItemIsSurcharge != eSurcharge.isTrue ();
+
+        final Ebi41ReductionAndSurchargeBaseType aEbiRSItem = new Ebi41ReductionAndSurchargeBaseType ();
+        // Amount is mandatory
+        final BigDecimal aAmount = aUBLAllowanceCharge.getAmountValue ();
+        aEbiRSItem.setAmount (bSwapSigns ? aAmount.negate () : aAmount);
+
+        // Base amount is optional
+        if (aUBLAllowanceCharge.getBaseAmount () != null)
+          aEbiRSItem.setBaseAmount (aUBLAllowanceCharge.getBaseAmountValue ());
+        if (aEbiRSItem.getBaseAmount () == null)
+          aEbiRSItem.setBaseAmount (aEbiBaseAmount);
+
+        if (aUBLAllowanceCharge.getMultiplierFactorNumeric () != null)
+        {
+          // Percentage is optional
+          final BigDecimal aPerc = aUBLAllowanceCharge.getMultiplierFactorNumericValue ()
+                                                      .multiply (CGlobal.BIGDEC_100);
+          aEbiRSItem.setPercentage (bSwapSigns ? aPerc.negate () : aPerc);
+        }
+
+        if (eSurcharge.isTrue ())
+        {
+          aEbiRSDetails.getReductionListLineItemOrSurchargeListLineItemOrOtherVATableTaxListLineItem ()
+                       .add (new ObjectFactory ().createSurchargeListLineItem (aEbiRSItem));
+          aEbiBaseAmount = aEbiBaseAmount.add (aEbiRSItem.getAmount ());
+        }
+        else
+        {
+          aEbiRSDetails.getReductionListLineItemOrSurchargeListLineItemOrOtherVATableTaxListLineItem ()
+                       .add (new ObjectFactory ().createReductionListLineItem (aEbiRSItem));
+          aEbiBaseAmount = aEbiBaseAmount.subtract (aEbiRSItem.getAmount ());
+        }
+
+        aEbiRSItem.setComment (getAllowanceChargeComment (aUBLAllowanceCharge));
+      }
+      aEbiListLineItem.setReductionAndSurchargeListLineItemDetails (aEbiRSDetails);
+    }
+
+    // Delivery per line item
+    if (aUBLLine.getDeliveryCount () > 0)
+    {
+      // Delivery address
+      final int nDeliveryIndex = 0;
+      final DeliveryType aUBLDelivery = aUBLLine.getDeliveryAtIndex (0);
+
+      if (aUBLDelivery.getActualDeliveryDate () != null)
+      {
+        final Ebi41DeliveryType aEbiDelivery = EbInterface41Helper.convertDelivery (aUBLDelivery,
+                                                                                    ErrorLocation.create ("CreditNoteLine[*]/Delivery[*]",
+                                                                                                          nLineIndex,
+                                                                                                          nDeliveryIndex),
+                                                                                    aUBLCustomer,
+                                                                                    aTransformationErrorList,
+                                                                                    m_aContentLocale);
+        aEbiListLineItem.setDelivery (aEbiDelivery);
+      }
+    }
+    return aEbiListLineItem;
+  }
+
   /**
    * Main conversion method to convert from UBL to ebInterface 4.1
    *
@@ -155,17 +541,70 @@ public final class CreditNoteToEbInterface41Converter extends AbstractCreditNote
   @Nullable
   public Ebi41InvoiceType convertToEbInterface (@Nonnull final CreditNoteType aUBLDoc,
                                                 @Nonnull final ErrorList aTransformationErrorList)
+  {
+    ValueEnforcer.notNull (aTransformationErrorList, "TransformationErrorList");
+    if (!aTransformationErrorList.isEmpty ())
+      throw new IllegalArgumentException ("TransformationErrorList must be empty!");
+
+    final TransformationErrorList aErrorList = new TransformationErrorList ();
+    final Ebi41InvoiceType ret = convertToEbInterface (aUBLDoc, aErrorList);
+    aErrorList.fillErrorList (aTransformationErrorList, m_aDisplayLocale);
+    return ret;
+  }
+
+  /**
+   * Main conversion method to convert from UBL to ebInterface 4.1 that
+   * collects the errors without rendering their texts.
+   *
+   * @param aUBLDoc
+   *        The UBL credit note to be converted
+   * @param aTransformationErrorList
+   *        Error list. Must be empty! If it has an error budget, the
+   *        conversion is aborted as soon as the budget is exhausted and
+   *        <code>null</code> is returned. The error list contains all errors
+   *        found until then. If it has numeric limits, values exceeding them
+   *        are reported as errors and the affected lines are skipped. By
+   *        default no numeric limits are applied.
+   * @return The created ebInterface 4.1 document or <code>null</code> in case
+   *         of a severe error.
+   */
+  @Nullable
+  public Ebi41InvoiceType convertToEbInterface (@Nonnull final CreditNoteType aUBLDoc,
+                                                @Nonnull final TransformationErrorList aTransformationErrorList)
   {
     ValueEnforcer.notNull (aUBLDoc, "UBLCreditNote");
     ValueEnforcer.notNull (aTransformationErrorList, "TransformationErrorList");
     if (!aTransformationErrorList.isEmpty ())
       throw new IllegalArgumentException ("TransformationErrorList must be empty!");
 
+    final ConversionMetricsRecorder aRecorder = createMetricsRecorder ();
+    final Ebi41InvoiceType ret = _convertToEbInterface (aUBLDoc, aTransformationErrorList, aRecorder);
+    aRecorder.onDocumentConverted (EUBLDocumentType.CREDIT_NOTE,
+                                   aUBLDoc.getIDValue (),
+                                   m_bStrictERBMode,
+                                   ret != null,
+                                   aTransformationErrorList);
+    return ret;
+  }
+
+  @Nullable
+  private Ebi41InvoiceType _convertToEbInterface (@Nonnull final CreditNoteType aUBLDoc,
+                                                  @Nonnull final TransformationErrorList aTransformationErrorList,
+                                                  @Nonnull final ConversionMetricsRecorder aRecorder)
+  {
+    aRecorder.startStage (EConversionStage.CHECK_CONSISTENCY);
     // Consistency check before starting the conversion
-    _checkConsistency (aUBLDoc, aTransformationErrorList);
+    checkConsistency (aUBLDoc, aTransformationErrorList);
     if (aTransformationErrorList.containsAtLeastOneError ())
       return null;
 
+    // Check the numeric values of the header before any arithmetic is
+    // performed
+    checkNumericValues (aUBLDoc, aTransformationErrorList);
+    if (aTransformationErrorList.containsAtLeastOneError ())
+      return null;
+
+    aRecorder.startStage (EConversionStage.HEADER);
     // Build ebInterface invoice
     final Ebi41InvoiceType aEbiDoc = new Ebi41InvoiceType ();
     aEbiDoc.setGeneratingSystem (EBI_GENERATING_SYSTEM_41);
@@ -175,27 +614,23 @@ public final class CreditNoteToEbInterface41Converter extends AbstractCreditNote
     // have the 2letter code!
 
     final String sUBLCurrencyCode = StringHelper.trim (aUBLDoc.getDocumentCurrencyCodeValue ());
-    try
-    {
-      aEbiDoc.setInvoiceCurrency (Ebi41CurrencyType.fromValue (sUBLCurrencyCode));
-    }
-    catch (final Exception ex)
-    {
-      aTransformationErrorList.addError ("DocumentCurrencyCode",
-                                         EText.INVALID_CURRENCY_CODE.getDisplayTextWithArgs (m_aDisplayLocale,
-                                                                                             sUBLCurrencyCode));
-    }
+    final Ebi41CurrencyType eEbiCurrency = EbInterface41CodeListHelper.getCurrencyOrNull (sUBLCurrencyCode);
+    if (eEbiCurrency == null)
+      aTransformationErrorList.addError (ErrorLocation.create ("DocumentCurrencyCode"),
+                                         EText.INVALID_CURRENCY_CODE,
+                                         sUBLCurrencyCode);
+    aEbiDoc.setInvoiceCurrency (eEbiCurrency);
 
     // CreditNote Number
     final String sCreditNoteNumber = StringHelper.trim (aUBLDoc.getIDValue ());
     if (StringHelper.hasNoText (sCreditNoteNumber))
-      aTransformationErrorList.addError ("ID", EText.MISSING_INVOICE_NUMBER.getDisplayText (m_aDisplayLocale));
+      aTransformationErrorList.addError (ErrorLocation.create ("ID"), EText.MISSING_INVOICE_NUMBER);
     aEbiDoc.setInvoiceNumber (sCreditNoteNumber);
 
     // Ignore the time!
     aEbiDoc.setInvoiceDate (aUBLDoc.getIssueDateValue ());
     if (aEbiDoc.getInvoiceDate () == null)
-      aTransformationErrorList.addError ("IssueDate", EText.MISSING_INVOICE_DATE.getDisplayText (m_aDisplayLocale));
+      aTransformationErrorList.addError (ErrorLocation.create ("IssueDate"), EText.MISSING_INVOICE_DATE);
 
     // Is duplicate/copy indicator?
     if (aUBLDoc.getCopyIndicator () != null)
@@ -233,8 +668,8 @@ public final class CreditNoteToEbInterface41Converter extends AbstractCreditNote
       {
         // Required by ebInterface 4.1
         aEbiBiller.setVATIdentificationNumber ("ATU00000000");
-        aTransformationErrorList.addWarning ("AccountingSupplierParty/Party/PartyTaxScheme",
-                                             EText.BILLER_VAT_MISSING.getDisplayText (m_aDisplayLocale));
+        aTransformationErrorList.addWarning (ErrorLocation.create ("AccountingSupplierParty/Party/PartyTaxScheme"),
+                                             EText.BILLER_VAT_MISSING);
       }
       if (aUBLSupplier.getCustomerAssignedAccountID () != null)
       {
@@ -256,17 +691,16 @@ public final class CreditNoteToEbInterface41Converter extends AbstractCreditNote
         if (m_bStrictERBMode && StringHelper.hasNoText (aEbiBiller.getInvoiceRecipientsBillerID ()))
         {
           // Mandatory field
-          aTransformationErrorList.addError ("AccountingSupplierParty/CustomerAssignedAccountID",
-                                             EText.ERB_CUSTOMER_ASSIGNED_ACCOUNTID_MISSING.getDisplayText (m_aDisplayLocale));
+          aTransformationErrorList.addError (ErrorLocation.create ("AccountingSupplierParty/CustomerAssignedAccountID"),
+                                             EText.ERB_CUSTOMER_ASSIGNED_ACCOUNTID_MISSING);
         }
 
       if (aUBLSupplier.getParty () != null)
       {
         aEbiBiller.setAddress (EbInterface41Helper.convertParty (aUBLSupplier.getParty (),
-                                                                 "AccountingSupplierParty",
+                                                                 ErrorLocation.create ("AccountingSupplierParty"),
                                                                  aTransformationErrorList,
-                                                                 m_aContentLocale,
-                                                                 m_aDisplayLocale));
+                                                                 m_aContentLocale));
 
         // Ensure a fake biller email address is present
         if (StringHelper.hasNoText (aEbiBiller.getAddress ().getEmail ()))
@@ -294,8 +728,8 @@ public final class CreditNoteToEbInterface41Converter extends AbstractCreditNote
       {
         // Required by ebInterface 4.1
         aEbiRecipient.setVATIdentificationNumber ("ATU00000000");
-        aTransformationErrorList.addWarning ("AccountingCustomerParty/PartyTaxScheme",
-                                             EText.SUPPLIER_VAT_MISSING.getDisplayText (m_aDisplayLocale));
+        aTransformationErrorList.addWarning (ErrorLocation.create ("AccountingCustomerParty/PartyTaxScheme"),
+                                             EText.SUPPLIER_VAT_MISSING);
       }
       if (aUBLCustomer.getSupplierAssignedAccountID () != null)
       {
@@ -308,10 +742,9 @@ public final class CreditNoteToEbInterface41Converter extends AbstractCreditNote
 
       if (aUBLCustomer.getParty () != null)
         aEbiRecipient.setAddress (EbInterface41Helper.convertParty (aUBLCustomer.getParty (),
-                                                                    "AccountingCustomerParty",
+                                                                    ErrorLocation.create ("AccountingCustomerParty"),
                                                                     aTransformationErrorList,
-                                                                    m_aContentLocale,
-                                                                    m_aDisplayLocale));
+                                                                    m_aContentLocale));
       aEbiDoc.setInvoiceRecipient (aEbiRecipient);
     }
 
@@ -334,16 +767,15 @@ public final class CreditNoteToEbInterface41Converter extends AbstractCreditNote
       if (StringHelper.hasNoText (aEbiOrderingParty.getVATIdentificationNumber ()))
       {
         // Required by ebInterface 4.1
-        aTransformationErrorList.addError ("BuyerCustomerParty/PartyTaxScheme",
-                                           EText.SUPPLIER_VAT_MISSING.getDisplayText (m_aDisplayLocale));
+        aTransformationErrorList.addError (ErrorLocation.create ("BuyerCustomerParty/PartyTaxScheme"),
+                                           EText.SUPPLIER_VAT_MISSING);
       }
 
       if (aUBLBuyer.getParty () != null)
         aEbiOrderingParty.setAddress (EbInterface41Helper.convertParty (aUBLBuyer.getParty (),
-                                                                        "BuyerCustomerParty",
+                                                                        ErrorLocation.create ("BuyerCustomerParty"),
                                                                         aTransformationErrorList,
-                                                                        m_aContentLocale,
-                                                                        m_aDisplayLocale));
+                                                                        m_aContentLocale));
       aEbiDoc.setOrderingParty (aEbiOrderingParty);
     }
 
@@ -359,17 +791,16 @@ public final class CreditNoteToEbInterface41Converter extends AbstractCreditNote
 
       if (StringHelper.hasNoText (sUBLOrderReferenceID))
       {
-        aTransformationErrorList.addError ("OrderReference/ID",
-                                           EText.ORDER_REFERENCE_MISSING.getDisplayText (m_aDisplayLocale));
+        aTransformationErrorList.addError (ErrorLocation.create ("OrderReference/ID"), EText.ORDER_REFERENCE_MISSING);
       }
       else
       {
         if (sUBLOrderReferenceID != null && sUBLOrderReferenceID.length () > ORDER_REFERENCE_MAX_LENGTH)
         {
-          aTransformationErrorList.addWarning ("OrderReference/ID",
-                                               EText.ORDER_REFERENCE_TOO_LONG.getDisplayTextWithArgs (m_aDisplayLocale,
-                                                                                                      sUBLOrderReferenceID,
-                                                                                                      Integer.valueOf (ORDER_REFERENCE_MAX_LENGTH)));
+          aTransformationErrorList.addWarning (ErrorLocation.create ("OrderReference/ID"),
+                                               EText.ORDER_REFERENCE_TOO_LONG,
+                                               sUBLOrderReferenceID,
+                                               Integer.valueOf (ORDER_REFERENCE_MAX_LENGTH));
           sUBLOrderReferenceID = sUBLOrderReferenceID.substring (0, ORDER_REFERENCE_MAX_LENGTH);
         }
       }
@@ -393,16 +824,20 @@ public final class CreditNoteToEbInterface41Converter extends AbstractCreditNote
           aEbiDoc.getInvoiceRecipient ().getFurtherIdentification ().add (aEbiFurtherIdentification);
         }
     }
+    if (aTransformationErrorList.isErrorBudgetExhausted ())
+      return null;
 
+    aRecorder.startStage (EConversionStage.TAX);
     // Tax totals
-    // Map from tax category to percentage
-    final Map <TaxCategoryKey, BigDecimal> aTaxCategoryPercMap = new HashMap <TaxCategoryKey, BigDecimal> ();
+    // Index from tax category to percentage
+    final TaxCategoryIndex aTaxCategoryIndex = new TaxCategoryIndex ();
     final Ebi41TaxType aEbiTax = new Ebi41TaxType ();
     final Ebi41VATType aEbiVAT = new Ebi41VATType ();
     {
       int nTaxTotalIndex = 0;
       for (final TaxTotalType aUBLTaxTotal : aUBLDoc.getTaxTotal ())
       {
+        aRecorder.addTaxSubtotalCount (aUBLTaxTotal.getTaxSubtotal ().size ());
         int nTaxSubtotalIndex = 0;
         for (final TaxSubtotalType aUBLSubtotal : aUBLTaxTotal.getTaxSubtotal ())
         {
@@ -461,34 +896,32 @@ public final class CreditNoteToEbInterface41Converter extends AbstractCreditNote
 
           if (aUBLTaxCategory.getID () == null)
           {
-            aTransformationErrorList.addError ("TaxTotal[" +
-                                               nTaxTotalIndex +
-                                               "]/TaxSubtotal[" +
-                                               nTaxSubtotalIndex +
-                                               "]/TaxCategory",
-                                               EText.MISSING_TAXCATEGORY_ID.getDisplayText (m_aDisplayLocale));
+            aTransformationErrorList.addError (ErrorLocation.create ("TaxTotal[*]/TaxSubtotal[*]/TaxCategory",
+                                                                     nTaxTotalIndex,
+                                                                     nTaxSubtotalIndex),
+                                               EText.MISSING_TAXCATEGORY_ID);
             break;
           }
 
           final String sUBLTaxCategorySchemeID = StringHelper.trim (aUBLTaxCategory.getID ().getSchemeID ());
           final String sUBLTaxCategoryID = StringHelper.trim (aUBLTaxCategory.getID ().getValue ());
 
-          aTaxCategoryPercMap.put (new TaxCategoryKey (new SchemedID (sUBLTaxSchemeSchemeID, sUBLTaxSchemeID),
-                                                       new SchemedID (sUBLTaxCategorySchemeID, sUBLTaxCategoryID)),
-                                   aUBLPercentage);
+          aTaxCategoryIndex.add (sUBLTaxSchemeSchemeID,
+                                 sUBLTaxSchemeID,
+                                 sUBLTaxCategorySchemeID,
+                                 sUBLTaxCategoryID,
+                                 aUBLPercentage);
 
           if (isSupportedTaxSchemeSchemeID (sUBLTaxSchemeSchemeID))
           {
             final ETaxSchemeID eUBLTaxScheme = ETaxSchemeID.getFromIDOrNull (sUBLTaxSchemeID);
             if (eUBLTaxScheme == null)
             {
-              aTransformationErrorList.addError ("TaxTotal[" +
-                                                 nTaxTotalIndex +
-                                                 "]/TaxSubtotal[" +
-                                                 nTaxSubtotalIndex +
-                                                 "]/TaxCategory/TaxScheme/ID",
-                                                 EText.UNSUPPORTED_TAX_SCHEME_ID.getDisplayTextWithArgs (m_aDisplayLocale,
-                                                                                                         sUBLTaxSchemeID));
+              aTransformationErrorList.addError (ErrorLocation.create ("TaxTotal[*]/TaxSubtotal[*]/TaxCategory/TaxScheme/ID",
+                                                                       nTaxTotalIndex,
+                                                                       nTaxSubtotalIndex),
+                                                 EText.UNSUPPORTED_TAX_SCHEME_ID,
+                                                 sUBLTaxSchemeID);
             }
             else
             {
@@ -496,22 +929,18 @@ public final class CreditNoteToEbInterface41Converter extends AbstractCreditNote
               {
                 if (aUBLPercentage == null)
                 {
-                  aTransformationErrorList.addError ("TaxTotal[" +
-                                                     nTaxTotalIndex +
-                                                     "]/TaxSubtotal[" +
-                                                     nTaxSubtotalIndex +
-                                                     "]/TaxCategory/Percent",
-                                                     EText.TAX_PERCENT_MISSING.getDisplayTextWithArgs (m_aDisplayLocale));
+                  aTransformationErrorList.addError (ErrorLocation.create ("TaxTotal[*]/TaxSubtotal[*]/TaxCategory/Percent",
+                                                                           nTaxTotalIndex,
+                                                                           nTaxSubtotalIndex),
+                                                     EText.TAX_PERCENT_MISSING);
                 }
                 else
                   if (aUBLTaxableAmount == null)
                   {
-                    aTransformationErrorList.addError ("TaxTotal[" +
-                                                       nTaxTotalIndex +
-                                                       "]/TaxSubtotal[" +
-                                                       nTaxSubtotalIndex +
-                                                       "]/TaxableAmount",
-                                                       EText.TAXABLE_AMOUNT_MISSING.getDisplayText (m_aDisplayLocale));
+                    aTransformationErrorList.addError (ErrorLocation.create ("TaxTotal[*]/TaxSubtotal[*]/TaxableAmount",
+                                                                             nTaxTotalIndex,
+                                                                             nTaxSubtotalIndex),
+                                                       EText.TAXABLE_AMOUNT_MISSING);
                   }
                   else
                   {
@@ -546,14 +975,12 @@ public final class CreditNoteToEbInterface41Converter extends AbstractCreditNote
           }
           else
           {
-            aTransformationErrorList.addError ("TaxTotal[" +
-                                               nTaxTotalIndex +
-                                               "]/TaxSubtotal[" +
-                                               nTaxSubtotalIndex +
-                                               "]/TaxCategory/",
-                                               EText.UNSUPPORTED_TAX_SCHEME.getDisplayTextWithArgs (m_aDisplayLocale,
-                                                                                                    sUBLTaxSchemeSchemeID,
-                                                                                                    sUBLTaxSchemeID));
+            aTransformationErrorList.addError (ErrorLocation.create ("TaxTotal[*]/TaxSubtotal[*]/TaxCategory/",
+                                                                     nTaxTotalIndex,
+                                                                     nTaxSubtotalIndex),
+                                               EText.UNSUPPORTED_TAX_SCHEME,
+                                               sUBLTaxSchemeSchemeID,
+                                               sUBLTaxSchemeID);
           }
           ++nTaxSubtotalIndex;
         }
@@ -563,310 +990,34 @@ public final class CreditNoteToEbInterface41Converter extends AbstractCreditNote
       aEbiTax.setVAT (aEbiVAT);
       aEbiDoc.setTax (aEbiTax);
     }
+    if (aTransformationErrorList.isErrorBudgetExhausted ())
+      return null;
 
+    aRecorder.startStage (EConversionStage.LINES);
     // Line items
-    BigDecimal aTotalZeroPercLineExtensionAmount = BigDecimal.ZERO;
+    final BigDecimal aTotalZeroPercLineExtensionAmount;
     {
       final Ebi41DetailsType aEbiDetails = new Ebi41DetailsType ();
       final Ebi41ItemListType aEbiItemList = new Ebi41ItemListType ();
-      int nLineIndex = 0;
-      for (final CreditNoteLineType aUBLLine : aUBLDoc.getCreditNoteLine ())
+      final LineItemCollector aLineItemCollector = new LineItemCollector (null, aEbiItemList);
+      if (convertAllLines (aRecorder.countLines (aUBLDoc.getCreditNoteLine ().iterator ()),
+                           new CreditNoteLineConverter (aTaxCategoryIndex,
+                                                        sUBLOrderReferenceID,
+                                                        aUBLDoc.getAccountingCustomerParty ()),
+                           aLineItemCollector,
+                           aTransformationErrorList).isFailure ())
       {
-        // Try to resolve tax category
-        TaxCategoryType aUBLTaxCategory = CollectionHelper.getSafe (aUBLLine.getItem ().getClassifiedTaxCategory (), 0);
-        if (aUBLTaxCategory == null)
-        {
-          // No direct tax category -> check if it is somewhere in the tax total
-          outer: for (final TaxTotalType aUBLTaxTotal : aUBLLine.getTaxTotal ())
-            for (final TaxSubtotalType aUBLTaxSubTotal : aUBLTaxTotal.getTaxSubtotal ())
-            {
-              // Only handle VAT items
-              if (SUPPORTED_TAX_SCHEME_ID.getID ()
-                                         .equals (aUBLTaxSubTotal.getTaxCategory ().getTaxScheme ().getIDValue ()))
-              {
-                // We found one -> just use it
-                aUBLTaxCategory = aUBLTaxSubTotal.getTaxCategory ();
-                break outer;
-              }
-            }
-        }
-
-        // Try to resolve tax percentage
-        BigDecimal aUBLPercent = null;
-        if (aUBLTaxCategory != null)
-        {
-          // Specified at tax category?
-          if (aUBLTaxCategory.getPercent () != null)
-            aUBLPercent = aUBLTaxCategory.getPercentValue ();
-
-          if (aUBLPercent == null &&
-              aUBLTaxCategory.getID () != null &&
-              aUBLTaxCategory.getTaxScheme () != null &&
-              aUBLTaxCategory.getTaxScheme ().getID () != null)
-          {
-            // Not specified - check from previous map
-            final String sUBLTaxSchemeSchemeID = StringHelper.trim (aUBLTaxCategory.getTaxScheme ()
-                                                                                   .getID ()
-                                                                                   .getSchemeID ());
-            final String sUBLTaxSchemeID = StringHelper.trim (aUBLTaxCategory.getTaxScheme ().getIDValue ());
-
-            final String sUBLTaxCategorySchemeID = StringHelper.trim (aUBLTaxCategory.getID ().getSchemeID ());
-            final String sUBLTaxCategoryID = StringHelper.trim (aUBLTaxCategory.getIDValue ());
-
-            final TaxCategoryKey aKey = new TaxCategoryKey (new SchemedID (sUBLTaxSchemeSchemeID, sUBLTaxSchemeID),
-                                                            new SchemedID (sUBLTaxCategorySchemeID, sUBLTaxCategoryID));
-            aUBLPercent = aTaxCategoryPercMap.get (aKey);
-          }
-        }
-        if (aUBLPercent == null)
-        {
-          aUBLPercent = BigDecimal.ZERO;
-          aTransformationErrorList.addWarning ("CreditNoteLine[" +
-                                               nLineIndex +
-                                               "]/Item/ClassifiedTaxCategory",
-                                               EText.DETAILS_TAX_PERCENTAGE_NOT_FOUND.getDisplayTextWithArgs (m_aDisplayLocale,
-                                                                                                              aUBLPercent));
-        }
-
-        // Start creating ebInterface line
-        final Ebi41ListLineItemType aEbiListLineItem = new Ebi41ListLineItemType ();
-
-        // CreditNote line number
-        final String sUBLPositionNumber = StringHelper.trim (aUBLLine.getIDValue ());
-        BigInteger aUBLPositionNumber = StringParser.parseBigInteger (sUBLPositionNumber);
-        if (aUBLPositionNumber == null)
-        {
-          aUBLPositionNumber = BigInteger.valueOf (nLineIndex + 1);
-          aTransformationErrorList.addWarning ("CreditNoteLine[" +
-                                               nLineIndex +
-                                               "]/ID",
-                                               EText.DETAILS_INVALID_POSITION.getDisplayTextWithArgs (m_aDisplayLocale,
-                                                                                                      sUBLPositionNumber,
-                                                                                                      aUBLPositionNumber));
-        }
-        aEbiListLineItem.setPositionNumber (aUBLPositionNumber);
-
-        // Descriptions
-        for (final DescriptionType aUBLDescription : aUBLLine.getItem ().getDescription ())
-          aEbiListLineItem.getDescription ().add (StringHelper.trim (aUBLDescription.getValue ()));
-        if (aEbiListLineItem.getDescription ().isEmpty ())
-        {
-          // Use item name as description
-          final NameType aUBLName = aUBLLine.getItem ().getName ();
-          if (aUBLName != null)
-            aEbiListLineItem.getDescription ().add (StringHelper.trim (aUBLName.getValue ()));
-        }
-
-        // Quantity
-        final Ebi41UnitType aEbiQuantity = new Ebi41UnitType ();
-        if (aUBLLine.getCreditedQuantity () != null)
-        {
-          // Unit code is optional
-          if (aUBLLine.getCreditedQuantity ().getUnitCode () != null)
-            aEbiQuantity.setUnit (StringHelper.trim (aUBLLine.getCreditedQuantity ().getUnitCode ()));
-          aEbiQuantity.setValue (aUBLLine.getCreditedQuantityValue ());
-        }
-        if (aEbiQuantity.getUnit () == null)
-        {
-          // ebInterface requires a quantity!
-          aEbiQuantity.setUnit (EUnitOfMeasureCode21.C62.getID ());
-          aTransformationErrorList.addWarning ("CreditNoteLine[" +
-                                               nLineIndex +
-                                               "]/CreditNotedQuantity/UnitCode",
-                                               EText.DETAILS_INVALID_UNIT.getDisplayTextWithArgs (m_aDisplayLocale,
-                                                                                                  aEbiQuantity.getUnit ()));
-        }
-        if (aEbiQuantity.getValue () == null)
-        {
-          aEbiQuantity.setValue (BigDecimal.ONE);
-          aTransformationErrorList.addWarning ("CreditNoteLine[" +
-                                               nLineIndex +
-                                               "]/CreditNotedQuantity",
-                                               EText.DETAILS_INVALID_QUANTITY.getDisplayTextWithArgs (m_aDisplayLocale,
-                                                                                                      aEbiQuantity.getValue ()));
-        }
-        aEbiListLineItem.setQuantity (aEbiQuantity);
-
-        // Unit price
-        if (aUBLLine.getPrice () != null)
-        {
-          final Ebi41UnitPriceType aEbiUnitPrice = new Ebi41UnitPriceType ();
-          // Unit price = priceAmount/baseQuantity (mandatory)
-          final BigDecimal aUBLPriceAmount = aUBLLine.getPrice ().getPriceAmountValue ();
-          aEbiUnitPrice.setValue (aUBLPriceAmount);
-          // If no base quantity is present, assume 1 (optional)
-          final BigDecimal aUBLBaseQuantity = aUBLLine.getPrice ().getBaseQuantityValue ();
-          if (aUBLBaseQuantity != null)
-          {
-            aEbiUnitPrice.setBaseQuantity (aUBLBaseQuantity);
-            if (MathHelper.isEqualToZero (aUBLBaseQuantity))
-              aEbiUnitPrice.setValue (BigDecimal.ZERO);
-          }
-          aEbiListLineItem.setUnitPrice (aEbiUnitPrice);
-        }
-        else
-        {
-          // Unit price = lineExtensionAmount / quantity (mandatory)
-          final BigDecimal aUBLLineExtensionAmount = aUBLLine.getLineExtensionAmountValue ();
-          final Ebi41UnitPriceType aEbiUnitPrice = new Ebi41UnitPriceType ();
-          if (MathHelper.isEqualToZero (aEbiQuantity.getValue ()))
-            aEbiUnitPrice.setValue (BigDecimal.ZERO);
-          else
-            aEbiUnitPrice.setValue (aUBLLineExtensionAmount.divide (aEbiQuantity.getValue (),
-                                                                    SCALE_PRICE4,
-                                                                    ROUNDING_MODE));
-          aEbiListLineItem.setUnitPrice (aEbiUnitPrice);
-        }
-
-        BigDecimal aEbiUnitPriceValue = aEbiListLineItem.getUnitPrice ().getValue ();
-        if (aEbiListLineItem.getUnitPrice ().getBaseQuantity () != null)
-          aEbiUnitPriceValue = aEbiUnitPriceValue.divide (aEbiListLineItem.getUnitPrice ().getBaseQuantity (),
-                                                          SCALE_PRICE4,
-                                                          ROUNDING_MODE);
-
-        // Tax rate (mandatory)
-        final Ebi41VATRateType aEbiVATRate = new Ebi41VATRateType ();
-        aEbiVATRate.setValue (aUBLPercent);
-        if (aUBLTaxCategory != null)
-                                     // Optional
-                                     if (false)
-            aEbiVATRate.setTaxCode (aUBLTaxCategory.getIDValue ());
-        aEbiListLineItem.setVATRate (aEbiVATRate);
-
-        // Line item amount (quantity * unit price +- reduction / surcharge)
-        aEbiListLineItem.setLineItemAmount (aUBLLine.getLineExtensionAmountValue ().setScale (SCALE_PRICE2,
-                                                                                              ROUNDING_MODE));
-
-        // Special handling in case no VAT item is present
-        if (MathHelper.isEqualToZero (aUBLPercent))
-          aTotalZeroPercLineExtensionAmount = aTotalZeroPercLineExtensionAmount.add (aEbiListLineItem.getLineItemAmount ());
-
-        // Order reference per line (UBL 2.1 only)
-        for (final OrderLineReferenceType aUBLOrderLineReference : aUBLLine.getOrderLineReference ())
-          if (StringHelper.hasText (aUBLOrderLineReference.getLineIDValue ()))
-          {
-            final Ebi41OrderReferenceDetailType aEbiOrderRefDetail = new Ebi41OrderReferenceDetailType ();
-
-            // order reference
-            String sUBLLineOrderReferenceID = null;
-            if (aUBLOrderLineReference.getOrderReference () != null)
-              sUBLLineOrderReferenceID = StringHelper.trim (aUBLOrderLineReference.getOrderReference ().getIDValue ());
-            if (StringHelper.hasNoText (sUBLLineOrderReferenceID))
-            {
-              // Use the global order reference from header level
-              sUBLLineOrderReferenceID = sUBLOrderReferenceID;
-            }
-            aEbiOrderRefDetail.setOrderID (sUBLLineOrderReferenceID);
-
-            // Order position number
-            final String sOrderPosNumber = StringHelper.trim (aUBLOrderLineReference.getLineIDValue ());
-            if (sOrderPosNumber != null)
-            {
-              if (sOrderPosNumber.length () == 0)
-              {
-                aTransformationErrorList.addError ("CreditNoteLine[" +
-                                                   nLineIndex +
-                                                   "]/OrderLineReference/LineID",
-                                                   EText.ORDERLINE_REF_ID_EMPTY.getDisplayText (m_aDisplayLocale));
-              }
-              else
-              {
-                aEbiOrderRefDetail.setOrderPositionNumber (sOrderPosNumber);
-              }
-            }
-            aEbiListLineItem.setInvoiceRecipientsOrderReference (aEbiOrderRefDetail);
-            break;
-          }
-
-        // Reduction and surcharge (UBL 2.1 only)
-        if (aUBLLine.hasAllowanceChargeEntries ())
-        {
-          // Start with quantity*unitPrice for base amount
-          BigDecimal aEbiBaseAmount = aEbiListLineItem.getQuantity ().getValue ().multiply (aEbiUnitPriceValue);
-          final Ebi41ReductionAndSurchargeListLineItemDetailsType aEbiRSDetails = new Ebi41ReductionAndSurchargeListLineItemDetailsType ();
-
-          // ebInterface can handle only Reduction or only Surcharge
-          ETriState eSurcharge = ETriState.UNDEFINED;
-          for (final AllowanceChargeType aUBLAllowanceCharge : aUBLLine.getAllowanceCharge ())
-          {
-            final boolean bItemIsSurcharge = aUBLAllowanceCharge.getChargeIndicator ().isValue ();
-
-            // Remember for next item
-            if (eSurcharge.isUndefined ())
-              eSurcharge = ETriState.valueOf (bItemIsSurcharge);
-            final boolean bSwapSigns = bItemIsSurcharge != eSurcharge.isTrue ();
-
-            final Ebi41ReductionAndSurchargeBaseType aEbiRSItem = new Ebi41ReductionAndSurchargeBaseType ();
-            // Amount is mandatory
-            final BigDecimal aAmount = aUBLAllowanceCharge.getAmountValue ();
-            aEbiRSItem.setAmount (bSwapSigns ? aAmount.negate () : aAmount);
-
-            // Base amount is optional
-            if (aUBLAllowanceCharge.getBaseAmount () != null)
-              aEbiRSItem.setBaseAmount (aUBLAllowanceCharge.getBaseAmountValue ());
-            if (aEbiRSItem.getBaseAmount () == null)
-              aEbiRSItem.setBaseAmount (aEbiBaseAmount);
-
-            if (aUBLAllowanceCharge.getMultiplierFactorNumeric () != null)
-            {
-              // Percentage is optional
-              final BigDecimal aPerc = aUBLAllowanceCharge.getMultiplierFactorNumericValue ()
-                                                          .multiply (CGlobal.BIGDEC_100);
-              aEbiRSItem.setPercentage (bSwapSigns ? aPerc.negate () : aPerc);
-            }
-
-            if (eSurcharge.isTrue ())
-            {
-              aEbiRSDetails.getReductionListLineItemOrSurchargeListLineItemOrOtherVATableTaxListLineItem ()
-                           .add (new ObjectFactory ().createSurchargeListLineItem (aEbiRSItem));
-              aEbiBaseAmount = aEbiBaseAmount.add (aEbiRSItem.getAmount ());
-            }
-            else
-            {
-              aEbiRSDetails.getReductionListLineItemOrSurchargeListLineItemOrOtherVATableTaxListLineItem ()
-                           .add (new ObjectFactory ().createReductionListLineItem (aEbiRSItem));
-              aEbiBaseAmount = aEbiBaseAmount.subtract (aEbiRSItem.getAmount ());
-            }
-
-            aEbiRSItem.setComment (getAllowanceChargeComment (aUBLAllowanceCharge));
-          }
-          aEbiListLineItem.setReductionAndSurchargeListLineItemDetails (aEbiRSDetails);
-        }
-
-        // Delivery per line item
-        if (aUBLLine.getDeliveryCount () > 0)
-        {
-          // Delivery address
-          final int nDeliveryIndex = 0;
-          final DeliveryType aUBLDelivery = aUBLLine.getDeliveryAtIndex (0);
-
-          if (aUBLDelivery.getActualDeliveryDate () != null)
-          {
-            final Ebi41DeliveryType aEbiDelivery = EbInterface41Helper.convertDelivery (aUBLDelivery,
-                                                                                        "CreditNoteLine[" +
-                                                                                                      nLineIndex +
-                                                                                                      "]/Delivery[" +
-                                                                                                      nDeliveryIndex +
-                                                                                                      "]",
-                                                                                        aUBLDoc.getAccountingCustomerParty (),
-                                                                                        aTransformationErrorList,
-                                                                                        m_aContentLocale,
-                                                                                        m_aDisplayLocale);
-            aEbiListLineItem.setDelivery (aEbiDelivery);
-          }
-        }
-
-        // Add the item to the list
-        aEbiItemList.getListLineItem ().add (aEbiListLineItem);
-        nLineIndex++;
+        // Error budget exhausted - don't read the remaining lines
+        return null;
       }
+      aTotalZeroPercLineExtensionAmount = aLineItemCollector.getTotalZeroPercLineExtensionAmount ();
       aEbiDetails.getItemList ().add (aEbiItemList);
       aEbiDoc.setDetails (aEbiDetails);
     }
 
     if (aEbiVAT.hasNoVATItemEntries ())
     {
-      aTransformationErrorList.addError ("CreditNoteLine", EText.VAT_ITEM_MISSING.getDisplayText (m_aDisplayLocale));
+      aTransformationErrorList.addError (ErrorLocation.create ("CreditNoteLine"), EText.VAT_ITEM_MISSING);
       if (false)
       {
         // No default in this case
@@ -880,9 +1031,12 @@ public final class CreditNoteToEbInterface41Converter extends AbstractCreditNote
       }
     }
 
+    aRecorder.startStage (EConversionStage.ALLOWANCES_CHARGES);
     // Global reduction and surcharge
     if (aUBLDoc.hasAllowanceChargeEntries ())
     {
+      aRecorder.addAllowanceChargeCount (aUBLDoc.getAllowanceCharge ().size ());
+
       // Start with quantity*unitPrice for base amount
       BigDecimal aEbiBaseAmount = aUBLDoc.getLegalMonetaryTotal ().getLineExtensionAmountValue ();
       if (aEbiBaseAmount == null)
@@ -924,20 +1078,30 @@ public final class CreditNoteToEbInterface41Converter extends AbstractCreditNote
 
         Ebi41VATRateType aEbiVATRate = null;
         for (final TaxCategoryType aUBLTaxCategory : aUBLAllowanceCharge.getTaxCategory ())
+        {
+          // Specified at tax category?
+          BigDecimal aUBLPercent = null;
           if (aUBLTaxCategory.getPercent () != null)
+            aUBLPercent = aUBLTaxCategory.getPercentValue ();
+          if (aUBLPercent == null)
+          {
+            // Not specified - check from the tax totals
+            aUBLPercent = aTaxCategoryIndex.getPercentage (aUBLTaxCategory);
+          }
+          if (aUBLPercent != null)
           {
             aEbiVATRate = new Ebi41VATRateType ();
-            aEbiVATRate.setValue (aUBLTaxCategory.getPercentValue ());
+            aEbiVATRate.setValue (aUBLPercent);
             if (false)
               aEbiVATRate.setTaxCode (aUBLTaxCategory.getIDValue ());
             break;
           }
+        }
         if (aEbiVATRate == null)
         {
-          aTransformationErrorList.addError ("CreditNote/AllowanceCharge[" +
-                                             nAllowanceChargeIndex +
-                                             "]",
-                                             EText.ALLOWANCE_CHARGE_NO_TAXRATE.getDisplayText (m_aDisplayLocale));
+          aTransformationErrorList.addError (ErrorLocation.create ("CreditNote/AllowanceCharge[*]",
+                                                                   nAllowanceChargeIndex),
+                                             EText.ALLOWANCE_CHARGE_NO_TAXRATE);
           // No default in this case
           if (false)
           {
@@ -968,8 +1132,8 @@ public final class CreditNoteToEbInterface41Converter extends AbstractCreditNote
     if (aUBLMonetaryTotal.getPrepaidAmount () != null &&
         !MathHelper.isEqualToZero (aUBLMonetaryTotal.getPrepaidAmountValue ()))
     {
-      aTransformationErrorList.addError ("CreditNote/LegalMonetaryTotal/PrepaidAmount",
-                                         EText.PREPAID_NOT_SUPPORTED.getDisplayText (m_aDisplayLocale));
+      aTransformationErrorList.addError (ErrorLocation.create ("CreditNote/LegalMonetaryTotal/PrepaidAmount"),
+                                         EText.PREPAID_NOT_SUPPORTED);
     }
 
     // Total gross amount
@@ -982,8 +1146,13 @@ public final class CreditNoteToEbInterface41Converter extends AbstractCreditNote
     // Payable amount
     aEbiDoc.setPayableAmount (aUBLMonetaryTotal.getPayableAmountValue ().setScale (SCALE_PRICE2, ROUNDING_MODE));
 
+    if (aTransformationErrorList.isErrorBudgetExhausted ())
+      return null;
+
+    aRecorder.startStage (EConversionStage.PAYMENT);
     _convertPayment (aTransformationErrorList, aEbiDoc);
 
+    aRecorder.startStage (EConversionStage.DELIVERY);
     // Delivery
     Ebi41DeliveryType aEbiDelivery = null;
     {
@@ -995,11 +1164,10 @@ public final class CreditNoteToEbInterface41Converter extends AbstractCreditNote
         if (aUBLDelivery.getActualDeliveryDate () != null)
         {
           aEbiDelivery = EbInterface41Helper.convertDelivery (aUBLDelivery,
-                                                              "/Delivery[" + nDeliveryIndex + "]",
+                                                              ErrorLocation.create ("/Delivery[*]", nDeliveryIndex),
                                                               aUBLDoc.getAccountingCustomerParty (),
                                                               aTransformationErrorList,
-                                                              m_aContentLocale,
-                                                              m_aDisplayLocale);
+                                                              m_aContentLocale);
           break;
         }
         ++nDeliveryIndex;
@@ -1039,12 +1207,14 @@ public final class CreditNoteToEbInterface41Converter extends AbstractCreditNote
     if (m_bStrictERBMode)
     {
       if (aEbiDelivery.getDate () == null && aEbiDelivery.getPeriod () == null)
-        aTransformationErrorList.addError ("CreditNote", EText.ERB_NO_DELIVERY_DATE.getDisplayText (m_aDisplayLocale));
+        aTransformationErrorList.addError (ErrorLocation.create ("CreditNote"), EText.ERB_NO_DELIVERY_DATE);
     }
 
     if (aEbiDelivery.getDate () != null || aEbiDelivery.getPeriod () != null)
       aEbiDoc.setDelivery (aEbiDelivery);
 
+    if (aTransformationErrorList.isErrorBudgetExhausted ())
+      return null;
     return aEbiDoc;
   }
 }
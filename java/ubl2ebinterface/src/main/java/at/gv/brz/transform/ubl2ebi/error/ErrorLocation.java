@@ -0,0 +1,245 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.error;
+
+import java.util.Arrays;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.annotation.ReturnsMutableCopy;
+import com.helger.commons.equals.EqualsHelper;
+import com.helger.commons.hashcode.HashCodeGenerator;
+import com.helger.commons.string.ToStringGenerator;
+
+/**
+ * The structured location of a transformation error inside the source UBL
+ * document. It consists of a path pattern in which each index is represented
+ * by {@link #INDEX_PLACEHOLDER} (e.g. <code>InvoiceLine[*]/ID</code>) and the
+ * indices themselves. The location string (e.g. <code>InvoiceLine[4]/ID</code>)
+ * is only assembled when it is requested via {@link #getAsString()}.
+ *
+ * @author philip
+ */
+@Immutable
+public final class ErrorLocation
+{
+  /** The placeholder for an index inside a pattern */
+  public static final char INDEX_PLACEHOLDER = '*';
+
+  private final ErrorLocation m_aParent;
+  private final String m_sPattern;
+  private final int [] m_aIndices;
+
+  private ErrorLocation (@Nullable final ErrorLocation aParent,
+                         @Nonnull final String sPattern,
+                         @Nonnull final int [] aIndices)
+  {
+    ValueEnforcer.notNull (sPattern, "Pattern");
+    ValueEnforcer.notNull (aIndices, "Indices");
+    // charAt instead of toCharArray to avoid copying the pattern
+    int nPlaceholders = 0;
+    final int nLength = sPattern.length ();
+    for (int i = 0; i < nLength; ++i)
+      if (sPattern.charAt (i) == INDEX_PLACEHOLDER)
+        ++nPlaceholders;
+    if (nPlaceholders != aIndices.length)
+      throw new IllegalArgumentException ("The pattern '" +
+                                          sPattern +
+                                          "' contains " +
+                                          nPlaceholders +
+                                          " placeholders but " +
+                                          aIndices.length +
+                                          " indices were passed");
+    m_aParent = aParent;
+    m_sPattern = sPattern;
+    m_aIndices = aIndices;
+  }
+
+  /**
+   * @return The parent location or <code>null</code> if this is a root
+   *         location.
+   */
+  @Nullable
+  public ErrorLocation getParent ()
+  {
+    return m_aParent;
+  }
+
+  /**
+   * @return The pattern of this location, excluding the parent pattern. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  public String getLocalPattern ()
+  {
+    return m_sPattern;
+  }
+
+  /**
+   * @return The number of indices of this location including the indices of
+   *         all parents.
+   */
+  @Nonnegative
+  public int getIndexCount ()
+  {
+    return (m_aParent == null ? 0 : m_aParent.getIndexCount ()) + m_aIndices.length;
+  }
+
+  private int _fillIndices (@Nonnull final int [] aTarget)
+  {
+    final int nOffset = m_aParent == null ? 0 : m_aParent._fillIndices (aTarget);
+    System.arraycopy (m_aIndices, 0, aTarget, nOffset, m_aIndices.length);
+    return nOffset + m_aIndices.length;
+  }
+
+  /**
+   * @return All indices of this location including the indices of all
+   *         parents, in the order of their placeholders. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public int [] getAllIndices ()
+  {
+    final int [] ret = new int [getIndexCount ()];
+    _fillIndices (ret);
+    return ret;
+  }
+
+  private void _appendPattern (@Nonnull final StringBuilder aSB)
+  {
+    if (m_aParent != null)
+      m_aParent._appendPattern (aSB);
+    aSB.append (m_sPattern);
+  }
+
+  /**
+   * @return The complete pattern including the pattern of all parents with
+   *         {@link #INDEX_PLACEHOLDER} instead of the indices. All locations
+   *         that only differ in their indices have the same pattern. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  public String getAsPattern ()
+  {
+    if (m_aParent == null)
+      return m_sPattern;
+    final StringBuilder aSB = new StringBuilder ();
+    _appendPattern (aSB);
+    return aSB.toString ();
+  }
+
+  private void _appendString (@Nonnull final StringBuilder aSB)
+  {
+    if (m_aParent != null)
+      m_aParent._appendString (aSB);
+    int nIndex = 0;
+    final int nLength = m_sPattern.length ();
+    for (int i = 0; i < nLength; ++i)
+    {
+      final char c = m_sPattern.charAt (i);
+      if (c == INDEX_PLACEHOLDER)
+        aSB.append (m_aIndices[nIndex++]);
+      else
+        aSB.append (c);
+    }
+  }
+
+  /**
+   * @return The complete location string including all parents with all
+   *         placeholders replaced by the respective indices. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  public String getAsString ()
+  {
+    if (m_aParent == null && m_aIndices.length == 0)
+      return m_sPattern;
+    final StringBuilder aSB = new StringBuilder ();
+    _appendString (aSB);
+    return aSB.toString ();
+  }
+
+  /**
+   * Create a new location that has this location as its parent.
+   *
+   * @param sPattern
+   *        The pattern to be appended to this location. May not be
+   *        <code>null</code>.
+   * @param aIndices
+   *        The indices to use. The number of indices must match the number of
+   *        placeholders in the pattern.
+   * @return The new location. Never <code>null</code>.
+   */
+  @Nonnull
+  public ErrorLocation getChild (@Nonnull final String sPattern, @Nonnull final int... aIndices)
+  {
+    return new ErrorLocation (this, sPattern, aIndices);
+  }
+
+  @Override
+  public boolean equals (final Object o)
+  {
+    if (o == this)
+      return true;
+    if (o == null || !getClass ().equals (o.getClass ()))
+      return false;
+    final ErrorLocation rhs = (ErrorLocation) o;
+    return EqualsHelper.equals (m_aParent, rhs.m_aParent) &&
+           m_sPattern.equals (rhs.m_sPattern) &&
+           Arrays.equals (m_aIndices, rhs.m_aIndices);
+  }
+
+  @Override
+  public int hashCode ()
+  {
+    return new HashCodeGenerator (this).append (m_aParent)
+                                       .append (m_sPattern)
+                                       .append (Arrays.hashCode (m_aIndices))
+                                       .getHashCode ();
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).appendIfNotNull ("parent", m_aParent)
+                                       .append ("pattern", m_sPattern)
+                                       .append ("indices", Arrays.toString (m_aIndices))
+                                       .toString ();
+  }
+
+  /**
+   * Create a new root location.
+   *
+   * @param sPattern
+   *        The pattern to use. May not be <code>null</code>. Each occurrence of
+   *        {@link #INDEX_PLACEHOLDER} is replaced with the respective index.
+   * @param aIndices
+   *        The indices to use. The number of indices must match the number of
+   *        placeholders in the pattern.
+   * @return The new location. Never <code>null</code>.
+   */
+  @Nonnull
+  public static ErrorLocation create (@Nonnull final String sPattern, @Nonnull final int... aIndices)
+  {
+    return new ErrorLocation (null, sPattern, aIndices);
+  }
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.error;
+
+import java.util.Arrays;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.string.ToStringGenerator;
+
+/**
+ * A compact set of non-negative indices that is stored as a sorted list of
+ * closed ranges (e.g. <code>0-4,7,9-12</code>). Adding indices in ascending
+ * order (as it happens when converting lines) is O(1) and does not allocate
+ * unless a new range is started.
+ *
+ * @author philip
+ */
+@NotThreadSafe
+public final class IndexRangeList
+{
+  private static final int DEFAULT_CAPACITY = 4;
+
+  // Pairs of (start, end), both inclusive
+  private int [] m_aRanges = new int [DEFAULT_CAPACITY * 2];
+  private int m_nRangeCount = 0;
+  private int m_nIndexCount = 0;
+
+  public IndexRangeList ()
+  {}
+
+  private void _insertRange (@Nonnegative final int nRange, final int nStart, final int nEnd)
+  {
+    if (m_nRangeCount * 2 == m_aRanges.length)
+      m_aRanges = Arrays.copyOf (m_aRanges, m_aRanges.length * 2);
+    System.arraycopy (m_aRanges, nRange * 2, m_aRanges, nRange * 2 + 2, (m_nRangeCount - nRange) * 2);
+    m_aRanges[nRange * 2] = nStart;
+    m_aRanges[nRange * 2 + 1] = nEnd;
+    m_nRangeCount++;
+  }
+
+  private void _removeRange (@Nonnegative final int nRange)
+  {
+    System.arraycopy (m_aRanges, nRange * 2 + 2, m_aRanges, nRange * 2, (m_nRangeCount - nRange - 1) * 2);
+    m_nRangeCount--;
+  }
+
+  /**
+   * Add a single index.
+   *
+   * @param nIndex
+   *        The index to add. Must be &ge; 0.
+   * @return <code>true</code> if the index was added, <code>false</code> if it
+   *         was already contained.
+   */
+  public boolean add (@Nonnegative final int nIndex)
+  {
+    ValueEnforcer.isGE0 (nIndex, "Index");
+
+    // Fast path: ascending order
+    if (m_nRangeCount == 0 || nIndex > m_aRanges[m_nRangeCount * 2 - 1])
+    {
+      if (m_nRangeCount > 0 && nIndex == m_aRanges[m_nRangeCount * 2 - 1] + 1)
+        m_aRanges[m_nRangeCount * 2 - 1] = nIndex;
+      else
+        _insertRange (m_nRangeCount, nIndex, nIndex);
+      m_nIndexCount++;
+      return true;
+    }
+
+    // Find the first range whose end is >= nIndex
+    int nLow = 0;
+    int nHigh = m_nRangeCount - 1;
+    while (nLow < nHigh)
+    {
+      final int nMid = (nLow + nHigh) >>> 1;
+      if (m_aRanges[nMid * 2 + 1] < nIndex)
+        nLow = nMid + 1;
+      else
+        nHigh = nMid;
+    }
+    final int nRange = nLow;
+    if (m_aRanges[nRange * 2] <= nIndex)
+    {
+      // Already contained
+      return false;
+    }
+
+    m_nIndexCount++;
+    final boolean bExtendsPrev = nRange > 0 && m_aRanges[nRange * 2 - 1] == nIndex - 1;
+    final boolean bExtendsNext = m_aRanges[nRange * 2] == nIndex + 1;
+    if (bExtendsPrev && bExtendsNext)
+    {
+      // Merge previous and this range
+      m_aRanges[nRange * 2 - 1] = m_aRanges[nRange * 2 + 1];
+      _removeRange (nRange);
+    }
+    else
+      if (bExtendsPrev)
+        m_aRanges[nRange * 2 - 1] = nIndex;
+      else
+        if (bExtendsNext)
+          m_aRanges[nRange * 2] = nIndex;
+        else
+          _insertRange (nRange, nIndex, nIndex);
+    return true;
+  }
+
+  public boolean isEmpty ()
+  {
+    return m_nRangeCount == 0;
+  }
+
+  /**
+   * @return The number of distinct indices contained.
+   */
+  @Nonnegative
+  public int getIndexCount ()
+  {
+    return m_nIndexCount;
+  }
+
+  @Nonnegative
+  public int getRangeCount ()
+  {
+    return m_nRangeCount;
+  }
+
+  public int getRangeStart (@Nonnegative final int nRange)
+  {
+    ValueEnforcer.isBetweenInclusive (nRange, "Range", 0, m_nRangeCount - 1);
+    return m_aRanges[nRange * 2];
+  }
+
+  public int getRangeEnd (@Nonnegative final int nRange)
+  {
+    ValueEnforcer.isBetweenInclusive (nRange, "Range", 0, m_nRangeCount - 1);
+    return m_aRanges[nRange * 2 + 1];
+  }
+
+  public boolean contains (final int nIndex)
+  {
+    for (int i = 0; i < m_nRangeCount; ++i)
+      if (nIndex >= m_aRanges[i * 2] && nIndex <= m_aRanges[i * 2 + 1])
+        return true;
+    return false;
+  }
+
+  /**
+   * @return All ranges in the form <code>0-4,7,9-12</code>. Never
+   *         <code>null</code> but maybe empty.
+   */
+  @Nonnull
+  public String getAsString ()
+  {
+    final StringBuilder aSB = new StringBuilder ();
+    for (int i = 0; i < m_nRangeCount; ++i)
+    {
+      if (i > 0)
+        aSB.append (',');
+      final int nStart = m_aRanges[i * 2];
+      final int nEnd = m_aRanges[i * 2 + 1];
+      aSB.append (nStart);
+      if (nEnd != nStart)
+        aSB.append ('-').append (nEnd);
+    }
+    return aSB.toString ();
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("ranges", getAsString ())
+                                       .append ("indexCount", m_nIndexCount)
+                                       .toString ();
+  }
+}
@@ -0,0 +1,159 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.error;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.annotation.ReturnsMutableCopy;
+import com.helger.commons.error.EErrorLevel;
+import com.helger.commons.hashcode.HashCodeGenerator;
+import com.helger.commons.string.ToStringGenerator;
+
+import at.gv.brz.transform.ubl2ebi.AbstractConverter.EText;
+
+/**
+ * A single transformation error or warning. Only the text constant, the
+ * arguments and the structured location are stored. The localized text and
+ * the location string are created upon request.
+ *
+ * @author philip
+ */
+@Immutable
+public final class TransformationError
+{
+  private final EErrorLevel m_eErrorLevel;
+  private final ErrorLocation m_aLocation;
+  private final EText m_eText;
+  private final Object [] m_aArgs;
+
+  public TransformationError (@Nonnull final EErrorLevel eErrorLevel,
+                              @Nonnull final ErrorLocation aLocation,
+                              @Nonnull final EText eText,
+                              @Nullable final Object... aArgs)
+  {
+    m_eErrorLevel = ValueEnforcer.notNull (eErrorLevel, "ErrorLevel");
+    m_aLocation = ValueEnforcer.notNull (aLocation, "Location");
+    m_eText = ValueEnforcer.notNull (eText, "Text");
+    m_aArgs = aArgs == null ? new Object [0] : aArgs;
+  }
+
+  @Nonnull
+  public EErrorLevel getErrorLevel ()
+  {
+    return m_eErrorLevel;
+  }
+
+  /**
+   * @return <code>true</code> if this is an error, <code>false</code> if it is
+   *         a warning.
+   */
+  public boolean isError ()
+  {
+    return m_eErrorLevel.isMoreOrEqualSevereThan (EErrorLevel.ERROR);
+  }
+
+  @Nonnull
+  public ErrorLocation getLocation ()
+  {
+    return m_aLocation;
+  }
+
+  /**
+   * @return The location rendered as a string (e.g.
+   *         <code>InvoiceLine[4]/ID</code>). Never <code>null</code>.
+   */
+  @Nonnull
+  public String getLocationAsString ()
+  {
+    return m_aLocation.getAsString ();
+  }
+
+  @Nonnull
+  public EText getText ()
+  {
+    return m_eText;
+  }
+
+  @Nonnegative
+  public int getArgCount ()
+  {
+    return m_aArgs.length;
+  }
+
+  @Nonnull
+  @ReturnsMutableCopy
+  public Object [] getAllArgs ()
+  {
+    return m_aArgs.clone ();
+  }
+
+  /**
+   * Render the text of this error in the passed locale.
+   *
+   * @param aDisplayLocale
+   *        The locale to use. May not be <code>null</code>.
+   * @return The rendered text.
+   */
+  @Nullable
+  public String getDisplayText (@Nonnull final Locale aDisplayLocale)
+  {
+    if (m_aArgs.length == 0)
+      return m_eText.getDisplayText (aDisplayLocale);
+    return m_eText.getDisplayTextWithArgs (aDisplayLocale, m_aArgs);
+  }
+
+  @Override
+  public boolean equals (final Object o)
+  {
+    if (o == this)
+      return true;
+    if (o == null || !getClass ().equals (o.getClass ()))
+      return false;
+    final TransformationError rhs = (TransformationError) o;
+    return m_eErrorLevel.equals (rhs.m_eErrorLevel) &&
+           m_aLocation.equals (rhs.m_aLocation) &&
+           m_eText.equals (rhs.m_eText) &&
+           Arrays.equals (m_aArgs, rhs.m_aArgs);
+  }
+
+  @Override
+  public int hashCode ()
+  {
+    return new HashCodeGenerator (this).append (m_eErrorLevel)
+                                       .append (m_aLocation)
+                                       .append (m_eText)
+                                       .append (Arrays.hashCode (m_aArgs))
+                                       .getHashCode ();
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("errorLevel", m_eErrorLevel)
+                                       .append ("location", m_aLocation)
+                                       .append ("text", m_eText)
+                                       .append ("args", Arrays.toString (m_aArgs))
+                                       .toString ();
+  }
+}
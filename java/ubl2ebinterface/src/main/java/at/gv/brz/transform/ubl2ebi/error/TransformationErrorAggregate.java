@@ -0,0 +1,148 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.error;
+
+import java.util.Locale;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.string.ToStringGenerator;
+
+import at.gv.brz.transform.ubl2ebi.AbstractConverter.EText;
+
+/**
+ * All occurrences of a transformation error with the same error level, the
+ * same {@link EText} and the same location pattern (e.g.
+ * <code>InvoiceLine[*]/InvoicedQuantity/UnitCode</code>). Only the first
+ * occurrence is kept completely (including its arguments). For all
+ * occurrences the number of occurrences and the first index of the location
+ * (which is the line index for line based locations) are recorded.
+ *
+ * @author philip
+ */
+@NotThreadSafe
+public final class TransformationErrorAggregate
+{
+  private final TransformationError m_aFirstError;
+  private final IndexRangeList m_aIndices = new IndexRangeList ();
+  private int m_nOccurrenceCount = 0;
+
+  public TransformationErrorAggregate (@Nonnull final TransformationError aFirstError)
+  {
+    m_aFirstError = ValueEnforcer.notNull (aFirstError, "FirstError");
+    addOccurrence (aFirstError.getLocation ());
+  }
+
+  /**
+   * Add another occurrence.
+   *
+   * @param aLocation
+   *        The location of the occurrence. Should have the same pattern as the
+   *        location of the first error.
+   */
+  void addOccurrence (@Nonnull final ErrorLocation aLocation)
+  {
+    m_nOccurrenceCount++;
+    if (aLocation.getIndexCount () > 0)
+      m_aIndices.add (aLocation.getAllIndices ()[0]);
+  }
+
+  /**
+   * @return The first occurrence of this error. Never <code>null</code>.
+   */
+  @Nonnull
+  public TransformationError getFirstError ()
+  {
+    return m_aFirstError;
+  }
+
+  /**
+   * @return The number of occurrences. Always &ge; 1.
+   */
+  @Nonnegative
+  public int getOccurrenceCount ()
+  {
+    return m_nOccurrenceCount;
+  }
+
+  /**
+   * @return The first index of the location of all occurrences. Empty if the
+   *         location has no index. Never <code>null</code>.
+   */
+  @Nonnull
+  public IndexRangeList getIndexRanges ()
+  {
+    return m_aIndices;
+  }
+
+  public boolean isAggregated ()
+  {
+    return m_nOccurrenceCount > 1;
+  }
+
+  /**
+   * @return The location of all occurrences, where the first placeholder is
+   *         replaced with the index ranges (e.g.
+   *         <code>InvoiceLine[0-4,7]/ID</code>) and all other placeholders
+   *         are kept. If only a single occurrence is contained, this is the
+   *         location of the first error.
+   */
+  @Nonnull
+  public String getLocationAsString ()
+  {
+    if (!isAggregated ())
+      return m_aFirstError.getLocationAsString ();
+
+    final String sPattern = m_aFirstError.getLocation ().getAsPattern ();
+    final int nIndex = sPattern.indexOf (ErrorLocation.INDEX_PLACEHOLDER);
+    if (nIndex < 0)
+      return sPattern;
+    return sPattern.substring (0, nIndex) + m_aIndices.getAsString () + sPattern.substring (nIndex + 1);
+  }
+
+  /**
+   * Render the text of the first occurrence in the passed locale. If more
+   * than one occurrence is contained, the number of occurrences is appended.
+   *
+   * @param aDisplayLocale
+   *        The locale to use. May not be <code>null</code>.
+   * @return The rendered text.
+   */
+  @Nullable
+  public String getDisplayText (@Nonnull final Locale aDisplayLocale)
+  {
+    final String sText = m_aFirstError.getDisplayText (aDisplayLocale);
+    if (!isAggregated ())
+      return sText;
+    return sText +
+           " " +
+           EText.REPEATED_OCCURRENCES.getDisplayTextWithArgs (aDisplayLocale, Integer.valueOf (m_nOccurrenceCount));
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("firstError", m_aFirstError)
+                                       .append ("occurrenceCount", m_nOccurrenceCount)
+                                       .append ("indices", m_aIndices)
+                                       .toString ();
+  }
+}
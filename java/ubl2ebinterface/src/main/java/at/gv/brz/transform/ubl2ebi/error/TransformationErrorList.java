@@ -0,0 +1,394 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.error;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.annotation.ReturnsMutableCopy;
+import com.helger.commons.error.EErrorLevel;
+import com.helger.commons.hashcode.HashCodeGenerator;
+import com.helger.commons.string.ToStringGenerator;
+import com.helger.validation.error.ErrorList;
+
+import at.gv.brz.transform.ubl2ebi.AbstractConverter.EText;
+import at.gv.brz.transform.ubl2ebi.helper.NumericLimits;
+
+/**
+ * The list of all errors and warnings that occurred during a single
+ * transformation. In contrast to {@link ErrorList} no text is rendered when an
+ * error is added, so checking for errors is cheap. Use
+ * {@link #getAsErrorList(Locale)} or {@link #fillErrorList(ErrorList, Locale)}
+ * to get the localized representation.
+ * <p>
+ * Optionally repeated errors can be aggregated: all errors with the same error
+ * level, the same text and the same location pattern are collapsed into a
+ * single {@link TransformationErrorAggregate} that only keeps the first
+ * occurrence, the number of occurrences and the ranges of the first location
+ * index. This keeps the memory consumption constant for documents with many
+ * lines that all produce the same warning.
+ * <p>
+ * Additionally an error budget can be defined via
+ * {@link #setMaxErrorCount(int)}. The converters check the budget regularly
+ * and abort the conversion as soon as it is exhausted, so that no CPU time is
+ * wasted on documents that will be rejected anyway. A budget of 1 means "stop
+ * at the first error". Only errors count against the budget - warnings never
+ * abort a conversion.
+ * <p>
+ * Finally optional {@link NumericLimits} that are applied to all numeric
+ * values of the transformed document can be defined per transformation.
+ * Values exceeding the limits are reported as errors before any arithmetic is
+ * performed. By default no limits are applied, so that existing callers don't
+ * get new errors. Set the limits when converting documents from untrusted
+ * sources.
+ *
+ * @author philip
+ */
+@NotThreadSafe
+public class TransformationErrorList implements Iterable <TransformationError>
+{
+  /**
+   * The key for the aggregation of repeated errors.
+   */
+  @Immutable
+  private static final class AggregationKey
+  {
+    private final EErrorLevel m_eErrorLevel;
+    private final EText m_eText;
+    private final String m_sPattern;
+
+    AggregationKey (@Nonnull final TransformationError aError)
+    {
+      m_eErrorLevel = aError.getErrorLevel ();
+      m_eText = aError.getText ();
+      m_sPattern = aError.getLocation ().getAsPattern ();
+    }
+
+    @Override
+    public boolean equals (final Object o)
+    {
+      if (o == this)
+        return true;
+      if (o == null || !getClass ().equals (o.getClass ()))
+        return false;
+      final AggregationKey rhs = (AggregationKey) o;
+      return m_eErrorLevel.equals (rhs.m_eErrorLevel) &&
+             m_eText.equals (rhs.m_eText) &&
+             m_sPattern.equals (rhs.m_sPattern);
+    }
+
+    @Override
+    public int hashCode ()
+    {
+      return new HashCodeGenerator (this).append (m_eErrorLevel)
+                                         .append (m_eText)
+                                         .append (m_sPattern)
+                                         .getHashCode ();
+    }
+  }
+
+  /** The default maximum number of errors: unlimited */
+  public static final int MAX_ERROR_COUNT_UNLIMITED = 0;
+
+  private final boolean m_bAggregateRepeated;
+  private final List <TransformationError> m_aItems = new ArrayList <TransformationError> ();
+  private final Map <AggregationKey, TransformationErrorAggregate> m_aAggregates;
+  private int m_nOccurrenceCount = 0;
+  private int m_nErrorCount = 0;
+  private int m_nMaxErrorCount = MAX_ERROR_COUNT_UNLIMITED;
+  private NumericLimits m_aNumericLimits;
+
+  public TransformationErrorList ()
+  {
+    this (false);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param bAggregateRepeated
+   *        <code>true</code> to collapse repeated errors with the same error
+   *        level, text and location pattern into one entry.
+   */
+  public TransformationErrorList (final boolean bAggregateRepeated)
+  {
+    m_bAggregateRepeated = bAggregateRepeated;
+    m_aAggregates = bAggregateRepeated ? new HashMap <AggregationKey, TransformationErrorAggregate> () : null;
+  }
+
+  /**
+   * @return <code>true</code> if repeated errors are aggregated.
+   */
+  public boolean isAggregateRepeated ()
+  {
+    return m_bAggregateRepeated;
+  }
+
+  /**
+   * @return The maximum number of errors after which a conversion is aborted
+   *         or {@link #MAX_ERROR_COUNT_UNLIMITED} if there is no limit.
+   */
+  @Nonnegative
+  public int getMaxErrorCount ()
+  {
+    return m_nMaxErrorCount;
+  }
+
+  /**
+   * Set the error budget of a conversion.
+   *
+   * @param nMaxErrorCount
+   *        The maximum number of errors after which the conversion is aborted.
+   *        Use 1 to stop at the first error and
+   *        {@link #MAX_ERROR_COUNT_UNLIMITED} to never abort. Must be &ge; 0.
+   * @return this
+   */
+  @Nonnull
+  public TransformationErrorList setMaxErrorCount (@Nonnegative final int nMaxErrorCount)
+  {
+    ValueEnforcer.isGE0 (nMaxErrorCount, "MaxErrorCount");
+    m_nMaxErrorCount = nMaxErrorCount;
+    return this;
+  }
+
+  /**
+   * @return <code>true</code> if an error budget is defined and the number of
+   *         errors reached it. In this case the conversion should be aborted.
+   */
+  public boolean isErrorBudgetExhausted ()
+  {
+    return m_nMaxErrorCount != MAX_ERROR_COUNT_UNLIMITED && m_nErrorCount >= m_nMaxErrorCount;
+  }
+
+  /**
+   * @return The limits for numeric values of the transformed document or
+   *         <code>null</code> if no limits are applied. Defaults to
+   *         <code>null</code>.
+   */
+  @Nullable
+  public NumericLimits getNumericLimits ()
+  {
+    return m_aNumericLimits;
+  }
+
+  /**
+   * Set the limits for numeric values of the transformed document.
+   *
+   * @param aNumericLimits
+   *        The limits to use, e.g. {@link NumericLimits#DEFAULT}. May be
+   *        <code>null</code> to apply no limits.
+   * @return this
+   */
+  @Nonnull
+  public TransformationErrorList setNumericLimits (@Nullable final NumericLimits aNumericLimits)
+  {
+    m_aNumericLimits = aNumericLimits;
+    return this;
+  }
+
+  public void add (@Nonnull final TransformationError aError)
+  {
+    ValueEnforcer.notNull (aError, "Error");
+    m_nOccurrenceCount++;
+    if (aError.isError ())
+      m_nErrorCount++;
+
+    if (m_bAggregateRepeated)
+    {
+      final AggregationKey aKey = new AggregationKey (aError);
+      final TransformationErrorAggregate aAggregate = m_aAggregates.get (aKey);
+      if (aAggregate != null)
+      {
+        // Repeated error
+        aAggregate.addOccurrence (aError.getLocation ());
+        return;
+      }
+      m_aAggregates.put (aKey, new TransformationErrorAggregate (aError));
+    }
+    m_aItems.add (aError);
+  }
+
+  public void addError (@Nonnull final ErrorLocation aLocation,
+                        @Nonnull final EText eText,
+                        @Nullable final Object... aArgs)
+  {
+    add (new TransformationError (EErrorLevel.ERROR, aLocation, eText, aArgs));
+  }
+
+  public void addWarning (@Nonnull final ErrorLocation aLocation,
+                          @Nonnull final EText eText,
+                          @Nullable final Object... aArgs)
+  {
+    add (new TransformationError (EErrorLevel.WARN, aLocation, eText, aArgs));
+  }
+
+  public boolean isEmpty ()
+  {
+    return m_aItems.isEmpty ();
+  }
+
+  /**
+   * @return The number of contained entries. If repeated errors are
+   *         aggregated, each aggregate counts as one entry.
+   * @see #getOccurrenceCount()
+   */
+  @Nonnegative
+  public int getSize ()
+  {
+    return m_aItems.size ();
+  }
+
+  /**
+   * @return The total number of errors and warnings that were added,
+   *         including all aggregated repetitions.
+   */
+  @Nonnegative
+  public int getOccurrenceCount ()
+  {
+    return m_nOccurrenceCount;
+  }
+
+  public boolean containsAtLeastOneError ()
+  {
+    return m_nErrorCount > 0;
+  }
+
+  @Nonnegative
+  public int getErrorCount ()
+  {
+    return m_nErrorCount;
+  }
+
+  @Nonnegative
+  public int getWarningCount ()
+  {
+    return m_nOccurrenceCount - m_nErrorCount;
+  }
+
+  /**
+   * @return All contained entries. If repeated errors are aggregated, only the
+   *         first occurrence of each aggregate is contained.
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public List <TransformationError> getAllItems ()
+  {
+    return new ArrayList <TransformationError> (m_aItems);
+  }
+
+  @Nonnull
+  private TransformationErrorAggregate _getAggregate (@Nonnull final TransformationError aError)
+  {
+    if (m_bAggregateRepeated)
+      return m_aAggregates.get (new AggregationKey (aError));
+    return new TransformationErrorAggregate (aError);
+  }
+
+  /**
+   * @return All contained entries as aggregates in the order of their first
+   *         occurrence. If repeated errors are not aggregated, each aggregate
+   *         contains exactly one occurrence.
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public List <TransformationErrorAggregate> getAllAggregates ()
+  {
+    final List <TransformationErrorAggregate> ret = new ArrayList <TransformationErrorAggregate> (m_aItems.size ());
+    for (final TransformationError aError : m_aItems)
+      ret.add (_getAggregate (aError));
+    return ret;
+  }
+
+  @Nonnull
+  public Iterator <TransformationError> iterator ()
+  {
+    return m_aItems.iterator ();
+  }
+
+  /**
+   * Add all contained items to the passed {@link ErrorList}. This renders all
+   * locations and texts. Aggregated errors are added as a single item with the
+   * index ranges in the location and the number of occurrences in the text.
+   *
+   * @param aTarget
+   *        The error list to be filled. May not be <code>null</code>.
+   * @param aDisplayLocale
+   *        The locale to render the texts in. May not be <code>null</code>.
+   */
+  public void fillErrorList (@Nonnull final ErrorList aTarget, @Nonnull final Locale aDisplayLocale)
+  {
+    ValueEnforcer.notNull (aTarget, "Target");
+    ValueEnforcer.notNull (aDisplayLocale, "DisplayLocale");
+
+    for (final TransformationError aError : m_aItems)
+    {
+      String sLocation;
+      String sText;
+      if (m_bAggregateRepeated)
+      {
+        final TransformationErrorAggregate aAggregate = _getAggregate (aError);
+        sLocation = aAggregate.getLocationAsString ();
+        sText = aAggregate.getDisplayText (aDisplayLocale);
+      }
+      else
+      {
+        sLocation = aError.getLocationAsString ();
+        sText = aError.getDisplayText (aDisplayLocale);
+      }
+      if (aError.isError ())
+        aTarget.addError (sLocation, sText);
+      else
+        aTarget.addWarning (sLocation, sText);
+    }
+  }
+
+  /**
+   * @param aDisplayLocale
+   *        The locale to render the texts in. May not be <code>null</code>.
+   * @return A new {@link ErrorList} with all rendered items. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public ErrorList getAsErrorList (@Nonnull final Locale aDisplayLocale)
+  {
+    final ErrorList ret = new ErrorList ();
+    fillErrorList (ret, aDisplayLocale);
+    return ret;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("aggregateRepeated", m_bAggregateRepeated)
+                                       .append ("maxErrorCount", m_nMaxErrorCount)
+                                       .append ("numericLimits", m_aNumericLimits)
+                                       .append ("items", m_aItems)
+                                       .toString ();
+  }
+}
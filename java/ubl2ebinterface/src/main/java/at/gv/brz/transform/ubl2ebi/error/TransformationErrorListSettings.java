@@ -0,0 +1,161 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.error;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.equals.EqualsHelper;
+import com.helger.commons.hashcode.HashCodeGenerator;
+import com.helger.commons.string.ToStringGenerator;
+
+import at.gv.brz.transform.ubl2ebi.helper.NumericLimits;
+
+/**
+ * The settings of the {@link TransformationErrorList}s that are created
+ * internally, e.g. by the conversion pipeline for each document. They contain
+ * the aggregation of repeated errors, the error budget and the
+ * {@link NumericLimits}.
+ *
+ * @author philip
+ */
+@Immutable
+public final class TransformationErrorListSettings
+{
+  /**
+   * The settings of a plain {@link TransformationErrorList}: no aggregation,
+   * no error budget and no numeric limits.
+   */
+  public static final TransformationErrorListSettings DEFAULT = new TransformationErrorListSettings (false,
+                                                                                                     TransformationErrorList.MAX_ERROR_COUNT_UNLIMITED,
+                                                                                                     null);
+
+  /**
+   * The recommended settings for documents from untrusted sources: the
+   * {@link NumericLimits#DEFAULT} limits are applied.
+   */
+  public static final TransformationErrorListSettings UNTRUSTED = new TransformationErrorListSettings (false,
+                                                                                                       TransformationErrorList.MAX_ERROR_COUNT_UNLIMITED,
+                                                                                                       NumericLimits.DEFAULT);
+
+  private final boolean m_bAggregateRepeated;
+  private final int m_nMaxErrorCount;
+  private final NumericLimits m_aNumericLimits;
+
+  /**
+   * Constructor
+   *
+   * @param bAggregateRepeated
+   *        <code>true</code> to collapse repeated errors with the same error
+   *        level, text and location pattern into one entry.
+   * @param nMaxErrorCount
+   *        The maximum number of errors after which a conversion is aborted.
+   *        Use {@link TransformationErrorList#MAX_ERROR_COUNT_UNLIMITED} to
+   *        never abort. Must be &ge; 0.
+   * @param aNumericLimits
+   *        The limits for numeric values. May be <code>null</code> to apply no
+   *        limits.
+   */
+  public TransformationErrorListSettings (final boolean bAggregateRepeated,
+                                          @Nonnegative final int nMaxErrorCount,
+                                          @Nullable final NumericLimits aNumericLimits)
+  {
+    ValueEnforcer.isGE0 (nMaxErrorCount, "MaxErrorCount");
+    m_bAggregateRepeated = bAggregateRepeated;
+    m_nMaxErrorCount = nMaxErrorCount;
+    m_aNumericLimits = aNumericLimits;
+  }
+
+  public boolean isAggregateRepeated ()
+  {
+    return m_bAggregateRepeated;
+  }
+
+  @Nonnegative
+  public int getMaxErrorCount ()
+  {
+    return m_nMaxErrorCount;
+  }
+
+  @Nullable
+  public NumericLimits getNumericLimits ()
+  {
+    return m_aNumericLimits;
+  }
+
+  /**
+   * @return A new empty error list with these settings. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  public TransformationErrorList createTransformationErrorList ()
+  {
+    return new TransformationErrorList (m_bAggregateRepeated).setMaxErrorCount (m_nMaxErrorCount)
+                                                              .setNumericLimits (m_aNumericLimits);
+  }
+
+  /**
+   * @return A stable string representation of these settings, that is e.g.
+   *         used as part of cache keys. Never <code>null</code>.
+   */
+  @Nonnull
+  public String getAsKeyString ()
+  {
+    return m_bAggregateRepeated +
+           ":" +
+           m_nMaxErrorCount +
+           ":" +
+           (m_aNumericLimits == null ? "-"
+                                     : m_aNumericLimits.getMaxPrecision () +
+                                       "/" +
+                                       m_aNumericLimits.getMaxExponent ());
+  }
+
+  @Override
+  public boolean equals (final Object o)
+  {
+    if (o == this)
+      return true;
+    if (o == null || !getClass ().equals (o.getClass ()))
+      return false;
+    final TransformationErrorListSettings rhs = (TransformationErrorListSettings) o;
+    return m_bAggregateRepeated == rhs.m_bAggregateRepeated &&
+           m_nMaxErrorCount == rhs.m_nMaxErrorCount &&
+           EqualsHelper.equals (m_aNumericLimits, rhs.m_aNumericLimits);
+  }
+
+  @Override
+  public int hashCode ()
+  {
+    return new HashCodeGenerator (this).append (m_bAggregateRepeated)
+                                       .append (m_nMaxErrorCount)
+                                       .append (m_aNumericLimits)
+                                       .getHashCode ();
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("aggregateRepeated", m_bAggregateRepeated)
+                                       .append ("maxErrorCount", m_nMaxErrorCount)
+                                       .append ("numericLimits", m_aNumericLimits)
+                                       .toString ();
+  }
+}
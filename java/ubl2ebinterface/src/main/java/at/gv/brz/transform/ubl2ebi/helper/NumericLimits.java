@@ -0,0 +1,146 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.helper;
+
+import java.math.BigDecimal;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.hashcode.HashCodeGenerator;
+import com.helger.commons.string.ToStringGenerator;
+
+/**
+ * The limits for numeric values from UBL documents. {@link BigDecimal} values
+ * may have an arbitrary precision and an arbitrary exponent, so a value like
+ * <code>1E+999999999</code> or a mantissa with 100.000 digits lets a single
+ * <code>setScale</code> or <code>divide</code> call run for seconds or exhaust
+ * the heap. If limits are set via
+ * <code>TransformationErrorList.setNumericLimits</code>, all numeric values of
+ * a document are checked against them before any arithmetic is performed.
+ *
+ * @author philip
+ */
+@Immutable
+public final class NumericLimits
+{
+  /** The default maximum number of significant digits */
+  public static final int DEFAULT_MAX_PRECISION = 30;
+  /** The default maximum absolute value of the decimal exponent */
+  public static final int DEFAULT_MAX_EXPONENT = 20;
+  /** The recommended limits for documents from untrusted sources */
+  public static final NumericLimits DEFAULT = new NumericLimits (DEFAULT_MAX_PRECISION, DEFAULT_MAX_EXPONENT);
+
+  /** log2(10) rounded up - used for the cheap precision estimate */
+  private static final double BITS_PER_DIGIT = 3.33;
+
+  private final int m_nMaxPrecision;
+  private final int m_nMaxExponent;
+  private final int m_nMaxBitLength;
+
+  /**
+   * Constructor
+   *
+   * @param nMaxPrecision
+   *        The maximum number of significant digits of a value. Must be &gt;
+   *        0.
+   * @param nMaxExponent
+   *        The maximum absolute value of the exponent of a value in scientific
+   *        notation. E.g. <code>1.5E+3</code> and <code>1.5E-3</code> both have
+   *        an exponent of 3. Must be &ge; 0.
+   */
+  public NumericLimits (@Nonnegative final int nMaxPrecision, @Nonnegative final int nMaxExponent)
+  {
+    ValueEnforcer.isGT0 (nMaxPrecision, "MaxPrecision");
+    ValueEnforcer.isGE0 (nMaxExponent, "MaxExponent");
+    m_nMaxPrecision = nMaxPrecision;
+    m_nMaxExponent = nMaxExponent;
+    m_nMaxBitLength = (int) Math.ceil (nMaxPrecision * BITS_PER_DIGIT) + 1;
+  }
+
+  /**
+   * @return The maximum number of significant digits of a value. Always &gt;
+   *         0.
+   */
+  @Nonnegative
+  public int getMaxPrecision ()
+  {
+    return m_nMaxPrecision;
+  }
+
+  /**
+   * @return The maximum absolute value of the exponent of a value in
+   *         scientific notation. Always &ge; 0.
+   */
+  @Nonnegative
+  public int getMaxExponent ()
+  {
+    return m_nMaxExponent;
+  }
+
+  /**
+   * Check if the passed value is within the limits. The check itself has
+   * bounded costs: {@link BigDecimal#precision()} is only evaluated if the bit
+   * length of the unscaled value is small enough.
+   *
+   * @param aValue
+   *        The value to check. May be <code>null</code>.
+   * @return <code>true</code> if the value is <code>null</code> or within the
+   *         limits, <code>false</code> otherwise.
+   */
+  public boolean isAdmissible (@Nullable final BigDecimal aValue)
+  {
+    if (aValue == null)
+      return true;
+    if (aValue.unscaledValue ().bitLength () > m_nMaxBitLength)
+      return false;
+    final int nPrecision = aValue.precision ();
+    if (nPrecision > m_nMaxPrecision)
+      return false;
+    // The exponent in scientific notation
+    final long nExponent = (long) nPrecision - aValue.scale () - 1;
+    return nExponent >= -m_nMaxExponent && nExponent <= m_nMaxExponent;
+  }
+
+  @Override
+  public boolean equals (final Object o)
+  {
+    if (o == this)
+      return true;
+    if (o == null || !getClass ().equals (o.getClass ()))
+      return false;
+    final NumericLimits rhs = (NumericLimits) o;
+    return m_nMaxPrecision == rhs.m_nMaxPrecision && m_nMaxExponent == rhs.m_nMaxExponent;
+  }
+
+  @Override
+  public int hashCode ()
+  {
+    return new HashCodeGenerator (this).append (m_nMaxPrecision).append (m_nMaxExponent).getHashCode ();
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("maxPrecision", m_nMaxPrecision)
+                                       .append ("maxExponent", m_nMaxExponent)
+                                       .toString ();
+  }
+}
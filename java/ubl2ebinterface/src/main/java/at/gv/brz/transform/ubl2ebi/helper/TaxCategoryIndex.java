@@ -0,0 +1,196 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.helper;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.annotation.Nonempty;
+import com.helger.commons.string.StringHelper;
+import com.helger.commons.string.ToStringGenerator;
+
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.TaxCategoryType;
+
+/**
+ * The per document index from tax category to percentage, that is built from
+ * the <code>TaxTotal/TaxSubtotal</code> elements and used to resolve the
+ * percentage of lines and global allowances/charges that don't have an
+ * explicit percentage. Documents usually contain less than five tax
+ * categories, so all entries are stored in parallel arrays instead of a map
+ * and a lookup is a linear scan that does not allocate any key objects.
+ *
+ * @author philip
+ */
+@NotThreadSafe
+public final class TaxCategoryIndex
+{
+  private static final int DEFAULT_CAPACITY = 4;
+
+  private String [] m_aTaxSchemeSchemeIDs = new String [DEFAULT_CAPACITY];
+  private String [] m_aTaxSchemeIDs = new String [DEFAULT_CAPACITY];
+  private String [] m_aTaxCategorySchemeIDs = new String [DEFAULT_CAPACITY];
+  private String [] m_aTaxCategoryIDs = new String [DEFAULT_CAPACITY];
+  private BigDecimal [] m_aPercentages = new BigDecimal [DEFAULT_CAPACITY];
+  private int m_nCount = 0;
+
+  public TaxCategoryIndex ()
+  {}
+
+  private static boolean _equals (@Nullable final String s1, @Nullable final String s2)
+  {
+    // Plain String.equals - no registry lookup needed
+    return s1 == null ? s2 == null : s1.equals (s2);
+  }
+
+  private int _indexOf (@Nullable final String sTaxSchemeSchemeID,
+                        @Nullable final String sTaxSchemeID,
+                        @Nullable final String sTaxCategorySchemeID,
+                        @Nullable final String sTaxCategoryID)
+  {
+    for (int i = 0; i < m_nCount; ++i)
+      if (_equals (m_aTaxCategoryIDs[i], sTaxCategoryID) &&
+          _equals (m_aTaxSchemeIDs[i], sTaxSchemeID) &&
+          _equals (m_aTaxCategorySchemeIDs[i], sTaxCategorySchemeID) &&
+          _equals (m_aTaxSchemeSchemeIDs[i], sTaxSchemeSchemeID))
+        return i;
+    return -1;
+  }
+
+  /**
+   * Add a tax category. If the same tax category is already contained, its
+   * percentage is overwritten.
+   *
+   * @param sTaxSchemeSchemeID
+   *        The scheme ID of the tax scheme ID. May be <code>null</code>.
+   * @param sTaxSchemeID
+   *        The tax scheme ID. May neither be <code>null</code> nor empty.
+   * @param sTaxCategorySchemeID
+   *        The scheme ID of the tax category ID. May be <code>null</code>.
+   * @param sTaxCategoryID
+   *        The tax category ID. May neither be <code>null</code> nor empty.
+   * @param aPercentage
+   *        The percentage of the tax category. May be <code>null</code>.
+   */
+  public void add (@Nullable final String sTaxSchemeSchemeID,
+                   @Nonnull @Nonempty final String sTaxSchemeID,
+                   @Nullable final String sTaxCategorySchemeID,
+                   @Nonnull @Nonempty final String sTaxCategoryID,
+                   @Nullable final BigDecimal aPercentage)
+  {
+    ValueEnforcer.notEmpty (sTaxSchemeID, "TaxSchemeID");
+    ValueEnforcer.notEmpty (sTaxCategoryID, "TaxCategoryID");
+
+    final int nIndex = _indexOf (sTaxSchemeSchemeID, sTaxSchemeID, sTaxCategorySchemeID, sTaxCategoryID);
+    if (nIndex >= 0)
+    {
+      m_aPercentages[nIndex] = aPercentage;
+      return;
+    }
+
+    if (m_nCount == m_aTaxCategoryIDs.length)
+    {
+      final int nNewCapacity = m_nCount * 2;
+      m_aTaxSchemeSchemeIDs = Arrays.copyOf (m_aTaxSchemeSchemeIDs, nNewCapacity);
+      m_aTaxSchemeIDs = Arrays.copyOf (m_aTaxSchemeIDs, nNewCapacity);
+      m_aTaxCategorySchemeIDs = Arrays.copyOf (m_aTaxCategorySchemeIDs, nNewCapacity);
+      m_aTaxCategoryIDs = Arrays.copyOf (m_aTaxCategoryIDs, nNewCapacity);
+      m_aPercentages = Arrays.copyOf (m_aPercentages, nNewCapacity);
+    }
+    m_aTaxSchemeSchemeIDs[m_nCount] = sTaxSchemeSchemeID;
+    m_aTaxSchemeIDs[m_nCount] = sTaxSchemeID;
+    m_aTaxCategorySchemeIDs[m_nCount] = sTaxCategorySchemeID;
+    m_aTaxCategoryIDs[m_nCount] = sTaxCategoryID;
+    m_aPercentages[m_nCount] = aPercentage;
+    m_nCount++;
+  }
+
+  /**
+   * @return The number of contained tax categories.
+   */
+  @Nonnegative
+  public int getSize ()
+  {
+    return m_nCount;
+  }
+
+  /**
+   * Get the percentage of the specified tax category.
+   *
+   * @param sTaxSchemeSchemeID
+   *        The scheme ID of the tax scheme ID. May be <code>null</code>.
+   * @param sTaxSchemeID
+   *        The tax scheme ID. May be <code>null</code>.
+   * @param sTaxCategorySchemeID
+   *        The scheme ID of the tax category ID. May be <code>null</code>.
+   * @param sTaxCategoryID
+   *        The tax category ID. May be <code>null</code>.
+   * @return <code>null</code> if no such tax category is contained or if no
+   *         percentage is present for it.
+   */
+  @Nullable
+  public BigDecimal getPercentage (@Nullable final String sTaxSchemeSchemeID,
+                                   @Nullable final String sTaxSchemeID,
+                                   @Nullable final String sTaxCategorySchemeID,
+                                   @Nullable final String sTaxCategoryID)
+  {
+    final int nIndex = _indexOf (sTaxSchemeSchemeID, sTaxSchemeID, sTaxCategorySchemeID, sTaxCategoryID);
+    return nIndex < 0 ? null : m_aPercentages[nIndex];
+  }
+
+  /**
+   * Get the percentage of the passed UBL tax category. All IDs are trimmed
+   * before the lookup.
+   *
+   * @param aUBLTaxCategory
+   *        The UBL tax category. May not be <code>null</code>.
+   * @return <code>null</code> if the passed tax category has no ID or no tax
+   *         scheme ID, if no such tax category is contained or if no
+   *         percentage is present for it.
+   */
+  @Nullable
+  public BigDecimal getPercentage (@Nonnull final TaxCategoryType aUBLTaxCategory)
+  {
+    if (aUBLTaxCategory.getID () == null ||
+        aUBLTaxCategory.getTaxScheme () == null ||
+        aUBLTaxCategory.getTaxScheme ().getID () == null)
+      return null;
+
+    return getPercentage (StringHelper.trim (aUBLTaxCategory.getTaxScheme ().getID ().getSchemeID ()),
+                          StringHelper.trim (aUBLTaxCategory.getTaxScheme ().getIDValue ()),
+                          StringHelper.trim (aUBLTaxCategory.getID ().getSchemeID ()),
+                          StringHelper.trim (aUBLTaxCategory.getIDValue ()));
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("taxSchemeSchemeIDs",
+                                                Arrays.asList (m_aTaxSchemeSchemeIDs).subList (0, m_nCount))
+                                       .append ("taxSchemeIDs", Arrays.asList (m_aTaxSchemeIDs).subList (0, m_nCount))
+                                       .append ("taxCategorySchemeIDs",
+                                                Arrays.asList (m_aTaxCategorySchemeIDs).subList (0, m_nCount))
+                                       .append ("taxCategoryIDs", Arrays.asList (m_aTaxCategoryIDs).subList (0, m_nCount))
+                                       .append ("percentages", Arrays.asList (m_aPercentages).subList (0, m_nCount))
+                                       .toString ();
+  }
+}
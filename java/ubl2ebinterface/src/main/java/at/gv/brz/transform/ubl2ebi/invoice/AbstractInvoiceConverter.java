@@ -19,16 +19,29 @@ package at.gv.brz.transform.ubl2ebi.invoice;
 import java.util.Locale;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 
+import com.helger.commons.state.ESuccess;
 import com.helger.commons.string.StringHelper;
 import com.helger.peppol.identifier.process.IPeppolPredefinedProcessIdentifier;
 import com.helger.peppol.identifier.process.PredefinedProcessIdentifierManager;
 import com.helger.peppol.identifier.process.SimpleProcessIdentifier;
-import com.helger.validation.error.ErrorList;
 
 import at.gv.brz.transform.ubl2ebi.AbstractConverter;
 import at.gv.brz.transform.ubl2ebi.CPeppolUBL;
+import at.gv.brz.transform.ubl2ebi.ParallelLineConversion;
+import at.gv.brz.transform.ubl2ebi.UBLPreflightChecker;
+import at.gv.brz.transform.ubl2ebi.error.ErrorLocation;
+import at.gv.brz.transform.ubl2ebi.error.TransformationErrorList;
+import at.gv.brz.transform.ubl2ebi.helper.NumericLimits;
+import at.gv.brz.transform.ubl2ebi.metrics.IConversionMetricsListener;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.AllowanceChargeType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.InvoiceLineType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.PaymentTermsType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.TaxCategoryType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.TaxSubtotalType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.TaxTotalType;
 import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.InvoiceTypeCodeType;
 import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.ProfileIDType;
 import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.UBLVersionIDType;
@@ -62,33 +75,88 @@ public abstract class AbstractInvoiceConverter extends AbstractConverter
   }
 
   /**
-   * Check if the passed UBL invoice is transformable
+   * Constructor
+   *
+   * @param aDisplayLocale
+   *        The locale for error messages. May not be <code>null</code>.
+   * @param aContentLocale
+   *        The locale for the created ebInterface files. May not be
+   *        <code>null</code>.
+   * @param bStrictERBMode
+   *        <code>true</code> if E-RECHNUNG.GV.AT specific checks should be
+   *        performed
+   * @param aParallelLineConversion
+   *        The settings for the parallel conversion of lines. May be
+   *        <code>null</code> to convert all lines sequentially.
+   */
+  public AbstractInvoiceConverter (@Nonnull final Locale aDisplayLocale,
+                                   @Nonnull final Locale aContentLocale,
+                                   final boolean bStrictERBMode,
+                                   @Nullable final ParallelLineConversion aParallelLineConversion)
+  {
+    super (aDisplayLocale, aContentLocale, bStrictERBMode, aParallelLineConversion);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param aDisplayLocale
+   *        The locale for error messages. May not be <code>null</code>.
+   * @param aContentLocale
+   *        The locale for the created ebInterface files. May not be
+   *        <code>null</code>.
+   * @param bStrictERBMode
+   *        <code>true</code> if E-RECHNUNG.GV.AT specific checks should be
+   *        performed
+   * @param aParallelLineConversion
+   *        The settings for the parallel conversion of lines. May be
+   *        <code>null</code> to convert all lines sequentially.
+   * @param aMetricsListener
+   *        The listener for the timings and counts of each conversion. May be
+   *        <code>null</code> if no metrics are needed.
+   */
+  public AbstractInvoiceConverter (@Nonnull final Locale aDisplayLocale,
+                                   @Nonnull final Locale aContentLocale,
+                                   final boolean bStrictERBMode,
+                                   @Nullable final ParallelLineConversion aParallelLineConversion,
+                                   @Nullable final IConversionMetricsListener aMetricsListener)
+  {
+    super (aDisplayLocale, aContentLocale, bStrictERBMode, aParallelLineConversion, aMetricsListener);
+  }
+
+  /**
+   * Check if the passed UBL invoice is transformable. Only the header elements
+   * <code>UBLVersionID</code>, <code>ProfileID</code> and
+   * <code>InvoiceTypeCode</code> are evaluated, so the passed invoice may also
+   * be a header only object as created by {@link UBLPreflightChecker}.
    *
    * @param aUBLInvoice
    *        The UBL invoice to check
+   * @param aTransformationErrorList
+   *        The error list to be filled. May not be <code>null</code>.
    */
-  protected final void _checkConsistency (@Nonnull final InvoiceType aUBLInvoice,
-                                          @Nonnull final ErrorList aTransformationErrorList)
+  public static void checkConsistency (@Nonnull final InvoiceType aUBLInvoice,
+                                       @Nonnull final TransformationErrorList aTransformationErrorList)
   {
     // Check UBLVersionID
     final UBLVersionIDType aUBLVersionID = aUBLInvoice.getUBLVersionID ();
     if (aUBLVersionID == null)
     {
-      aTransformationErrorList.addError ("UBLVersionID",
-                                         EText.NO_UBL_VERSION_ID.getDisplayTextWithArgs (m_aDisplayLocale,
-                                                                                         CPeppolUBL.UBL_VERSION_20,
-                                                                                         CPeppolUBL.UBL_VERSION_21));
+      aTransformationErrorList.addError (ErrorLocation.create ("UBLVersionID"),
+                                         EText.NO_UBL_VERSION_ID,
+                                         CPeppolUBL.UBL_VERSION_20,
+                                         CPeppolUBL.UBL_VERSION_21);
     }
     else
     {
       final String sUBLVersionID = StringHelper.trim (aUBLVersionID.getValue ());
       if (!CPeppolUBL.UBL_VERSION_20.equals (sUBLVersionID) && !CPeppolUBL.UBL_VERSION_21.equals (sUBLVersionID))
       {
-        aTransformationErrorList.addError ("UBLVersionID",
-                                           EText.INVALID_UBL_VERSION_ID.getDisplayTextWithArgs (m_aDisplayLocale,
-                                                                                                sUBLVersionID,
-                                                                                                CPeppolUBL.UBL_VERSION_20,
-                                                                                                CPeppolUBL.UBL_VERSION_21));
+        aTransformationErrorList.addError (ErrorLocation.create ("UBLVersionID"),
+                                           EText.INVALID_UBL_VERSION_ID,
+                                           sUBLVersionID,
+                                           CPeppolUBL.UBL_VERSION_20,
+                                           CPeppolUBL.UBL_VERSION_21);
       }
     }
 
@@ -97,7 +165,7 @@ public abstract class AbstractInvoiceConverter extends AbstractConverter
     final ProfileIDType aProfileID = aUBLInvoice.getProfileID ();
     if (aProfileID == null)
     {
-      aTransformationErrorList.addError ("ProfileID", EText.NO_PROFILE_ID.getDisplayText (m_aDisplayLocale));
+      aTransformationErrorList.addError (ErrorLocation.create ("ProfileID"), EText.NO_PROFILE_ID);
     }
     else
     {
@@ -113,9 +181,7 @@ public abstract class AbstractInvoiceConverter extends AbstractConverter
 
       if (aProcID == null)
       {
-        aTransformationErrorList.addError ("ProfileID",
-                                           EText.INVALID_PROFILE_ID.getDisplayTextWithArgs (m_aDisplayLocale,
-                                                                                            sProfileID));
+        aTransformationErrorList.addError (ErrorLocation.create ("ProfileID"), EText.INVALID_PROFILE_ID, sProfileID);
       }
     }
 
@@ -162,9 +228,9 @@ public abstract class AbstractInvoiceConverter extends AbstractConverter
     if (aInvoiceTypeCode == null)
     {
       // None present
-      aTransformationErrorList.addWarning ("InvoiceTypeCode",
-                                           EText.NO_INVOICE_TYPECODE.getDisplayTextWithArgs (m_aDisplayLocale,
-                                                                                             INVOICE_TYPE_CODE));
+      aTransformationErrorList.addWarning (ErrorLocation.create ("InvoiceTypeCode"),
+                                           EText.NO_INVOICE_TYPECODE,
+                                           INVOICE_TYPE_CODE);
     }
     else
     {
@@ -172,11 +238,150 @@ public abstract class AbstractInvoiceConverter extends AbstractConverter
       final String sInvoiceTypeCode = StringHelper.trim (aInvoiceTypeCode.getValue ());
       if (!INVOICE_TYPE_CODE.equals (sInvoiceTypeCode))
       {
-        aTransformationErrorList.addError ("InvoiceTypeCode",
-                                           EText.INVALID_INVOICE_TYPECODE.getDisplayTextWithArgs (m_aDisplayLocale,
-                                                                                                  sInvoiceTypeCode,
-                                                                                                  INVOICE_TYPE_CODE));
+        aTransformationErrorList.addError (ErrorLocation.create ("InvoiceTypeCode"),
+                                           EText.INVALID_INVOICE_TYPECODE,
+                                           sInvoiceTypeCode,
+                                           INVOICE_TYPE_CODE);
+      }
+    }
+  }
+
+  /**
+   * Check all numeric values of the invoice header against the
+   * {@link NumericLimits} of the passed error list, if any. Invoice lines are
+   * not checked - use
+   * {@link #checkNumericValues(InvoiceLineType, int, TransformationErrorList)}
+   * for each line.
+   *
+   * @param aUBLInvoice
+   *        The UBL invoice to check
+   * @param aTransformationErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   */
+  public static void checkNumericValues (@Nonnull final InvoiceType aUBLInvoice,
+                                         @Nonnull final TransformationErrorList aTransformationErrorList)
+  {
+    if (aTransformationErrorList.getNumericLimits () == null)
+      return;
+
+    checkNumericValues (aUBLInvoice.getTaxTotal (),
+                        aUBLInvoice.getAllowanceCharge (),
+                        aUBLInvoice.getLegalMonetaryTotal (),
+                        aTransformationErrorList);
+
+    int nPaymentTermsIndex = 0;
+    for (final PaymentTermsType aUBLPaymentTerms : aUBLInvoice.getPaymentTerms ())
+    {
+      checkNumericValue (aUBLPaymentTerms.getSettlementDiscountPercentValue (),
+                         aTransformationErrorList,
+                         "PaymentTerms[*]/SettlementDiscountPercent",
+                         nPaymentTermsIndex);
+      checkNumericValue (aUBLPaymentTerms.getPenaltySurchargePercentValue (),
+                         aTransformationErrorList,
+                         "PaymentTerms[*]/PenaltySurchargePercent",
+                         nPaymentTermsIndex);
+      checkNumericValue (aUBLPaymentTerms.getAmountValue (),
+                         aTransformationErrorList,
+                         "PaymentTerms[*]/Amount",
+                         nPaymentTermsIndex);
+      ++nPaymentTermsIndex;
+    }
+  }
+
+  /**
+   * Check all numeric values of a single invoice line against the
+   * {@link NumericLimits} of the passed error list, if any.
+   *
+   * @param aUBLLine
+   *        The UBL invoice line to check
+   * @param nLineIndex
+   *        The 0-based index of the line within the invoice.
+   * @param aTransformationErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return {@link ESuccess#FAILURE} if at least one value exceeds the limits.
+   *         In this case no arithmetic must be performed on this line.
+   */
+  @Nonnull
+  public static ESuccess checkNumericValues (@Nonnull final InvoiceLineType aUBLLine,
+                                             final int nLineIndex,
+                                             @Nonnull final TransformationErrorList aTransformationErrorList)
+  {
+    if (aTransformationErrorList.getNumericLimits () == null)
+      return ESuccess.SUCCESS;
+
+    final int nErrorCount = aTransformationErrorList.getErrorCount ();
+    checkNumericValue (aUBLLine.getInvoicedQuantityValue (),
+                       aTransformationErrorList,
+                       "InvoiceLine[*]/InvoicedQuantity",
+                       nLineIndex);
+    checkNumericValue (aUBLLine.getLineExtensionAmountValue (),
+                       aTransformationErrorList,
+                       "InvoiceLine[*]/LineExtensionAmount",
+                       nLineIndex);
+    if (aUBLLine.getPrice () != null)
+    {
+      checkNumericValue (aUBLLine.getPrice ().getPriceAmountValue (),
+                         aTransformationErrorList,
+                         "InvoiceLine[*]/Price/PriceAmount",
+                         nLineIndex);
+      checkNumericValue (aUBLLine.getPrice ().getBaseQuantityValue (),
+                         aTransformationErrorList,
+                         "InvoiceLine[*]/Price/BaseQuantity",
+                         nLineIndex);
+    }
+
+    int nAllowanceChargeIndex = 0;
+    for (final AllowanceChargeType aUBLAllowanceCharge : aUBLLine.getAllowanceCharge ())
+    {
+      checkNumericValue (aUBLAllowanceCharge.getAmountValue (),
+                         aTransformationErrorList,
+                         "InvoiceLine[*]/AllowanceCharge[*]/Amount",
+                         nLineIndex,
+                         nAllowanceChargeIndex);
+      checkNumericValue (aUBLAllowanceCharge.getBaseAmountValue (),
+                         aTransformationErrorList,
+                         "InvoiceLine[*]/AllowanceCharge[*]/BaseAmount",
+                         nLineIndex,
+                         nAllowanceChargeIndex);
+      checkNumericValue (aUBLAllowanceCharge.getMultiplierFactorNumericValue (),
+                         aTransformationErrorList,
+                         "InvoiceLine[*]/AllowanceCharge[*]/MultiplierFactorNumeric",
+                         nLineIndex,
+                         nAllowanceChargeIndex);
+      ++nAllowanceChargeIndex;
+    }
+
+    if (aUBLLine.getItem () != null)
+    {
+      int nTaxCategoryIndex = 0;
+      for (final TaxCategoryType aUBLTaxCategory : aUBLLine.getItem ().getClassifiedTaxCategory ())
+      {
+        checkNumericValue (aUBLTaxCategory.getPercentValue (),
+                           aTransformationErrorList,
+                           "InvoiceLine[*]/Item/ClassifiedTaxCategory[*]/Percent",
+                           nLineIndex,
+                           nTaxCategoryIndex);
+        ++nTaxCategoryIndex;
+      }
+    }
+
+    int nTaxTotalIndex = 0;
+    for (final TaxTotalType aUBLTaxTotal : aUBLLine.getTaxTotal ())
+    {
+      int nTaxSubtotalIndex = 0;
+      for (final TaxSubtotalType aUBLSubtotal : aUBLTaxTotal.getTaxSubtotal ())
+      {
+        if (aUBLSubtotal.getTaxCategory () != null)
+          checkNumericValue (aUBLSubtotal.getTaxCategory ().getPercentValue (),
+                             aTransformationErrorList,
+                             "InvoiceLine[*]/TaxTotal[*]/TaxSubtotal[*]/TaxCategory/Percent",
+                             nLineIndex,
+                             nTaxTotalIndex,
+                             nTaxSubtotalIndex);
+        ++nTaxSubtotalIndex;
       }
+      ++nTaxTotalIndex;
     }
+    return ESuccess.valueOf (aTransformationErrorList.getErrorCount () == nErrorCount);
   }
 }
@@ -19,10 +19,9 @@ package at.gv.brz.transform.ubl2ebi.invoice;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -77,9 +76,18 @@ import com.helger.ubl21.codelist.EPaymentMeansCode21;
 import com.helger.ubl21.codelist.EUnitOfMeasureCode21;
 import com.helger.validation.error.ErrorList;
 
+import at.gv.brz.transform.ubl2ebi.EUBLDocumentType;
+import at.gv.brz.transform.ubl2ebi.EbInterface41CodeListHelper;
+import at.gv.brz.transform.ubl2ebi.EbInterface41ConverterRegistry;
 import at.gv.brz.transform.ubl2ebi.EbInterface41Helper;
-import at.gv.brz.transform.ubl2ebi.helper.SchemedID;
-import at.gv.brz.transform.ubl2ebi.helper.TaxCategoryKey;
+import at.gv.brz.transform.ubl2ebi.IEbiListLineItemHandler;
+import at.gv.brz.transform.ubl2ebi.ParallelLineConversion;
+import at.gv.brz.transform.ubl2ebi.error.ErrorLocation;
+import at.gv.brz.transform.ubl2ebi.error.TransformationErrorList;
+import at.gv.brz.transform.ubl2ebi.helper.TaxCategoryIndex;
+import at.gv.brz.transform.ubl2ebi.metrics.ConversionMetricsRecorder;
+import at.gv.brz.transform.ubl2ebi.metrics.EConversionStage;
+import at.gv.brz.transform.ubl2ebi.metrics.IConversionMetricsListener;
 import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.AllowanceChargeType;
 import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.CustomerPartyType;
 import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.DeliveryType;
@@ -109,6 +117,11 @@ import oasis.names.specification.ubl.schema.xsd.invoice_21.InvoiceType;
 /**
  * Main converter between UBL 2.1 invoice and ebInterface 4.1 invoice.
  *
+ * Instances are immutable and no state is kept between calls of
+ * <code>convertToEbInterface</code>, so a single instance can be used by
+ * multiple threads concurrently. Use {@link EbInterface41ConverterRegistry} to
+ * get shared instances.
+ *
  * @author philip
  */
 @Immutable
@@ -135,6 +148,94 @@ public final class InvoiceToEbInterface41Converter extends AbstractInvoiceConver
     super (aDisplayLocale, aContentLocale, bStrictERBMode);
   }
 
+  /**
+   * Constructor
+   *
+   * @param aDisplayLocale
+   *        The locale for error messages. May not be <code>null</code>.
+   * @param aContentLocale
+   *        The locale for the created ebInterface files. May not be
+   *        <code>null</code>.
+   * @param bStrictERBMode
+   *        <code>true</code> if E-RECHNUNG.GV.AT specific checks should be
+   *        performed
+   * @param aParallelLineConversion
+   *        The settings for the parallel conversion of lines. May be
+   *        <code>null</code> to convert all lines sequentially.
+   */
+  public InvoiceToEbInterface41Converter (@Nonnull final Locale aDisplayLocale,
+                                          @Nonnull final Locale aContentLocale,
+                                          final boolean bStrictERBMode,
+                                          @Nullable final ParallelLineConversion aParallelLineConversion)
+  {
+    super (aDisplayLocale, aContentLocale, bStrictERBMode, aParallelLineConversion);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param aDisplayLocale
+   *        The locale for error messages. May not be <code>null</code>.
+   * @param aContentLocale
+   *        The locale for the created ebInterface files. May not be
+   *        <code>null</code>.
+   * @param bStrictERBMode
+   *        <code>true</code> if E-RECHNUNG.GV.AT specific checks should be
+   *        performed
+   * @param aParallelLineConversion
+   *        The settings for the parallel conversion of lines. May be
+   *        <code>null</code> to convert all lines sequentially.
+   * @param aMetricsListener
+   *        The listener for the timings and counts of each conversion. May be
+   *        <code>null</code> if no metrics are needed.
+   */
+  public InvoiceToEbInterface41Converter (@Nonnull final Locale aDisplayLocale,
+                                          @Nonnull final Locale aContentLocale,
+                                          final boolean bStrictERBMode,
+                                          @Nullable final ParallelLineConversion aParallelLineConversion,
+                                          @Nullable final IConversionMetricsListener aMetricsListener)
+  {
+    super (aDisplayLocale, aContentLocale, bStrictERBMode, aParallelLineConversion, aMetricsListener);
+  }
+
+  /**
+   * Converts the lines of a single invoice. Only refers to read-only data of
+   * the invoice header, so it may be used concurrently.
+   */
+  private final class InvoiceLineConverter implements ParallelLineConversion.ILineConverter <InvoiceLineType>
+  {
+    private final TaxCategoryIndex m_aTaxCategoryIndex;
+    private final String m_sUBLHeaderOrderReferenceID;
+    private final CustomerPartyType m_aUBLCustomer;
+
+    InvoiceLineConverter (@Nonnull final TaxCategoryIndex aTaxCategoryIndex,
+                          @Nullable final String sUBLHeaderOrderReferenceID,
+                          @Nonnull final CustomerPartyType aUBLCustomer)
+    {
+      m_aTaxCategoryIndex = aTaxCategoryIndex;
+      m_sUBLHeaderOrderReferenceID = sUBLHeaderOrderReferenceID;
+      m_aUBLCustomer = aUBLCustomer;
+    }
+
+    @Nullable
+    public Ebi41ListLineItemType convertLine (@Nonnull final InvoiceLineType aUBLLine,
+                                              final int nLineIndex,
+                                              @Nonnull final TransformationErrorList aTransformationErrorList)
+    {
+      if (checkNumericValues (aUBLLine, nLineIndex, aTransformationErrorList).isFailure ())
+      {
+        // Don't perform any arithmetic on this line
+        return null;
+      }
+      return _convertLine (aUBLLine,
+                           nLineIndex,
+                           m_aTaxCategoryIndex,
+                           m_sUBLHeaderOrderReferenceID,
+                           m_aUBLCustomer,
+                           aTransformationErrorList);
+    }
+  }
+
   private static void _setPaymentMeansComment (@Nonnull final PaymentMeansType aUBLPaymentMeans,
                                                @Nonnull final Ebi41PaymentMethodType aEbiPaymentMethod)
   {
@@ -153,7 +254,7 @@ public final class InvoiceToEbInterface41Converter extends AbstractInvoiceConver
   }
 
   private void _convertPayment (@Nonnull final InvoiceType aUBLDoc,
-                                @Nonnull final ErrorList aTransformationErrorList,
+                                @Nonnull final TransformationErrorList aTransformationErrorList,
                                 @Nonnull final Ebi41InvoiceType aEbiDoc)
   {
     final Ebi41PaymentMethodType aEbiPaymentMethod = new Ebi41PaymentMethodType ();
@@ -191,13 +292,11 @@ public final class InvoiceToEbInterface41Converter extends AbstractInvoiceConver
                 if (sUBLPaymentID.length () > PAYMENT_REFERENCE_MAX_LENGTH)
                 {
                   // Reference
-                  aTransformationErrorList.addWarning ("PaymentMeans[" +
-                                                       nPaymentMeansIndex +
-                                                       "]/PaymentID[" +
-                                                       nPaymentIDIndex +
-                                                       "]",
-                                                       EText.PAYMENT_ID_TOO_LONG_CUT.getDisplayTextWithArgs (m_aDisplayLocale,
-                                                                                                             sUBLPaymentID));
+                  aTransformationErrorList.addWarning (ErrorLocation.create ("PaymentMeans[*]/PaymentID[*]",
+                                                                             nPaymentMeansIndex,
+                                                                             nPaymentIDIndex),
+                                                       EText.PAYMENT_ID_TOO_LONG_CUT,
+                                                       sUBLPaymentID);
                   sUBLPaymentID = sUBLPaymentID.substring (0, PAYMENT_REFERENCE_MAX_LENGTH);
                 }
 
@@ -224,10 +323,10 @@ public final class InvoiceToEbInterface41Converter extends AbstractInvoiceConver
 
               if (StringHelper.hasNoText (sBIC) || !RegExHelper.stringMatchesPattern (REGEX_BIC, sBIC))
               {
-                aTransformationErrorList.addError ("PaymentMeans[" +
-                                                   nPaymentMeansIndex +
-                                                   "]/PayeeFinancialAccount/FinancialInstitutionBranch/FinancialInstitution/ID",
-                                                   EText.BIC_INVALID.getDisplayTextWithArgs (m_aDisplayLocale, sBIC));
+                aTransformationErrorList.addError (ErrorLocation.create ("PaymentMeans[*]/PayeeFinancialAccount/FinancialInstitutionBranch/FinancialInstitution/ID",
+                                                                         nPaymentMeansIndex),
+                                                   EText.BIC_INVALID,
+                                                   sBIC);
                 aEbiAccount.setBIC (null);
               }
             }
@@ -237,12 +336,11 @@ public final class InvoiceToEbInterface41Converter extends AbstractInvoiceConver
             aEbiAccount.setIBAN (sIBAN);
             if (StringHelper.getLength (sIBAN) > IBAN_MAX_LENGTH)
             {
-              aTransformationErrorList.addWarning ("PaymentMeans[" +
-                                                   nPaymentMeansIndex +
-                                                   "]/PayeeFinancialAccount/ID",
-                                                   EText.IBAN_TOO_LONG.getDisplayTextWithArgs (m_aDisplayLocale,
-                                                                                               sIBAN,
-                                                                                               Integer.valueOf (IBAN_MAX_LENGTH)));
+              aTransformationErrorList.addWarning (ErrorLocation.create ("PaymentMeans[*]/PayeeFinancialAccount/ID",
+                                                                         nPaymentMeansIndex),
+                                                   EText.IBAN_TOO_LONG,
+                                                   sIBAN,
+                                                   Integer.valueOf (IBAN_MAX_LENGTH));
               aEbiAccount.setIBAN (sIBAN.substring (0, IBAN_MAX_LENGTH));
             }
 
@@ -279,11 +377,9 @@ public final class InvoiceToEbInterface41Converter extends AbstractInvoiceConver
             break;
           }
 
-          aTransformationErrorList.addWarning ("PaymentMeans[" +
-                                               nPaymentMeansIndex +
-                                               "]",
-                                               EText.PAYMENTMEANS_UNSUPPORTED_CHANNELCODE.getDisplayTextWithArgs (m_aDisplayLocale,
-                                                                                                                  sPaymentChannelCode));
+          aTransformationErrorList.addWarning (ErrorLocation.create ("PaymentMeans[*]", nPaymentMeansIndex),
+                                               EText.PAYMENTMEANS_UNSUPPORTED_CHANNELCODE,
+                                               sPaymentChannelCode);
         }
         else
           if (ePaymentMeans == EPaymentMeansCode21._49)
@@ -312,13 +408,11 @@ public final class InvoiceToEbInterface41Converter extends AbstractInvoiceConver
               break;
             }
 
-            aTransformationErrorList.addError ("PaymentMeans[" +
-                                               nPaymentMeansIndex +
-                                               "]",
-                                               EText.PAYMENTMEANS_CODE_INVALID.getDisplayTextWithArgs (m_aDisplayLocale,
-                                                                                                       ePaymentMeans.getID (),
-                                                                                                       EPaymentMeansCode21._31.getID (),
-                                                                                                       EPaymentMeansCode21._49.getID ()));
+            aTransformationErrorList.addError (ErrorLocation.create ("PaymentMeans[*]", nPaymentMeansIndex),
+                                               EText.PAYMENTMEANS_CODE_INVALID,
+                                               ePaymentMeans.getID (),
+                                               EPaymentMeansCode21._31.getID (),
+                                               EPaymentMeansCode21._49.getID ());
           }
 
         ++nPaymentMeansIndex;
@@ -328,7 +422,7 @@ public final class InvoiceToEbInterface41Converter extends AbstractInvoiceConver
     if (m_bStrictERBMode)
     {
       if (aEbiDoc.getPaymentMethod () == null)
-        aTransformationErrorList.addError ("Invoice", EText.ERB_NO_PAYMENT_METHOD.getDisplayText (m_aDisplayLocale));
+        aTransformationErrorList.addError (ErrorLocation.create ("Invoice"), EText.ERB_NO_PAYMENT_METHOD);
     }
 
     // Payment terms
@@ -342,10 +436,9 @@ public final class InvoiceToEbInterface41Converter extends AbstractInvoiceConver
           if (aUBLPaymentTerms.getSettlementPeriod () == null ||
               aUBLPaymentTerms.getSettlementPeriod ().getEndDate () == null)
           {
-            aTransformationErrorList.addWarning ("PaymentTerms[" +
-                                                 nPaymentTermsIndex +
-                                                 "]/SettlementPeriod",
-                                                 EText.SETTLEMENT_PERIOD_MISSING.getDisplayText (m_aDisplayLocale));
+            aTransformationErrorList.addWarning (ErrorLocation.create ("PaymentTerms[*]/SettlementPeriod",
+                                                                       nPaymentTermsIndex),
+                                                 EText.SETTLEMENT_PERIOD_MISSING);
           }
           else
           {
@@ -368,10 +461,8 @@ public final class InvoiceToEbInterface41Converter extends AbstractInvoiceConver
         else
           if (aUBLPaymentTerms.getPenaltySurchargePercent () != null)
           {
-            aTransformationErrorList.addWarning ("PaymentTerms[" +
-                                                 nPaymentTermsIndex +
-                                                 "]",
-                                                 EText.PENALTY_NOT_ALLOWED.getDisplayText (m_aDisplayLocale));
+            aTransformationErrorList.addWarning (ErrorLocation.create ("PaymentTerms[*]", nPaymentTermsIndex),
+                                                 EText.PENALTY_NOT_ALLOWED);
           }
 
         ++nPaymentTermsIndex;
@@ -385,8 +476,8 @@ public final class InvoiceToEbInterface41Converter extends AbstractInvoiceConver
     {
       // ebInterface requires due date
       if (aEbiPaymentConditions.hasDiscountEntries ())
-        aTransformationErrorList.addError ("PaymentMeans/PaymentDueDate",
-                                           EText.DISCOUNT_WITHOUT_DUEDATE.getDisplayTextWithArgs (m_aDisplayLocale));
+        aTransformationErrorList.addError (ErrorLocation.create ("PaymentMeans/PaymentDueDate"),
+                                           EText.DISCOUNT_WITHOUT_DUEDATE);
     }
     else
     {
@@ -395,6 +486,293 @@ public final class InvoiceToEbInterface41Converter extends AbstractInvoiceConver
     }
   }
 
+  /**
+   * Convert a single invoice line. This method does not touch any state apart
+   * from the passed error list.
+   *
+   * @param aUBLLine
+   *        The UBL invoice line to convert. May not be <code>null</code>.
+   * @param nLineIndex
+   *        The 0-based index of the line within the invoice.
+   * @param aTaxCategoryIndex
+   *        The tax category index from the tax totals.
+   * @param sUBLHeaderOrderReferenceID
+   *        The order reference ID of the document header. May be
+   *        <code>null</code>.
+   * @param aUBLCustomer
+   *        The accounting customer party of the document.
+   * @param aTransformationErrorList
+   *        The error list to be filled.
+   * @return The created ebInterface line item. Never <code>null</code>.
+   */
+  @Nonnull
+  private Ebi41ListLineItemType _convertLine (@Nonnull final InvoiceLineType aUBLLine,
+                                              final int nLineIndex,
+                                              @Nonnull final TaxCategoryIndex aTaxCategoryIndex,
+                                              @Nullable final String sUBLHeaderOrderReferenceID,
+                                              @Nonnull final CustomerPartyType aUBLCustomer,
+                                              @Nonnull final TransformationErrorList aTransformationErrorList)
+  {
+    // Try to resolve tax category
+    TaxCategoryType aUBLTaxCategory = CollectionHelper.getSafe (aUBLLine.getItem ().getClassifiedTaxCategory (), 0);
+    if (aUBLTaxCategory == null)
+    {
+      // No direct tax category -> check if it is somewhere in the tax total
+      outer: for (final TaxTotalType aUBLTaxTotal : aUBLLine.getTaxTotal ())
+        for (final TaxSubtotalType aUBLTaxSubTotal : aUBLTaxTotal.getTaxSubtotal ())
+        {
+          // Only handle VAT items
+          if (SUPPORTED_TAX_SCHEME_ID.getID ()
+                                     .equals (aUBLTaxSubTotal.getTaxCategory ().getTaxScheme ().getIDValue ()))
+          {
+            // We found one -> just use it
+            aUBLTaxCategory = aUBLTaxSubTotal.getTaxCategory ();
+            break outer;
+          }
+        }
+    }
+
+    // Try to resolve tax percentage
+    BigDecimal aUBLPercent = null;
+    if (aUBLTaxCategory != null)
+    {
+      // Specified at tax category?
+      if (aUBLTaxCategory.getPercent () != null)
+        aUBLPercent = aUBLTaxCategory.getPercentValue ();
+
+      if (aUBLPercent == null)
+      {
+        // Not specified - check from the tax totals
+        aUBLPercent = aTaxCategoryIndex.getPercentage (aUBLTaxCategory);
+      }
+    }
+    if (aUBLPercent == null)
+    {
+      aUBLPercent = BigDecimal.ZERO;
+      aTransformationErrorList.addWarning (ErrorLocation.create ("InvoiceLine[*]/Item/ClassifiedTaxCategory",
+                                                                 nLineIndex),
+                                           EText.DETAILS_TAX_PERCENTAGE_NOT_FOUND,
+                                           aUBLPercent);
+    }
+
+    // Start creating ebInterface line
+    final Ebi41ListLineItemType aEbiListLineItem = new Ebi41ListLineItemType ();
+
+    // Invoice line number
+    final String sUBLPositionNumber = StringHelper.trim (aUBLLine.getIDValue ());
+    BigInteger aUBLPositionNumber = StringParser.parseBigInteger (sUBLPositionNumber);
+    if (aUBLPositionNumber == null)
+    {
+      aUBLPositionNumber = BigInteger.valueOf (nLineIndex + 1);
+      aTransformationErrorList.addWarning (ErrorLocation.create ("InvoiceLine[*]/ID", nLineIndex),
+                                           EText.DETAILS_INVALID_POSITION,
+                                           sUBLPositionNumber,
+                                           aUBLPositionNumber);
+    }
+    aEbiListLineItem.setPositionNumber (aUBLPositionNumber);
+
+    // Descriptions
+    for (final DescriptionType aUBLDescription : aUBLLine.getItem ().getDescription ())
+      aEbiListLineItem.getDescription ().add (StringHelper.trim (aUBLDescription.getValue ()));
+    if (aEbiListLineItem.getDescription ().isEmpty ())
+    {
+      // Use item name as description
+      final NameType aUBLName = aUBLLine.getItem ().getName ();
+      if (aUBLName != null)
+        aEbiListLineItem.getDescription ().add (StringHelper.trim (aUBLName.getValue ()));
+    }
+
+    // Quantity
+    final Ebi41UnitType aEbiQuantity = new Ebi41UnitType ();
+    if (aUBLLine.getInvoicedQuantity () != null)
+    {
+      // Unit code is optional
+      if (aUBLLine.getInvoicedQuantity ().getUnitCode () != null)
+        aEbiQuantity.setUnit (StringHelper.trim (aUBLLine.getInvoicedQuantity ().getUnitCode ()));
+      aEbiQuantity.setValue (aUBLLine.getInvoicedQuantityValue ());
+    }
+    if (aEbiQuantity.getUnit () == null)
+    {
+      // ebInterface requires a quantity!
+      aEbiQuantity.setUnit (EUnitOfMeasureCode21.C62.getID ());
+      aTransformationErrorList.addWarning (ErrorLocation.create ("InvoiceLine[*]/InvoicedQuantity/UnitCode",
+                                                                 nLineIndex),
+                                           EText.DETAILS_INVALID_UNIT,
+                                           aEbiQuantity.getUnit ());
+    }
+    if (aEbiQuantity.getValue () == null)
+    {
+      aEbiQuantity.setValue (BigDecimal.ONE);
+      aTransformationErrorList.addWarning (ErrorLocation.create ("InvoiceLine[*]/InvoicedQuantity", nLineIndex),
+                                           EText.DETAILS_INVALID_QUANTITY,
+                                           aEbiQuantity.getValue ());
+    }
+    aEbiListLineItem.setQuantity (aEbiQuantity);
+
+    // Unit price
+    if (aUBLLine.getPrice () != null)
+    {
+      final Ebi41UnitPriceType aEbiUnitPrice = new Ebi41UnitPriceType ();
+      // Unit price = priceAmount/baseQuantity (mandatory)
+      final BigDecimal aUBLPriceAmount = aUBLLine.getPrice ().getPriceAmountValue ();
+      aEbiUnitPrice.setValue (aUBLPriceAmount);
+      // If no base quantity is present, assume 1 (optional)
+      final BigDecimal aUBLBaseQuantity = aUBLLine.getPrice ().getBaseQuantityValue ();
+      if (aUBLBaseQuantity != null)
+      {
+        aEbiUnitPrice.setBaseQuantity (aUBLBaseQuantity);
+        if (MathHelper.isEqualToZero (aUBLBaseQuantity))
+          aEbiUnitPrice.setValue (BigDecimal.ZERO);
+      }
+      aEbiListLineItem.setUnitPrice (aEbiUnitPrice);
+    }
+    else
+    {
+      // Unit price = lineExtensionAmount / quantity (mandatory)
+      final BigDecimal aUBLLineExtensionAmount = aUBLLine.getLineExtensionAmountValue ();
+      final Ebi41UnitPriceType aEbiUnitPrice = new Ebi41UnitPriceType ();
+      if (MathHelper.isEqualToZero (aEbiQuantity.getValue ()))
+        aEbiUnitPrice.setValue (BigDecimal.ZERO);
+      else
+        aEbiUnitPrice.setValue (aUBLLineExtensionAmount.divide (aEbiQuantity.getValue (),
+                                                                SCALE_PRICE4,
+                                                                ROUNDING_MODE));
+      aEbiListLineItem.setUnitPrice (aEbiUnitPrice);
+    }
+
+    BigDecimal aEbiUnitPriceValue = aEbiListLineItem.getUnitPrice ().getValue ();
+    if (aEbiListLineItem.getUnitPrice ().getBaseQuantity () != null)
+      aEbiUnitPriceValue = aEbiUnitPriceValue.divide (aEbiListLineItem.getUnitPrice ().getBaseQuantity (),
+                                                      SCALE_PRICE4,
+                                                      ROUNDING_MODE);
+
+    // Tax rate (mandatory)
+    final Ebi41VATRateType aEbiVATRate = new Ebi41VATRateType ();
+    aEbiVATRate.setValue (aUBLPercent);
+    if (aUBLTaxCategory != null)
+                                 // Optional
+                                 if (false)
+        aEbiVATRate.setTaxCode (aUBLTaxCategory.getIDValue ());
+    aEbiListLineItem.setVATRate (aEbiVATRate);
+
+    // Line item amount (quantity * unit price +- reduction / surcharge)
+    aEbiListLineItem.setLineItemAmount (aUBLLine.getLineExtensionAmountValue ().setScale (SCALE_PRICE2,
+                                                                                          ROUNDING_MODE));
+
+
+    // Order reference per line
+    for (final OrderLineReferenceType aUBLOrderLineReference : aUBLLine.getOrderLineReference ())
+      if (StringHelper.hasText (aUBLOrderLineReference.getLineIDValue ()))
+      {
+        final Ebi41OrderReferenceDetailType aEbiOrderRefDetail = new Ebi41OrderReferenceDetailType ();
+
+        // order reference
+        String sUBLLineOrderReferenceID = null;
+        if (aUBLOrderLineReference.getOrderReference () != null)
+          sUBLLineOrderReferenceID = StringHelper.trim (aUBLOrderLineReference.getOrderReference ().getIDValue ());
+        if (StringHelper.hasNoText (sUBLLineOrderReferenceID))
+        {
+          // Use the global order reference from header level
+          sUBLLineOrderReferenceID = sUBLHeaderOrderReferenceID;
+        }
+        aEbiOrderRefDetail.setOrderID (sUBLLineOrderReferenceID);
+
+        // Order position number
+        final String sOrderPosNumber = StringHelper.trim (aUBLOrderLineReference.getLineIDValue ());
+        if (sOrderPosNumber != null)
+        {
+          if (sOrderPosNumber.length () == 0)
+          {
+            aTransformationErrorList.addError (ErrorLocation.create ("InvoiceLine[*]/OrderLineReference/LineID",
+                                                                     nLineIndex),
+                                               EText.ORDERLINE_REF_ID_EMPTY);
+          }
+          else
+          {
+            aEbiOrderRefDetail.setOrderPositionNumber (sOrderPosNumber);
+          }
+        }
+        aEbiListLineItem.setInvoiceRecipientsOrderReference (aEbiOrderRefDetail);
+        break;
+      }
+
+    // Reduction and surcharge
+    if (aUBLLine.hasAllowanceChargeEntries ())
+    {
+      // Start with quantity*unitPrice for base amount
+      BigDecimal aEbiBaseAmount = aEbiListLineItem.getQuantity ().getValue ().multiply (aEbiUnitPriceValue);
+      final Ebi41ReductionAndSurchargeListLineItemDetailsType aEbiRSDetails = new Ebi41ReductionAndSurchargeListLineItemDetailsType ();
+
+      // ebInterface can handle only Reduction or only Surcharge
+      ETriState eSurcharge = ETriState.UNDEFINED;
+      for (final AllowanceChargeType aUBLAllowanceCharge : aUBLLine.getAllowanceCharge ())
+      {
+        final boolean bItemIsSurcharge = aUBLAllowanceCharge.getChargeIndicator ().isValue ();
+
+        // Remember for next item
+        if (eSurcharge.isUndefined ())
+          eSurcharge = ETriState.valueOf (bItemIsSurcharge);
+        final boolean bSwapSigns = bItemIsSurcharge != eSurcharge.isTrue ();
+
+        final Ebi41ReductionAndSurchargeBaseType aEbiRSItem = new Ebi41ReductionAndSurchargeBaseType ();
+        // Amount is mandatory
+        final BigDecimal aAmount = aUBLAllowanceCharge.getAmountValue ();
+        aEbiRSItem.setAmount (bSwapSigns ? aAmount.negate () : aAmount);
+
+        // Base amount is optional
+        if (aUBLAllowanceCharge.getBaseAmount () != null)
+          aEbiRSItem.setBaseAmount (aUBLAllowanceCharge.getBaseAmountValue ());
+        if (aEbiRSItem.getBaseAmount () == null)
+          aEbiRSItem.setBaseAmount (aEbiBaseAmount);
+
+        if (aUBLAllowanceCharge.getMultiplierFactorNumeric () != null)
+        {
+          // Percentage is optional
+          final BigDecimal aPerc = aUBLAllowanceCharge.getMultiplierFactorNumericValue ()
+                                                      .multiply (CGlobal.BIGDEC_100);
+          aEbiRSItem.setPercentage (bSwapSigns ? aPerc.negate () : aPerc);
+        }
+
+        if (eSurcharge.isTrue ())
+        {
+          aEbiRSDetails.getReductionListLineItemOrSurchargeListLineItemOrOtherVATableTaxListLineItem ()
+                       .add (new ObjectFactory ().createSurchargeListLineItem (aEbiRSItem));
+          aEbiBaseAmount = aEbiBaseAmount.add (aEbiRSItem.getAmount ());
+        }
+        else
+        {
+          aEbiRSDetails.getReductionListLineItemOrSurchargeListLineItemOrOtherVATableTaxListLineItem ()
+                       .add (new ObjectFactory ().createReductionListLineItem (aEbiRSItem));
+          aEbiBaseAmount = aEbiBaseAmount.subtract (aEbiRSItem.getAmount ());
+        }
+
+        aEbiRSItem.setComment (getAllowanceChargeComment (aUBLAllowanceCharge));
+      }
+      aEbiListLineItem.setReductionAndSurchargeListLineItemDetails (aEbiRSDetails);
+    }
+
+    // Delivery per line item
+    if (aUBLLine.getDeliveryCount () > 0)
+    {
+      // Delivery address
+      final int nDeliveryIndex = 0;
+      final DeliveryType aUBLDelivery = aUBLLine.getDeliveryAtIndex (0);
+
+      if (aUBLDelivery.getActualDeliveryDate () != null)
+      {
+        final Ebi41DeliveryType aEbiDelivery = EbInterface41Helper.convertDelivery (aUBLDelivery,
+                                                                                    ErrorLocation.create ("InvoiceLine[*]/Delivery[*]",
+                                                                                                          nLineIndex,
+                                                                                                          nDeliveryIndex),
+                                                                                    aUBLCustomer,
+                                                                                    aTransformationErrorList,
+                                                                                    m_aContentLocale);
+        aEbiListLineItem.setDelivery (aEbiDelivery);
+      }
+    }
+    return aEbiListLineItem;
+  }
+
   /**
    * Main conversion method to convert from UBL to ebInterface 4.1
    *
@@ -410,15 +788,138 @@ public final class InvoiceToEbInterface41Converter extends AbstractInvoiceConver
                                                 @Nonnull final ErrorList aTransformationErrorList)
   {
     ValueEnforcer.notNull (aUBLDoc, "UBLInvoice");
+    return convertToEbInterface (aUBLDoc, aUBLDoc.getInvoiceLine ().iterator (), null, aTransformationErrorList);
+  }
+
+  /**
+   * Main conversion method to convert from UBL to ebInterface 4.1 that
+   * collects the errors without rendering their texts.
+   *
+   * @param aUBLDoc
+   *        The UBL invoice to be converted
+   * @param aTransformationErrorList
+   *        Error list. Must be empty!
+   * @return The created ebInterface 4.1 document or <code>null</code> in case
+   *         of a severe error.
+   */
+  @Nullable
+  public Ebi41InvoiceType convertToEbInterface (@Nonnull final InvoiceType aUBLDoc,
+                                                @Nonnull final TransformationErrorList aTransformationErrorList)
+  {
+    ValueEnforcer.notNull (aUBLDoc, "UBLInvoice");
+    return convertToEbInterface (aUBLDoc, aUBLDoc.getInvoiceLine ().iterator (), null, aTransformationErrorList);
+  }
+
+  /**
+   * Conversion method to convert from UBL to ebInterface 4.1 where the invoice
+   * lines are provided separately from the header. All errors are rendered
+   * into the passed {@link ErrorList} using the display locale of this
+   * converter.
+   *
+   * @param aUBLDoc
+   *        The UBL invoice header to be converted. Invoice lines contained in
+   *        this object are ignored.
+   * @param aUBLLines
+   *        The iterator over all invoice lines in document order.
+   * @param aLineItemHandler
+   *        An optional handler for the converted line items. May be
+   *        <code>null</code>.
+   * @param aTransformationErrorList
+   *        Error list. Must be empty!
+   * @return The created ebInterface 4.1 document or <code>null</code> in case
+   *         of a severe error.
+   * @see #convertToEbInterface(InvoiceType, Iterator, IEbiListLineItemHandler,
+   *      TransformationErrorList)
+   */
+  @Nullable
+  public Ebi41InvoiceType convertToEbInterface (@Nonnull final InvoiceType aUBLDoc,
+                                                @Nonnull final Iterator <? extends InvoiceLineType> aUBLLines,
+                                                @Nullable final IEbiListLineItemHandler aLineItemHandler,
+                                                @Nonnull final ErrorList aTransformationErrorList)
+  {
+    ValueEnforcer.notNull (aTransformationErrorList, "TransformationErrorList");
+    if (!aTransformationErrorList.isEmpty ())
+      throw new IllegalArgumentException ("TransformationErrorList must be empty!");
+
+    final TransformationErrorList aErrorList = new TransformationErrorList ();
+    final Ebi41InvoiceType ret = convertToEbInterface (aUBLDoc, aUBLLines, aLineItemHandler, aErrorList);
+    aErrorList.fillErrorList (aTransformationErrorList, m_aDisplayLocale);
+    return ret;
+  }
+
+  /**
+   * Conversion method to convert from UBL to ebInterface 4.1 where the invoice
+   * lines are provided separately from the header. Each line is converted as
+   * soon as it is retrieved from the iterator and is not referenced afterwards,
+   * so this method can be used to convert invoices that are read in a
+   * streaming way.
+   *
+   * @param aUBLDoc
+   *        The UBL invoice header to be converted. Invoice lines contained in
+   *        this object are ignored.
+   * @param aUBLLines
+   *        The iterator over all invoice lines in document order. Is only
+   *        consumed if the consistency check succeeded.
+   * @param aLineItemHandler
+   *        An optional handler for the converted line items. If present, the
+   *        line items are passed to the handler and are not added to the
+   *        returned document. May be <code>null</code>.
+   * @param aTransformationErrorList
+   *        Error list. Must be empty! If it has an error budget, the
+   *        conversion is aborted as soon as the budget is exhausted and
+   *        <code>null</code> is returned. The error list contains all errors
+   *        found until then. If it has numeric limits, values exceeding them
+   *        are reported as errors and the affected lines are skipped. By
+   *        default no numeric limits are applied.
+   * @return The created ebInterface 4.1 document or <code>null</code> in case
+   *         of a severe error.
+   */
+  @Nullable
+  public Ebi41InvoiceType convertToEbInterface (@Nonnull final InvoiceType aUBLDoc,
+                                                @Nonnull final Iterator <? extends InvoiceLineType> aUBLLines,
+                                                @Nullable final IEbiListLineItemHandler aLineItemHandler,
+                                                @Nonnull final TransformationErrorList aTransformationErrorList)
+  {
+    ValueEnforcer.notNull (aUBLDoc, "UBLInvoice");
+    ValueEnforcer.notNull (aUBLLines, "UBLLines");
     ValueEnforcer.notNull (aTransformationErrorList, "TransformationErrorList");
     if (!aTransformationErrorList.isEmpty ())
       throw new IllegalArgumentException ("TransformationErrorList must be empty!");
 
+    final ConversionMetricsRecorder aRecorder = createMetricsRecorder ();
+    final Ebi41InvoiceType ret = _convertToEbInterface (aUBLDoc,
+                                                        aRecorder.countLines (aUBLLines),
+                                                        aLineItemHandler,
+                                                        aTransformationErrorList,
+                                                        aRecorder);
+    aRecorder.onDocumentConverted (EUBLDocumentType.INVOICE,
+                                   aUBLDoc.getIDValue (),
+                                   m_bStrictERBMode,
+                                   ret != null,
+                                   aTransformationErrorList);
+    return ret;
+  }
+
+  @Nullable
+  private Ebi41InvoiceType _convertToEbInterface (@Nonnull final InvoiceType aUBLDoc,
+                                                  @Nonnull final Iterator <? extends InvoiceLineType> aUBLLines,
+                                                  @Nullable final IEbiListLineItemHandler aLineItemHandler,
+                                                  @Nonnull final TransformationErrorList aTransformationErrorList,
+                                                  @Nonnull final ConversionMetricsRecorder aRecorder)
+  {
+    aRecorder.startStage (EConversionStage.CHECK_CONSISTENCY);
     // Consistency check before starting the conversion
-    _checkConsistency (aUBLDoc, aTransformationErrorList);
+    checkConsistency (aUBLDoc, aTransformationErrorList);
     if (aTransformationErrorList.containsAtLeastOneError ())
       return null;
 
+    // Check the numeric values of the header before any arithmetic is
+    // performed
+    checkNumericValues (aUBLDoc, aTransformationErrorList);
+    if (aTransformationErrorList.containsAtLeastOneError ())
+      return null;
+
+    aRecorder.startStage (EConversionStage.HEADER);
     // Build ebInterface invoice
     final Ebi41InvoiceType aEbiDoc = new Ebi41InvoiceType ();
     aEbiDoc.setGeneratingSystem (EBI_GENERATING_SYSTEM_41);
@@ -428,27 +929,23 @@ public final class InvoiceToEbInterface41Converter extends AbstractInvoiceConver
     // have the 2letter code!
 
     final String sUBLCurrencyCode = StringHelper.trim (aUBLDoc.getDocumentCurrencyCodeValue ());
-    try
-    {
-      aEbiDoc.setInvoiceCurrency (Ebi41CurrencyType.fromValue (sUBLCurrencyCode));
-    }
-    catch (final Exception ex)
-    {
-      aTransformationErrorList.addError ("DocumentCurrencyCode",
-                                         EText.INVALID_CURRENCY_CODE.getDisplayTextWithArgs (m_aDisplayLocale,
-                                                                                             sUBLCurrencyCode));
-    }
+    final Ebi41CurrencyType eEbiCurrency = EbInterface41CodeListHelper.getCurrencyOrNull (sUBLCurrencyCode);
+    if (eEbiCurrency == null)
+      aTransformationErrorList.addError (ErrorLocation.create ("DocumentCurrencyCode"),
+                                         EText.INVALID_CURRENCY_CODE,
+                                         sUBLCurrencyCode);
+    aEbiDoc.setInvoiceCurrency (eEbiCurrency);
 
     // Invoice Number
     final String sInvoiceNumber = StringHelper.trim (aUBLDoc.getIDValue ());
     if (StringHelper.hasNoText (sInvoiceNumber))
-      aTransformationErrorList.addError ("ID", EText.MISSING_INVOICE_NUMBER.getDisplayText (m_aDisplayLocale));
+      aTransformationErrorList.addError (ErrorLocation.create ("ID"), EText.MISSING_INVOICE_NUMBER);
     aEbiDoc.setInvoiceNumber (sInvoiceNumber);
 
     // Ignore the time!
     aEbiDoc.setInvoiceDate (aUBLDoc.getIssueDateValue ());
     if (aEbiDoc.getInvoiceDate () == null)
-      aTransformationErrorList.addError ("IssueDate", EText.MISSING_INVOICE_DATE.getDisplayText (m_aDisplayLocale));
+      aTransformationErrorList.addError (ErrorLocation.create ("IssueDate"), EText.MISSING_INVOICE_DATE);
 
     // Is duplicate/copy indicator?
     if (aUBLDoc.getCopyIndicator () != null)
@@ -486,8 +983,8 @@ public final class InvoiceToEbInterface41Converter extends AbstractInvoiceConver
       {
         // Required by ebInterface 4.1
         aEbiBiller.setVATIdentificationNumber ("ATU00000000");
-        aTransformationErrorList.addWarning ("AccountingSupplierParty/Party/PartyTaxScheme",
-                                             EText.BILLER_VAT_MISSING.getDisplayText (m_aDisplayLocale));
+        aTransformationErrorList.addWarning (ErrorLocation.create ("AccountingSupplierParty/Party/PartyTaxScheme"),
+                                             EText.BILLER_VAT_MISSING);
       }
       if (aUBLSupplier.getCustomerAssignedAccountID () != null)
       {
@@ -509,16 +1006,15 @@ public final class InvoiceToEbInterface41Converter extends AbstractInvoiceConver
         if (m_bStrictERBMode && StringHelper.hasNoText (aEbiBiller.getInvoiceRecipientsBillerID ()))
         {
           // Mandatory field
-          aTransformationErrorList.addError ("AccountingSupplierParty/CustomerAssignedAccountID",
-                                             EText.ERB_CUSTOMER_ASSIGNED_ACCOUNTID_MISSING.getDisplayText (m_aDisplayLocale));
+          aTransformationErrorList.addError (ErrorLocation.create ("AccountingSupplierParty/CustomerAssignedAccountID"),
+                                             EText.ERB_CUSTOMER_ASSIGNED_ACCOUNTID_MISSING);
         }
       if (aUBLSupplier.getParty () != null)
       {
         aEbiBiller.setAddress (EbInterface41Helper.convertParty (aUBLSupplier.getParty (),
-                                                                 "AccountingSupplierParty",
+                                                                 ErrorLocation.create ("AccountingSupplierParty"),
                                                                  aTransformationErrorList,
-                                                                 m_aContentLocale,
-                                                                 m_aDisplayLocale));
+                                                                 m_aContentLocale));
 
         // Ensure a fake biller email address is present
         if (StringHelper.hasNoText (aEbiBiller.getAddress ().getEmail ()))
@@ -546,8 +1042,8 @@ public final class InvoiceToEbInterface41Converter extends AbstractInvoiceConver
       {
         // Required by ebInterface 4.1
         aEbiRecipient.setVATIdentificationNumber ("ATU00000000");
-        aTransformationErrorList.addWarning ("AccountingCustomerParty/PartyTaxScheme",
-                                             EText.SUPPLIER_VAT_MISSING.getDisplayText (m_aDisplayLocale));
+        aTransformationErrorList.addWarning (ErrorLocation.create ("AccountingCustomerParty/PartyTaxScheme"),
+                                             EText.SUPPLIER_VAT_MISSING);
       }
       if (aUBLCustomer.getSupplierAssignedAccountID () != null)
       {
@@ -560,10 +1056,9 @@ public final class InvoiceToEbInterface41Converter extends AbstractInvoiceConver
 
       if (aUBLCustomer.getParty () != null)
         aEbiRecipient.setAddress (EbInterface41Helper.convertParty (aUBLCustomer.getParty (),
-                                                                    "AccountingCustomerParty",
+                                                                    ErrorLocation.create ("AccountingCustomerParty"),
                                                                     aTransformationErrorList,
-                                                                    m_aContentLocale,
-                                                                    m_aDisplayLocale));
+                                                                    m_aContentLocale));
       aEbiDoc.setInvoiceRecipient (aEbiRecipient);
     }
 
@@ -586,16 +1081,15 @@ public final class InvoiceToEbInterface41Converter extends AbstractInvoiceConver
       if (StringHelper.hasNoText (aEbiOrderingParty.getVATIdentificationNumber ()))
       {
         // Required by ebInterface 4.1
-        aTransformationErrorList.addError ("BuyerCustomerParty/PartyTaxScheme",
-                                           EText.SUPPLIER_VAT_MISSING.getDisplayText (m_aDisplayLocale));
+        aTransformationErrorList.addError (ErrorLocation.create ("BuyerCustomerParty/PartyTaxScheme"),
+                                           EText.SUPPLIER_VAT_MISSING);
       }
 
       if (aUBLBuyer.getParty () != null)
         aEbiOrderingParty.setAddress (EbInterface41Helper.convertParty (aUBLBuyer.getParty (),
-                                                                        "BuyerCustomerParty",
+                                                                        ErrorLocation.create ("BuyerCustomerParty"),
                                                                         aTransformationErrorList,
-                                                                        m_aContentLocale,
-                                                                        m_aDisplayLocale));
+                                                                        m_aContentLocale));
       aEbiDoc.setOrderingParty (aEbiOrderingParty);
     }
 
@@ -611,17 +1105,16 @@ public final class InvoiceToEbInterface41Converter extends AbstractInvoiceConver
 
       if (StringHelper.hasNoText (sUBLOrderReferenceID))
       {
-        aTransformationErrorList.addError ("OrderReference/ID",
-                                           EText.ORDER_REFERENCE_MISSING.getDisplayText (m_aDisplayLocale));
+        aTransformationErrorList.addError (ErrorLocation.create ("OrderReference/ID"), EText.ORDER_REFERENCE_MISSING);
       }
       else
       {
         if (sUBLOrderReferenceID != null && sUBLOrderReferenceID.length () > ORDER_REFERENCE_MAX_LENGTH)
         {
-          aTransformationErrorList.addWarning ("OrderReference/ID",
-                                               EText.ORDER_REFERENCE_TOO_LONG.getDisplayTextWithArgs (m_aDisplayLocale,
-                                                                                                      sUBLOrderReferenceID,
-                                                                                                      Integer.valueOf (ORDER_REFERENCE_MAX_LENGTH)));
+          aTransformationErrorList.addWarning (ErrorLocation.create ("OrderReference/ID"),
+                                               EText.ORDER_REFERENCE_TOO_LONG,
+                                               sUBLOrderReferenceID,
+                                               Integer.valueOf (ORDER_REFERENCE_MAX_LENGTH));
           sUBLOrderReferenceID = sUBLOrderReferenceID.substring (0, ORDER_REFERENCE_MAX_LENGTH);
         }
       }
@@ -645,16 +1138,20 @@ public final class InvoiceToEbInterface41Converter extends AbstractInvoiceConver
           aEbiDoc.getInvoiceRecipient ().getFurtherIdentification ().add (aEbiFurtherIdentification);
         }
     }
+    if (aTransformationErrorList.isErrorBudgetExhausted ())
+      return null;
 
+    aRecorder.startStage (EConversionStage.TAX);
     // Tax totals
-    // Map from tax category to percentage
-    final Map <TaxCategoryKey, BigDecimal> aTaxCategoryPercMap = new HashMap <TaxCategoryKey, BigDecimal> ();
+    // Index from tax category to percentage
+    final TaxCategoryIndex aTaxCategoryIndex = new TaxCategoryIndex ();
     final Ebi41TaxType aEbiTax = new Ebi41TaxType ();
     final Ebi41VATType aEbiVAT = new Ebi41VATType ();
     {
       int nTaxTotalIndex = 0;
       for (final TaxTotalType aUBLTaxTotal : aUBLDoc.getTaxTotal ())
       {
+        aRecorder.addTaxSubtotalCount (aUBLTaxTotal.getTaxSubtotal ().size ());
         int nTaxSubtotalIndex = 0;
         for (final TaxSubtotalType aUBLSubtotal : aUBLTaxTotal.getTaxSubtotal ())
         {
@@ -713,21 +1210,21 @@ public final class InvoiceToEbInterface41Converter extends AbstractInvoiceConver
 
           if (aUBLTaxCategory.getID () == null)
           {
-            aTransformationErrorList.addError ("TaxTotal[" +
-                                               nTaxTotalIndex +
-                                               "]/TaxSubtotal[" +
-                                               nTaxSubtotalIndex +
-                                               "]/TaxCategory",
-                                               EText.MISSING_TAXCATEGORY_ID.getDisplayText (m_aDisplayLocale));
+            aTransformationErrorList.addError (ErrorLocation.create ("TaxTotal[*]/TaxSubtotal[*]/TaxCategory",
+                                                                     nTaxTotalIndex,
+                                                                     nTaxSubtotalIndex),
+                                               EText.MISSING_TAXCATEGORY_ID);
             break;
           }
 
           final String sUBLTaxCategorySchemeID = StringHelper.trim (aUBLTaxCategory.getID ().getSchemeID ());
           final String sUBLTaxCategoryID = StringHelper.trim (aUBLTaxCategory.getID ().getValue ());
 
-          aTaxCategoryPercMap.put (new TaxCategoryKey (new SchemedID (sUBLTaxSchemeSchemeID, sUBLTaxSchemeID),
-                                                       new SchemedID (sUBLTaxCategorySchemeID, sUBLTaxCategoryID)),
-                                   aUBLPercentage);
+          aTaxCategoryIndex.add (sUBLTaxSchemeSchemeID,
+                                 sUBLTaxSchemeID,
+                                 sUBLTaxCategorySchemeID,
+                                 sUBLTaxCategoryID,
+                                 aUBLPercentage);
 
           if (isSupportedTaxSchemeSchemeID (sUBLTaxSchemeSchemeID))
           {
@@ -735,13 +1232,11 @@ public final class InvoiceToEbInterface41Converter extends AbstractInvoiceConver
             final ETaxSchemeID eUBLTaxScheme = ETaxSchemeID.getFromIDOrNull (sUBLTaxSchemeID);
             if (eUBLTaxScheme == null)
             {
-              aTransformationErrorList.addError ("TaxTotal[" +
-                                                 nTaxTotalIndex +
-                                                 "]/TaxSubtotal[" +
-                                                 nTaxSubtotalIndex +
-                                                 "]/TaxCategory/TaxScheme/ID",
-                                                 EText.UNSUPPORTED_TAX_SCHEME_ID.getDisplayTextWithArgs (m_aDisplayLocale,
-                                                                                                         sUBLTaxSchemeID));
+              aTransformationErrorList.addError (ErrorLocation.create ("TaxTotal[*]/TaxSubtotal[*]/TaxCategory/TaxScheme/ID",
+                                                                       nTaxTotalIndex,
+                                                                       nTaxSubtotalIndex),
+                                                 EText.UNSUPPORTED_TAX_SCHEME_ID,
+                                                 sUBLTaxSchemeID);
             }
             else
             {
@@ -749,22 +1244,18 @@ public final class InvoiceToEbInterface41Converter extends AbstractInvoiceConver
               {
                 if (aUBLPercentage == null)
                 {
-                  aTransformationErrorList.addError ("TaxTotal[" +
-                                                     nTaxTotalIndex +
-                                                     "]/TaxSubtotal[" +
-                                                     nTaxSubtotalIndex +
-                                                     "]/TaxCategory/Percent",
-                                                     EText.TAX_PERCENT_MISSING.getDisplayTextWithArgs (m_aDisplayLocale));
+                  aTransformationErrorList.addError (ErrorLocation.create ("TaxTotal[*]/TaxSubtotal[*]/TaxCategory/Percent",
+                                                                           nTaxTotalIndex,
+                                                                           nTaxSubtotalIndex),
+                                                     EText.TAX_PERCENT_MISSING);
                 }
                 else
                   if (aUBLTaxableAmount == null)
                   {
-                    aTransformationErrorList.addError ("TaxTotal[" +
-                                                       nTaxTotalIndex +
-                                                       "]/TaxSubtotal[" +
-                                                       nTaxSubtotalIndex +
-                                                       "]/TaxableAmount",
-                                                       EText.TAXABLE_AMOUNT_MISSING.getDisplayText (m_aDisplayLocale));
+                    aTransformationErrorList.addError (ErrorLocation.create ("TaxTotal[*]/TaxSubtotal[*]/TaxableAmount",
+                                                                             nTaxTotalIndex,
+                                                                             nTaxSubtotalIndex),
+                                                       EText.TAXABLE_AMOUNT_MISSING);
                   }
                   else
                   {
@@ -799,14 +1290,12 @@ public final class InvoiceToEbInterface41Converter extends AbstractInvoiceConver
           }
           else
           {
-            aTransformationErrorList.addError ("TaxTotal[" +
-                                               nTaxTotalIndex +
-                                               "]/TaxSubtotal[" +
-                                               nTaxSubtotalIndex +
-                                               "]/TaxCategory/",
-                                               EText.UNSUPPORTED_TAX_SCHEME.getDisplayTextWithArgs (m_aDisplayLocale,
-                                                                                                    sUBLTaxSchemeSchemeID,
-                                                                                                    sUBLTaxSchemeID));
+            aTransformationErrorList.addError (ErrorLocation.create ("TaxTotal[*]/TaxSubtotal[*]/TaxCategory/",
+                                                                     nTaxTotalIndex,
+                                                                     nTaxSubtotalIndex),
+                                               EText.UNSUPPORTED_TAX_SCHEME,
+                                               sUBLTaxSchemeSchemeID,
+                                               sUBLTaxSchemeID);
           }
           ++nTaxSubtotalIndex;
         }
@@ -816,310 +1305,36 @@ public final class InvoiceToEbInterface41Converter extends AbstractInvoiceConver
       aEbiTax.setVAT (aEbiVAT);
       aEbiDoc.setTax (aEbiTax);
     }
+    if (aTransformationErrorList.isErrorBudgetExhausted ())
+      return null;
 
+    aRecorder.startStage (EConversionStage.LINES);
     // Line items
-    BigDecimal aTotalZeroPercLineExtensionAmount = BigDecimal.ZERO;
+    final BigDecimal aTotalZeroPercLineExtensionAmount;
+    final BigDecimal aTotalLineItemAmount;
     {
       final Ebi41DetailsType aEbiDetails = new Ebi41DetailsType ();
       final Ebi41ItemListType aEbiItemList = new Ebi41ItemListType ();
-      int nLineIndex = 0;
-      for (final InvoiceLineType aUBLLine : aUBLDoc.getInvoiceLine ())
+      final LineItemCollector aLineItemCollector = new LineItemCollector (aLineItemHandler, aEbiItemList);
+      if (convertAllLines (aUBLLines,
+                           new InvoiceLineConverter (aTaxCategoryIndex,
+                                                     sUBLOrderReferenceID,
+                                                     aUBLDoc.getAccountingCustomerParty ()),
+                           aLineItemCollector,
+                           aTransformationErrorList).isFailure ())
       {
-        // Try to resolve tax category
-        TaxCategoryType aUBLTaxCategory = CollectionHelper.getSafe (aUBLLine.getItem ().getClassifiedTaxCategory (), 0);
-        if (aUBLTaxCategory == null)
-        {
-          // No direct tax category -> check if it is somewhere in the tax total
-          outer: for (final TaxTotalType aUBLTaxTotal : aUBLLine.getTaxTotal ())
-            for (final TaxSubtotalType aUBLTaxSubTotal : aUBLTaxTotal.getTaxSubtotal ())
-            {
-              // Only handle VAT items
-              if (SUPPORTED_TAX_SCHEME_ID.getID ()
-                                         .equals (aUBLTaxSubTotal.getTaxCategory ().getTaxScheme ().getIDValue ()))
-              {
-                // We found one -> just use it
-                aUBLTaxCategory = aUBLTaxSubTotal.getTaxCategory ();
-                break outer;
-              }
-            }
-        }
-
-        // Try to resolve tax percentage
-        BigDecimal aUBLPercent = null;
-        if (aUBLTaxCategory != null)
-        {
-          // Specified at tax category?
-          if (aUBLTaxCategory.getPercent () != null)
-            aUBLPercent = aUBLTaxCategory.getPercentValue ();
-
-          if (aUBLPercent == null &&
-              aUBLTaxCategory.getID () != null &&
-              aUBLTaxCategory.getTaxScheme () != null &&
-              aUBLTaxCategory.getTaxScheme ().getID () != null)
-          {
-            // Not specified - check from previous map
-            final String sUBLTaxSchemeSchemeID = StringHelper.trim (aUBLTaxCategory.getTaxScheme ()
-                                                                                   .getID ()
-                                                                                   .getSchemeID ());
-            final String sUBLTaxSchemeID = StringHelper.trim (aUBLTaxCategory.getTaxScheme ().getIDValue ());
-
-            final String sUBLTaxCategorySchemeID = StringHelper.trim (aUBLTaxCategory.getID ().getSchemeID ());
-            final String sUBLTaxCategoryID = StringHelper.trim (aUBLTaxCategory.getIDValue ());
-
-            final TaxCategoryKey aKey = new TaxCategoryKey (new SchemedID (sUBLTaxSchemeSchemeID, sUBLTaxSchemeID),
-                                                            new SchemedID (sUBLTaxCategorySchemeID, sUBLTaxCategoryID));
-            aUBLPercent = aTaxCategoryPercMap.get (aKey);
-          }
-        }
-        if (aUBLPercent == null)
-        {
-          aUBLPercent = BigDecimal.ZERO;
-          aTransformationErrorList.addWarning ("InvoiceLine[" +
-                                               nLineIndex +
-                                               "]/Item/ClassifiedTaxCategory",
-                                               EText.DETAILS_TAX_PERCENTAGE_NOT_FOUND.getDisplayTextWithArgs (m_aDisplayLocale,
-                                                                                                              aUBLPercent));
-        }
-
-        // Start creating ebInterface line
-        final Ebi41ListLineItemType aEbiListLineItem = new Ebi41ListLineItemType ();
-
-        // Invoice line number
-        final String sUBLPositionNumber = StringHelper.trim (aUBLLine.getIDValue ());
-        BigInteger aUBLPositionNumber = StringParser.parseBigInteger (sUBLPositionNumber);
-        if (aUBLPositionNumber == null)
-        {
-          aUBLPositionNumber = BigInteger.valueOf (nLineIndex + 1);
-          aTransformationErrorList.addWarning ("InvoiceLine[" +
-                                               nLineIndex +
-                                               "]/ID",
-                                               EText.DETAILS_INVALID_POSITION.getDisplayTextWithArgs (m_aDisplayLocale,
-                                                                                                      sUBLPositionNumber,
-                                                                                                      aUBLPositionNumber));
-        }
-        aEbiListLineItem.setPositionNumber (aUBLPositionNumber);
-
-        // Descriptions
-        for (final DescriptionType aUBLDescription : aUBLLine.getItem ().getDescription ())
-          aEbiListLineItem.getDescription ().add (StringHelper.trim (aUBLDescription.getValue ()));
-        if (aEbiListLineItem.getDescription ().isEmpty ())
-        {
-          // Use item name as description
-          final NameType aUBLName = aUBLLine.getItem ().getName ();
-          if (aUBLName != null)
-            aEbiListLineItem.getDescription ().add (StringHelper.trim (aUBLName.getValue ()));
-        }
-
-        // Quantity
-        final Ebi41UnitType aEbiQuantity = new Ebi41UnitType ();
-        if (aUBLLine.getInvoicedQuantity () != null)
-        {
-          // Unit code is optional
-          if (aUBLLine.getInvoicedQuantity ().getUnitCode () != null)
-            aEbiQuantity.setUnit (StringHelper.trim (aUBLLine.getInvoicedQuantity ().getUnitCode ()));
-          aEbiQuantity.setValue (aUBLLine.getInvoicedQuantityValue ());
-        }
-        if (aEbiQuantity.getUnit () == null)
-        {
-          // ebInterface requires a quantity!
-          aEbiQuantity.setUnit (EUnitOfMeasureCode21.C62.getID ());
-          aTransformationErrorList.addWarning ("InvoiceLine[" +
-                                               nLineIndex +
-                                               "]/InvoicedQuantity/UnitCode",
-                                               EText.DETAILS_INVALID_UNIT.getDisplayTextWithArgs (m_aDisplayLocale,
-                                                                                                  aEbiQuantity.getUnit ()));
-        }
-        if (aEbiQuantity.getValue () == null)
-        {
-          aEbiQuantity.setValue (BigDecimal.ONE);
-          aTransformationErrorList.addWarning ("InvoiceLine[" +
-                                               nLineIndex +
-                                               "]/InvoicedQuantity",
-                                               EText.DETAILS_INVALID_QUANTITY.getDisplayTextWithArgs (m_aDisplayLocale,
-                                                                                                      aEbiQuantity.getValue ()));
-        }
-        aEbiListLineItem.setQuantity (aEbiQuantity);
-
-        // Unit price
-        if (aUBLLine.getPrice () != null)
-        {
-          final Ebi41UnitPriceType aEbiUnitPrice = new Ebi41UnitPriceType ();
-          // Unit price = priceAmount/baseQuantity (mandatory)
-          final BigDecimal aUBLPriceAmount = aUBLLine.getPrice ().getPriceAmountValue ();
-          aEbiUnitPrice.setValue (aUBLPriceAmount);
-          // If no base quantity is present, assume 1 (optional)
-          final BigDecimal aUBLBaseQuantity = aUBLLine.getPrice ().getBaseQuantityValue ();
-          if (aUBLBaseQuantity != null)
-          {
-            aEbiUnitPrice.setBaseQuantity (aUBLBaseQuantity);
-            if (MathHelper.isEqualToZero (aUBLBaseQuantity))
-              aEbiUnitPrice.setValue (BigDecimal.ZERO);
-          }
-          aEbiListLineItem.setUnitPrice (aEbiUnitPrice);
-        }
-        else
-        {
-          // Unit price = lineExtensionAmount / quantity (mandatory)
-          final BigDecimal aUBLLineExtensionAmount = aUBLLine.getLineExtensionAmountValue ();
-          final Ebi41UnitPriceType aEbiUnitPrice = new Ebi41UnitPriceType ();
-          if (MathHelper.isEqualToZero (aEbiQuantity.getValue ()))
-            aEbiUnitPrice.setValue (BigDecimal.ZERO);
-          else
-            aEbiUnitPrice.setValue (aUBLLineExtensionAmount.divide (aEbiQuantity.getValue (),
-                                                                    SCALE_PRICE4,
-                                                                    ROUNDING_MODE));
-          aEbiListLineItem.setUnitPrice (aEbiUnitPrice);
-        }
-
-        BigDecimal aEbiUnitPriceValue = aEbiListLineItem.getUnitPrice ().getValue ();
-        if (aEbiListLineItem.getUnitPrice ().getBaseQuantity () != null)
-          aEbiUnitPriceValue = aEbiUnitPriceValue.divide (aEbiListLineItem.getUnitPrice ().getBaseQuantity (),
-                                                          SCALE_PRICE4,
-                                                          ROUNDING_MODE);
-
-        // Tax rate (mandatory)
-        final Ebi41VATRateType aEbiVATRate = new Ebi41VATRateType ();
-        aEbiVATRate.setValue (aUBLPercent);
-        if (aUBLTaxCategory != null)
-                                     // Optional
-                                     if (false)
-            aEbiVATRate.setTaxCode (aUBLTaxCategory.getIDValue ());
-        aEbiListLineItem.setVATRate (aEbiVATRate);
-
-        // Line item amount (quantity * unit price +- reduction / surcharge)
-        aEbiListLineItem.setLineItemAmount (aUBLLine.getLineExtensionAmountValue ().setScale (SCALE_PRICE2,
-                                                                                              ROUNDING_MODE));
-
-        // Special handling in case no VAT item is present
-        if (MathHelper.isEqualToZero (aUBLPercent))
-          aTotalZeroPercLineExtensionAmount = aTotalZeroPercLineExtensionAmount.add (aEbiListLineItem.getLineItemAmount ());
-
-        // Order reference per line
-        for (final OrderLineReferenceType aUBLOrderLineReference : aUBLLine.getOrderLineReference ())
-          if (StringHelper.hasText (aUBLOrderLineReference.getLineIDValue ()))
-          {
-            final Ebi41OrderReferenceDetailType aEbiOrderRefDetail = new Ebi41OrderReferenceDetailType ();
-
-            // order reference
-            String sUBLLineOrderReferenceID = null;
-            if (aUBLOrderLineReference.getOrderReference () != null)
-              sUBLLineOrderReferenceID = StringHelper.trim (aUBLOrderLineReference.getOrderReference ().getIDValue ());
-            if (StringHelper.hasNoText (sUBLLineOrderReferenceID))
-            {
-              // Use the global order reference from header level
-              sUBLLineOrderReferenceID = sUBLOrderReferenceID;
-            }
-            aEbiOrderRefDetail.setOrderID (sUBLLineOrderReferenceID);
-
-            // Order position number
-            final String sOrderPosNumber = StringHelper.trim (aUBLOrderLineReference.getLineIDValue ());
-            if (sOrderPosNumber != null)
-            {
-              if (sOrderPosNumber.length () == 0)
-              {
-                aTransformationErrorList.addError ("InvoiceLine[" +
-                                                   nLineIndex +
-                                                   "]/OrderLineReference/LineID",
-                                                   EText.ORDERLINE_REF_ID_EMPTY.getDisplayText (m_aDisplayLocale));
-              }
-              else
-              {
-                aEbiOrderRefDetail.setOrderPositionNumber (sOrderPosNumber);
-              }
-            }
-            aEbiListLineItem.setInvoiceRecipientsOrderReference (aEbiOrderRefDetail);
-            break;
-          }
-
-        // Reduction and surcharge
-        if (aUBLLine.hasAllowanceChargeEntries ())
-        {
-          // Start with quantity*unitPrice for base amount
-          BigDecimal aEbiBaseAmount = aEbiListLineItem.getQuantity ().getValue ().multiply (aEbiUnitPriceValue);
-          final Ebi41ReductionAndSurchargeListLineItemDetailsType aEbiRSDetails = new Ebi41ReductionAndSurchargeListLineItemDetailsType ();
-
-          // ebInterface can handle only Reduction or only Surcharge
-          ETriState eSurcharge = ETriState.UNDEFINED;
-          for (final AllowanceChargeType aUBLAllowanceCharge : aUBLLine.getAllowanceCharge ())
-          {
-            final boolean bItemIsSurcharge = aUBLAllowanceCharge.getChargeIndicator ().isValue ();
-
-            // Remember for next item
-            if (eSurcharge.isUndefined ())
-              eSurcharge = ETriState.valueOf (bItemIsSurcharge);
-            final boolean bSwapSigns = bItemIsSurcharge != eSurcharge.isTrue ();
-
-            final Ebi41ReductionAndSurchargeBaseType aEbiRSItem = new Ebi41ReductionAndSurchargeBaseType ();
-            // Amount is mandatory
-            final BigDecimal aAmount = aUBLAllowanceCharge.getAmountValue ();
-            aEbiRSItem.setAmount (bSwapSigns ? aAmount.negate () : aAmount);
-
-            // Base amount is optional
-            if (aUBLAllowanceCharge.getBaseAmount () != null)
-              aEbiRSItem.setBaseAmount (aUBLAllowanceCharge.getBaseAmountValue ());
-            if (aEbiRSItem.getBaseAmount () == null)
-              aEbiRSItem.setBaseAmount (aEbiBaseAmount);
-
-            if (aUBLAllowanceCharge.getMultiplierFactorNumeric () != null)
-            {
-              // Percentage is optional
-              final BigDecimal aPerc = aUBLAllowanceCharge.getMultiplierFactorNumericValue ()
-                                                          .multiply (CGlobal.BIGDEC_100);
-              aEbiRSItem.setPercentage (bSwapSigns ? aPerc.negate () : aPerc);
-            }
-
-            if (eSurcharge.isTrue ())
-            {
-              aEbiRSDetails.getReductionListLineItemOrSurchargeListLineItemOrOtherVATableTaxListLineItem ()
-                           .add (new ObjectFactory ().createSurchargeListLineItem (aEbiRSItem));
-              aEbiBaseAmount = aEbiBaseAmount.add (aEbiRSItem.getAmount ());
-            }
-            else
-            {
-              aEbiRSDetails.getReductionListLineItemOrSurchargeListLineItemOrOtherVATableTaxListLineItem ()
-                           .add (new ObjectFactory ().createReductionListLineItem (aEbiRSItem));
-              aEbiBaseAmount = aEbiBaseAmount.subtract (aEbiRSItem.getAmount ());
-            }
-
-            aEbiRSItem.setComment (getAllowanceChargeComment (aUBLAllowanceCharge));
-          }
-          aEbiListLineItem.setReductionAndSurchargeListLineItemDetails (aEbiRSDetails);
-        }
-
-        // Delivery per line item
-        if (aUBLLine.getDeliveryCount () > 0)
-        {
-          // Delivery address
-          final int nDeliveryIndex = 0;
-          final DeliveryType aUBLDelivery = aUBLLine.getDeliveryAtIndex (0);
-
-          if (aUBLDelivery.getActualDeliveryDate () != null)
-          {
-            final Ebi41DeliveryType aEbiDelivery = EbInterface41Helper.convertDelivery (aUBLDelivery,
-                                                                                        "InvoiceLine[" +
-                                                                                                      nLineIndex +
-                                                                                                      "]/Delivery[" +
-                                                                                                      nDeliveryIndex +
-                                                                                                      "]",
-                                                                                        aUBLDoc.getAccountingCustomerParty (),
-                                                                                        aTransformationErrorList,
-                                                                                        m_aContentLocale,
-                                                                                        m_aDisplayLocale);
-            aEbiListLineItem.setDelivery (aEbiDelivery);
-          }
-        }
-
-        // Add the item to the list
-        aEbiItemList.getListLineItem ().add (aEbiListLineItem);
-        nLineIndex++;
+        // Error budget exhausted - don't read the remaining lines
+        return null;
       }
+      aTotalZeroPercLineExtensionAmount = aLineItemCollector.getTotalZeroPercLineExtensionAmount ();
+      aTotalLineItemAmount = aLineItemCollector.getTotalLineItemAmount ();
       aEbiDetails.getItemList ().add (aEbiItemList);
       aEbiDoc.setDetails (aEbiDetails);
     }
 
     if (aEbiVAT.hasNoVATItemEntries ())
     {
-      aTransformationErrorList.addError ("InvoiceLine", EText.VAT_ITEM_MISSING.getDisplayText (m_aDisplayLocale));
+      aTransformationErrorList.addError (ErrorLocation.create ("InvoiceLine"), EText.VAT_ITEM_MISSING);
       if (false)
       {
         // No default in this case
@@ -1133,19 +1348,18 @@ public final class InvoiceToEbInterface41Converter extends AbstractInvoiceConver
       }
     }
 
+    aRecorder.startStage (EConversionStage.ALLOWANCES_CHARGES);
     // Global reduction and surcharge
     if (aUBLDoc.hasAllowanceChargeEntries ())
     {
+      aRecorder.addAllowanceChargeCount (aUBLDoc.getAllowanceCharge ().size ());
+
       // Start with quantity*unitPrice for base amount
       BigDecimal aEbiBaseAmount = aUBLDoc.getLegalMonetaryTotal ().getLineExtensionAmountValue ();
       if (aEbiBaseAmount == null)
       {
         // No global LineExtensionAmount is present - sum all rows
-        BigDecimal tmp = BigDecimal.ZERO;
-        for (final Ebi41ItemListType aEbiItemList : aEbiDoc.getDetails ().getItemList ())
-          for (final Ebi41ListLineItemType aEbiListLineItem : aEbiItemList.getListLineItem ())
-            tmp = tmp.add (aEbiListLineItem.getLineItemAmount ());
-        aEbiBaseAmount = tmp;
+        aEbiBaseAmount = aTotalLineItemAmount;
       }
       final Ebi41ReductionAndSurchargeDetailsType aEbiRS = new Ebi41ReductionAndSurchargeDetailsType ();
 
@@ -1176,20 +1390,29 @@ public final class InvoiceToEbInterface41Converter extends AbstractInvoiceConver
 
         Ebi41VATRateType aEbiVATRate = null;
         for (final TaxCategoryType aUBLTaxCategory : aUBLAllowanceCharge.getTaxCategory ())
+        {
+          // Specified at tax category?
+          BigDecimal aUBLPercent = null;
           if (aUBLTaxCategory.getPercent () != null)
+            aUBLPercent = aUBLTaxCategory.getPercentValue ();
+          if (aUBLPercent == null)
+          {
+            // Not specified - check from the tax totals
+            aUBLPercent = aTaxCategoryIndex.getPercentage (aUBLTaxCategory);
+          }
+          if (aUBLPercent != null)
           {
             aEbiVATRate = new Ebi41VATRateType ();
-            aEbiVATRate.setValue (aUBLTaxCategory.getPercentValue ());
+            aEbiVATRate.setValue (aUBLPercent);
             if (false)
               aEbiVATRate.setTaxCode (aUBLTaxCategory.getIDValue ());
             break;
           }
+        }
         if (aEbiVATRate == null)
         {
-          aTransformationErrorList.addError ("Invoice/AllowanceCharge[" +
-                                             nAllowanceChargeIndex +
-                                             "]",
-                                             EText.ALLOWANCE_CHARGE_NO_TAXRATE.getDisplayText (m_aDisplayLocale));
+          aTransformationErrorList.addError (ErrorLocation.create ("Invoice/AllowanceCharge[*]", nAllowanceChargeIndex),
+                                             EText.ALLOWANCE_CHARGE_NO_TAXRATE);
           // No default in this case
           if (false)
           {
@@ -1220,8 +1443,8 @@ public final class InvoiceToEbInterface41Converter extends AbstractInvoiceConver
     if (aUBLMonetaryTotal.getPrepaidAmount () != null &&
         !MathHelper.isEqualToZero (aUBLMonetaryTotal.getPrepaidAmountValue ()))
     {
-      aTransformationErrorList.addError ("Invoice/LegalMonetaryTotal/PrepaidAmount",
-                                         EText.PREPAID_NOT_SUPPORTED.getDisplayText (m_aDisplayLocale));
+      aTransformationErrorList.addError (ErrorLocation.create ("Invoice/LegalMonetaryTotal/PrepaidAmount"),
+                                         EText.PREPAID_NOT_SUPPORTED);
     }
 
     // Total gross amount
@@ -1233,9 +1456,14 @@ public final class InvoiceToEbInterface41Converter extends AbstractInvoiceConver
     // Payable amount
     aEbiDoc.setPayableAmount (aUBLMonetaryTotal.getPayableAmountValue ().setScale (SCALE_PRICE2, ROUNDING_MODE));
 
+    if (aTransformationErrorList.isErrorBudgetExhausted ())
+      return null;
+
+    aRecorder.startStage (EConversionStage.PAYMENT);
     // Payment method
     _convertPayment (aUBLDoc, aTransformationErrorList, aEbiDoc);
 
+    aRecorder.startStage (EConversionStage.DELIVERY);
     // Delivery
     Ebi41DeliveryType aEbiDelivery = null;
     {
@@ -1247,11 +1475,10 @@ public final class InvoiceToEbInterface41Converter extends AbstractInvoiceConver
         if (aUBLDelivery.getActualDeliveryDate () != null)
         {
           aEbiDelivery = EbInterface41Helper.convertDelivery (aUBLDelivery,
-                                                              "Delivery[" + nDeliveryIndex + "]",
+                                                              ErrorLocation.create ("Delivery[*]", nDeliveryIndex),
                                                               aUBLDoc.getAccountingCustomerParty (),
                                                               aTransformationErrorList,
-                                                              m_aContentLocale,
-                                                              m_aDisplayLocale);
+                                                              m_aContentLocale);
           break;
         }
         ++nDeliveryIndex;
@@ -1291,12 +1518,14 @@ public final class InvoiceToEbInterface41Converter extends AbstractInvoiceConver
     if (m_bStrictERBMode)
     {
       if (aEbiDelivery.getDate () == null && aEbiDelivery.getPeriod () == null)
-        aTransformationErrorList.addError ("Invoice", EText.ERB_NO_DELIVERY_DATE.getDisplayText (m_aDisplayLocale));
+        aTransformationErrorList.addError (ErrorLocation.create ("Invoice"), EText.ERB_NO_DELIVERY_DATE);
     }
 
     if (aEbiDelivery.getDate () != null || aEbiDelivery.getPeriod () != null)
       aEbiDoc.setDelivery (aEbiDelivery);
 
+    if (aTransformationErrorList.isErrorBudgetExhausted ())
+      return null;
     return aEbiDoc;
   }
 }
@@ -0,0 +1,382 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.invoice;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import javax.xml.transform.stream.StreamSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.ebinterface.v41.Ebi41InvoiceType;
+import com.helger.validation.error.ErrorList;
+
+import at.gv.brz.transform.ubl2ebi.AbstractConverter.EText;
+import at.gv.brz.transform.ubl2ebi.IEbiListLineItemHandler;
+import at.gv.brz.transform.ubl2ebi.JAXBPool;
+import at.gv.brz.transform.ubl2ebi.error.ErrorLocation;
+import at.gv.brz.transform.ubl2ebi.error.TransformationErrorList;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.InvoiceLineType;
+import oasis.names.specification.ubl.schema.xsd.invoice_21.InvoiceType;
+
+/**
+ * Streaming variant of {@link InvoiceToEbInterface41Converter} that reads the
+ * UBL invoice directly from an {@link InputStream}. Only the invoice header
+ * (everything before the first <code>InvoiceLine</code> element) is read into
+ * memory at once. The invoice lines are read and converted one after the
+ * other, so that the memory consumption is independent of the number of lines
+ * if an {@link IEbiListLineItemHandler} is used.<br>
+ * Note: in contrast to <code>UBL21Reader</code> no XML Schema validation is
+ * performed on the input.
+ *
+ * @author philip
+ */
+@Immutable
+public final class StreamingInvoiceToEbInterface41Converter
+{
+  public static final QName QNAME_INVOICE = new QName ("urn:oasis:names:specification:ubl:schema:xsd:Invoice-2",
+                                                       "Invoice");
+  public static final QName QNAME_INVOICE_LINE = new QName ("urn:oasis:names:specification:ubl:schema:xsd:CommonAggregateComponents-2",
+                                                            "InvoiceLine");
+
+  private static final Logger s_aLogger = LoggerFactory.getLogger (StreamingInvoiceToEbInterface41Converter.class);
+
+  private static final class SingletonHolder
+  {
+    static final XMLInputFactory s_aInputFactory;
+    static final XMLOutputFactory s_aOutputFactory = XMLOutputFactory.newInstance ();
+    static final XMLEventFactory s_aEventFactory = XMLEventFactory.newInstance ();
+    static
+    {
+      s_aInputFactory = XMLInputFactory.newInstance ();
+      s_aInputFactory.setProperty (XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+      // No DTDs and no external entities
+      s_aInputFactory.setProperty (XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+      s_aInputFactory.setProperty (XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+    }
+  }
+
+  /**
+   * Internal exception to transport checked exceptions out of the line
+   * iterator.
+   */
+  private static final class ReadException extends RuntimeException
+  {
+    ReadException (@Nonnull final Exception aCause)
+    {
+      super (aCause);
+    }
+  }
+
+  /**
+   * Iterator that unmarshals one invoice line after the other directly from
+   * the event reader.
+   */
+  private static final class InvoiceLineIterator implements Iterator <InvoiceLineType>
+  {
+    private final XMLEventReader m_aReader;
+    private final Unmarshaller m_aUnmarshaller;
+
+    InvoiceLineIterator (@Nonnull final XMLEventReader aReader, @Nonnull final Unmarshaller aUnmarshaller)
+    {
+      m_aReader = aReader;
+      m_aUnmarshaller = aUnmarshaller;
+    }
+
+    public boolean hasNext ()
+    {
+      try
+      {
+        while (m_aReader.hasNext ())
+        {
+          final XMLEvent aEvent = m_aReader.peek ();
+          if (aEvent.isStartElement ())
+          {
+            if (QNAME_INVOICE_LINE.equals (aEvent.asStartElement ().getName ()))
+              return true;
+            // Something after the invoice lines - ignore it
+            _skipElement (m_aReader);
+          }
+          else
+          {
+            if (aEvent.isEndElement ())
+            {
+              // End of the root element
+              return false;
+            }
+            // Whitespaces, comments etc.
+            m_aReader.nextEvent ();
+          }
+        }
+        return false;
+      }
+      catch (final XMLStreamException ex)
+      {
+        throw new ReadException (ex);
+      }
+    }
+
+    @Nonnull
+    public InvoiceLineType next ()
+    {
+      if (!hasNext ())
+        throw new NoSuchElementException ();
+      try
+      {
+        return m_aUnmarshaller.unmarshal (m_aReader, InvoiceLineType.class).getValue ();
+      }
+      catch (final JAXBException ex)
+      {
+        throw new ReadException (ex);
+      }
+    }
+
+    public void remove ()
+    {
+      throw new UnsupportedOperationException ();
+    }
+  }
+
+  private final InvoiceToEbInterface41Converter m_aConverter;
+
+  /**
+   * Constructor
+   *
+   * @param aConverter
+   *        The converter to be used. May not be <code>null</code>.
+   */
+  public StreamingInvoiceToEbInterface41Converter (@Nonnull final InvoiceToEbInterface41Converter aConverter)
+  {
+    m_aConverter = ValueEnforcer.notNull (aConverter, "Converter");
+  }
+
+  /**
+   * @return The underlying converter. Never <code>null</code>.
+   */
+  @Nonnull
+  public InvoiceToEbInterface41Converter getConverter ()
+  {
+    return m_aConverter;
+  }
+
+  /**
+   * Skip the element the reader is currently positioned on, including all
+   * children.
+   */
+  private static void _skipElement (@Nonnull final XMLEventReader aReader) throws XMLStreamException
+  {
+    int nDepth = 0;
+    do
+    {
+      final XMLEvent aEvent = aReader.nextEvent ();
+      if (aEvent.isStartElement ())
+        nDepth++;
+      else
+        if (aEvent.isEndElement ())
+          nDepth--;
+    } while (nDepth > 0);
+  }
+
+  /**
+   * Copy everything from the root element up to (excluding) the first invoice
+   * line into a separate document and read it as an invoice without lines.
+   */
+  @Nonnull
+  private static InvoiceType _readHeader (@Nonnull final XMLEventReader aReader,
+                                          @Nonnull final StartElement aRootElement,
+                                          @Nonnull final Unmarshaller aUnmarshaller) throws XMLStreamException,
+                                                                                     JAXBException
+  {
+    final ByteArrayOutputStream aBAOS = new ByteArrayOutputStream ();
+    final XMLEventWriter aWriter = SingletonHolder.s_aOutputFactory.createXMLEventWriter (aBAOS, "UTF-8");
+    aWriter.add (SingletonHolder.s_aEventFactory.createStartDocument ("UTF-8", "1.0"));
+    aWriter.add (aRootElement);
+    int nDepth = 0;
+    while (aReader.hasNext ())
+    {
+      final XMLEvent aEvent = aReader.peek ();
+      if (nDepth == 0)
+      {
+        if (aEvent.isStartElement () && QNAME_INVOICE_LINE.equals (aEvent.asStartElement ().getName ()))
+          break;
+        if (aEvent.isEndElement ())
+          break;
+      }
+      aReader.nextEvent ();
+      if (aEvent.isStartElement ())
+        nDepth++;
+      else
+        if (aEvent.isEndElement ())
+          nDepth--;
+      aWriter.add (aEvent);
+    }
+    final QName aRootName = aRootElement.getName ();
+    aWriter.add (SingletonHolder.s_aEventFactory.createEndElement (aRootName.getPrefix (),
+                                                                   aRootName.getNamespaceURI (),
+                                                                   aRootName.getLocalPart ()));
+    aWriter.add (SingletonHolder.s_aEventFactory.createEndDocument ());
+    aWriter.close ();
+
+    return aUnmarshaller.unmarshal (new StreamSource (new ByteArrayInputStream (aBAOS.toByteArray ())),
+                                    InvoiceType.class).getValue ();
+  }
+
+  /**
+   * Read the UBL invoice from the passed input stream and convert it to
+   * ebInterface 4.1.
+   *
+   * @param aIS
+   *        The input stream to read from. It is not closed by this method. May
+   *        not be <code>null</code>.
+   * @param aLineItemHandler
+   *        An optional handler for the converted line items. If present, the
+   *        line items are passed to the handler and are not added to the
+   *        returned document. May be <code>null</code>.
+   * @param aTransformationErrorList
+   *        Error list. Must be empty! All errors are rendered using the display
+   *        locale of the underlying converter.
+   * @return The created ebInterface 4.1 document or <code>null</code> in case
+   *         of a severe error or if the document could not be read.
+   */
+  @Nullable
+  public Ebi41InvoiceType convertToEbInterface (@Nonnull final InputStream aIS,
+                                                @Nullable final IEbiListLineItemHandler aLineItemHandler,
+                                                @Nonnull final ErrorList aTransformationErrorList)
+  {
+    ValueEnforcer.notNull (aTransformationErrorList, "TransformationErrorList");
+    if (!aTransformationErrorList.isEmpty ())
+      throw new IllegalArgumentException ("TransformationErrorList must be empty!");
+
+    final TransformationErrorList aErrorList = new TransformationErrorList ();
+    final Ebi41InvoiceType ret = convertToEbInterface (aIS, aLineItemHandler, aErrorList);
+    aErrorList.fillErrorList (aTransformationErrorList, m_aConverter.getDisplayLocale ());
+    return ret;
+  }
+
+  /**
+   * Read the UBL invoice from the passed input stream and convert it to
+   * ebInterface 4.1 collecting the errors without rendering their texts.
+   *
+   * @param aIS
+   *        The input stream to read from. It is not closed by this method. May
+   *        not be <code>null</code>.
+   * @param aLineItemHandler
+   *        An optional handler for the converted line items. If present, the
+   *        line items are passed to the handler and are not added to the
+   *        returned document. May be <code>null</code>.
+   * @param aTransformationErrorList
+   *        Error list. Must be empty!
+   * @return The created ebInterface 4.1 document or <code>null</code> in case
+   *         of a severe error or if the document could not be read.
+   */
+  @Nullable
+  public Ebi41InvoiceType convertToEbInterface (@Nonnull final InputStream aIS,
+                                                @Nullable final IEbiListLineItemHandler aLineItemHandler,
+                                                @Nonnull final TransformationErrorList aTransformationErrorList)
+  {
+    ValueEnforcer.notNull (aIS, "InputStream");
+    ValueEnforcer.notNull (aTransformationErrorList, "TransformationErrorList");
+    if (!aTransformationErrorList.isEmpty ())
+      throw new IllegalArgumentException ("TransformationErrorList must be empty!");
+
+    XMLEventReader aReader = null;
+    try
+    {
+      aReader = SingletonHolder.s_aInputFactory.createXMLEventReader (aIS);
+
+      // Find the root element
+      StartElement aRootElement = null;
+      while (aReader.hasNext ())
+      {
+        final XMLEvent aEvent = aReader.nextEvent ();
+        if (aEvent.isStartElement ())
+        {
+          aRootElement = aEvent.asStartElement ();
+          break;
+        }
+      }
+      if (aRootElement == null || !QNAME_INVOICE.equals (aRootElement.getName ()))
+      {
+        aTransformationErrorList.addError (ErrorLocation.create ("Invoice"),
+                                           EText.INVALID_ROOT_ELEMENT,
+                                           aRootElement == null ? null : aRootElement.getName (),
+                                           QNAME_INVOICE);
+        return null;
+      }
+
+      final Unmarshaller aUnmarshaller = JAXBPool.getUBLInvoiceUnmarshaller ();
+      final InvoiceType aUBLHeader = _readHeader (aReader, aRootElement, aUnmarshaller);
+      return m_aConverter.convertToEbInterface (aUBLHeader,
+                                                new InvoiceLineIterator (aReader, aUnmarshaller),
+                                                aLineItemHandler,
+                                                aTransformationErrorList);
+    }
+    catch (final XMLStreamException ex)
+    {
+      return _onReadError (ex, aTransformationErrorList);
+    }
+    catch (final JAXBException ex)
+    {
+      return _onReadError (ex, aTransformationErrorList);
+    }
+    catch (final ReadException ex)
+    {
+      return _onReadError (ex.getCause (), aTransformationErrorList);
+    }
+    finally
+    {
+      if (aReader != null)
+        try
+        {
+          aReader.close ();
+        }
+        catch (final XMLStreamException ex)
+        {
+          // ignore
+        }
+    }
+  }
+
+  @Nullable
+  private static Ebi41InvoiceType _onReadError (@Nonnull final Throwable t,
+                                                @Nonnull final TransformationErrorList aTransformationErrorList)
+  {
+    s_aLogger.warn ("Failed to read UBL invoice", t);
+    aTransformationErrorList.addError (ErrorLocation.create ("Invoice"), EText.XML_READ_ERROR, t.getMessage ());
+    return null;
+  }
+}
@@ -0,0 +1,189 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.metrics;
+
+import java.util.Date;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.string.ToStringGenerator;
+
+import at.gv.brz.transform.ubl2ebi.EUBLDocumentType;
+
+/**
+ * Describes the conversion of a single document by a converter: when and on
+ * which thread it ran, how long it took in total and per stage and how big
+ * the document was. It allows to relate e.g. a garbage collection or a CPU
+ * spike to a specific document.
+ *
+ * @author philip
+ * @see IConversionMetricsListener#onConversionEvent(ConversionEvent)
+ */
+@Immutable
+public final class ConversionEvent
+{
+  private final EUBLDocumentType m_eDocumentType;
+  private final String m_sDocumentID;
+  private final boolean m_bStrictERBMode;
+  private final boolean m_bSuccess;
+  private final String m_sThreadName;
+  private final long m_nStartTimeMillis;
+  private final long m_nDurationNanos;
+  private final int m_nLineCount;
+  private final int m_nErrorCount;
+  private final int m_nWarningCount;
+  private final long [] m_aStageDurationNanos;
+
+  ConversionEvent (@Nonnull final EUBLDocumentType eDocumentType,
+                   @Nullable final String sDocumentID,
+                   final boolean bStrictERBMode,
+                   final boolean bSuccess,
+                   @Nonnull final String sThreadName,
+                   final long nStartTimeMillis,
+                   @Nonnegative final long nDurationNanos,
+                   @Nonnegative final int nLineCount,
+                   @Nonnegative final int nErrorCount,
+                   @Nonnegative final int nWarningCount,
+                   @Nonnull final long [] aStageDurationNanos)
+  {
+    m_eDocumentType = ValueEnforcer.notNull (eDocumentType, "DocumentType");
+    m_sDocumentID = sDocumentID;
+    m_bStrictERBMode = bStrictERBMode;
+    m_bSuccess = bSuccess;
+    m_sThreadName = sThreadName;
+    m_nStartTimeMillis = nStartTimeMillis;
+    m_nDurationNanos = nDurationNanos;
+    m_nLineCount = nLineCount;
+    m_nErrorCount = nErrorCount;
+    m_nWarningCount = nWarningCount;
+    m_aStageDurationNanos = aStageDurationNanos;
+  }
+
+  @Nonnull
+  public EUBLDocumentType getDocumentType ()
+  {
+    return m_eDocumentType;
+  }
+
+  /**
+   * @return The ID of the UBL document, e.g. the invoice number. May be
+   *         <code>null</code> if it is missing.
+   */
+  @Nullable
+  public String getDocumentID ()
+  {
+    return m_sDocumentID;
+  }
+
+  public boolean isStrictERBMode ()
+  {
+    return m_bStrictERBMode;
+  }
+
+  /**
+   * @return <code>true</code> if an ebInterface document was created.
+   */
+  public boolean isSuccess ()
+  {
+    return m_bSuccess;
+  }
+
+  /**
+   * @return The name of the thread that performed the conversion. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  public String getThreadName ()
+  {
+    return m_sThreadName;
+  }
+
+  /**
+   * @return The wall clock time the conversion started in milliseconds since
+   *         the epoch.
+   */
+  public long getStartTimeMillis ()
+  {
+    return m_nStartTimeMillis;
+  }
+
+  /**
+   * @return The duration of the conversion in nanoseconds, excluding the
+   *         parsing of the UBL document.
+   */
+  @Nonnegative
+  public long getDurationNanos ()
+  {
+    return m_nDurationNanos;
+  }
+
+  @Nonnegative
+  public int getLineCount ()
+  {
+    return m_nLineCount;
+  }
+
+  @Nonnegative
+  public int getErrorCount ()
+  {
+    return m_nErrorCount;
+  }
+
+  @Nonnegative
+  public int getWarningCount ()
+  {
+    return m_nWarningCount;
+  }
+
+  /**
+   * Get the duration of a single stage of this conversion.
+   *
+   * @param eStage
+   *        The stage. May not be <code>null</code>.
+   * @return The duration of the stage in nanoseconds or 0 if the stage was
+   *         not executed, e.g. because the conversion was aborted before.
+   */
+  @Nonnegative
+  public long getStageDurationNanos (@Nonnull final EConversionStage eStage)
+  {
+    ValueEnforcer.notNull (eStage, "Stage");
+    return m_aStageDurationNanos[eStage.ordinal ()];
+  }
+
+  @Override
+  public String toString ()
+  {
+    final ToStringGenerator aTSG = new ToStringGenerator (this).append ("documentType", m_eDocumentType)
+                                                               .append ("documentID", m_sDocumentID)
+                                                               .append ("strictERBMode", m_bStrictERBMode)
+                                                               .append ("success", m_bSuccess)
+                                                               .append ("threadName", m_sThreadName)
+                                                               .append ("startTime", new Date (m_nStartTimeMillis))
+                                                               .append ("durationNanos", m_nDurationNanos)
+                                                               .append ("lineCount", m_nLineCount)
+                                                               .append ("errorCount", m_nErrorCount)
+                                                               .append ("warningCount", m_nWarningCount);
+    for (final EConversionStage eStage : EConversionStage.values ())
+      if (m_aStageDurationNanos[eStage.ordinal ()] > 0)
+        aTSG.append (eStage.name (), m_aStageDurationNanos[eStage.ordinal ()]);
+    return aTSG.toString ();
+  }
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.string.ToStringGenerator;
+
+import at.gv.brz.transform.ubl2ebi.error.TransformationError;
+
+/**
+ * An {@link IConversionMetricsListener} that only logs the
+ * {@link ConversionEvent}s. Conversions that took at least the threshold
+ * duration are logged on info level, all others on debug level. If debug
+ * logging is disabled and the threshold is not reached, nothing is logged.
+ *
+ * @author philip
+ */
+@Immutable
+public class ConversionEventLogger implements IConversionMetricsListener
+{
+  /** The default threshold of 1 second */
+  public static final long DEFAULT_THRESHOLD_MILLIS = 1000;
+
+  private static final Logger s_aLogger = LoggerFactory.getLogger (ConversionEventLogger.class);
+
+  private final long m_nThresholdNanos;
+
+  public ConversionEventLogger ()
+  {
+    this (DEFAULT_THRESHOLD_MILLIS);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param nThresholdMillis
+   *        The minimum duration in milliseconds for a conversion to be logged
+   *        on info level. Must be &ge; 0.
+   */
+  public ConversionEventLogger (@Nonnegative final long nThresholdMillis)
+  {
+    ValueEnforcer.isGE0 (nThresholdMillis, "ThresholdMillis");
+    m_nThresholdNanos = TimeUnit.MILLISECONDS.toNanos (nThresholdMillis);
+  }
+
+  /**
+   * @return The minimum duration in milliseconds for a conversion to be logged
+   *         on info level.
+   */
+  @Nonnegative
+  public long getThresholdMillis ()
+  {
+    return TimeUnit.NANOSECONDS.toMillis (m_nThresholdNanos);
+  }
+
+  public void onStageCompleted (@Nonnull final EConversionStage eStage, @Nonnegative final long nDurationNanos)
+  {}
+
+  public void onDiagnostic (@Nonnull final TransformationError aError, @Nonnegative final int nOccurrenceCount)
+  {}
+
+  public void onDocumentConverted (final boolean bSuccess,
+                                   @Nonnegative final int nLineCount,
+                                   @Nonnegative final int nTaxSubtotalCount,
+                                   @Nonnegative final int nAllowanceChargeCount)
+  {}
+
+  public void onDocumentProcessed (@Nonnegative final long nDurationNanos,
+                                   @Nonnegative final long nBytesIn,
+                                   @Nonnegative final long nBytesOut)
+  {}
+
+  public boolean isConversionEventEnabled ()
+  {
+    return true;
+  }
+
+  public void onConversionEvent (@Nonnull final ConversionEvent aEvent)
+  {
+    if (aEvent.getDurationNanos () >= m_nThresholdNanos)
+    {
+      if (s_aLogger.isInfoEnabled ())
+        s_aLogger.info ("Slow conversion: " + aEvent);
+    }
+    else
+      if (s_aLogger.isDebugEnabled ())
+        s_aLogger.debug ("Conversion: " + aEvent);
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("thresholdNanos", m_nThresholdNanos).toString ();
+  }
+}
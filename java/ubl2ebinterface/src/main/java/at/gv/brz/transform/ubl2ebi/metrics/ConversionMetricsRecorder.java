@@ -0,0 +1,245 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.metrics;
+
+import java.util.Iterator;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import com.helger.commons.ValueEnforcer;
+
+import at.gv.brz.transform.ubl2ebi.EUBLDocumentType;
+import at.gv.brz.transform.ubl2ebi.error.TransformationError;
+import at.gv.brz.transform.ubl2ebi.error.TransformationErrorAggregate;
+import at.gv.brz.transform.ubl2ebi.error.TransformationErrorList;
+
+/**
+ * Records the stages and counts of a single conversion and passes them to an
+ * {@link IConversionMetricsListener}. A new object is required for every
+ * conversion. If no listener is present, a shared object is used that does
+ * nothing, so that neither the clock is read nor any object is created.
+ *
+ * @author philip
+ */
+@NotThreadSafe
+public final class ConversionMetricsRecorder
+{
+  /**
+   * Iterator that counts the retrieved lines.
+   */
+  private static final class CountingIterator <T> implements Iterator <T>
+  {
+    private final Iterator <T> m_aIterator;
+    private final ConversionMetricsRecorder m_aRecorder;
+
+    CountingIterator (@Nonnull final Iterator <T> aIterator, @Nonnull final ConversionMetricsRecorder aRecorder)
+    {
+      m_aIterator = aIterator;
+      m_aRecorder = aRecorder;
+    }
+
+    public boolean hasNext ()
+    {
+      return m_aIterator.hasNext ();
+    }
+
+    public T next ()
+    {
+      final T ret = m_aIterator.next ();
+      m_aRecorder.m_nLineCount++;
+      return ret;
+    }
+
+    public void remove ()
+    {
+      m_aIterator.remove ();
+    }
+  }
+
+  private static final ConversionMetricsRecorder NO_OP = new ConversionMetricsRecorder (null);
+
+  private final IConversionMetricsListener m_aListener;
+  private EConversionStage m_eStage;
+  private long m_nStageStartNanos;
+  private int m_nLineCount;
+  private int m_nTaxSubtotalCount;
+  private int m_nAllowanceChargeCount;
+  // Only used for conversion events
+  private final long m_nStartTimeMillis;
+  private final long m_nStartNanos;
+  private final long [] m_aStageDurationNanos;
+
+  private ConversionMetricsRecorder (@Nullable final IConversionMetricsListener aListener)
+  {
+    m_aListener = aListener;
+    if (aListener != null && aListener.isConversionEventEnabled ())
+    {
+      m_nStartTimeMillis = System.currentTimeMillis ();
+      m_nStartNanos = System.nanoTime ();
+      m_aStageDurationNanos = new long [EConversionStage.values ().length];
+    }
+    else
+    {
+      m_nStartTimeMillis = 0;
+      m_nStartNanos = 0;
+      m_aStageDurationNanos = null;
+    }
+  }
+
+  /**
+   * Get a recorder for a single conversion.
+   *
+   * @param aListener
+   *        The listener to pass the metrics to. May be <code>null</code>.
+   * @return A new recorder or a shared recorder that does nothing, if no
+   *         listener is present. Never <code>null</code>.
+   */
+  @Nonnull
+  public static ConversionMetricsRecorder create (@Nullable final IConversionMetricsListener aListener)
+  {
+    return aListener == null ? NO_OP : new ConversionMetricsRecorder (aListener);
+  }
+
+  /**
+   * @return <code>true</code> if the metrics are passed to a listener.
+   */
+  public boolean isEnabled ()
+  {
+    return m_aListener != null;
+  }
+
+  private void _completeStage (final long nNowNanos)
+  {
+    final long nDuration = nNowNanos - m_nStageStartNanos;
+    m_aListener.onStageCompleted (m_eStage, nDuration);
+    if (m_aStageDurationNanos != null)
+      m_aStageDurationNanos[m_eStage.ordinal ()] += nDuration;
+  }
+
+  /**
+   * Start a new stage. A running stage is finished first.
+   *
+   * @param eStage
+   *        The stage to start. May not be <code>null</code>.
+   */
+  public void startStage (@Nonnull final EConversionStage eStage)
+  {
+    if (m_aListener != null)
+    {
+      ValueEnforcer.notNull (eStage, "Stage");
+      final long nNow = System.nanoTime ();
+      if (m_eStage != null)
+        _completeStage (nNow);
+      m_eStage = eStage;
+      m_nStageStartNanos = nNow;
+    }
+  }
+
+  /**
+   * Finish the running stage, if any.
+   */
+  public void endStage ()
+  {
+    if (m_aListener != null && m_eStage != null)
+    {
+      _completeStage (System.nanoTime ());
+      m_eStage = null;
+    }
+  }
+
+  /**
+   * Count the lines retrieved from the passed iterator.
+   *
+   * @param aLines
+   *        The source iterator. May not be <code>null</code>.
+   * @return The passed iterator if this recorder is not enabled, a counting
+   *         wrapper otherwise. Never <code>null</code>.
+   */
+  @Nonnull
+  public <T> Iterator <T> countLines (@Nonnull final Iterator <T> aLines)
+  {
+    if (m_aListener == null)
+      return aLines;
+    return new CountingIterator <T> (aLines, this);
+  }
+
+  public void addTaxSubtotalCount (@Nonnegative final int nCount)
+  {
+    // The shared recorder must not be modified
+    if (m_aListener != null)
+      m_nTaxSubtotalCount += nCount;
+  }
+
+  public void addAllowanceChargeCount (@Nonnegative final int nCount)
+  {
+    if (m_aListener != null)
+      m_nAllowanceChargeCount += nCount;
+  }
+
+  /**
+   * Finish the conversion. The running stage is finished and all diagnostics
+   * and counts are passed to the listener, followed by a
+   * {@link ConversionEvent} if the listener requests it.
+   *
+   * @param eDocumentType
+   *        The type of the converted document. May not be <code>null</code>.
+   * @param sDocumentID
+   *        The ID of the converted document. May be <code>null</code>.
+   * @param bStrictERBMode
+   *        The strict ERB mode of the conversion.
+   * @param bSuccess
+   *        <code>true</code> if an ebInterface document was created.
+   * @param aTransformationErrorList
+   *        The diagnostics of the conversion. May not be <code>null</code>.
+   */
+  public void onDocumentConverted (@Nonnull final EUBLDocumentType eDocumentType,
+                                   @Nullable final String sDocumentID,
+                                   final boolean bStrictERBMode,
+                                   final boolean bSuccess,
+                                   @Nonnull final TransformationErrorList aTransformationErrorList)
+  {
+    if (m_aListener != null)
+    {
+      endStage ();
+      if (aTransformationErrorList.isAggregateRepeated ())
+      {
+        for (final TransformationErrorAggregate aAggregate : aTransformationErrorList.getAllAggregates ())
+          m_aListener.onDiagnostic (aAggregate.getFirstError (), aAggregate.getOccurrenceCount ());
+      }
+      else
+        for (final TransformationError aError : aTransformationErrorList)
+          m_aListener.onDiagnostic (aError, 1);
+      m_aListener.onDocumentConverted (bSuccess, m_nLineCount, m_nTaxSubtotalCount, m_nAllowanceChargeCount);
+
+      if (m_aStageDurationNanos != null)
+        m_aListener.onConversionEvent (new ConversionEvent (eDocumentType,
+                                                            sDocumentID,
+                                                            bStrictERBMode,
+                                                            bSuccess,
+                                                            Thread.currentThread ().getName (),
+                                                            m_nStartTimeMillis,
+                                                            System.nanoTime () - m_nStartNanos,
+                                                            m_nLineCount,
+                                                            aTransformationErrorList.getErrorCount (),
+                                                            aTransformationErrorList.getWarningCount (),
+                                                            m_aStageDurationNanos.clone ()));
+    }
+  }
+}
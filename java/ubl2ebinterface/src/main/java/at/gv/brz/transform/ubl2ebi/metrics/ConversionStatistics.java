@@ -0,0 +1,179 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.annotation.Nonempty;
+import com.helger.commons.annotation.ReturnsMutableCopy;
+
+import at.gv.brz.transform.ubl2ebi.AbstractConverter.EText;
+
+/**
+ * Conversion metrics that can be monitored via JMX. Pass an instance as
+ * {@link IConversionMetricsListener} to the converters or the
+ * <code>ConversionPipeline</code> and register it with
+ * {@link #registerPlatformMBean(String)}. The latencies are the total
+ * processing times of documents converted by a <code>ConversionPipeline</code>.
+ *
+ * @author philip
+ */
+@ThreadSafe
+public class ConversionStatistics extends HistogramConversionMetricsListener implements IConversionStatisticsMXBean
+{
+  /** The JMX domain of the registered objects */
+  public static final String JMX_DOMAIN = "at.gv.brz.transform.ubl2ebi";
+
+  private static final long MIN_RATE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos (1);
+  private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos (1);
+  private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos (1);
+
+  // Only used for reading the rate
+  private long m_nRateSampleNanos;
+  private long m_nRateSampleCount;
+  private double m_dDocumentsPerSecond;
+
+  public ConversionStatistics ()
+  {
+    m_nRateSampleNanos = System.nanoTime ();
+  }
+
+  public synchronized double getDocumentsPerSecond ()
+  {
+    final long nNow = System.nanoTime ();
+    final long nElapsed = nNow - m_nRateSampleNanos;
+    // Keep the previous rate if polled too often
+    if (nElapsed >= MIN_RATE_INTERVAL_NANOS)
+    {
+      final long nCount = getDocumentCount ();
+      m_dDocumentsPerSecond = (nCount - m_nRateSampleCount) * NANOS_PER_SECOND / nElapsed;
+      m_nRateSampleNanos = nNow;
+      m_nRateSampleCount = nCount;
+    }
+    return m_dDocumentsPerSecond;
+  }
+
+  public double getLatencyP50Millis ()
+  {
+    return getProcessingHistogram ().getValueAtPercentile (50) / NANOS_PER_MILLI;
+  }
+
+  public double getLatencyP99Millis ()
+  {
+    return getProcessingHistogram ().getValueAtPercentile (99) / NANOS_PER_MILLI;
+  }
+
+  public double getLatencyP999Millis ()
+  {
+    return getProcessingHistogram ().getValueAtPercentile (99.9) / NANOS_PER_MILLI;
+  }
+
+  public double getLatencyMaxMillis ()
+  {
+    return getProcessingHistogram ().getMaxNanos () / NANOS_PER_MILLI;
+  }
+
+  public long getBICInvalidCount ()
+  {
+    return getDiagnosticCount (EText.BIC_INVALID);
+  }
+
+  public long getVATItemMissingCount ()
+  {
+    return getDiagnosticCount (EText.VAT_ITEM_MISSING);
+  }
+
+  public long getERBNoDeliveryDateCount ()
+  {
+    return getDiagnosticCount (EText.ERB_NO_DELIVERY_DATE);
+  }
+
+  @Nonnull
+  @ReturnsMutableCopy
+  public Map <String, Long> getDiagnosticCounts ()
+  {
+    final Map <String, Long> ret = new TreeMap <String, Long> ();
+    for (final Map.Entry <EText, Long> aEntry : getAllDiagnosticCounts ().entrySet ())
+      ret.put (aEntry.getKey ().name (), aEntry.getValue ());
+    return ret;
+  }
+
+  /**
+   * Create the JMX object name for the passed name.
+   *
+   * @param sName
+   *        The name that distinguishes multiple statistics objects, e.g. the
+   *        name of an application. May neither be <code>null</code> nor
+   *        empty.
+   * @return The object name in the domain {@link #JMX_DOMAIN}. Never
+   *         <code>null</code>.
+   * @throws JMException
+   *         If the name is not valid
+   */
+  @Nonnull
+  public static ObjectName createObjectName (@Nonnull @Nonempty final String sName) throws JMException
+  {
+    ValueEnforcer.notEmpty (sName, "Name");
+    return new ObjectName (JMX_DOMAIN + ":type=ConversionStatistics,name=" + ObjectName.quote (sName));
+  }
+
+  /**
+   * Register this object in the platform MBean server.
+   *
+   * @param sName
+   *        The name that distinguishes multiple statistics objects. May
+   *        neither be <code>null</code> nor empty.
+   * @return The object name under which this object was registered. Never
+   *         <code>null</code>.
+   * @throws JMException
+   *         If the registration failed, e.g. because the name is already in
+   *         use
+   * @see #unregisterPlatformMBean(ObjectName)
+   */
+  @Nonnull
+  public ObjectName registerPlatformMBean (@Nonnull @Nonempty final String sName) throws JMException
+  {
+    final ObjectName aObjectName = createObjectName (sName);
+    ManagementFactory.getPlatformMBeanServer ().registerMBean (this, aObjectName);
+    return aObjectName;
+  }
+
+  /**
+   * Unregister an object from the platform MBean server.
+   *
+   * @param aObjectName
+   *        The object name as returned by
+   *        {@link #registerPlatformMBean(String)}. May not be
+   *        <code>null</code>.
+   * @throws JMException
+   *         If the object is not registered
+   */
+  public static void unregisterPlatformMBean (@Nonnull final ObjectName aObjectName) throws JMException
+  {
+    ValueEnforcer.notNull (aObjectName, "ObjectName");
+    ManagementFactory.getPlatformMBeanServer ().unregisterMBean (aObjectName);
+  }
+}
@@ -0,0 +1,45 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.metrics;
+
+/**
+ * The stages of a single conversion for which the duration is reported to an
+ * {@link IConversionMetricsListener}.
+ *
+ * @author philip
+ */
+public enum EConversionStage
+{
+  /** Reading the UBL document */
+  PARSE,
+  /** Consistency check and check of the numeric values of the header */
+  CHECK_CONSISTENCY,
+  /** Biller, invoice recipient, ordering party and references */
+  HEADER,
+  /** Document level tax totals */
+  TAX,
+  /** All invoice or credit note lines */
+  LINES,
+  /** Document level allowances and charges and the totals */
+  ALLOWANCES_CHARGES,
+  /** Payment method and payment conditions */
+  PAYMENT,
+  /** Delivery */
+  DELIVERY,
+  /** Writing the ebInterface document */
+  MARSHAL;
+}
@@ -0,0 +1,241 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.annotation.ReturnsMutableCopy;
+import com.helger.commons.string.ToStringGenerator;
+
+import at.gv.brz.transform.ubl2ebi.AbstractConverter.EText;
+import at.gv.brz.transform.ubl2ebi.error.TransformationError;
+
+/**
+ * Implementation of {@link IConversionMetricsListener} that keeps a
+ * {@link LatencyHistogram} per {@link EConversionStage} and for the total
+ * processing of documents and counts the documents, lines, tax subtotals,
+ * allowances and charges, bytes and diagnostics per {@link EText}. All
+ * recording is lock-free and uses {@link StripedCounter}s, so that it does
+ * not become a point of contention with many concurrent conversions.
+ *
+ * @author philip
+ */
+@ThreadSafe
+public class HistogramConversionMetricsListener implements IConversionMetricsListener
+{
+  private static final EText [] TEXTS = EText.values ();
+
+  // Filled in the constructor and only read afterwards
+  private final Map <EConversionStage, LatencyHistogram> m_aStageHistograms;
+  private final LatencyHistogram m_aProcessingHistogram = new LatencyHistogram ();
+  private final StripedCounter m_aDocumentCount = new StripedCounter ();
+  private final StripedCounter m_aFailedDocumentCount = new StripedCounter ();
+  private final StripedCounter m_aLineCount = new StripedCounter ();
+  private final StripedCounter m_aTaxSubtotalCount = new StripedCounter ();
+  private final StripedCounter m_aAllowanceChargeCount = new StripedCounter ();
+  private final StripedCounter m_aBytesIn = new StripedCounter ();
+  private final StripedCounter m_aBytesOut = new StripedCounter ();
+  // Index is the ordinal of the text
+  private final StripedCounter [] m_aDiagnosticCounts;
+
+  public HistogramConversionMetricsListener ()
+  {
+    m_aStageHistograms = new EnumMap <EConversionStage, LatencyHistogram> (EConversionStage.class);
+    for (final EConversionStage eStage : EConversionStage.values ())
+      m_aStageHistograms.put (eStage, new LatencyHistogram ());
+    m_aDiagnosticCounts = new StripedCounter [TEXTS.length];
+    for (int i = 0; i < TEXTS.length; ++i)
+      m_aDiagnosticCounts[i] = new StripedCounter ();
+  }
+
+  public void onStageCompleted (@Nonnull final EConversionStage eStage, @Nonnegative final long nDurationNanos)
+  {
+    m_aStageHistograms.get (eStage).recordValue (nDurationNanos);
+  }
+
+  public void onDiagnostic (@Nonnull final TransformationError aError, @Nonnegative final int nOccurrenceCount)
+  {
+    m_aDiagnosticCounts[aError.getText ().ordinal ()].add (nOccurrenceCount);
+  }
+
+  public void onDocumentConverted (final boolean bSuccess,
+                                   @Nonnegative final int nLineCount,
+                                   @Nonnegative final int nTaxSubtotalCount,
+                                   @Nonnegative final int nAllowanceChargeCount)
+  {
+    m_aDocumentCount.increment ();
+    if (!bSuccess)
+      m_aFailedDocumentCount.increment ();
+    m_aLineCount.add (nLineCount);
+    m_aTaxSubtotalCount.add (nTaxSubtotalCount);
+    m_aAllowanceChargeCount.add (nAllowanceChargeCount);
+  }
+
+  public void onDocumentProcessed (@Nonnegative final long nDurationNanos,
+                                   @Nonnegative final long nBytesIn,
+                                   @Nonnegative final long nBytesOut)
+  {
+    m_aProcessingHistogram.recordValue (nDurationNanos);
+    m_aBytesIn.add (nBytesIn);
+    m_aBytesOut.add (nBytesOut);
+  }
+
+  public boolean isConversionEventEnabled ()
+  {
+    return false;
+  }
+
+  public void onConversionEvent (@Nonnull final ConversionEvent aEvent)
+  {}
+
+  /**
+   * Get the histogram of the passed stage.
+   *
+   * @param eStage
+   *        The stage. May not be <code>null</code>.
+   * @return The live histogram. Never <code>null</code>.
+   */
+  @Nonnull
+  public LatencyHistogram getStageHistogram (@Nonnull final EConversionStage eStage)
+  {
+    ValueEnforcer.notNull (eStage, "Stage");
+    return m_aStageHistograms.get (eStage);
+  }
+
+  /**
+   * @return The live histogram of the total processing time of documents
+   *         converted by a <code>ConversionPipeline</code>. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  public LatencyHistogram getProcessingHistogram ()
+  {
+    return m_aProcessingHistogram;
+  }
+
+  /**
+   * @return The number of documents that were converted, including the failed
+   *         ones.
+   */
+  @Nonnegative
+  public long getDocumentCount ()
+  {
+    return m_aDocumentCount.sum ();
+  }
+
+  /**
+   * @return The number of documents for which no ebInterface document was
+   *         created.
+   */
+  @Nonnegative
+  public long getFailedDocumentCount ()
+  {
+    return m_aFailedDocumentCount.sum ();
+  }
+
+  @Nonnegative
+  public long getLineCount ()
+  {
+    return m_aLineCount.sum ();
+  }
+
+  @Nonnegative
+  public long getTaxSubtotalCount ()
+  {
+    return m_aTaxSubtotalCount.sum ();
+  }
+
+  @Nonnegative
+  public long getAllowanceChargeCount ()
+  {
+    return m_aAllowanceChargeCount.sum ();
+  }
+
+  /**
+   * @return The number of bytes of all source documents processed by a
+   *         <code>ConversionPipeline</code>.
+   */
+  @Nonnegative
+  public long getBytesIn ()
+  {
+    return m_aBytesIn.sum ();
+  }
+
+  /**
+   * @return The number of bytes of all ebInterface documents created by a
+   *         <code>ConversionPipeline</code>.
+   */
+  @Nonnegative
+  public long getBytesOut ()
+  {
+    return m_aBytesOut.sum ();
+  }
+
+  /**
+   * Get the number of diagnostics with the passed text.
+   *
+   * @param eText
+   *        The text. May not be <code>null</code>.
+   * @return The number of errors and warnings with the passed text.
+   */
+  @Nonnegative
+  public long getDiagnosticCount (@Nonnull final EText eText)
+  {
+    ValueEnforcer.notNull (eText, "Text");
+    return m_aDiagnosticCounts[eText.ordinal ()].sum ();
+  }
+
+  /**
+   * @return The number of diagnostics per text. Only texts that occurred at
+   *         least once are contained. Never <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public Map <EText, Long> getAllDiagnosticCounts ()
+  {
+    final Map <EText, Long> ret = new EnumMap <EText, Long> (EText.class);
+    for (final EText eText : TEXTS)
+    {
+      final long nCount = m_aDiagnosticCounts[eText.ordinal ()].sum ();
+      if (nCount > 0)
+        ret.put (eText, Long.valueOf (nCount));
+    }
+    return ret;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("stageHistograms", m_aStageHistograms)
+                                       .append ("processingHistogram", m_aProcessingHistogram)
+                                       .append ("documentCount", getDocumentCount ())
+                                       .append ("failedDocumentCount", getFailedDocumentCount ())
+                                       .append ("lineCount", getLineCount ())
+                                       .append ("taxSubtotalCount", getTaxSubtotalCount ())
+                                       .append ("allowanceChargeCount", getAllowanceChargeCount ())
+                                       .append ("bytesIn", getBytesIn ())
+                                       .append ("bytesOut", getBytesOut ())
+                                       .append ("diagnosticCounts", getAllDiagnosticCounts ())
+                                       .toString ();
+  }
+}
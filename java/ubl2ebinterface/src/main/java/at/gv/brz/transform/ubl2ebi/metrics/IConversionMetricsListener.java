@@ -0,0 +1,108 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.metrics;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+import at.gv.brz.transform.ubl2ebi.error.TransformationError;
+
+/**
+ * Listener for timings and counts of conversions. Implementations must be
+ * thread-safe, because the same listener is called by all conversions that
+ * run concurrently. The methods are called on the thread performing the
+ * conversion and should return quickly.
+ *
+ * @author philip
+ * @see ConversionMetricsRecorder
+ */
+public interface IConversionMetricsListener
+{
+  /**
+   * Called after a stage of a conversion finished.
+   *
+   * @param eStage
+   *        The finished stage. Never <code>null</code>.
+   * @param nDurationNanos
+   *        The duration of the stage in nanoseconds.
+   */
+  void onStageCompleted (@Nonnull EConversionStage eStage, @Nonnegative long nDurationNanos);
+
+  /**
+   * Called for every diagnostic of a finished conversion, before
+   * {@link #onDocumentConverted(boolean, int, int, int)} is called. If the
+   * repeated errors of the conversion are aggregated, this method is called
+   * once per aggregate with the first occurrence and the number of all
+   * occurrences.
+   *
+   * @param aError
+   *        The error or warning. Never <code>null</code>.
+   * @param nOccurrenceCount
+   *        The number of occurrences represented by the passed error. Always
+   *        &gt; 0.
+   */
+  void onDiagnostic (@Nonnull TransformationError aError, @Nonnegative int nOccurrenceCount);
+
+  /**
+   * Called when the conversion of a document finished.
+   *
+   * @param bSuccess
+   *        <code>true</code> if an ebInterface document was created.
+   * @param nLineCount
+   *        The number of invoice or credit note lines processed.
+   * @param nTaxSubtotalCount
+   *        The number of document level tax subtotals processed.
+   * @param nAllowanceChargeCount
+   *        The number of document level allowances and charges processed.
+   */
+  void onDocumentConverted (boolean bSuccess,
+                            @Nonnegative int nLineCount,
+                            @Nonnegative int nTaxSubtotalCount,
+                            @Nonnegative int nAllowanceChargeCount);
+
+  /**
+   * Called by the <code>ConversionPipeline</code> after a serialized document
+   * was read, converted and written, independent of the success. Not called
+   * if the converters are used directly.
+   *
+   * @param nDurationNanos
+   *        The total duration in nanoseconds.
+   * @param nBytesIn
+   *        The size of the source document in bytes.
+   * @param nBytesOut
+   *        The size of the created ebInterface document in bytes. 0 if no
+   *        document was created.
+   */
+  void onDocumentProcessed (@Nonnegative long nDurationNanos, @Nonnegative long nBytesIn, @Nonnegative long nBytesOut);
+
+  /**
+   * @return <code>true</code> if {@link #onConversionEvent(ConversionEvent)}
+   *         should be called. If <code>false</code> no events are created.
+   *         The result must not change over time.
+   */
+  boolean isConversionEventEnabled ();
+
+  /**
+   * Called after {@link #onDocumentConverted(boolean, int, int, int)} with the
+   * details of the conversion, if {@link #isConversionEventEnabled()} returns
+   * <code>true</code>.
+   *
+   * @param aEvent
+   *        The event. Never <code>null</code>.
+   */
+  void onConversionEvent (@Nonnull ConversionEvent aEvent);
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX management interface of {@link ConversionStatistics}. All values are
+ * collected since the statistics object was created.
+ *
+ * @author philip
+ */
+public interface IConversionStatisticsMXBean
+{
+  /**
+   * @return The number of converted invoices and credit notes, including the
+   *         failed ones.
+   */
+  long getDocumentCount ();
+
+  /**
+   * @return The number of documents for which no ebInterface document was
+   *         created.
+   */
+  long getFailedDocumentCount ();
+
+  /**
+   * @return The number of converted invoice and credit note lines.
+   */
+  long getLineCount ();
+
+  /**
+   * @return The number of converted documents per second, measured since the
+   *         previous call, but over at least one second.
+   */
+  double getDocumentsPerSecond ();
+
+  /**
+   * @return The median of the processing time of a document in
+   *         milliseconds.
+   */
+  double getLatencyP50Millis ();
+
+  /**
+   * @return The 99th percentile of the processing time of a document in
+   *         milliseconds.
+   */
+  double getLatencyP99Millis ();
+
+  /**
+   * @return The 99.9th percentile of the processing time of a document in
+   *         milliseconds.
+   */
+  double getLatencyP999Millis ();
+
+  /**
+   * @return The longest processing time of a document in milliseconds.
+   */
+  double getLatencyMaxMillis ();
+
+  /**
+   * @return The number of bytes of all source documents.
+   */
+  long getBytesIn ();
+
+  /**
+   * @return The number of bytes of all created ebInterface documents.
+   */
+  long getBytesOut ();
+
+  /**
+   * @return The number of invalid BICs.
+   */
+  long getBICInvalidCount ();
+
+  /**
+   * @return The number of documents without any VAT item.
+   */
+  long getVATItemMissingCount ();
+
+  /**
+   * @return The number of documents without delivery date in strict ERB
+   *         mode.
+   */
+  long getERBNoDeliveryDateCount ();
+
+  /**
+   * @return The number of errors and warnings per text name. Only texts that
+   *         occurred at least once are contained. Aggregated errors are
+   *         counted with all their occurrences.
+   */
+  Map <String, Long> getDiagnosticCounts ();
+}
@@ -0,0 +1,207 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.string.ToStringGenerator;
+
+/**
+ * Lock-free histogram of durations in nanoseconds with a fixed memory
+ * footprint. Like an HDR histogram the values are grouped into buckets that
+ * are linear within each power of two, so that each recorded value is
+ * represented with a relative error of less than 1/16 (6.25%) over the whole
+ * range of <code>long</code>.
+ * <p>
+ * Recording only uses atomic increments on striped counters, so it can be
+ * called concurrently from any number of threads. Each stripe has its own row
+ * of buckets, so threads recording values of the same bucket rarely compete
+ * for the same cache line. Reading sums up all rows. The statistics read
+ * while values are recorded are not an atomic snapshot, but each value is
+ * contained at most once.
+ *
+ * @author philip
+ */
+@ThreadSafe
+public final class LatencyHistogram
+{
+  // 16 linear sub-buckets for each power of two
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+  private static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (63 - SUB_BUCKET_BITS) * SUB_BUCKET_HALF_COUNT;
+
+  // Each row has a padding so that two rows never share a cache line. The
+  // number of stripes is limited, as each row has almost 8 KB.
+  private static final int MAX_STRIPE_COUNT = 8;
+  private static final int STRIPE_COUNT = StripedCounter.getStripeCount (MAX_STRIPE_COUNT);
+  private static final int ROW_LENGTH = BUCKET_COUNT + StripedCounter.PADDING;
+
+  private final AtomicLongArray m_aCounts = new AtomicLongArray (STRIPE_COUNT * ROW_LENGTH);
+  private final StripedCounter m_aTotalCount = new StripedCounter ();
+  private final StripedCounter m_aTotalNanos = new StripedCounter ();
+  private final AtomicLong m_aMaxNanos = new AtomicLong ();
+
+  public LatencyHistogram ()
+  {}
+
+  static int getBucketIndex (@Nonnegative final long nValue)
+  {
+    if (nValue < SUB_BUCKET_COUNT)
+      return (int) nValue;
+    final int nMagnitude = 63 - Long.numberOfLeadingZeros (nValue);
+    final int nSubBucket = (int) (nValue >>> (nMagnitude - SUB_BUCKET_BITS + 1));
+    return SUB_BUCKET_COUNT +
+           (nMagnitude - SUB_BUCKET_BITS) *
+           SUB_BUCKET_HALF_COUNT +
+           nSubBucket -
+           SUB_BUCKET_HALF_COUNT;
+  }
+
+  /**
+   * Get the highest value that is recorded in the passed bucket.
+   *
+   * @param nIndex
+   *        The bucket index.
+   * @return The highest value of the bucket.
+   */
+  static long getHighestValueInBucket (@Nonnegative final int nIndex)
+  {
+    if (nIndex < SUB_BUCKET_COUNT)
+      return nIndex;
+    final int nMagnitude = (nIndex - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF_COUNT + SUB_BUCKET_BITS;
+    final long nSubBucket = (nIndex - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF_COUNT + SUB_BUCKET_HALF_COUNT;
+    final int nShift = nMagnitude - SUB_BUCKET_BITS + 1;
+    if (nMagnitude == 62 && nSubBucket == SUB_BUCKET_COUNT - 1)
+      return Long.MAX_VALUE;
+    return ((nSubBucket + 1) << nShift) - 1;
+  }
+
+  /**
+   * Record a single duration.
+   *
+   * @param nNanos
+   *        The duration in nanoseconds. Negative values, e.g. caused by a
+   *        clock adjustment, are recorded as 0.
+   */
+  public void recordValue (final long nNanos)
+  {
+    final long nValue = nNanos < 0 ? 0 : nNanos;
+    m_aCounts.incrementAndGet (StripedCounter.getStripeIndex (STRIPE_COUNT) * ROW_LENGTH + getBucketIndex (nValue));
+    m_aTotalCount.increment ();
+    m_aTotalNanos.add (nValue);
+
+    long nMax = m_aMaxNanos.get ();
+    while (nValue > nMax && !m_aMaxNanos.compareAndSet (nMax, nValue))
+      nMax = m_aMaxNanos.get ();
+  }
+
+  /**
+   * @return The number of recorded values.
+   */
+  @Nonnegative
+  public long getTotalCount ()
+  {
+    return m_aTotalCount.sum ();
+  }
+
+  /**
+   * @return The sum of all recorded values in nanoseconds.
+   */
+  @Nonnegative
+  public long getTotalNanos ()
+  {
+    return m_aTotalNanos.sum ();
+  }
+
+  /**
+   * @return The largest recorded value in nanoseconds or 0 if no value was
+   *         recorded.
+   */
+  @Nonnegative
+  public long getMaxNanos ()
+  {
+    return m_aMaxNanos.get ();
+  }
+
+  /**
+   * @return The mean of all recorded values in nanoseconds or 0 if no value
+   *         was recorded.
+   */
+  public double getMeanNanos ()
+  {
+    final long nCount = m_aTotalCount.sum ();
+    return nCount == 0 ? 0 : (double) m_aTotalNanos.sum () / nCount;
+  }
+
+  /**
+   * Get the value at the passed percentile.
+   *
+   * @param dPercentile
+   *        The percentile. Must be between 0 and 100, e.g. 99.9.
+   * @return The highest value that is equivalent to the value at the passed
+   *         percentile in nanoseconds, or 0 if no value was recorded.
+   */
+  @Nonnegative
+  public long getValueAtPercentile (final double dPercentile)
+  {
+    ValueEnforcer.isBetweenInclusive (dPercentile, "Percentile", 0, 100);
+
+    // Sum up the rows of all stripes once, so that both passes see the same
+    // counts. The total may differ from the total count while recording.
+    final long [] aCounts = new long [BUCKET_COUNT];
+    long nTotal = 0;
+    for (int nStripe = 0; nStripe < STRIPE_COUNT; ++nStripe)
+    {
+      final int nOffset = nStripe * ROW_LENGTH;
+      for (int i = 0; i < BUCKET_COUNT; ++i)
+      {
+        final long nCount = m_aCounts.get (nOffset + i);
+        aCounts[i] += nCount;
+        nTotal += nCount;
+      }
+    }
+    if (nTotal == 0)
+      return 0;
+
+    final long nTarget = Math.max (1, (long) Math.ceil (dPercentile / 100 * nTotal));
+    long nSum = 0;
+    for (int i = 0; i < BUCKET_COUNT; ++i)
+    {
+      nSum += aCounts[i];
+      if (nSum >= nTarget)
+        return Math.min (getHighestValueInBucket (i), m_aMaxNanos.get ());
+    }
+    return m_aMaxNanos.get ();
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("totalCount", getTotalCount ())
+                                       .append ("meanNanos", getMeanNanos ())
+                                       .append ("p50Nanos", getValueAtPercentile (50))
+                                       .append ("p99Nanos", getValueAtPercentile (99))
+                                       .append ("maxNanos", getMaxNanos ())
+                                       .toString ();
+  }
+}
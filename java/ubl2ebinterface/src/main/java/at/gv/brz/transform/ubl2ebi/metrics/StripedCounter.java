@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A counter that is updated by many threads concurrently. The value is
+ * distributed over several cells, each on its own cache line, that are
+ * selected by the current thread. So concurrent updates rarely compete for
+ * the same memory location. Reading the value is more expensive, as all
+ * cells need to be summed up. This is a simplified replacement for
+ * <code>java.util.concurrent.atomic.LongAdder</code> which is only available
+ * with Java 8.
+ *
+ * @author philip
+ */
+@ThreadSafe
+public final class StripedCounter
+{
+  // 8 longs = 64 bytes, the usual size of a cache line
+  static final int PADDING = 8;
+  private static final int MAX_STRIPE_COUNT = 32;
+  private static final int STRIPE_COUNT = getStripeCount (MAX_STRIPE_COUNT);
+
+  private final AtomicLongArray m_aCells = new AtomicLongArray (STRIPE_COUNT * PADDING);
+
+  public StripedCounter ()
+  {}
+
+  /**
+   * @param nMaxStripeCount
+   *        The maximum number of stripes. Must be a power of two.
+   * @return The number of stripes to use: the number of processors rounded up
+   *         to the next power of two, but at most the passed maximum.
+   */
+  static int getStripeCount (final int nMaxStripeCount)
+  {
+    // Must be a power of two
+    final int nProcessors = Runtime.getRuntime ().availableProcessors ();
+    int ret = 1;
+    while (ret < nProcessors && ret < nMaxStripeCount)
+      ret <<= 1;
+    return ret;
+  }
+
+  /**
+   * @param nStripeCount
+   *        The number of stripes as returned by {@link #getStripeCount(int)}.
+   * @return The stripe of the current thread.
+   */
+  static int getStripeIndex (final int nStripeCount)
+  {
+    // Thread IDs are assigned sequentially, so threads of a pool are spread
+    // evenly
+    return (int) Thread.currentThread ().getId () & (nStripeCount - 1);
+  }
+
+  private static int _getCellIndex ()
+  {
+    return getStripeIndex (STRIPE_COUNT) * PADDING;
+  }
+
+  /**
+   * Add the passed value.
+   *
+   * @param nValue
+   *        The value to add.
+   */
+  public void add (final long nValue)
+  {
+    m_aCells.addAndGet (_getCellIndex (), nValue);
+  }
+
+  /**
+   * Add 1.
+   */
+  public void increment ()
+  {
+    m_aCells.incrementAndGet (_getCellIndex ());
+  }
+
+  /**
+   * @return The sum of all cells. Updates that happen concurrently may or may
+   *         not be contained.
+   */
+  public long sum ()
+  {
+    long ret = 0;
+    for (int i = 0; i < STRIPE_COUNT; ++i)
+      ret += m_aCells.get (i * PADDING);
+    return ret;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return Long.toString (sum ());
+  }
+}
@@ -0,0 +1,698 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.synthetic;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeConstants;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.datatype.XMLGregorianCalendar;
+
+import com.helger.commons.CGlobal;
+import com.helger.commons.ValueEnforcer;
+import com.helger.peppol.codelist.ETaxSchemeID;
+import com.helger.ubl21.codelist.EUnitOfMeasureCode21;
+
+import at.gv.brz.transform.ubl2ebi.AbstractConverter;
+import at.gv.brz.transform.ubl2ebi.CPeppolUBL;
+import at.gv.brz.transform.ubl2ebi.JAXBPool;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.AddressType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.AllowanceChargeType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.BranchType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.ContactType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.CountryType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.CreditNoteLineType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.CustomerPartyType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.DeliveryType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.FinancialAccountType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.FinancialInstitutionType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.InvoiceLineType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.ItemType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.LocationType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.MonetaryTotalType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.OrderLineReferenceType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.OrderReferenceType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.PartyNameType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.PartyTaxSchemeType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.PartyType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.PaymentMeansType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.PriceType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.SupplierPartyType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.TaxCategoryType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.TaxSchemeType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.TaxSubtotalType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.TaxTotalType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.ActualDeliveryDateType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.AllowanceChargeReasonType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.AmountType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.BaseAmountType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.ChargeIndicatorType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.CityNameType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.CompanyIDType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.CreditedQuantityType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.DescriptionType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.DocumentCurrencyCodeType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.ElectronicMailType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.IDType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.IdentificationCodeType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.InvoiceTypeCodeType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.InvoicedQuantityType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.IssueDateType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.LineExtensionAmountType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.LineIDType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.MultiplierFactorNumericType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.NameType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.PayableAmountType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.PaymentDueDateType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.PaymentMeansCodeType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.PercentType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.PostalZoneType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.PriceAmountType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.ProfileIDType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.StreetNameType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.TaxAmountType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.TaxExclusiveAmountType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.TaxInclusiveAmountType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.TaxableAmountType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.UBLVersionIDType;
+import oasis.names.specification.ubl.schema.xsd.creditnote_21.CreditNoteType;
+import oasis.names.specification.ubl.schema.xsd.invoice_21.InvoiceType;
+
+/**
+ * Creates synthetic but valid UBL 2.1 invoices and credit notes of arbitrary
+ * size. The output only depends on the provided
+ * {@link SyntheticDocumentSettings}, so the same settings always create the
+ * same document. This is meant for scaling tests and benchmarks where the
+ * regular test files are much too small.
+ *
+ * @author philip
+ */
+@Immutable
+public final class SyntheticDocumentGenerator
+{
+  public static final String CURRENCY = "EUR";
+  public static final String PROFILE_ID = "urn:www.cenbii.eu:profile:bii05:ver1.0";
+  public static final String TAX_CATEGORY_SCHEME_ID = "UN/ECE 5305";
+  public static final String ORDER_REFERENCE_ID = "SYNTHETIC-ORDER";
+
+  /** The predefined tax categories. Further ones are generated. */
+  private static final String [] TAX_CATEGORY_IDS = new String [] { "S", "AA", "AB", "Z", "E" };
+  private static final int [] TAX_CATEGORY_PERCENTAGES = new int [] { 20, 10, 13, 0, 0 };
+
+  private static final BigDecimal ALLOWANCE_CHARGE_FACTOR = new BigDecimal ("0.05");
+
+  /**
+   * The data of a single line, that is independent of invoice or credit note
+   */
+  private static final class LineData
+  {
+    int m_nTaxCategoryIndex;
+    BigDecimal m_aQuantity;
+    BigDecimal m_aPrice;
+    Boolean m_aChargeIndicator;
+    BigDecimal m_aAllowanceChargeBase;
+    BigDecimal m_aAllowanceChargeAmount;
+    BigDecimal m_aLineExtensionAmount;
+    boolean m_bDelivery;
+    boolean m_bOrderLineReference;
+  }
+
+  private final SyntheticDocumentSettings m_aSettings;
+  private final XMLGregorianCalendar m_aIssueDate;
+
+  public SyntheticDocumentGenerator (@Nonnull final SyntheticDocumentSettings aSettings)
+  {
+    ValueEnforcer.notNull (aSettings, "Settings");
+    m_aSettings = aSettings.getClone ();
+    try
+    {
+      m_aIssueDate = DatatypeFactory.newInstance ().newXMLGregorianCalendarDate (2014,
+                                                                                 1,
+                                                                                 15,
+                                                                                 DatatypeConstants.FIELD_UNDEFINED);
+    }
+    catch (final DatatypeConfigurationException ex)
+    {
+      throw new IllegalStateException ("Failed to create DatatypeFactory", ex);
+    }
+  }
+
+  /**
+   * @return A copy of the settings used. Never <code>null</code>.
+   */
+  @Nonnull
+  public SyntheticDocumentSettings getSettings ()
+  {
+    return m_aSettings.getClone ();
+  }
+
+  @Nonnull
+  private static String _getTaxCategoryID (@Nonnegative final int nIndex)
+  {
+    return nIndex < TAX_CATEGORY_IDS.length ? TAX_CATEGORY_IDS[nIndex] : "C" + nIndex;
+  }
+
+  @Nonnull
+  private static BigDecimal _getTaxCategoryPercentage (@Nonnegative final int nIndex)
+  {
+    return BigDecimal.valueOf (nIndex < TAX_CATEGORY_PERCENTAGES.length ? TAX_CATEGORY_PERCENTAGES[nIndex]
+                                                                        : nIndex % 25);
+  }
+
+  @Nonnull
+  private static IDType _createID (@Nonnull final String sValue)
+  {
+    final IDType ret = new IDType ();
+    ret.setValue (sValue);
+    return ret;
+  }
+
+  @Nonnull
+  private static IDType _createID (@Nonnull final String sSchemeID, @Nonnull final String sValue)
+  {
+    final IDType ret = _createID (sValue);
+    ret.setSchemeID (sSchemeID);
+    return ret;
+  }
+
+  @Nonnull
+  private static NameType _createName (@Nonnull final String sValue)
+  {
+    final NameType ret = new NameType ();
+    ret.setValue (sValue);
+    return ret;
+  }
+
+  @Nonnull
+  private static TaxSchemeType _createVATTaxScheme ()
+  {
+    final TaxSchemeType ret = new TaxSchemeType ();
+    ret.setID (_createID (AbstractConverter.SUPPORTED_TAX_SCHEME_SCHEME_ID, ETaxSchemeID.VALUE_ADDED_TAX.getID ()));
+    return ret;
+  }
+
+  /**
+   * Create a tax category
+   *
+   * @param nIndex
+   *        The index of the tax category
+   * @param bWithPercentage
+   *        <code>false</code> to omit the percentage, so that the converter
+   *        must resolve it from the tax subtotals.
+   */
+  @Nonnull
+  private static TaxCategoryType _createTaxCategory (@Nonnegative final int nIndex, final boolean bWithPercentage)
+  {
+    final TaxCategoryType ret = new TaxCategoryType ();
+    ret.setID (_createID (TAX_CATEGORY_SCHEME_ID, _getTaxCategoryID (nIndex)));
+    if (bWithPercentage)
+    {
+      final PercentType aPercent = new PercentType ();
+      aPercent.setValue (_getTaxCategoryPercentage (nIndex));
+      ret.setPercent (aPercent);
+    }
+    ret.setTaxScheme (_createVATTaxScheme ());
+    return ret;
+  }
+
+  @Nonnull
+  private static AddressType _createAddress (@Nonnull final String sStreet,
+                                             @Nonnull final String sCity,
+                                             @Nonnull final String sZIP)
+  {
+    final AddressType ret = new AddressType ();
+    final StreetNameType aStreet = new StreetNameType ();
+    aStreet.setValue (sStreet);
+    ret.setStreetName (aStreet);
+    final CityNameType aCity = new CityNameType ();
+    aCity.setValue (sCity);
+    ret.setCityName (aCity);
+    final PostalZoneType aZIP = new PostalZoneType ();
+    aZIP.setValue (sZIP);
+    ret.setPostalZone (aZIP);
+    final CountryType aCountry = new CountryType ();
+    final IdentificationCodeType aCountryCode = new IdentificationCodeType ();
+    aCountryCode.setValue ("AT");
+    aCountry.setIdentificationCode (aCountryCode);
+    ret.setCountry (aCountry);
+    return ret;
+  }
+
+  @Nonnull
+  private static PartyType _createParty (@Nonnull final String sName,
+                                         @Nonnull final String sVATIN,
+                                         @Nonnull final String sEmail,
+                                         @Nonnull final AddressType aAddress)
+  {
+    final PartyType ret = new PartyType ();
+    final PartyNameType aPartyName = new PartyNameType ();
+    aPartyName.setName (_createName (sName));
+    ret.getPartyName ().add (aPartyName);
+    ret.setPostalAddress (aAddress);
+
+    final PartyTaxSchemeType aPartyTaxScheme = new PartyTaxSchemeType ();
+    final CompanyIDType aCompanyID = new CompanyIDType ();
+    aCompanyID.setValue (sVATIN);
+    aPartyTaxScheme.setCompanyID (aCompanyID);
+    aPartyTaxScheme.setTaxScheme (_createVATTaxScheme ());
+    ret.getPartyTaxScheme ().add (aPartyTaxScheme);
+
+    final ContactType aContact = new ContactType ();
+    final ElectronicMailType aEmail = new ElectronicMailType ();
+    aEmail.setValue (sEmail);
+    aContact.setElectronicMail (aEmail);
+    ret.setContact (aContact);
+    return ret;
+  }
+
+  @Nonnull
+  private static SupplierPartyType _createSupplier ()
+  {
+    final SupplierPartyType ret = new SupplierPartyType ();
+    ret.setParty (_createParty ("Synthetic Supplier GmbH",
+                                "ATU12345678",
+                                "supplier@example.org",
+                                _createAddress ("Lieferantenweg 1", "Wien", "1010")));
+    return ret;
+  }
+
+  @Nonnull
+  private static CustomerPartyType _createCustomer ()
+  {
+    final CustomerPartyType ret = new CustomerPartyType ();
+    ret.setParty (_createParty ("Synthetic Customer AG",
+                                "ATU87654321",
+                                "customer@example.org",
+                                _createAddress ("Kundenstrasse 2", "Graz", "8010")));
+    return ret;
+  }
+
+  @Nonnull
+  private OrderReferenceType _createOrderReference ()
+  {
+    final OrderReferenceType ret = new OrderReferenceType ();
+    ret.setID (_createID (ORDER_REFERENCE_ID));
+    return ret;
+  }
+
+  @Nonnull
+  private DeliveryType _createDelivery (@Nonnull final String sStreet)
+  {
+    final DeliveryType ret = new DeliveryType ();
+    final ActualDeliveryDateType aDeliveryDate = new ActualDeliveryDateType ();
+    aDeliveryDate.setValue (m_aIssueDate);
+    ret.setActualDeliveryDate (aDeliveryDate);
+    final LocationType aLocation = new LocationType ();
+    aLocation.setAddress (_createAddress (sStreet, "Linz", "4020"));
+    ret.setDeliveryLocation (aLocation);
+    final PartyType aDeliveryParty = new PartyType ();
+    final PartyNameType aPartyName = new PartyNameType ();
+    aPartyName.setName (_createName ("Synthetic Warehouse"));
+    aDeliveryParty.getPartyName ().add (aPartyName);
+    ret.setDeliveryParty (aDeliveryParty);
+    return ret;
+  }
+
+  @Nonnull
+  private PaymentMeansType _createPaymentMeans ()
+  {
+    final PaymentMeansType ret = new PaymentMeansType ();
+    final PaymentMeansCodeType aCode = new PaymentMeansCodeType ();
+    aCode.setValue ("31");
+    ret.setPaymentMeansCode (aCode);
+    final PaymentDueDateType aDueDate = new PaymentDueDateType ();
+    aDueDate.setValue (m_aIssueDate);
+    ret.setPaymentDueDate (aDueDate);
+
+    final FinancialAccountType aAccount = new FinancialAccountType ();
+    aAccount.setID (_createID ("AT611904300234573201"));
+    final FinancialInstitutionType aInstitution = new FinancialInstitutionType ();
+    aInstitution.setID (_createID ("BKAUATWW"));
+    final BranchType aBranch = new BranchType ();
+    aBranch.setFinancialInstitution (aInstitution);
+    aAccount.setFinancialInstitutionBranch (aBranch);
+    ret.setPayeeFinancialAccount (aAccount);
+    return ret;
+  }
+
+  /**
+   * Create all the line data. Because the random number generator is freshly
+   * seeded for every document, the result only depends on the settings.
+   */
+  @Nonnull
+  private List <LineData> _createAllLineData ()
+  {
+    final Random aRandom = new Random (m_aSettings.getSeed ());
+    final int nLineCount = m_aSettings.getLineCount ();
+    final List <LineData> ret = new ArrayList <LineData> (nLineCount);
+    for (int i = 0; i < nLineCount; ++i)
+    {
+      final LineData aLine = new LineData ();
+      aLine.m_nTaxCategoryIndex = aRandom.nextInt (m_aSettings.getTaxCategoryCount ());
+      aLine.m_aQuantity = BigDecimal.valueOf (1 + aRandom.nextInt (100));
+      aLine.m_aPrice = BigDecimal.valueOf (100 + aRandom.nextInt (100000), 2);
+
+      BigDecimal aLineAmount = aLine.m_aQuantity.multiply (aLine.m_aPrice);
+      if (aRandom.nextDouble () < m_aSettings.getAllowanceChargeDensity ())
+      {
+        final boolean bCharge = aRandom.nextBoolean ();
+        aLine.m_aChargeIndicator = Boolean.valueOf (bCharge);
+        aLine.m_aAllowanceChargeBase = aLineAmount;
+        aLine.m_aAllowanceChargeAmount = aLineAmount.multiply (ALLOWANCE_CHARGE_FACTOR)
+                                                    .setScale (AbstractConverter.SCALE_PRICE2,
+                                                               AbstractConverter.ROUNDING_MODE);
+        aLineAmount = bCharge ? aLineAmount.add (aLine.m_aAllowanceChargeAmount)
+                              : aLineAmount.subtract (aLine.m_aAllowanceChargeAmount);
+      }
+      aLine.m_aLineExtensionAmount = aLineAmount.setScale (AbstractConverter.SCALE_PRICE2,
+                                                           AbstractConverter.ROUNDING_MODE);
+      aLine.m_bDelivery = aRandom.nextDouble () < m_aSettings.getLineDeliveryDensity ();
+      aLine.m_bOrderLineReference = aRandom.nextDouble () < m_aSettings.getOrderLineReferenceDensity ();
+      ret.add (aLine);
+    }
+    return ret;
+  }
+
+  @Nonnull
+  private static LineExtensionAmountType _createLineExtensionAmount (@Nonnull final BigDecimal aValue)
+  {
+    final LineExtensionAmountType ret = new LineExtensionAmountType ();
+    ret.setCurrencyID (CURRENCY);
+    ret.setValue (aValue);
+    return ret;
+  }
+
+  @Nonnull
+  private static TaxAmountType _createTaxAmount (@Nonnull final BigDecimal aValue)
+  {
+    final TaxAmountType ret = new TaxAmountType ();
+    ret.setCurrencyID (CURRENCY);
+    ret.setValue (aValue);
+    return ret;
+  }
+
+  @Nonnull
+  private static ItemType _createItem (@Nonnegative final int nLineIndex, @Nonnull final LineData aLine)
+  {
+    final ItemType ret = new ItemType ();
+    final DescriptionType aDescription = new DescriptionType ();
+    aDescription.setValue ("Synthetic article number " + (nLineIndex + 1));
+    ret.getDescription ().add (aDescription);
+    ret.setName (_createName ("Article " + (nLineIndex + 1)));
+    // Without percentage to force the lookup in the tax subtotals
+    ret.getClassifiedTaxCategory ().add (_createTaxCategory (aLine.m_nTaxCategoryIndex, false));
+    return ret;
+  }
+
+  @Nonnull
+  private static PriceType _createPrice (@Nonnull final LineData aLine)
+  {
+    final PriceType ret = new PriceType ();
+    final PriceAmountType aPriceAmount = new PriceAmountType ();
+    aPriceAmount.setCurrencyID (CURRENCY);
+    aPriceAmount.setValue (aLine.m_aPrice);
+    ret.setPriceAmount (aPriceAmount);
+    return ret;
+  }
+
+  @Nonnull
+  private static AllowanceChargeType _createAllowanceCharge (@Nonnull final LineData aLine)
+  {
+    final AllowanceChargeType ret = new AllowanceChargeType ();
+    final ChargeIndicatorType aChargeIndicator = new ChargeIndicatorType ();
+    aChargeIndicator.setValue (aLine.m_aChargeIndicator.booleanValue ());
+    ret.setChargeIndicator (aChargeIndicator);
+    final AllowanceChargeReasonType aReason = new AllowanceChargeReasonType ();
+    aReason.setValue (aLine.m_aChargeIndicator.booleanValue () ? "Express surcharge" : "Volume discount");
+    ret.getAllowanceChargeReason ().add (aReason);
+    final MultiplierFactorNumericType aFactor = new MultiplierFactorNumericType ();
+    aFactor.setValue (ALLOWANCE_CHARGE_FACTOR);
+    ret.setMultiplierFactorNumeric (aFactor);
+    final AmountType aAmount = new AmountType ();
+    aAmount.setCurrencyID (CURRENCY);
+    aAmount.setValue (aLine.m_aAllowanceChargeAmount);
+    ret.setAmount (aAmount);
+    final BaseAmountType aBaseAmount = new BaseAmountType ();
+    aBaseAmount.setCurrencyID (CURRENCY);
+    aBaseAmount.setValue (aLine.m_aAllowanceChargeBase);
+    ret.setBaseAmount (aBaseAmount);
+    return ret;
+  }
+
+  @Nonnull
+  private static OrderLineReferenceType _createOrderLineReference (@Nonnegative final int nLineIndex)
+  {
+    final OrderLineReferenceType ret = new OrderLineReferenceType ();
+    final LineIDType aLineID = new LineIDType ();
+    aLineID.setValue (Integer.toString (nLineIndex + 1));
+    ret.setLineID (aLineID);
+    return ret;
+  }
+
+  /**
+   * Create the tax total and the monetary total from the lines.
+   */
+  private void _createTotals (@Nonnull final List <LineData> aLines,
+                              @Nonnull final List <TaxTotalType> aTargetTaxTotals,
+                              @Nonnull final MonetaryTotalType aTargetMonetaryTotal)
+  {
+    final int nTaxCategoryCount = m_aSettings.getTaxCategoryCount ();
+    final BigDecimal [] aTaxableAmounts = new BigDecimal [nTaxCategoryCount];
+    BigDecimal aLineExtensionTotal = BigDecimal.ZERO;
+    for (final LineData aLine : aLines)
+    {
+      final int nIndex = aLine.m_nTaxCategoryIndex;
+      aTaxableAmounts[nIndex] = aTaxableAmounts[nIndex] == null ? aLine.m_aLineExtensionAmount
+                                                                : aTaxableAmounts[nIndex].add (aLine.m_aLineExtensionAmount);
+      aLineExtensionTotal = aLineExtensionTotal.add (aLine.m_aLineExtensionAmount);
+    }
+
+    final TaxTotalType aTaxTotal = new TaxTotalType ();
+    BigDecimal aTaxTotalAmount = BigDecimal.ZERO;
+    for (int i = 0; i < nTaxCategoryCount; ++i)
+      if (aTaxableAmounts[i] != null)
+      {
+        final BigDecimal aTaxAmount = aTaxableAmounts[i].multiply (_getTaxCategoryPercentage (i))
+                                                        .divide (CGlobal.BIGDEC_100,
+                                                                 AbstractConverter.SCALE_PRICE2,
+                                                                 AbstractConverter.ROUNDING_MODE);
+        final TaxSubtotalType aSubtotal = new TaxSubtotalType ();
+        final TaxableAmountType aTaxableAmount = new TaxableAmountType ();
+        aTaxableAmount.setCurrencyID (CURRENCY);
+        aTaxableAmount.setValue (aTaxableAmounts[i]);
+        aSubtotal.setTaxableAmount (aTaxableAmount);
+        aSubtotal.setTaxAmount (_createTaxAmount (aTaxAmount));
+        aSubtotal.setTaxCategory (_createTaxCategory (i, true));
+        aTaxTotal.getTaxSubtotal ().add (aSubtotal);
+        aTaxTotalAmount = aTaxTotalAmount.add (aTaxAmount);
+      }
+    aTaxTotal.setTaxAmount (_createTaxAmount (aTaxTotalAmount));
+    aTargetTaxTotals.add (aTaxTotal);
+
+    final BigDecimal aTaxInclusive = aLineExtensionTotal.add (aTaxTotalAmount);
+    aTargetMonetaryTotal.setLineExtensionAmount (_createLineExtensionAmount (aLineExtensionTotal));
+    final TaxExclusiveAmountType aTaxExclusiveAmount = new TaxExclusiveAmountType ();
+    aTaxExclusiveAmount.setCurrencyID (CURRENCY);
+    aTaxExclusiveAmount.setValue (aLineExtensionTotal);
+    aTargetMonetaryTotal.setTaxExclusiveAmount (aTaxExclusiveAmount);
+    final TaxInclusiveAmountType aTaxInclusiveAmount = new TaxInclusiveAmountType ();
+    aTaxInclusiveAmount.setCurrencyID (CURRENCY);
+    aTaxInclusiveAmount.setValue (aTaxInclusive);
+    aTargetMonetaryTotal.setTaxInclusiveAmount (aTaxInclusiveAmount);
+    final PayableAmountType aPayableAmount = new PayableAmountType ();
+    aPayableAmount.setCurrencyID (CURRENCY);
+    aPayableAmount.setValue (aTaxInclusive);
+    aTargetMonetaryTotal.setPayableAmount (aPayableAmount);
+  }
+
+  @Nonnull
+  private UBLVersionIDType _createUBLVersionID ()
+  {
+    final UBLVersionIDType ret = new UBLVersionIDType ();
+    ret.setValue (CPeppolUBL.UBL_VERSION_21);
+    return ret;
+  }
+
+  @Nonnull
+  private ProfileIDType _createProfileID ()
+  {
+    final ProfileIDType ret = new ProfileIDType ();
+    ret.setValue (PROFILE_ID);
+    return ret;
+  }
+
+  @Nonnull
+  private IssueDateType _createIssueDate ()
+  {
+    final IssueDateType ret = new IssueDateType ();
+    ret.setValue (m_aIssueDate);
+    return ret;
+  }
+
+  @Nonnull
+  private static DocumentCurrencyCodeType _createDocumentCurrencyCode ()
+  {
+    final DocumentCurrencyCodeType ret = new DocumentCurrencyCodeType ();
+    ret.setValue (CURRENCY);
+    return ret;
+  }
+
+  /**
+   * @return A new synthetic UBL invoice. Never <code>null</code>.
+   */
+  @Nonnull
+  public InvoiceType createInvoice ()
+  {
+    final InvoiceType ret = new InvoiceType ();
+    ret.setUBLVersionID (_createUBLVersionID ());
+    ret.setProfileID (_createProfileID ());
+    ret.setID (_createID ("SYNTHETIC-INVOICE-" + m_aSettings.getSeed ()));
+    ret.setIssueDate (_createIssueDate ());
+    final InvoiceTypeCodeType aInvoiceTypeCode = new InvoiceTypeCodeType ();
+    aInvoiceTypeCode.setValue (AbstractConverter.INVOICE_TYPE_CODE);
+    ret.setInvoiceTypeCode (aInvoiceTypeCode);
+    ret.setDocumentCurrencyCode (_createDocumentCurrencyCode ());
+    ret.setOrderReference (_createOrderReference ());
+    ret.setAccountingSupplierParty (_createSupplier ());
+    ret.setAccountingCustomerParty (_createCustomer ());
+    ret.getDelivery ().add (_createDelivery ("Lieferadresse 3"));
+    ret.getPaymentMeans ().add (_createPaymentMeans ());
+
+    final List <LineData> aLines = _createAllLineData ();
+    final MonetaryTotalType aMonetaryTotal = new MonetaryTotalType ();
+    _createTotals (aLines, ret.getTaxTotal (), aMonetaryTotal);
+    ret.setLegalMonetaryTotal (aMonetaryTotal);
+
+    int nLineIndex = 0;
+    for (final LineData aLine : aLines)
+    {
+      final InvoiceLineType aUBLLine = new InvoiceLineType ();
+      aUBLLine.setID (_createID (Integer.toString (nLineIndex + 1)));
+      final InvoicedQuantityType aQuantity = new InvoicedQuantityType ();
+      aQuantity.setUnitCode (EUnitOfMeasureCode21.C62.getID ());
+      aQuantity.setValue (aLine.m_aQuantity);
+      aUBLLine.setInvoicedQuantity (aQuantity);
+      aUBLLine.setLineExtensionAmount (_createLineExtensionAmount (aLine.m_aLineExtensionAmount));
+      if (aLine.m_bOrderLineReference)
+        aUBLLine.getOrderLineReference ().add (_createOrderLineReference (nLineIndex));
+      if (aLine.m_bDelivery)
+        aUBLLine.getDelivery ().add (_createDelivery ("Lagerplatz " + (nLineIndex + 1)));
+      if (aLine.m_aChargeIndicator != null)
+        aUBLLine.getAllowanceCharge ().add (_createAllowanceCharge (aLine));
+      aUBLLine.setItem (_createItem (nLineIndex, aLine));
+      aUBLLine.setPrice (_createPrice (aLine));
+      ret.getInvoiceLine ().add (aUBLLine);
+      ++nLineIndex;
+    }
+    return ret;
+  }
+
+  /**
+   * @return A new synthetic UBL credit note. Never <code>null</code>.
+   */
+  @Nonnull
+  public CreditNoteType createCreditNote ()
+  {
+    final CreditNoteType ret = new CreditNoteType ();
+    ret.setUBLVersionID (_createUBLVersionID ());
+    ret.setProfileID (_createProfileID ());
+    ret.setID (_createID ("SYNTHETIC-CREDITNOTE-" + m_aSettings.getSeed ()));
+    ret.setIssueDate (_createIssueDate ());
+    ret.setDocumentCurrencyCode (_createDocumentCurrencyCode ());
+    ret.setOrderReference (_createOrderReference ());
+    ret.setAccountingSupplierParty (_createSupplier ());
+    ret.setAccountingCustomerParty (_createCustomer ());
+    ret.getDelivery ().add (_createDelivery ("Lieferadresse 3"));
+
+    final List <LineData> aLines = _createAllLineData ();
+    final MonetaryTotalType aMonetaryTotal = new MonetaryTotalType ();
+    _createTotals (aLines, ret.getTaxTotal (), aMonetaryTotal);
+    ret.setLegalMonetaryTotal (aMonetaryTotal);
+
+    int nLineIndex = 0;
+    for (final LineData aLine : aLines)
+    {
+      final CreditNoteLineType aUBLLine = new CreditNoteLineType ();
+      aUBLLine.setID (_createID (Integer.toString (nLineIndex + 1)));
+      final CreditedQuantityType aQuantity = new CreditedQuantityType ();
+      aQuantity.setUnitCode (EUnitOfMeasureCode21.C62.getID ());
+      aQuantity.setValue (aLine.m_aQuantity);
+      aUBLLine.setCreditedQuantity (aQuantity);
+      aUBLLine.setLineExtensionAmount (_createLineExtensionAmount (aLine.m_aLineExtensionAmount));
+      if (aLine.m_bOrderLineReference)
+        aUBLLine.getOrderLineReference ().add (_createOrderLineReference (nLineIndex));
+      if (aLine.m_bDelivery)
+        aUBLLine.getDelivery ().add (_createDelivery ("Lagerplatz " + (nLineIndex + 1)));
+      if (aLine.m_aChargeIndicator != null)
+        aUBLLine.getAllowanceCharge ().add (_createAllowanceCharge (aLine));
+      aUBLLine.setItem (_createItem (nLineIndex, aLine));
+      aUBLLine.setPrice (_createPrice (aLine));
+      ret.getCreditNoteLine ().add (aUBLLine);
+      ++nLineIndex;
+    }
+    return ret;
+  }
+
+  @Nonnull
+  private static byte [] _marshal (final boolean bCreditNote, @Nonnull final Object aJAXBElement)
+  {
+    try
+    {
+      final Marshaller aMarshaller = bCreditNote ? JAXBPool.getUBLCreditNoteMarshaller ()
+                                                 : JAXBPool.getUBLInvoiceMarshaller ();
+      final ByteArrayOutputStream aBAOS = new ByteArrayOutputStream ();
+      aMarshaller.marshal (aJAXBElement, aBAOS);
+      return aBAOS.toByteArray ();
+    }
+    catch (final JAXBException ex)
+    {
+      throw new IllegalStateException ("Failed to serialize synthetic UBL document", ex);
+    }
+  }
+
+  /**
+   * @return A new synthetic UBL invoice serialized as UTF-8 XML. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  public byte [] createInvoiceBytes ()
+  {
+    return _marshal (false,
+                     new oasis.names.specification.ubl.schema.xsd.invoice_21.ObjectFactory ().createInvoice (createInvoice ()));
+  }
+
+  /**
+   * @return A new synthetic UBL credit note serialized as UTF-8 XML. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  public byte [] createCreditNoteBytes ()
+  {
+    return _marshal (true,
+                     new oasis.names.specification.ubl.schema.xsd.creditnote_21.ObjectFactory ().createCreditNote (createCreditNote ()));
+  }
+}
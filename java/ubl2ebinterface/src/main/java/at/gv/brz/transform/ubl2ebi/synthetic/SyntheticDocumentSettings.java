@@ -0,0 +1,194 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.synthetic;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.string.ToStringGenerator;
+
+/**
+ * Settings for the {@link SyntheticDocumentGenerator}. All densities are
+ * probabilities between 0 and 1 that are evaluated per line.
+ *
+ * @author philip
+ */
+@NotThreadSafe
+public final class SyntheticDocumentSettings
+{
+  public static final long DEFAULT_SEED = 20140101L;
+  public static final int DEFAULT_LINE_COUNT = 10;
+  public static final int DEFAULT_TAX_CATEGORY_COUNT = 1;
+  public static final double DEFAULT_ALLOWANCE_CHARGE_DENSITY = 0;
+  public static final double DEFAULT_LINE_DELIVERY_DENSITY = 0;
+  public static final double DEFAULT_ORDER_LINE_REFERENCE_DENSITY = 0;
+
+  private long m_nSeed = DEFAULT_SEED;
+  private int m_nLineCount = DEFAULT_LINE_COUNT;
+  private int m_nTaxCategoryCount = DEFAULT_TAX_CATEGORY_COUNT;
+  private double m_dAllowanceChargeDensity = DEFAULT_ALLOWANCE_CHARGE_DENSITY;
+  private double m_dLineDeliveryDensity = DEFAULT_LINE_DELIVERY_DENSITY;
+  private double m_dOrderLineReferenceDensity = DEFAULT_ORDER_LINE_REFERENCE_DENSITY;
+
+  public SyntheticDocumentSettings ()
+  {}
+
+  public long getSeed ()
+  {
+    return m_nSeed;
+  }
+
+  /**
+   * @param nSeed
+   *        The seed of the random number generator. The same settings always
+   *        create the same document.
+   * @return this
+   */
+  @Nonnull
+  public SyntheticDocumentSettings setSeed (final long nSeed)
+  {
+    m_nSeed = nSeed;
+    return this;
+  }
+
+  @Nonnegative
+  public int getLineCount ()
+  {
+    return m_nLineCount;
+  }
+
+  /**
+   * @param nLineCount
+   *        Number of invoice/credit note lines to create. Must be &gt; 0.
+   * @return this
+   */
+  @Nonnull
+  public SyntheticDocumentSettings setLineCount (@Nonnegative final int nLineCount)
+  {
+    ValueEnforcer.isGT0 (nLineCount, "LineCount");
+    m_nLineCount = nLineCount;
+    return this;
+  }
+
+  @Nonnegative
+  public int getTaxCategoryCount ()
+  {
+    return m_nTaxCategoryCount;
+  }
+
+  /**
+   * @param nTaxCategoryCount
+   *        Number of distinct VAT categories the lines are distributed over.
+   *        Must be &gt; 0.
+   * @return this
+   */
+  @Nonnull
+  public SyntheticDocumentSettings setTaxCategoryCount (@Nonnegative final int nTaxCategoryCount)
+  {
+    ValueEnforcer.isGT0 (nTaxCategoryCount, "TaxCategoryCount");
+    m_nTaxCategoryCount = nTaxCategoryCount;
+    return this;
+  }
+
+  private static void _checkDensity (final double dDensity, @Nonnull final String sName)
+  {
+    if (dDensity < 0 || dDensity > 1)
+      throw new IllegalArgumentException ("The value of '" + sName + "' must be between 0 and 1: " + dDensity);
+  }
+
+  public double getAllowanceChargeDensity ()
+  {
+    return m_dAllowanceChargeDensity;
+  }
+
+  /**
+   * @param dAllowanceChargeDensity
+   *        Probability that a line has an AllowanceCharge element. 0 means
+   *        never, 1 means always.
+   * @return this
+   */
+  @Nonnull
+  public SyntheticDocumentSettings setAllowanceChargeDensity (final double dAllowanceChargeDensity)
+  {
+    _checkDensity (dAllowanceChargeDensity, "AllowanceChargeDensity");
+    m_dAllowanceChargeDensity = dAllowanceChargeDensity;
+    return this;
+  }
+
+  public double getLineDeliveryDensity ()
+  {
+    return m_dLineDeliveryDensity;
+  }
+
+  /**
+   * @param dLineDeliveryDensity
+   *        Probability that a line has a Delivery element with delivery date
+   *        and address. 0 means never, 1 means always.
+   * @return this
+   */
+  @Nonnull
+  public SyntheticDocumentSettings setLineDeliveryDensity (final double dLineDeliveryDensity)
+  {
+    _checkDensity (dLineDeliveryDensity, "LineDeliveryDensity");
+    m_dLineDeliveryDensity = dLineDeliveryDensity;
+    return this;
+  }
+
+  public double getOrderLineReferenceDensity ()
+  {
+    return m_dOrderLineReferenceDensity;
+  }
+
+  /**
+   * @param dOrderLineReferenceDensity
+   *        Probability that a line has an OrderLineReference element. 0 means
+   *        never, 1 means always.
+   * @return this
+   */
+  @Nonnull
+  public SyntheticDocumentSettings setOrderLineReferenceDensity (final double dOrderLineReferenceDensity)
+  {
+    _checkDensity (dOrderLineReferenceDensity, "OrderLineReferenceDensity");
+    m_dOrderLineReferenceDensity = dOrderLineReferenceDensity;
+    return this;
+  }
+
+  @Nonnull
+  public SyntheticDocumentSettings getClone ()
+  {
+    return new SyntheticDocumentSettings ().setSeed (m_nSeed)
+                                           .setLineCount (m_nLineCount)
+                                           .setTaxCategoryCount (m_nTaxCategoryCount)
+                                           .setAllowanceChargeDensity (m_dAllowanceChargeDensity)
+                                           .setLineDeliveryDensity (m_dLineDeliveryDensity)
+                                           .setOrderLineReferenceDensity (m_dOrderLineReferenceDensity);
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("seed", m_nSeed)
+                                       .append ("lineCount", m_nLineCount)
+                                       .append ("taxCategoryCount", m_nTaxCategoryCount)
+                                       .append ("allowanceChargeDensity", m_dAllowanceChargeDensity)
+                                       .append ("lineDeliveryDensity", m_dLineDeliveryDensity)
+                                       .append ("orderLineReferenceDensity", m_dOrderLineReferenceDensity)
+                                       .toString ();
+  }
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.text.MessageFormat;
+import java.util.Locale;
+
+import org.junit.Test;
+
+import at.gv.brz.transform.ubl2ebi.AbstractConverter.EText;
+
+/**
+ * Test class for class {@link ETextCatalog}.
+ *
+ * @author philip
+ */
+public final class ETextCatalogTest
+{
+  private static final Locale [] LOCALES = new Locale [] { new Locale ("de"),
+                                                          Locale.GERMANY,
+                                                          new Locale ("de", "AT"),
+                                                          new Locale ("en"),
+                                                          Locale.UK };
+
+  @Test
+  public void testAllTextsPresent ()
+  {
+    final ETextCatalog aCatalog = ETextCatalog.getInstance ();
+    assertTrue (aCatalog.getAllLocales ().contains (new Locale ("de")));
+    assertTrue (aCatalog.getAllLocales ().contains (new Locale ("en")));
+
+    for (final EText eText : EText.values ())
+      for (final Locale aLocale : LOCALES)
+      {
+        final String sText = aCatalog.getText (eText, aLocale);
+        assertNotNull (eText + " " + aLocale, sText);
+        assertEquals (eText.getTemplate (new Locale (aLocale.getLanguage ())), sText);
+      }
+
+    assertNull (aCatalog.getText (EText.MISSING_INVOICE_NUMBER, Locale.CHINESE));
+    assertNull (aCatalog.getTextWithArgs (EText.INVALID_CURRENCY_CODE, Locale.CHINESE, "XXX"));
+  }
+
+  @Test
+  public void testSameAsMessageFormat ()
+  {
+    final ETextCatalog aCatalog = ETextCatalog.getInstance ();
+    final Object [][] aArgsList = new Object [] [] { new Object [] { "a" },
+                                                    new Object [] { "a", "b", "c", "d" },
+                                                    new Object [] { new BigDecimal ("1234.5"),
+                                                                    Integer.valueOf (54),
+                                                                    null },
+                                                    new Object [] { Locale.GERMANY } };
+    for (final EText eText : EText.values ())
+      for (final Locale aLocale : LOCALES)
+      {
+        final String sPattern = aCatalog.getText (eText, aLocale);
+        for (final Object [] aArgs : aArgsList)
+          assertEquals (eText + " " + aLocale,
+                        new MessageFormat (sPattern, aLocale).format (aArgs),
+                        aCatalog.getTextWithArgs (eText, aLocale, aArgs));
+
+        // No arguments - unformatted text
+        assertEquals (sPattern, aCatalog.getTextWithArgs (eText, aLocale));
+      }
+  }
+
+  @Test
+  public void testEText ()
+  {
+    assertEquals ("The provided country code 'XX' is invalid.",
+                  EText.ADDRESS_INVALID_COUNTRY.getDisplayTextWithArgs (Locale.UK, "XX"));
+    assertEquals ("Der angegebene Ländercode 'XX' ist ungültig.",
+                  EText.ADDRESS_INVALID_COUNTRY.getDisplayTextWithArgs (Locale.GERMANY, "XX"));
+    assertEquals ("Party name is missing.", EText.PARTY_NO_NAME.getDisplayText (Locale.ENGLISH));
+  }
+}
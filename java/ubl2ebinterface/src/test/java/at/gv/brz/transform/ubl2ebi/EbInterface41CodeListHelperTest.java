@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Locale;
+
+import org.junit.Test;
+
+import com.helger.commons.locale.country.CountryCache;
+import com.helger.ebinterface.v41.Ebi41AddressIdentifierTypeType;
+import com.helger.ebinterface.v41.Ebi41CountryCodeType;
+import com.helger.ebinterface.v41.Ebi41CurrencyType;
+
+/**
+ * Test class for class {@link EbInterface41CodeListHelper}.
+ *
+ * @author philip
+ */
+public final class EbInterface41CodeListHelperTest
+{
+  @Test
+  public void testCurrency ()
+  {
+    for (final Ebi41CurrencyType e : Ebi41CurrencyType.values ())
+      assertSame (e, EbInterface41CodeListHelper.getCurrencyOrNull (e.value ()));
+    assertSame (Ebi41CurrencyType.EUR, EbInterface41CodeListHelper.getCurrencyOrNull ("EUR"));
+    assertNull (EbInterface41CodeListHelper.getCurrencyOrNull (null));
+    assertNull (EbInterface41CodeListHelper.getCurrencyOrNull (""));
+    assertNull (EbInterface41CodeListHelper.getCurrencyOrNull ("eur"));
+    assertNull (EbInterface41CodeListHelper.getCurrencyOrNull ("XXXX"));
+  }
+
+  @Test
+  public void testCountryCode ()
+  {
+    for (final Ebi41CountryCodeType e : Ebi41CountryCodeType.values ())
+      assertSame (e, EbInterface41CodeListHelper.getCountryCodeOrNull (e.value ()));
+    assertSame (Ebi41CountryCodeType.AT, EbInterface41CodeListHelper.getCountryCodeOrNull ("AT"));
+    assertNull (EbInterface41CodeListHelper.getCountryCodeOrNull (null));
+    assertNull (EbInterface41CodeListHelper.getCountryCodeOrNull ("at"));
+    assertNull (EbInterface41CodeListHelper.getCountryCodeOrNull ("XY"));
+  }
+
+  @Test
+  public void testAddressIdentifierType ()
+  {
+    for (final Ebi41AddressIdentifierTypeType e : Ebi41AddressIdentifierTypeType.values ())
+    {
+      assertSame (e, EbInterface41CodeListHelper.getAddressIdentifierTypeOrNull (e.value ()));
+      assertSame (e, EbInterface41CodeListHelper.getAddressIdentifierTypeOrNull (e.value ().toLowerCase (Locale.US)));
+    }
+    assertSame (Ebi41AddressIdentifierTypeType.GLN, EbInterface41CodeListHelper.getAddressIdentifierTypeOrNull ("gln"));
+    assertNull (EbInterface41CodeListHelper.getAddressIdentifierTypeOrNull (null));
+    assertNull (EbInterface41CodeListHelper.getAddressIdentifierTypeOrNull ("0088"));
+  }
+
+  @Test
+  public void testCountryDisplayName ()
+  {
+    for (final Locale aDisplayLocale : new Locale [] { Locale.GERMANY, Locale.ENGLISH, Locale.FRANCE })
+      for (final Ebi41CountryCodeType e : Ebi41CountryCodeType.values ())
+      {
+        final Locale aCountry = CountryCache.getInstance ().getCountry (e.value ());
+        final String sExpected = aCountry == null ? null : aCountry.getDisplayCountry (aDisplayLocale);
+        assertEquals (sExpected, EbInterface41CodeListHelper.getCountryDisplayName (e, aDisplayLocale));
+        // Cached
+        assertEquals (sExpected, EbInterface41CodeListHelper.getCountryDisplayName (e, aDisplayLocale));
+      }
+    assertEquals ("Österreich", EbInterface41CodeListHelper.getCountryDisplayName (Ebi41CountryCodeType.AT, Locale.GERMANY));
+    assertEquals ("Austria", EbInterface41CodeListHelper.getCountryDisplayName (Ebi41CountryCodeType.AT, Locale.ENGLISH));
+  }
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+import at.gv.brz.transform.ubl2ebi.creditnote.CreditNoteToEbInterface41Converter;
+import at.gv.brz.transform.ubl2ebi.invoice.InvoiceToEbInterface41Converter;
+
+/**
+ * Test class for class {@link EbInterface41ConverterRegistry}.
+ *
+ * @author philip
+ */
+public final class EbInterface41ConverterRegistryTest
+{
+  @Test
+  public void testBasic ()
+  {
+    final EbInterface41ConverterRegistry aRegistry = new EbInterface41ConverterRegistry ();
+    assertEquals (0, aRegistry.getConverterCount ());
+
+    final InvoiceToEbInterface41Converter aInvoiceConverter = aRegistry.getInvoiceConverter (Locale.GERMANY,
+                                                                                             Locale.GERMANY,
+                                                                                             true);
+    assertSame (aInvoiceConverter, aRegistry.getInvoiceConverter (new Locale ("de", "DE"), Locale.GERMANY, true));
+    assertNotSame (aInvoiceConverter, aRegistry.getInvoiceConverter (Locale.GERMANY, Locale.GERMANY, false));
+    assertNotSame (aInvoiceConverter, aRegistry.getInvoiceConverter (Locale.ENGLISH, Locale.GERMANY, true));
+    assertEquals (Locale.ENGLISH, aRegistry.getInvoiceConverter (Locale.ENGLISH, Locale.GERMANY, true)
+                                           .getDisplayLocale ());
+
+    final CreditNoteToEbInterface41Converter aCreditNoteConverter = aRegistry.getCreditNoteConverter (Locale.GERMANY,
+                                                                                                      Locale.GERMANY,
+                                                                                                      true);
+    assertSame (aCreditNoteConverter, aRegistry.getCreditNoteConverter (Locale.GERMANY, Locale.GERMANY, true));
+    assertEquals (4, aRegistry.getConverterCount ());
+
+    aRegistry.clear ();
+    assertEquals (0, aRegistry.getConverterCount ());
+    assertNotSame (aInvoiceConverter, aRegistry.getInvoiceConverter (Locale.GERMANY, Locale.GERMANY, true));
+  }
+
+  @Test
+  public void testConcurrentAccess () throws Exception
+  {
+    final EbInterface41ConverterRegistry aRegistry = new EbInterface41ConverterRegistry ();
+    final ExecutorService aES = Executors.newFixedThreadPool (16);
+    try
+    {
+      final List <Future <InvoiceToEbInterface41Converter>> aFutures = new ArrayList <Future <InvoiceToEbInterface41Converter>> ();
+      for (int i = 0; i < 200; ++i)
+        aFutures.add (aES.submit (new Callable <InvoiceToEbInterface41Converter> ()
+        {
+          public InvoiceToEbInterface41Converter call ()
+          {
+            return aRegistry.getInvoiceConverter (Locale.GERMANY, Locale.GERMANY, false);
+          }
+        }));
+      final InvoiceToEbInterface41Converter aExpected = aFutures.get (0).get ();
+      for (final Future <InvoiceToEbInterface41Converter> aFuture : aFutures)
+        assertSame (aExpected, aFuture.get ());
+      assertEquals (1, aRegistry.getConverterCount ());
+    }
+    finally
+    {
+      aES.shutdownNow ();
+    }
+  }
+
+  private static void _assertAllFieldsFinal (@Nonnull final Class <?> aClass)
+  {
+    Class <?> aCurClass = aClass;
+    while (aCurClass != null && aCurClass != Object.class)
+    {
+      for (final Field aField : aCurClass.getDeclaredFields ())
+        if (!aField.isSynthetic ())
+          assertTrue (aCurClass.getName () + "." + aField.getName () + " is not final",
+                      Modifier.isFinal (aField.getModifiers ()));
+      aCurClass = aCurClass.getSuperclass ();
+    }
+  }
+
+  @Test
+  public void testConvertersAreStateless ()
+  {
+    // The converters may not hold per-call state in fields
+    _assertAllFieldsFinal (InvoiceToEbInterface41Converter.class);
+    _assertAllFieldsFinal (CreditNoteToEbInterface41Converter.class);
+  }
+}
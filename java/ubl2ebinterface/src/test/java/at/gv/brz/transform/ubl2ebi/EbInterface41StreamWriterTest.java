@@ -0,0 +1,86 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.Locale;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import com.helger.commons.io.file.filter.FileFilterFilenameEndsWith;
+import com.helger.commons.io.file.iterate.FileSystemRecursiveIterator;
+import com.helger.commons.io.resource.FileSystemResource;
+import com.helger.ebinterface.CEbInterface;
+import com.helger.ebinterface.v41.Ebi41InvoiceType;
+import com.helger.ubl21.UBL21Reader;
+import com.helger.validation.error.ErrorList;
+
+import at.gv.brz.transform.ubl2ebi.invoice.InvoiceToEbInterface41Converter;
+import oasis.names.specification.ubl.schema.xsd.invoice_21.InvoiceType;
+
+/**
+ * Test class for class {@link EbInterface41StreamWriter}.
+ *
+ * @author philip
+ */
+public final class EbInterface41StreamWriterTest
+{
+  @Test
+  public void testWriteConvertedInvoices () throws Exception
+  {
+    final DocumentBuilderFactory aDBF = DocumentBuilderFactory.newInstance ();
+    aDBF.setNamespaceAware (true);
+
+    final InvoiceToEbInterface41Converter aConverter = new InvoiceToEbInterface41Converter (Locale.GERMANY,
+                                                                                            Locale.GERMANY,
+                                                                                            false);
+    for (final File aFile : FileSystemRecursiveIterator.create (new File ("src/test/resources/ubl20/invoice"),
+                                                                new FileFilterFilenameEndsWith (".xml")))
+    {
+      final InvoiceType aUBLInvoice = UBL21Reader.readInvoice (new FileSystemResource (aFile));
+      assertNotNull (aUBLInvoice);
+      final Ebi41InvoiceType aEbInvoice = aConverter.convertToEbInterface (aUBLInvoice, new ErrorList ());
+      assertNotNull (aEbInvoice);
+
+      final ByteArrayOutputStream aBAOS = new ByteArrayOutputStream ();
+      assertTrue (new EbInterface41StreamWriter ().write (aEbInvoice, aBAOS).isSuccess ());
+
+      // Read again and check the basic structure
+      final Document aDoc = aDBF.newDocumentBuilder ().parse (new ByteArrayInputStream (aBAOS.toByteArray ()));
+      final Element aRoot = aDoc.getDocumentElement ();
+      assertEquals (CEbInterface.EBINTERFACE_41_NS, aRoot.getNamespaceURI ());
+      assertEquals ("Invoice", aRoot.getLocalName ());
+      assertEquals ("eb", aRoot.getPrefix ());
+      assertEquals (aEbInvoice.getInvoiceNumber (),
+                    aRoot.getElementsByTagNameNS (CEbInterface.EBINTERFACE_41_NS, "InvoiceNumber")
+                         .item (0)
+                         .getTextContent ());
+      assertEquals (aEbInvoice.getDetails ().getItemList ().get (0).getListLineItem ().size (),
+                    aRoot.getElementsByTagNameNS (CEbInterface.EBINTERFACE_41_NS, "ListLineItem").getLength ());
+    }
+  }
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+
+import at.gv.brz.transform.ubl2ebi.synthetic.SyntheticDocumentGenerator;
+import at.gv.brz.transform.ubl2ebi.synthetic.SyntheticDocumentSettings;
+import oasis.names.specification.ubl.schema.xsd.creditnote_21.CreditNoteType;
+import oasis.names.specification.ubl.schema.xsd.invoice_21.InvoiceType;
+
+/**
+ * Test class for class {@link JAXBPool}.
+ *
+ * @author philip
+ */
+public final class JAXBPoolTest
+{
+  @Test
+  public void testContexts ()
+  {
+    assertNotNull (JAXBPool.getUBLInvoiceContext ());
+    assertTrue (JAXBPool.getUBLInvoiceContext () == JAXBPool.getUBLInvoiceContext ());
+    assertNotNull (JAXBPool.getUBLCreditNoteContext ());
+    assertTrue (JAXBPool.getUBLCreditNoteContext () == JAXBPool.getUBLCreditNoteContext ());
+    assertNotNull (JAXBPool.getEbInterface41Context ());
+    assertTrue (JAXBPool.getEbInterface41Context () == JAXBPool.getEbInterface41Context ());
+  }
+
+  @Test
+  public void testPerThread () throws Exception
+  {
+    final Unmarshaller aUnmarshaller = JAXBPool.getUBLInvoiceUnmarshaller ();
+    assertTrue (aUnmarshaller == JAXBPool.getUBLInvoiceUnmarshaller ());
+    assertTrue (aUnmarshaller != JAXBPool.getUBLCreditNoteUnmarshaller ());
+
+    final Marshaller aMarshaller = JAXBPool.getEbInterface41Marshaller (false, false);
+    assertTrue (aMarshaller == JAXBPool.getEbInterface41Marshaller (false, false));
+    assertTrue (aMarshaller != JAXBPool.getEbInterface41Marshaller (true, false));
+    assertTrue (aMarshaller != JAXBPool.getEbInterface41Marshaller (false, true));
+    assertEquals (Boolean.TRUE, JAXBPool.getEbInterface41Marshaller (true, true).getProperty (Marshaller.JAXB_FRAGMENT));
+    assertEquals (Boolean.TRUE,
+                  JAXBPool.getEbInterface41Marshaller (true, true).getProperty (Marshaller.JAXB_FORMATTED_OUTPUT));
+
+    // Another thread gets other objects
+    final AtomicReference <Unmarshaller> aOther = new AtomicReference <Unmarshaller> ();
+    final Thread aThread = new Thread ()
+    {
+      @Override
+      public void run ()
+      {
+        try
+        {
+          aOther.set (JAXBPool.getUBLInvoiceUnmarshaller ());
+        }
+        catch (final Exception ex)
+        {
+          throw new IllegalStateException (ex);
+        }
+      }
+    };
+    aThread.start ();
+    aThread.join ();
+    assertNotNull (aOther.get ());
+    assertTrue (aUnmarshaller != aOther.get ());
+
+    // After removal new objects are created
+    JAXBPool.removeCurrentThreadInstances ();
+    assertTrue (aUnmarshaller != JAXBPool.getUBLInvoiceUnmarshaller ());
+    assertTrue (aMarshaller != JAXBPool.getEbInterface41Marshaller (false, false));
+  }
+
+  @Test
+  public void testRoundTrip () throws Exception
+  {
+    final SyntheticDocumentGenerator aGenerator = new SyntheticDocumentGenerator (new SyntheticDocumentSettings ().setLineCount (5));
+    // Unmarshal several times with the same objects
+    for (int i = 0; i < 3; ++i)
+    {
+      final byte [] aInvoiceBytes = aGenerator.createInvoiceBytes ();
+      final InvoiceType aUBLInvoice = JAXBPool.getUBLInvoiceUnmarshaller ()
+                                              .unmarshal (new StreamSource (new ByteArrayInputStream (aInvoiceBytes)),
+                                                          InvoiceType.class)
+                                              .getValue ();
+      assertEquals (5, aUBLInvoice.getInvoiceLine ().size ());
+
+      final byte [] aCreditNoteBytes = aGenerator.createCreditNoteBytes ();
+      final CreditNoteType aUBLCreditNote = JAXBPool.getUBLCreditNoteUnmarshaller ()
+                                                    .unmarshal (new StreamSource (new ByteArrayInputStream (aCreditNoteBytes)),
+                                                                CreditNoteType.class)
+                                                    .getValue ();
+      assertEquals (5, aUBLCreditNote.getCreditNoteLine ().size ());
+    }
+  }
+}
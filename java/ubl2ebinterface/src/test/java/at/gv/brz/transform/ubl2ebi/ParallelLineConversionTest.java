@@ -0,0 +1,292 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import com.helger.commons.xml.serialize.write.XMLWriter;
+import com.helger.ebinterface.EbInterface41Marshaller;
+import com.helger.ebinterface.v41.Ebi41InvoiceType;
+import com.helger.ebinterface.v41.Ebi41ListLineItemType;
+
+import at.gv.brz.transform.ubl2ebi.AbstractConverter.EText;
+import at.gv.brz.transform.ubl2ebi.ParallelLineConversion.ILineConverter;
+import at.gv.brz.transform.ubl2ebi.creditnote.CreditNoteToEbInterface41Converter;
+import at.gv.brz.transform.ubl2ebi.error.ErrorLocation;
+import at.gv.brz.transform.ubl2ebi.error.TransformationErrorList;
+import at.gv.brz.transform.ubl2ebi.helper.NumericLimits;
+import at.gv.brz.transform.ubl2ebi.invoice.InvoiceToEbInterface41Converter;
+import at.gv.brz.transform.ubl2ebi.synthetic.SyntheticDocumentGenerator;
+import at.gv.brz.transform.ubl2ebi.synthetic.SyntheticDocumentSettings;
+import oasis.names.specification.ubl.schema.xsd.creditnote_21.CreditNoteType;
+import oasis.names.specification.ubl.schema.xsd.invoice_21.InvoiceType;
+
+/**
+ * Test class for class {@link ParallelLineConversion}.
+ *
+ * @author philip
+ */
+public final class ParallelLineConversionTest
+{
+  private static final int LINE_COUNT = 3000;
+
+  @Nonnull
+  private static String _getAsString (@Nullable final Ebi41InvoiceType aEbInvoice)
+  {
+    if (aEbInvoice == null)
+      return "null";
+    final Document aDoc = new EbInterface41Marshaller ().write (aEbInvoice);
+    return aDoc == null ? "invalid" : XMLWriter.getXMLString (aDoc);
+  }
+
+  @Nonnull
+  private static SyntheticDocumentSettings _createSettings (final long nSeed)
+  {
+    return new SyntheticDocumentSettings ().setSeed (nSeed)
+                                           .setLineCount (LINE_COUNT)
+                                           .setAllowanceChargeDensity (0.3)
+                                           .setLineDeliveryDensity (0.2)
+                                           .setOrderLineReferenceDensity (0.2);
+  }
+
+  private static void _assertSameInvoiceResult (@Nonnull final InvoiceType aUBLInvoice,
+                                                @Nonnull final ParallelLineConversion aParallelLineConversion,
+                                                final int nMaxErrorCount)
+  {
+    final InvoiceToEbInterface41Converter aConverter = new InvoiceToEbInterface41Converter (Locale.GERMANY,
+                                                                                            Locale.GERMANY,
+                                                                                            false);
+    final TransformationErrorList aErrorList = new TransformationErrorList ().setMaxErrorCount (nMaxErrorCount)
+                                                                             .setNumericLimits (NumericLimits.DEFAULT);
+    final Ebi41InvoiceType aEbInvoice = aConverter.convertToEbInterface (aUBLInvoice, aErrorList);
+
+    final InvoiceToEbInterface41Converter aParallelConverter = new InvoiceToEbInterface41Converter (Locale.GERMANY,
+                                                                                                    Locale.GERMANY,
+                                                                                                    false,
+                                                                                                    aParallelLineConversion);
+    final TransformationErrorList aParallelErrorList = new TransformationErrorList ().setMaxErrorCount (nMaxErrorCount)
+                                                                                     .setNumericLimits (NumericLimits.DEFAULT);
+    final Ebi41InvoiceType aParallelEbInvoice = aParallelConverter.convertToEbInterface (aUBLInvoice,
+                                                                                         aParallelErrorList);
+
+    assertEquals (aErrorList.getAsErrorList (Locale.GERMANY).toString (),
+                  aParallelErrorList.getAsErrorList (Locale.GERMANY).toString ());
+    assertEquals (_getAsString (aEbInvoice), _getAsString (aParallelEbInvoice));
+  }
+
+  @Test
+  public void testInvoice ()
+  {
+    final ExecutorService aExecutor = Executors.newFixedThreadPool (4);
+    try
+    {
+      final ParallelLineConversion aPLC = new ParallelLineConversion (aExecutor, 100, 50);
+      for (int i = 0; i < 3; ++i)
+      {
+        final InvoiceType aUBLInvoice = new SyntheticDocumentGenerator (_createSettings (i)).createInvoice ();
+        _assertSameInvoiceResult (aUBLInvoice, aPLC, TransformationErrorList.MAX_ERROR_COUNT_UNLIMITED);
+      }
+    }
+    finally
+    {
+      aExecutor.shutdownNow ();
+    }
+  }
+
+  @Test
+  public void testInvoiceWithLineErrors ()
+  {
+    final ExecutorService aExecutor = Executors.newFixedThreadPool (4);
+    try
+    {
+      final ParallelLineConversion aPLC = new ParallelLineConversion (aExecutor, 100, 50);
+      final InvoiceType aUBLInvoice = new SyntheticDocumentGenerator (_createSettings (4711)).createInvoice ();
+
+      // Create errors in lines spread across many chunks (the numeric limits
+      // are enabled in _assertSameInvoiceResult)
+      for (int i = 17; i < LINE_COUNT; i += 97)
+        aUBLInvoice.getInvoiceLine ().get (i).getInvoicedQuantity ().setValue (new BigDecimal ("1E+999999999"));
+
+      _assertSameInvoiceResult (aUBLInvoice, aPLC, TransformationErrorList.MAX_ERROR_COUNT_UNLIMITED);
+
+      // Exhaust the error budget in the middle of the lines
+      _assertSameInvoiceResult (aUBLInvoice, aPLC, 10);
+    }
+    finally
+    {
+      aExecutor.shutdownNow ();
+    }
+  }
+
+  @Test
+  public void testBelowThreshold ()
+  {
+    final ExecutorService aExecutor = Executors.newFixedThreadPool (2);
+    try
+    {
+      // Threshold not reached - converted sequentially
+      final ParallelLineConversion aPLC = new ParallelLineConversion (aExecutor, LINE_COUNT + 1, 50);
+      final InvoiceType aUBLInvoice = new SyntheticDocumentGenerator (_createSettings (1)).createInvoice ();
+      _assertSameInvoiceResult (aUBLInvoice, aPLC, TransformationErrorList.MAX_ERROR_COUNT_UNLIMITED);
+    }
+    finally
+    {
+      aExecutor.shutdownNow ();
+    }
+  }
+
+  @Test
+  public void testCreditNote ()
+  {
+    final ExecutorService aExecutor = Executors.newFixedThreadPool (4);
+    try
+    {
+      final ParallelLineConversion aPLC = new ParallelLineConversion (aExecutor, 100, 50);
+      final CreditNoteType aUBLCreditNote = new SyntheticDocumentGenerator (_createSettings (2)).createCreditNote ();
+
+      final CreditNoteToEbInterface41Converter aConverter = new CreditNoteToEbInterface41Converter (Locale.GERMANY,
+                                                                                                    Locale.GERMANY,
+                                                                                                    false);
+      final TransformationErrorList aErrorList = new TransformationErrorList ();
+      final Ebi41InvoiceType aEbInvoice = aConverter.convertToEbInterface (aUBLCreditNote, aErrorList);
+      assertNotNull (aEbInvoice);
+
+      final CreditNoteToEbInterface41Converter aParallelConverter = new CreditNoteToEbInterface41Converter (Locale.GERMANY,
+                                                                                                            Locale.GERMANY,
+                                                                                                            false,
+                                                                                                            aPLC);
+      final TransformationErrorList aParallelErrorList = new TransformationErrorList ();
+      final Ebi41InvoiceType aParallelEbInvoice = aParallelConverter.convertToEbInterface (aUBLCreditNote,
+                                                                                           aParallelErrorList);
+      assertEquals (aErrorList.getAsErrorList (Locale.GERMANY).toString (),
+                    aParallelErrorList.getAsErrorList (Locale.GERMANY).toString ());
+      assertEquals (_getAsString (aEbInvoice), _getAsString (aParallelEbInvoice));
+      assertEquals (LINE_COUNT, aParallelEbInvoice.getDetails ().getItemList ().get (0).getListLineItem ().size ());
+    }
+    finally
+    {
+      aExecutor.shutdownNow ();
+    }
+  }
+
+  @Test
+  public void testSettings ()
+  {
+    final ExecutorService aExecutor = Executors.newSingleThreadExecutor ();
+    try
+    {
+      final ParallelLineConversion aPLC = new ParallelLineConversion (aExecutor);
+      assertTrue (aPLC.getExecutor () == aExecutor);
+      assertEquals (ParallelLineConversion.DEFAULT_MIN_LINE_COUNT, aPLC.getMinLineCount ());
+      assertEquals (ParallelLineConversion.DEFAULT_CHUNK_SIZE, aPLC.getChunkSize ());
+      assertEquals (ParallelLineConversion.DEFAULT_MAX_CHUNKS_IN_FLIGHT, aPLC.getMaxChunksInFlight ());
+      assertEquals (3, new ParallelLineConversion (aExecutor, 10, 20, 3).getMaxChunksInFlight ());
+      assertNull (new InvoiceToEbInterface41Converter (Locale.GERMANY, Locale.GERMANY, false).getParallelLineConversion ());
+    }
+    finally
+    {
+      aExecutor.shutdownNow ();
+    }
+  }
+
+  @Test
+  public void testAbortWaitsForRunningChunks () throws InterruptedException
+  {
+    final ExecutorService aExecutor = Executors.newFixedThreadPool (4);
+    try
+    {
+      final ParallelLineConversion aPLC = new ParallelLineConversion (aExecutor, 10, 10, 8);
+      final AtomicInteger aRunning = new AtomicInteger (0);
+      final AtomicBoolean aReturned = new AtomicBoolean (false);
+      final AtomicBoolean aConvertedAfterReturn = new AtomicBoolean (false);
+      final ILineConverter <String> aLineConverter = new ILineConverter <String> ()
+      {
+        public Ebi41ListLineItemType convertLine (@Nonnull final String aUBLLine,
+                                                  final int nLineIndex,
+                                                  @Nonnull final TransformationErrorList aTransformationErrorList)
+        {
+          aRunning.incrementAndGet ();
+          try
+          {
+            if (aReturned.get ())
+              aConvertedAfterReturn.set (true);
+            if (nLineIndex == 0)
+              aTransformationErrorList.addError (ErrorLocation.create ("InvoiceLine[*]", nLineIndex),
+                                                 EText.NUMERIC_VALUE_OUT_OF_RANGE,
+                                                 "30",
+                                                 "20");
+            Thread.sleep (2);
+            return new Ebi41ListLineItemType ();
+          }
+          catch (final InterruptedException ex)
+          {
+            Thread.currentThread ().interrupt ();
+            return null;
+          }
+          finally
+          {
+            aRunning.decrementAndGet ();
+          }
+        }
+      };
+
+      final List <String> aLines = new ArrayList <String> ();
+      for (int i = 0; i < 1000; ++i)
+        aLines.add (Integer.toString (i));
+      final List <Ebi41ListLineItemType> aItems = new ArrayList <Ebi41ListLineItemType> ();
+      final TransformationErrorList aErrorList = new TransformationErrorList ().setMaxErrorCount (1);
+      assertTrue (aPLC.convertAllLines (aLines.iterator (), aLineConverter, new IEbiListLineItemHandler ()
+      {
+        public void onListLineItem (@Nonnull final Ebi41ListLineItemType aEbiListLineItem)
+        {
+          aItems.add (aEbiListLineItem);
+        }
+      }, aErrorList).isFailure ());
+      aReturned.set (true);
+
+      // No chunk is running after the abort and no chunk is started later
+      assertEquals (0, aRunning.get ());
+      Thread.sleep (50);
+      assertFalse (aConvertedAfterReturn.get ());
+      assertTrue (aItems.isEmpty ());
+      assertEquals (1, aErrorList.getErrorCount ());
+    }
+    finally
+    {
+      aExecutor.shutdownNow ();
+    }
+  }
+}
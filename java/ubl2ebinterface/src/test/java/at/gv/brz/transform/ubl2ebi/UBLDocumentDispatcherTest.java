@@ -0,0 +1,122 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+import java.util.Locale;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+import com.helger.ebinterface.v41.Ebi41InvoiceType;
+
+import at.gv.brz.transform.ubl2ebi.AbstractConverter.EText;
+import at.gv.brz.transform.ubl2ebi.error.TransformationErrorList;
+import at.gv.brz.transform.ubl2ebi.synthetic.SyntheticDocumentGenerator;
+import at.gv.brz.transform.ubl2ebi.synthetic.SyntheticDocumentSettings;
+
+/**
+ * Test class for class {@link UBLDocumentDispatcher}.
+ *
+ * @author philip
+ */
+public final class UBLDocumentDispatcherTest
+{
+  private static final Charset UTF8 = Charset.forName ("UTF-8");
+
+  @Nonnull
+  private static byte [] _getBytes (@Nonnull final String sXML)
+  {
+    return sXML.getBytes (UTF8);
+  }
+
+  @Test
+  public void testGetDocumentType ()
+  {
+    TransformationErrorList aErrorList = new TransformationErrorList ();
+    assertEquals (EUBLDocumentType.INVOICE,
+                  UBLDocumentDispatcher.getDocumentType (_getBytes ("<?xml version='1.0'?><!-- comment --><i:Invoice xmlns:i='urn:oasis:names:specification:ubl:schema:xsd:Invoice-2'>"),
+                                                         aErrorList));
+    assertEquals (0, aErrorList.getSize ());
+
+    assertEquals (EUBLDocumentType.CREDIT_NOTE,
+                  UBLDocumentDispatcher.getDocumentType (_getBytes ("<CreditNote xmlns='urn:oasis:names:specification:ubl:schema:xsd:CreditNote-2'/>"),
+                                                         aErrorList));
+    assertEquals (0, aErrorList.getSize ());
+
+    // Wrong namespace
+    assertNull (UBLDocumentDispatcher.getDocumentType (_getBytes ("<Invoice xmlns='urn:oasis:names:specification:ubl:schema:xsd:CreditNote-2'/>"),
+                                                       aErrorList));
+    assertEquals (1, aErrorList.getSize ());
+    assertEquals (EText.INVALID_ROOT_ELEMENT, aErrorList.getAllItems ().get (0).getText ());
+
+    // Not XML
+    aErrorList = new TransformationErrorList ();
+    assertNull (UBLDocumentDispatcher.getDocumentType (_getBytes ("Invoice"), aErrorList));
+    assertEquals (1, aErrorList.getSize ());
+    assertEquals (EText.XML_READ_ERROR, aErrorList.getAllItems ().get (0).getText ());
+  }
+
+  @Test
+  public void testOnlyRootElementIsRead ()
+  {
+    // A large document
+    final StringBuilder aSB = new StringBuilder ("<Invoice xmlns='urn:oasis:names:specification:ubl:schema:xsd:Invoice-2'>");
+    for (int i = 0; i < 100000; ++i)
+      aSB.append ("<Note>").append (i).append ("</Note>");
+    aSB.append ("</Invoice>");
+    final byte [] aBytes = _getBytes (aSB.toString ());
+
+    final ByteArrayInputStream aIS = new ByteArrayInputStream (aBytes);
+    final TransformationErrorList aErrorList = new TransformationErrorList ();
+    assertEquals (EUBLDocumentType.INVOICE, UBLDocumentDispatcher.getDocumentType (aIS, aErrorList));
+    assertEquals (0, aErrorList.getSize ());
+
+    // Only the beginning was read
+    assertTrue (aIS.available () > aBytes.length / 2);
+  }
+
+  @Test
+  public void testConvert ()
+  {
+    final UBLDocumentDispatcher aDispatcher = new UBLDocumentDispatcher (Locale.GERMANY, Locale.GERMANY, false);
+    final SyntheticDocumentGenerator aGenerator = new SyntheticDocumentGenerator (new SyntheticDocumentSettings ().setLineCount (3));
+
+    TransformationErrorList aErrorList = new TransformationErrorList ();
+    Ebi41InvoiceType aEbiDoc = aDispatcher.convertToEbInterface (aGenerator.createInvoiceBytes (), aErrorList);
+    assertNotNull (aErrorList.toString (), aEbiDoc);
+    assertEquals (3, aEbiDoc.getDetails ().getItemList ().get (0).getListLineItem ().size ());
+
+    aErrorList = new TransformationErrorList ();
+    aEbiDoc = aDispatcher.convertToEbInterface (aGenerator.createCreditNoteBytes (), aErrorList);
+    assertNotNull (aErrorList.toString (), aEbiDoc);
+    assertEquals (3, aEbiDoc.getDetails ().getItemList ().get (0).getListLineItem ().size ());
+
+    // Unknown root - not unmarshalled
+    aErrorList = new TransformationErrorList ();
+    assertNull (aDispatcher.convertToEbInterface (_getBytes ("<Order xmlns='urn:oasis:names:specification:ubl:schema:xsd:Order-2'/>"),
+                                                  aErrorList));
+    assertEquals (EText.INVALID_ROOT_ELEMENT, aErrorList.getAllItems ().get (0).getText ());
+  }
+}
@@ -0,0 +1,182 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+import com.helger.commons.io.file.filter.FileFilterFilenameEndsWith;
+import com.helger.commons.io.file.iterate.FileSystemRecursiveIterator;
+import com.helger.commons.io.resource.FileSystemResource;
+import com.helger.commons.io.resource.IReadableResource;
+import com.helger.commons.io.stream.StreamHelper;
+import com.helger.ubl21.UBL21Reader;
+
+import at.gv.brz.transform.ubl2ebi.AbstractConverter.EText;
+import at.gv.brz.transform.ubl2ebi.creditnote.AbstractCreditNoteConverter;
+import at.gv.brz.transform.ubl2ebi.error.TransformationErrorList;
+import at.gv.brz.transform.ubl2ebi.invoice.AbstractInvoiceConverter;
+import at.gv.brz.transform.ubl2ebi.synthetic.SyntheticDocumentGenerator;
+import at.gv.brz.transform.ubl2ebi.synthetic.SyntheticDocumentSettings;
+import oasis.names.specification.ubl.schema.xsd.creditnote_21.CreditNoteType;
+import oasis.names.specification.ubl.schema.xsd.invoice_21.InvoiceType;
+
+/**
+ * Test class for class {@link UBLPreflightChecker}.
+ *
+ * @author philip
+ */
+public final class UBLPreflightCheckerTest
+{
+  private static final class CountingInputStream extends FilterInputStream
+  {
+    private long m_nCount = 0;
+
+    CountingInputStream (@Nonnull final InputStream aIS)
+    {
+      super (aIS);
+    }
+
+    @Override
+    public int read () throws IOException
+    {
+      final int ret = super.read ();
+      if (ret >= 0)
+        m_nCount++;
+      return ret;
+    }
+
+    @Override
+    public int read (final byte [] aBuf, final int nOfs, final int nLen) throws IOException
+    {
+      final int ret = super.read (aBuf, nOfs, nLen);
+      if (ret > 0)
+        m_nCount += ret;
+      return ret;
+    }
+  }
+
+  @Nonnull
+  private static TransformationErrorList _check (@Nonnull final IReadableResource aRes)
+  {
+    final TransformationErrorList aErrorList = new TransformationErrorList ();
+    final InputStream aIS = aRes.getInputStream ();
+    try
+    {
+      UBLPreflightChecker.check (aIS, aErrorList);
+    }
+    finally
+    {
+      StreamHelper.close (aIS);
+    }
+    return aErrorList;
+  }
+
+  @Nonnull
+  private static TransformationErrorList _check (@Nonnull final String sXML)
+  {
+    final TransformationErrorList aErrorList = new TransformationErrorList ();
+    UBLPreflightChecker.check (new ByteArrayInputStream (sXML.getBytes ()), aErrorList);
+    return aErrorList;
+  }
+
+  @Test
+  public void testSameAsConsistencyCheck ()
+  {
+    for (final String sDir : new String [] { "src/test/resources/ubl20/invoice", "src/test/resources/ubl20/invoice_bad" })
+      for (final File aFile : FileSystemRecursiveIterator.create (new File (sDir),
+                                                                  new FileFilterFilenameEndsWith (".xml")))
+      {
+        final IReadableResource aRes = new FileSystemResource (aFile);
+        final InvoiceType aUBLInvoice = UBL21Reader.readInvoice (aRes);
+        assertNotNull (aUBLInvoice);
+        final TransformationErrorList aExpected = new TransformationErrorList ();
+        AbstractInvoiceConverter.checkConsistency (aUBLInvoice, aExpected);
+
+        assertEquals (aRes.getPath (), aExpected.getAllItems (), _check (aRes).getAllItems ());
+      }
+
+    for (final File aFile : FileSystemRecursiveIterator.create (new File ("src/test/resources/ubl20/creditnote"),
+                                                                new FileFilterFilenameEndsWith (".xml")))
+    {
+      final IReadableResource aRes = new FileSystemResource (aFile);
+      final CreditNoteType aUBLCreditNote = UBL21Reader.readCreditNote (aRes);
+      assertNotNull (aUBLCreditNote);
+      final TransformationErrorList aExpected = new TransformationErrorList ();
+      AbstractCreditNoteConverter.checkConsistency (aUBLCreditNote, aExpected);
+
+      assertEquals (aRes.getPath (), aExpected.getAllItems (), _check (aRes).getAllItems ());
+    }
+  }
+
+  @Test
+  public void testInvalidHeader ()
+  {
+    final String sPrefix = "<Invoice xmlns='" +
+                           CPeppolUBL.NAMESPACE_INVOICE +
+                           "' xmlns:cbc='" +
+                           CPeppolUBL.NAMESPACE_CBC +
+                           "' xmlns:cac='" +
+                           CPeppolUBL.NAMESPACE_CAC +
+                           "'>";
+    TransformationErrorList aErrorList = _check (sPrefix + "<cac:AccountingSupplierParty/></Invoice>");
+    assertEquals (2, aErrorList.getErrorCount ());
+    assertEquals (EText.NO_UBL_VERSION_ID, aErrorList.getAllItems ().get (0).getText ());
+    assertEquals (EText.NO_PROFILE_ID, aErrorList.getAllItems ().get (1).getText ());
+    // Missing InvoiceTypeCode
+    assertEquals (1, aErrorList.getWarningCount ());
+
+    aErrorList = _check (sPrefix +
+                         "<cbc:UBLVersionID>1.0</cbc:UBLVersionID>" +
+                         "<cbc:ProfileID>urn:www.cenbii.eu:profile:bii04:ver1.0</cbc:ProfileID>" +
+                         "<cbc:InvoiceTypeCode>381</cbc:InvoiceTypeCode>" +
+                         "</Invoice>");
+    assertEquals (2, aErrorList.getErrorCount ());
+    assertEquals (EText.INVALID_UBL_VERSION_ID, aErrorList.getAllItems ().get (0).getText ());
+    assertEquals (EText.INVALID_INVOICE_TYPECODE, aErrorList.getAllItems ().get (1).getText ());
+
+    // Wrong root element
+    aErrorList = _check ("<root/>");
+    assertEquals (EText.INVALID_ROOT_ELEMENT, aErrorList.getAllItems ().get (0).getText ());
+
+    // Not well-formed
+    aErrorList = _check ("<Invoice");
+    assertEquals (EText.XML_READ_ERROR, aErrorList.getAllItems ().get (0).getText ());
+  }
+
+  @Test
+  public void testStopsBeforeLines ()
+  {
+    final byte [] aBytes = new SyntheticDocumentGenerator (new SyntheticDocumentSettings ().setLineCount (10000)).createInvoiceBytes ();
+    final CountingInputStream aIS = new CountingInputStream (new ByteArrayInputStream (aBytes));
+    final TransformationErrorList aErrorList = new TransformationErrorList ();
+    assertTrue (aErrorList.toString (), UBLPreflightChecker.check (aIS, aErrorList).isSuccess ());
+    // Only the beginning of the document was read
+    assertTrue (aIS.m_nCount + " of " + aBytes.length, aIS.m_nCount < aBytes.length / 10);
+  }
+}
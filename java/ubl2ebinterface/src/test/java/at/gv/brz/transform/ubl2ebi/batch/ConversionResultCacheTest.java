@@ -0,0 +1,386 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.batch;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Locale;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+import com.helger.commons.io.resource.IReadableResource;
+import com.helger.commons.io.resource.inmemory.ReadableResourceByteArray;
+
+import at.gv.brz.transform.ubl2ebi.AbstractConverter.EText;
+import at.gv.brz.transform.ubl2ebi.EUBLDocumentType;
+import at.gv.brz.transform.ubl2ebi.error.ErrorLocation;
+import at.gv.brz.transform.ubl2ebi.error.TransformationError;
+import at.gv.brz.transform.ubl2ebi.error.TransformationErrorList;
+import at.gv.brz.transform.ubl2ebi.error.TransformationErrorListSettings;
+import at.gv.brz.transform.ubl2ebi.helper.NumericLimits;
+import at.gv.brz.transform.ubl2ebi.synthetic.SyntheticDocumentGenerator;
+import at.gv.brz.transform.ubl2ebi.synthetic.SyntheticDocumentSettings;
+
+/**
+ * Test class for class {@link ConversionResultCache}.
+ *
+ * @author philip
+ */
+public final class ConversionResultCacheTest
+{
+  private static final Charset UTF8 = Charset.forName ("UTF-8");
+
+  @Nonnull
+  private static File _createTempDirectory () throws IOException
+  {
+    final File ret = File.createTempFile ("ubl2ebi", "cache");
+    assertTrue (ret.delete ());
+    assertTrue (ret.mkdir ());
+    return ret;
+  }
+
+  private static void _deleteDirectory (@Nonnull final File aDir)
+  {
+    final File [] aFiles = aDir.listFiles ();
+    if (aFiles != null)
+      for (final File aFile : aFiles)
+        aFile.delete ();
+    aDir.delete ();
+  }
+
+  @Test
+  public void testCreateKey ()
+  {
+    final byte [] aBytes = "<Invoice/>".getBytes (UTF8);
+    final String sKey = ConversionResultCache.createKey (aBytes, Locale.GERMANY, Locale.GERMANY, false, false);
+    assertEquals (64, sKey.length ());
+    assertEquals (sKey, ConversionResultCache.createKey (aBytes.clone (), Locale.GERMANY, Locale.GERMANY, false, false));
+    assertFalse (sKey.equals (ConversionResultCache.createKey ("<Invoice />".getBytes (UTF8),
+                                                               Locale.GERMANY,
+                                                               Locale.GERMANY,
+                                                               false,
+                                                               false)));
+    assertFalse (sKey.equals (ConversionResultCache.createKey (aBytes, Locale.ENGLISH, Locale.GERMANY, false, false)));
+    assertFalse (sKey.equals (ConversionResultCache.createKey (aBytes, Locale.GERMANY, Locale.ENGLISH, false, false)));
+    assertFalse (sKey.equals (ConversionResultCache.createKey (aBytes, Locale.GERMANY, Locale.GERMANY, true, false)));
+    assertFalse (sKey.equals (ConversionResultCache.createKey (aBytes, Locale.GERMANY, Locale.GERMANY, false, true)));
+
+    // The error list settings are part of the key
+    assertEquals (sKey,
+                  ConversionResultCache.createKey (aBytes,
+                                                   Locale.GERMANY,
+                                                   Locale.GERMANY,
+                                                   false,
+                                                   false,
+                                                   TransformationErrorListSettings.DEFAULT));
+    assertFalse (sKey.equals (ConversionResultCache.createKey (aBytes,
+                                                               Locale.GERMANY,
+                                                               Locale.GERMANY,
+                                                               false,
+                                                               false,
+                                                               TransformationErrorListSettings.UNTRUSTED)));
+    assertFalse (sKey.equals (ConversionResultCache.createKey (aBytes,
+                                                               Locale.GERMANY,
+                                                               Locale.GERMANY,
+                                                               false,
+                                                               false,
+                                                               new TransformationErrorListSettings (false, 1, null))));
+  }
+
+  @Test
+  public void testMemoryEviction ()
+  {
+    final TransformationErrorList aErrorList = new TransformationErrorList ();
+    final ConversionResultCache aCache = new ConversionResultCache (10000, null);
+    for (int i = 0; i < 10; ++i)
+      aCache.put ("key" + i, EUBLDocumentType.INVOICE, new byte [3000], aErrorList);
+
+    // Only the most recently used entries remain
+    assertTrue (aCache.getMemoryBytes () <= 10000);
+    assertTrue (aCache.getMemoryEntryCount () > 0);
+    assertTrue (aCache.getMemoryEntryCount () < 10);
+    assertTrue (aCache.getEvictionCount () > 0);
+    assertNull (aCache.get ("key0"));
+    assertNotNull (aCache.get ("key9"));
+    assertEquals (1, aCache.getMemoryHitCount ());
+    assertEquals (1, aCache.getMissCount ());
+
+    // An accessed entry is evicted last
+    final int nCount = aCache.getMemoryEntryCount ();
+    final String sOldest = "key" + (10 - nCount);
+    assertNotNull (aCache.get (sOldest));
+    aCache.put ("key10", EUBLDocumentType.INVOICE, new byte [3000], aErrorList);
+    assertNotNull (aCache.get (sOldest));
+    assertNull (aCache.get ("key" + (11 - nCount)));
+
+    aCache.clearMemory ();
+    assertEquals (0, aCache.getMemoryEntryCount ());
+    assertEquals (0, aCache.getMemoryBytes ());
+  }
+
+  @Test
+  public void testDiskRoundTrip () throws IOException
+  {
+    final File aDir = _createTempDirectory ();
+    try
+    {
+      final TransformationErrorList aErrorList = new TransformationErrorList ();
+      aErrorList.addWarning (ErrorLocation.create ("InvoiceLine[*]", 3).getChild ("TaxTotal[*]", 0),
+                             EText.DETAILS_TAX_PERCENTAGE_NOT_FOUND,
+                             Integer.valueOf (20));
+      aErrorList.addError (ErrorLocation.create ("Invoice"), EText.EBI_WRITE_ERROR);
+      final byte [] aBytes = "<Invoice>\u00e4</Invoice>".getBytes (UTF8);
+
+      final ConversionResultCache aCache = new ConversionResultCache (0, aDir);
+      aCache.put ("abc", EUBLDocumentType.CREDIT_NOTE, aBytes, aErrorList);
+      aCache.put ("def", null, null, aErrorList);
+      assertEquals (0, aCache.getMemoryEntryCount ());
+
+      // A new instance on the same directory, as after a restart
+      final ConversionResultCache aCache2 = new ConversionResultCache (1024 * 1024, aDir);
+      final ConversionResultCache.Entry aEntry = aCache2.get ("abc");
+      assertNotNull (aEntry);
+      assertEquals (EUBLDocumentType.CREDIT_NOTE, aEntry.getDocumentType ());
+      assertArrayEquals (aBytes, aEntry.getEbInterfaceBytes ());
+      assertEquals (aErrorList.getAllItems (), aEntry.getTransformationErrorList ().getAllItems ());
+      assertEquals (aErrorList.getAsErrorList (Locale.GERMANY).toString (),
+                    aEntry.getTransformationErrorList ().getAsErrorList (Locale.GERMANY).toString ());
+      assertEquals (1, aCache2.getDiskHitCount ());
+
+      // Promoted to memory
+      assertNotNull (aCache2.get ("abc"));
+      assertEquals (1, aCache2.getMemoryHitCount ());
+
+      final ConversionResultCache.Entry aEntry2 = aCache2.get ("def");
+      assertNotNull (aEntry2);
+      assertNull (aEntry2.getDocumentType ());
+      assertNull (aEntry2.getEbInterfaceBytes ());
+      assertNull (aCache2.get ("xyz"));
+      assertEquals (1, aCache2.getMissCount ());
+    }
+    finally
+    {
+      _deleteDirectory (aDir);
+    }
+  }
+
+  @Test
+  public void testCorruptFile () throws IOException
+  {
+    final File aDir = _createTempDirectory ();
+    try
+    {
+      // Claims a huge document
+      DataOutputStream aDOS = new DataOutputStream (new FileOutputStream (new File (aDir, "huge" + ConversionResultCache.FILE_EXTENSION)));
+      aDOS.writeInt (2);
+      aDOS.writeUTF ("");
+      aDOS.writeInt (Integer.MAX_VALUE);
+      aDOS.close ();
+
+      // Claims a huge number of errors
+      aDOS = new DataOutputStream (new FileOutputStream (new File (aDir, "errors" + ConversionResultCache.FILE_EXTENSION)));
+      aDOS.writeInt (2);
+      aDOS.writeUTF ("");
+      aDOS.writeInt (-1);
+      aDOS.writeInt (Integer.MAX_VALUE);
+      aDOS.close ();
+
+      // A serialized Java object
+      aDOS = new DataOutputStream (new FileOutputStream (new File (aDir, "junk" + ConversionResultCache.FILE_EXTENSION)));
+      aDOS.write (new byte [] { (byte) 0xac, (byte) 0xed, 0, 5, 0x73, 0x72 });
+      aDOS.close ();
+
+      final ConversionResultCache aCache = new ConversionResultCache (1024 * 1024, aDir);
+      assertNull (aCache.get ("huge"));
+      assertNull (aCache.get ("errors"));
+      assertNull (aCache.get ("junk"));
+      assertEquals (3, aCache.getMissCount ());
+    }
+    finally
+    {
+      _deleteDirectory (aDir);
+    }
+  }
+
+  @Test
+  public void testDirectoryLimit () throws IOException
+  {
+    final File aDir = _createTempDirectory ();
+    try
+    {
+      final TransformationErrorList aErrorList = new TransformationErrorList ();
+      final ConversionResultCache aCache = new ConversionResultCache (0, aDir, 10000);
+      assertEquals (10000, aCache.getMaxDirectoryBytes ());
+      for (int i = 0; i < 10; ++i)
+        aCache.put ("key" + i, EUBLDocumentType.INVOICE, new byte [3000], aErrorList);
+
+      final File [] aFiles = aDir.listFiles ();
+      assertTrue (aFiles.length > 0);
+      assertTrue (aFiles.length < 10);
+      long nBytes = 0;
+      for (final File aFile : aFiles)
+        nBytes += aFile.length ();
+      assertTrue (nBytes <= 10000);
+
+      // No limit
+      assertEquals (Long.MAX_VALUE, new ConversionResultCache (0, aDir).getMaxDirectoryBytes ());
+    }
+    finally
+    {
+      _deleteDirectory (aDir);
+    }
+  }
+
+  @Test
+  public void testPipeline () throws IOException
+  {
+    final File aDir = _createTempDirectory ();
+    try
+    {
+      final byte [] aInvoice = new SyntheticDocumentGenerator (new SyntheticDocumentSettings ().setSeed (4711)
+                                                                                               .setLineCount (5)).createInvoiceBytes ();
+      final IReadableResource aValid = new ReadableResourceByteArray (aInvoice);
+      final IReadableResource aInvalid = new ReadableResourceByteArray ("<Order/>".getBytes (UTF8));
+
+      final ConversionPipeline aPipeline = new ConversionPipeline (Locale.GERMANY,
+                                                                   Locale.GERMANY,
+                                                                   false,
+                                                                   false,
+                                                                   new ConversionResultCache (1024 * 1024, aDir));
+      final ConversionResult aFirst = aPipeline.convert (0, aValid);
+      assertFalse (aFirst.isFromCache ());
+      assertTrue (aFirst.isSuccess ());
+      assertNotNull (aFirst.getEbInterfaceDocument ());
+
+      final ConversionResult aSecond = aPipeline.convert (1, aValid);
+      assertTrue (aSecond.isFromCache ());
+      assertTrue (aSecond.isSuccess ());
+      assertEquals (1, aSecond.getIndex ());
+      assertEquals (EUBLDocumentType.INVOICE, aSecond.getDocumentType ());
+      assertNull (aSecond.getEbInterfaceDocument ());
+      assertArrayEquals (aFirst.getEbInterfaceBytes (), aSecond.getEbInterfaceBytes ());
+      assertEquals (aFirst.getTransformationErrorList ().getAsErrorList (Locale.GERMANY).toString (),
+                    aSecond.getTransformationErrorList ().getAsErrorList (Locale.GERMANY).toString ());
+
+      // Failures are cached as well
+      final ConversionResult aInvalidFirst = aPipeline.convert (2, aInvalid);
+      assertFalse (aInvalidFirst.isSuccess ());
+      final ConversionResult aInvalidSecond = aPipeline.convert (3, aInvalid);
+      assertTrue (aInvalidSecond.isFromCache ());
+      assertFalse (aInvalidSecond.isSuccess ());
+      assertEquals (aInvalidFirst.getTransformationErrorList ().getAllItems (),
+                    aInvalidSecond.getTransformationErrorList ().getAllItems ());
+
+      assertEquals (2, aPipeline.getCache ().getMemoryHitCount ());
+      assertEquals (2, aPipeline.getCache ().getMissCount ());
+
+      // Different settings on the same directory
+      final ConversionPipeline aFormatted = new ConversionPipeline (Locale.GERMANY,
+                                                                    Locale.GERMANY,
+                                                                    false,
+                                                                    true,
+                                                                    new ConversionResultCache (1024 * 1024, aDir));
+      assertFalse (aFormatted.convert (0, aValid).isFromCache ());
+
+      // Same settings on the same directory
+      final ConversionPipeline aRestarted = new ConversionPipeline (Locale.GERMANY,
+                                                                    Locale.GERMANY,
+                                                                    false,
+                                                                    false,
+                                                                    new ConversionResultCache (1024 * 1024, aDir));
+      final ConversionResult aThird = aRestarted.convert (0, aValid);
+      assertTrue (aThird.isFromCache ());
+      assertArrayEquals (aFirst.getEbInterfaceBytes (), aThird.getEbInterfaceBytes ());
+      assertEquals (1, aRestarted.getCache ().getDiskHitCount ());
+    }
+    finally
+    {
+      _deleteDirectory (aDir);
+    }
+  }
+
+  private static boolean _containsText (@Nonnull final TransformationErrorList aErrorList, @Nonnull final EText eText)
+  {
+    for (final TransformationError aError : aErrorList)
+      if (aError.getText () == eText)
+        return true;
+    return false;
+  }
+
+  @Test
+  public void testPipelineErrorListSettings ()
+  {
+    final String sInvoice = new String (new SyntheticDocumentGenerator (new SyntheticDocumentSettings ().setLineCount (3)).createInvoiceBytes (),
+                                        UTF8);
+    // Exponent -21 is outside the default numeric limits
+    final IReadableResource aSource = new ReadableResourceByteArray (sInvoice.replaceFirst ("PayableAmount([^>]*)>[^<]*<",
+                                                                                            "PayableAmount$1>0.000000000000000000001<")
+                                                                             .getBytes (UTF8));
+    final ConversionResultCache aCache = new ConversionResultCache (1024 * 1024, null);
+
+    final ConversionPipeline aUntrusted = new ConversionPipeline (Locale.GERMANY,
+                                                                  Locale.GERMANY,
+                                                                  false,
+                                                                  false,
+                                                                  aCache,
+                                                                  null,
+                                                                  TransformationErrorListSettings.UNTRUSTED);
+    assertEquals (TransformationErrorListSettings.UNTRUSTED, aUntrusted.getErrorListSettings ());
+    ConversionResult aResult = aUntrusted.convert (0, aSource);
+    assertFalse (aResult.isFromCache ());
+    assertTrue (_containsText (aResult.getTransformationErrorList (), EText.NUMERIC_VALUE_OUT_OF_RANGE));
+    aResult = aUntrusted.convert (1, aSource);
+    assertTrue (aResult.isFromCache ());
+    assertTrue (_containsText (aResult.getTransformationErrorList (), EText.NUMERIC_VALUE_OUT_OF_RANGE));
+    assertEquals (NumericLimits.DEFAULT, aResult.getTransformationErrorList ().getNumericLimits ());
+
+    // The default settings apply no limits and don't use the entry above
+    final ConversionPipeline aDefault = new ConversionPipeline (Locale.GERMANY, Locale.GERMANY, false, false, aCache);
+    assertEquals (TransformationErrorListSettings.DEFAULT, aDefault.getErrorListSettings ());
+    aResult = aDefault.convert (2, aSource);
+    assertFalse (aResult.isFromCache ());
+    assertFalse (_containsText (aResult.getTransformationErrorList (), EText.NUMERIC_VALUE_OUT_OF_RANGE));
+
+    // Aggregates cannot be restored, so these results are never cached
+    final ConversionPipeline aAggregating = new ConversionPipeline (Locale.GERMANY,
+                                                                    Locale.GERMANY,
+                                                                    false,
+                                                                    false,
+                                                                    aCache,
+                                                                    null,
+                                                                    new TransformationErrorListSettings (true,
+                                                                                                         TransformationErrorList.MAX_ERROR_COUNT_UNLIMITED,
+                                                                                                         NumericLimits.DEFAULT));
+    assertFalse (aAggregating.convert (3, aSource).isFromCache ());
+    aResult = aAggregating.convert (4, aSource);
+    assertFalse (aResult.isFromCache ());
+    assertTrue (aResult.getTransformationErrorList ().isAggregateRepeated ());
+    assertTrue (_containsText (aResult.getTransformationErrorList (), EText.NUMERIC_VALUE_OUT_OF_RANGE));
+  }
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Locale;
+
+import org.junit.Test;
+
+import at.gv.brz.transform.ubl2ebi.metrics.HistogramConversionMetricsListener;
+
+/**
+ * Test class for class {@link ConversionWarmUp}.
+ *
+ * @author philip
+ */
+public final class ConversionWarmUpTest
+{
+  @Test
+  public void testWarmUp ()
+  {
+    final HistogramConversionMetricsListener aListener = new HistogramConversionMetricsListener ();
+    final ConversionPipeline aPipeline = new ConversionPipeline (Locale.GERMANY,
+                                                                 Locale.GERMANY,
+                                                                 false,
+                                                                 false,
+                                                                 null,
+                                                                 aListener);
+
+    final long nDurationMillis = ConversionWarmUp.warmUp (aPipeline, 6);
+    assertTrue (nDurationMillis >= 0);
+    assertTrue (ConversionWarmUp.isWarmedUp ());
+    assertEquals (nDurationMillis, ConversionWarmUp.getWarmUpDurationMillis ());
+
+    // The synthetic documents are not passed to the listener of the pipeline
+    assertEquals (0, aListener.getDocumentCount ());
+    assertEquals (0, aListener.getProcessingHistogram ().getTotalCount ());
+
+    // Only the static initialization
+    assertTrue (ConversionWarmUp.warmUp (aPipeline, 0) >= 0);
+
+    try
+    {
+      ConversionWarmUp.warmUp (aPipeline, -1);
+      fail ();
+    }
+    catch (final IllegalArgumentException ex)
+    {
+      // expected
+    }
+  }
+}
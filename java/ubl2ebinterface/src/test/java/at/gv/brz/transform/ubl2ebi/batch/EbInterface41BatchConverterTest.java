@@ -0,0 +1,177 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+import com.helger.commons.io.resource.IReadableResource;
+import com.helger.commons.io.resource.inmemory.ReadableResourceByteArray;
+
+import at.gv.brz.transform.ubl2ebi.AbstractConverter.EText;
+import at.gv.brz.transform.ubl2ebi.EUBLDocumentType;
+import at.gv.brz.transform.ubl2ebi.error.TransformationError;
+import at.gv.brz.transform.ubl2ebi.synthetic.SyntheticDocumentGenerator;
+import at.gv.brz.transform.ubl2ebi.synthetic.SyntheticDocumentSettings;
+
+/**
+ * Test class for class {@link EbInterface41BatchConverter}.
+ *
+ * @author philip
+ */
+public final class EbInterface41BatchConverterTest
+{
+  private static final Charset UTF8 = Charset.forName ("UTF-8");
+  private static final int DOCUMENT_COUNT = 40;
+
+  @Nonnull
+  private static List <IReadableResource> _createSources ()
+  {
+    final List <IReadableResource> ret = new ArrayList <IReadableResource> ();
+    for (int i = 0; i < DOCUMENT_COUNT; ++i)
+    {
+      final SyntheticDocumentGenerator aGenerator = new SyntheticDocumentGenerator (new SyntheticDocumentSettings ().setSeed (i)
+                                                                                                                    .setLineCount (1 + i % 7));
+      ret.add (new ReadableResourceByteArray ((i % 2) == 0 ? aGenerator.createInvoiceBytes ()
+                                                           : aGenerator.createCreditNoteBytes ()));
+    }
+    return ret;
+  }
+
+  private static boolean _containsError (@Nonnull final ConversionResult aResult, @Nonnull final EText eText)
+  {
+    for (final TransformationError aError : aResult.getTransformationErrorList ())
+      if (aError.getText () == eText)
+        return true;
+    return false;
+  }
+
+  @Test
+  public void testSubmissionOrder ()
+  {
+    final ExecutorService aExecutor = Executors.newFixedThreadPool (4);
+    try
+    {
+      final EbInterface41BatchConverter aBatch = new EbInterface41BatchConverter (new ConversionPipeline (Locale.GERMANY,
+                                                                                                          Locale.GERMANY,
+                                                                                                          false,
+                                                                                                          false),
+                                                                                  aExecutor,
+                                                                                  3,
+                                                                                  EResultOrder.SUBMISSION);
+      final List <ConversionResult> aResults = new ArrayList <ConversionResult> ();
+      final int nCount = aBatch.convertAll (_createSources (), new IConversionResultSink ()
+      {
+        public void onResult (@Nonnull final ConversionResult aResult)
+        {
+          aResults.add (aResult);
+        }
+      });
+      assertEquals (DOCUMENT_COUNT, nCount);
+      assertEquals (DOCUMENT_COUNT, aResults.size ());
+      for (int i = 0; i < DOCUMENT_COUNT; ++i)
+      {
+        final ConversionResult aResult = aResults.get (i);
+        assertEquals (i, aResult.getIndex ());
+        assertEquals ((i % 2) == 0 ? EUBLDocumentType.INVOICE : EUBLDocumentType.CREDIT_NOTE,
+                      aResult.getDocumentType ());
+        assertNotNull (aResult.toString (), aResult.getEbInterfaceDocument ());
+        assertNotNull (aResult.toString (), aResult.getEbInterfaceBytes ());
+        assertTrue (new String (aResult.getEbInterfaceBytes (), UTF8).contains ("Invoice"));
+      }
+    }
+    finally
+    {
+      aExecutor.shutdownNow ();
+    }
+  }
+
+  @Test
+  public void testCompletionOrder ()
+  {
+    final ExecutorService aExecutor = Executors.newFixedThreadPool (4);
+    try
+    {
+      final EbInterface41BatchConverter aBatch = new EbInterface41BatchConverter (new ConversionPipeline (Locale.GERMANY,
+                                                                                                          Locale.GERMANY,
+                                                                                                          false,
+                                                                                                          true),
+                                                                                  aExecutor,
+                                                                                  8,
+                                                                                  EResultOrder.COMPLETION);
+      final BitSet aIndices = new BitSet ();
+      final int nCount = aBatch.convertAll (_createSources (), new IConversionResultSink ()
+      {
+        public void onResult (@Nonnull final ConversionResult aResult)
+        {
+          assertFalse (aIndices.get (aResult.getIndex ()));
+          aIndices.set (aResult.getIndex ());
+          assertNotNull (aResult.getEbInterfaceBytes ());
+        }
+      });
+      assertEquals (DOCUMENT_COUNT, nCount);
+      assertEquals (DOCUMENT_COUNT, aIndices.cardinality ());
+    }
+    finally
+    {
+      aExecutor.shutdownNow ();
+    }
+  }
+
+  @Test
+  public void testBrokenDocuments ()
+  {
+    final ConversionPipeline aPipeline = new ConversionPipeline (Locale.GERMANY, Locale.GERMANY, false, false);
+
+    // Unknown root element
+    ConversionResult aResult = aPipeline.convert (0,
+                                                  new ReadableResourceByteArray ("<Order xmlns='urn:oasis:names:specification:ubl:schema:xsd:Order-2'/>".getBytes (UTF8)));
+    assertNull (aResult.getDocumentType ());
+    assertNull (aResult.getEbInterfaceBytes ());
+    assertFalse (aResult.isSuccess ());
+    assertTrue (_containsError (aResult, EText.INVALID_ROOT_ELEMENT));
+
+    // No XML at all
+    aResult = aPipeline.convert (1, new ReadableResourceByteArray ("no xml".getBytes (UTF8)));
+    assertNull (aResult.getDocumentType ());
+    assertFalse (aResult.isSuccess ());
+    assertTrue (_containsError (aResult, EText.XML_READ_ERROR));
+
+    // Correct root element but invalid content
+    aResult = aPipeline.convert (2,
+                                 new ReadableResourceByteArray ("<Invoice xmlns='urn:oasis:names:specification:ubl:schema:xsd:Invoice-2'><Foo/></Invoice>".getBytes (UTF8)));
+    assertEquals (EUBLDocumentType.INVOICE, aResult.getDocumentType ());
+    assertNull (aResult.getEbInterfaceDocument ());
+    assertFalse (aResult.isSuccess ());
+    assertTrue (_containsError (aResult, EText.UBL_READ_ERROR));
+  }
+}
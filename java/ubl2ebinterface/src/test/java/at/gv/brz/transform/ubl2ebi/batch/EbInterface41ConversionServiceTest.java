@@ -0,0 +1,144 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.commons.io.resource.inmemory.ReadableResourceByteArray;
+
+import at.gv.brz.transform.ubl2ebi.EUBLDocumentType;
+import at.gv.brz.transform.ubl2ebi.synthetic.SyntheticDocumentGenerator;
+import at.gv.brz.transform.ubl2ebi.synthetic.SyntheticDocumentSettings;
+
+/**
+ * Test class for class {@link EbInterface41ConversionService}.
+ *
+ * @author philip
+ */
+public final class EbInterface41ConversionServiceTest
+{
+  private static final Logger s_aLogger = LoggerFactory.getLogger (EbInterface41ConversionServiceTest.class);
+
+  @Test
+  public void testDefaultMaxConcurrentConversions ()
+  {
+    assertTrue (EbInterface41ConversionService.getDefaultMaxConcurrentConversions () > 0);
+  }
+
+  @Test
+  public void testConvert () throws InterruptedException
+  {
+    final ExecutorService aExecutor = Executors.newSingleThreadExecutor ();
+    try
+    {
+      final EbInterface41ConversionService aService = new EbInterface41ConversionService (new ConversionPipeline (Locale.GERMANY,
+                                                                                                                  Locale.GERMANY,
+                                                                                                                  false,
+                                                                                                                  false),
+                                                                                          aExecutor);
+      final ConversionResult aResult = aService.convert (new ReadableResourceByteArray (new SyntheticDocumentGenerator (new SyntheticDocumentSettings ()).createCreditNoteBytes ()));
+      assertEquals (EUBLDocumentType.CREDIT_NOTE, aResult.getDocumentType ());
+      assertNotNull (aResult.getEbInterfaceBytes ());
+      assertEquals (0, aService.getActiveConversionCount ());
+    }
+    finally
+    {
+      aExecutor.shutdownNow ();
+    }
+  }
+
+  @Test
+  public void testManyConcurrentConversions () throws InterruptedException, ExecutionException
+  {
+    // Distinct documents
+    final int nDocumentCount = 20;
+    final List <byte []> aDocuments = new ArrayList <byte []> ();
+    for (int i = 0; i < nDocumentCount; ++i)
+      aDocuments.add (new SyntheticDocumentGenerator (new SyntheticDocumentSettings ().setSeed (i)
+                                                                                      .setLineCount (1 + i)).createInvoiceBytes ());
+
+    // One thread per conversion - only the service limits the concurrency
+    final ExecutorService aExecutor = Executors.newCachedThreadPool ();
+    try
+    {
+      final int nMaxConcurrent = 4;
+      final EbInterface41ConversionService aService = new EbInterface41ConversionService (new ConversionPipeline (Locale.GERMANY,
+                                                                                                                  Locale.GERMANY,
+                                                                                                                  false,
+                                                                                                                  false),
+                                                                                          aExecutor,
+                                                                                          nMaxConcurrent);
+      final AtomicInteger aMaxActive = new AtomicInteger (0);
+      final IConversionResultSink aCallback = new IConversionResultSink ()
+      {
+        public void onResult (@Nonnull final ConversionResult aResult)
+        {
+          final int nActive = aService.getActiveConversionCount ();
+          while (true)
+          {
+            final int nOld = aMaxActive.get ();
+            if (nOld >= nActive || aMaxActive.compareAndSet (nOld, nActive))
+              break;
+          }
+        }
+      };
+
+      final int nInFlight = 2000;
+      final List <Future <ConversionResult>> aFutures = new ArrayList <Future <ConversionResult>> (nInFlight);
+      final long nStart = System.nanoTime ();
+      for (int i = 0; i < nInFlight; ++i)
+        aFutures.add (aService.submit (new ReadableResourceByteArray (aDocuments.get (i % nDocumentCount)), aCallback));
+
+      for (int i = 0; i < nInFlight; ++i)
+      {
+        final ConversionResult aResult = aFutures.get (i).get ();
+        assertEquals (i, aResult.getIndex ());
+        assertEquals (EUBLDocumentType.INVOICE, aResult.getDocumentType ());
+        assertNotNull (aResult.getEbInterfaceBytes ());
+      }
+      assertTrue (aMaxActive.get () <= nMaxConcurrent);
+      assertEquals (0, aService.getActiveConversionCount ());
+      s_aLogger.info ("Converted " +
+                      nInFlight +
+                      " documents in " +
+                      TimeUnit.NANOSECONDS.toMillis (System.nanoTime () - nStart) +
+                      "ms");
+    }
+    finally
+    {
+      aExecutor.shutdownNow ();
+    }
+  }
+}
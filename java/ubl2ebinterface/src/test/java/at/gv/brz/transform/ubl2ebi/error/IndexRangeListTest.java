@@ -0,0 +1,114 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.error;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+/**
+ * Test class for class {@link IndexRangeList}.
+ *
+ * @author philip
+ */
+public final class IndexRangeListTest
+{
+  @Test
+  public void testBasic ()
+  {
+    final IndexRangeList aList = new IndexRangeList ();
+    assertTrue (aList.isEmpty ());
+    assertEquals ("", aList.getAsString ());
+
+    for (int i = 0; i < 5; ++i)
+      assertTrue (aList.add (i));
+    assertTrue (aList.add (7));
+    assertTrue (aList.add (12));
+    assertTrue (aList.add (9));
+    assertTrue (aList.add (11));
+    assertTrue (aList.add (10));
+    assertFalse (aList.add (3));
+    assertFalse (aList.add (10));
+    assertEquals ("0-4,7,9-12", aList.getAsString ());
+    assertEquals (3, aList.getRangeCount ());
+    assertEquals (10, aList.getIndexCount ());
+    assertEquals (9, aList.getRangeStart (2));
+    assertEquals (12, aList.getRangeEnd (2));
+    assertTrue (aList.contains (11));
+    assertFalse (aList.contains (8));
+
+    // Merge two ranges
+    assertTrue (aList.add (8));
+    assertEquals ("0-4,7-12", aList.getAsString ());
+    assertTrue (aList.add (6));
+    assertTrue (aList.add (5));
+    assertEquals ("0-12", aList.getAsString ());
+    assertEquals (1, aList.getRangeCount ());
+    assertEquals (13, aList.getIndexCount ());
+  }
+
+  @Test
+  public void testRandom ()
+  {
+    final Random aRandom = new Random (4711);
+    for (int nRun = 0; nRun < 100; ++nRun)
+    {
+      final IndexRangeList aList = new IndexRangeList ();
+      final TreeSet <Integer> aSet = new TreeSet <Integer> ();
+      for (int i = 0; i < 200; ++i)
+      {
+        final int nIndex = aRandom.nextInt (300);
+        assertEquals (Boolean.valueOf (aSet.add (Integer.valueOf (nIndex))), Boolean.valueOf (aList.add (nIndex)));
+      }
+      assertEquals (aSet.size (), aList.getIndexCount ());
+
+      // Build the expected string from the set
+      final StringBuilder aSB = new StringBuilder ();
+      Integer aStart = null;
+      Integer aPrev = null;
+      for (final Integer aCur : aSet)
+      {
+        if (aPrev != null && aCur.intValue () != aPrev.intValue () + 1)
+        {
+          if (aSB.length () > 0)
+            aSB.append (',');
+          aSB.append (aStart);
+          if (!aStart.equals (aPrev))
+            aSB.append ('-').append (aPrev);
+          aStart = null;
+        }
+        if (aStart == null)
+          aStart = aCur;
+        aPrev = aCur;
+      }
+      if (aStart != null)
+      {
+        if (aSB.length () > 0)
+          aSB.append (',');
+        aSB.append (aStart);
+        if (!aStart.equals (aPrev))
+          aSB.append ('-').append (aPrev);
+      }
+      assertEquals (aSB.toString (), aList.getAsString ());
+    }
+  }
+}
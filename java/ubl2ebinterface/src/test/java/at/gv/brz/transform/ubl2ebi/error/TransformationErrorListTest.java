@@ -0,0 +1,208 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.error;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Locale;
+
+import org.junit.Test;
+
+import com.helger.commons.io.file.filter.FileFilterFilenameEndsWith;
+import com.helger.commons.io.file.iterate.FileSystemRecursiveIterator;
+import com.helger.commons.io.resource.FileSystemResource;
+import com.helger.ebinterface.v41.Ebi41InvoiceType;
+import com.helger.ubl21.UBL21Reader;
+import com.helger.validation.error.ErrorList;
+
+import at.gv.brz.transform.ubl2ebi.AbstractConverter.EText;
+import at.gv.brz.transform.ubl2ebi.invoice.InvoiceToEbInterface41Converter;
+import oasis.names.specification.ubl.schema.xsd.invoice_21.InvoiceType;
+
+/**
+ * Test class for class {@link TransformationErrorList}.
+ *
+ * @author philip
+ */
+public final class TransformationErrorListTest
+{
+  @Test
+  public void testErrorLocation ()
+  {
+    final ErrorLocation aLoc = ErrorLocation.create ("InvoiceLine[*]/Delivery[*]", 4, 0);
+    assertEquals ("InvoiceLine[4]/Delivery[0]", aLoc.getAsString ());
+    assertEquals ("InvoiceLine[*]/Delivery[*]", aLoc.getAsPattern ());
+
+    final ErrorLocation aChild = aLoc.getChild ("/PartyIdentification[*]", 2);
+    assertEquals ("InvoiceLine[4]/Delivery[0]/PartyIdentification[2]", aChild.getAsString ());
+    assertEquals ("InvoiceLine[*]/Delivery[*]/PartyIdentification[*]", aChild.getAsPattern ());
+    assertArrayEquals (new int [] { 4, 0, 2 }, aChild.getAllIndices ());
+    assertEquals (aChild,
+                  ErrorLocation.create ("InvoiceLine[*]/Delivery[*]", 4, 0).getChild ("/PartyIdentification[*]", 2));
+    assertFalse (aChild.equals (aLoc.getChild ("/PartyIdentification[*]", 3)));
+
+    assertEquals ("ID", ErrorLocation.create ("ID").getAsString ());
+    try
+    {
+      ErrorLocation.create ("InvoiceLine[*]");
+      throw new IllegalStateException ("Missing index was not detected");
+    }
+    catch (final IllegalArgumentException ex)
+    {
+      // expected
+    }
+  }
+
+  @Test
+  public void testBasic ()
+  {
+    final TransformationErrorList aList = new TransformationErrorList ();
+    assertTrue (aList.isEmpty ());
+    assertFalse (aList.containsAtLeastOneError ());
+
+    aList.addWarning (ErrorLocation.create ("InvoiceLine[*]/InvoicedQuantity/UnitCode", 7),
+                      EText.DETAILS_INVALID_UNIT,
+                      "C62");
+    assertFalse (aList.isEmpty ());
+    assertFalse (aList.containsAtLeastOneError ());
+    aList.addError (ErrorLocation.create ("ID"), EText.MISSING_INVOICE_NUMBER);
+    assertTrue (aList.containsAtLeastOneError ());
+    assertEquals (2, aList.getSize ());
+    assertEquals (1, aList.getErrorCount ());
+    assertEquals (1, aList.getWarningCount ());
+
+    final ErrorList aErrorList = aList.getAsErrorList (Locale.ENGLISH);
+    final ErrorList aExpected = new ErrorList ();
+    aExpected.addWarning ("InvoiceLine[7]/InvoicedQuantity/UnitCode",
+                          EText.DETAILS_INVALID_UNIT.getDisplayTextWithArgs (Locale.ENGLISH, "C62"));
+    aExpected.addError ("ID", EText.MISSING_INVOICE_NUMBER.getDisplayText (Locale.ENGLISH));
+    assertEquals (aExpected.toString (), aErrorList.toString ());
+  }
+
+  @Test
+  public void testAggregateRepeated ()
+  {
+    final TransformationErrorList aList = new TransformationErrorList (true);
+    assertTrue (aList.isAggregateRepeated ());
+    for (int i = 0; i < 1000; ++i)
+      if (i != 500)
+        aList.addWarning (ErrorLocation.create ("InvoiceLine[*]/InvoicedQuantity/UnitCode", i),
+                          EText.DETAILS_INVALID_UNIT,
+                          "C62");
+    aList.addError (ErrorLocation.create ("InvoiceLine[*]/ID", 500), EText.DETAILS_INVALID_POSITION, "x", "501");
+    aList.addWarning (ErrorLocation.create ("InvoiceLine[*]/InvoicedQuantity/UnitCode", 1000),
+                      EText.DETAILS_INVALID_UNIT,
+                      "XYZ");
+
+    assertEquals (2, aList.getSize ());
+    assertEquals (1001, aList.getOccurrenceCount ());
+    assertEquals (1, aList.getErrorCount ());
+    assertEquals (1000, aList.getWarningCount ());
+
+    final TransformationErrorAggregate aAggregate = aList.getAllAggregates ().get (0);
+    assertTrue (aAggregate.isAggregated ());
+    assertEquals (1000, aAggregate.getOccurrenceCount ());
+    assertEquals ("InvoiceLine[0-499,501-1000]/InvoicedQuantity/UnitCode", aAggregate.getLocationAsString ());
+    // Arguments of the first occurrence are kept
+    assertArrayEquals (new Object [] { "C62" }, aAggregate.getFirstError ().getAllArgs ());
+    assertFalse (aList.getAllAggregates ().get (1).isAggregated ());
+
+    final ErrorList aErrorList = aList.getAsErrorList (Locale.ENGLISH);
+    final ErrorList aExpected = new ErrorList ();
+    aExpected.addWarning ("InvoiceLine[0-499,501-1000]/InvoicedQuantity/UnitCode",
+                          EText.DETAILS_INVALID_UNIT.getDisplayTextWithArgs (Locale.ENGLISH, "C62") +
+                              " " +
+                              EText.REPEATED_OCCURRENCES.getDisplayTextWithArgs (Locale.ENGLISH,
+                                                                                 Integer.valueOf (1000)));
+    aExpected.addError ("InvoiceLine[500]/ID",
+                        EText.DETAILS_INVALID_POSITION.getDisplayTextWithArgs (Locale.ENGLISH, "x", "501"));
+    assertEquals (aExpected.toString (), aErrorList.toString ());
+  }
+
+  @Test
+  public void testErrorBudget ()
+  {
+    final TransformationErrorList aList = new TransformationErrorList ().setMaxErrorCount (2);
+    assertFalse (aList.isErrorBudgetExhausted ());
+    aList.addWarning (ErrorLocation.create ("ID"), EText.MISSING_INVOICE_NUMBER);
+    aList.addError (ErrorLocation.create ("ID"), EText.MISSING_INVOICE_NUMBER);
+    assertFalse (aList.isErrorBudgetExhausted ());
+    aList.addError (ErrorLocation.create ("IssueDate"), EText.MISSING_INVOICE_DATE);
+    assertTrue (aList.isErrorBudgetExhausted ());
+    assertFalse (new TransformationErrorList ().isErrorBudgetExhausted ());
+
+    // Stop at the first error
+    final InvoiceToEbInterface41Converter aConverter = new InvoiceToEbInterface41Converter (Locale.GERMANY,
+                                                                                            Locale.GERMANY,
+                                                                                            true);
+    for (final File aFile : FileSystemRecursiveIterator.create (new File ("src/test/resources/ubl20/invoice_bad"),
+                                                                new FileFilterFilenameEndsWith (".xml")))
+    {
+      final InvoiceType aUBLInvoice = UBL21Reader.readInvoice (new FileSystemResource (aFile));
+      assertNotNull (aUBLInvoice);
+
+      final TransformationErrorList aFullList = new TransformationErrorList ();
+      aConverter.convertToEbInterface (aUBLInvoice, aFullList);
+
+      final TransformationErrorList aFailFastList = new TransformationErrorList ().setMaxErrorCount (1);
+      final Ebi41InvoiceType aEbiInvoice = aConverter.convertToEbInterface (aUBLInvoice, aFailFastList);
+      if (aFullList.containsAtLeastOneError ())
+      {
+        assertNull (aFile.getPath (), aEbiInvoice);
+        assertTrue (aFile.getPath (), aFailFastList.isErrorBudgetExhausted ());
+        // The collected errors are the beginning of all errors
+        assertTrue (aFile.getPath (), aFailFastList.getSize () <= aFullList.getSize ());
+        assertEquals (aFile.getPath (),
+                      aFullList.getAllItems ().subList (0, aFailFastList.getSize ()),
+                      aFailFastList.getAllItems ());
+      }
+      else
+        assertEquals (aFile.getPath (), aFullList.getAllItems (), aFailFastList.getAllItems ());
+    }
+  }
+
+  @Test
+  public void testSameAsErrorList ()
+  {
+    for (final String sDir : new String [] { "src/test/resources/ubl20/invoice",
+                                             "src/test/resources/ubl20/invoice_bad" })
+      for (final File aFile : FileSystemRecursiveIterator.create (new File (sDir),
+                                                                  new FileFilterFilenameEndsWith (".xml")))
+      {
+        final InvoiceType aUBLInvoice = UBL21Reader.readInvoice (new FileSystemResource (aFile));
+        assertNotNull (aUBLInvoice);
+
+        final InvoiceToEbInterface41Converter aConverter = new InvoiceToEbInterface41Converter (Locale.GERMANY,
+                                                                                                Locale.GERMANY,
+                                                                                                true);
+        final ErrorList aErrorList = new ErrorList ();
+        aConverter.convertToEbInterface (aUBLInvoice, aErrorList);
+
+        final TransformationErrorList aTransformationErrorList = new TransformationErrorList ();
+        aConverter.convertToEbInterface (aUBLInvoice, aTransformationErrorList);
+        assertEquals (aFile.getPath (),
+                      aErrorList.toString (),
+                      aTransformationErrorList.getAsErrorList (Locale.GERMANY).toString ());
+      }
+  }
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.helper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import org.junit.Test;
+
+/**
+ * Test class for class {@link NumericLimits}.
+ *
+ * @author philip
+ */
+public final class NumericLimitsTest
+{
+  @Test
+  public void testDefault ()
+  {
+    final NumericLimits aLimits = NumericLimits.DEFAULT;
+    assertEquals (NumericLimits.DEFAULT_MAX_PRECISION, aLimits.getMaxPrecision ());
+    assertEquals (NumericLimits.DEFAULT_MAX_EXPONENT, aLimits.getMaxExponent ());
+
+    assertTrue (aLimits.isAdmissible (null));
+    assertTrue (aLimits.isAdmissible (BigDecimal.ZERO));
+    assertTrue (aLimits.isAdmissible (new BigDecimal ("123456.78")));
+    assertTrue (aLimits.isAdmissible (new BigDecimal ("-0.0001")));
+    assertTrue (aLimits.isAdmissible (new BigDecimal ("20.000000000000000000000000000")));
+
+    assertFalse (aLimits.isAdmissible (new BigDecimal ("1E+999999999")));
+    assertFalse (aLimits.isAdmissible (new BigDecimal ("1E-999999999")));
+    assertFalse (aLimits.isAdmissible (new BigDecimal ("0E-999999999")));
+    assertFalse (aLimits.isAdmissible (new BigDecimal (BigInteger.TEN.pow (100000))));
+    assertFalse (aLimits.isAdmissible (new BigDecimal (BigInteger.TEN.pow (100000), 100000)));
+  }
+
+  @Test
+  public void testBoundaries ()
+  {
+    final NumericLimits aLimits = new NumericLimits (5, 3);
+    assertEquals (new NumericLimits (5, 3), aLimits);
+    assertEquals (new NumericLimits (5, 3).hashCode (), aLimits.hashCode ());
+    assertFalse (aLimits.equals (new NumericLimits (5, 4)));
+
+    // Precision
+    assertTrue (aLimits.isAdmissible (new BigDecimal ("99.999")));
+    assertTrue (aLimits.isAdmissible (new BigDecimal ("-99.999")));
+    assertFalse (aLimits.isAdmissible (new BigDecimal ("99.9999")));
+    assertFalse (aLimits.isAdmissible (new BigDecimal ("100000")));
+
+    // Exponent
+    assertTrue (aLimits.isAdmissible (new BigDecimal ("9999")));
+    assertTrue (aLimits.isAdmissible (new BigDecimal ("9E+3")));
+    assertFalse (aLimits.isAdmissible (new BigDecimal ("1E+4")));
+    assertTrue (aLimits.isAdmissible (new BigDecimal ("0.001")));
+    assertFalse (aLimits.isAdmissible (new BigDecimal ("0.0001")));
+
+    try
+    {
+      new NumericLimits (0, 3);
+      fail ();
+    }
+    catch (final IllegalArgumentException ex)
+    {
+      // expected
+    }
+  }
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.helper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.math.BigDecimal;
+
+import org.junit.Test;
+
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.TaxCategoryType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.TaxSchemeType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.IDType;
+
+/**
+ * Test class for class {@link TaxCategoryIndex}.
+ *
+ * @author philip
+ */
+public final class TaxCategoryIndexTest
+{
+  private static final BigDecimal PERC_20 = new BigDecimal ("20");
+  private static final BigDecimal PERC_10 = new BigDecimal ("10");
+
+  @Test
+  public void testBasic ()
+  {
+    final TaxCategoryIndex aIndex = new TaxCategoryIndex ();
+    assertEquals (0, aIndex.getSize ());
+    assertNull (aIndex.getPercentage ("UN/ECE 5153", "VAT", "UN/ECE 5305", "S"));
+
+    aIndex.add ("UN/ECE 5153", "VAT", "UN/ECE 5305", "S", PERC_20);
+    aIndex.add ("UN/ECE 5153", "VAT", "UN/ECE 5305", "AA", PERC_10);
+    aIndex.add (null, "VAT", null, "Z", null);
+    for (int i = 0; i < 10; ++i)
+      aIndex.add ("UN/ECE 5153", "VAT", "UN/ECE 5305", "X" + i, BigDecimal.valueOf (i));
+    assertEquals (13, aIndex.getSize ());
+
+    assertEquals (PERC_20, aIndex.getPercentage ("UN/ECE 5153", "VAT", "UN/ECE 5305", "S"));
+    assertEquals (PERC_10, aIndex.getPercentage ("UN/ECE 5153", "VAT", "UN/ECE 5305", "AA"));
+    assertEquals (BigDecimal.valueOf (9), aIndex.getPercentage ("UN/ECE 5153", "VAT", "UN/ECE 5305", "X9"));
+    assertNull (aIndex.getPercentage (null, "VAT", null, "Z"));
+    assertNull (aIndex.getPercentage (null, "VAT", "UN/ECE 5305", "S"));
+    assertNull (aIndex.getPercentage ("UN/ECE 5153", "VAT", "UN/ECE 5305", null));
+
+    // Overwrite
+    aIndex.add ("UN/ECE 5153", "VAT", "UN/ECE 5305", "S", PERC_10);
+    assertEquals (13, aIndex.getSize ());
+    assertEquals (PERC_10, aIndex.getPercentage ("UN/ECE 5153", "VAT", "UN/ECE 5305", "S"));
+  }
+
+  @Test
+  public void testUBLTaxCategory ()
+  {
+    final TaxCategoryIndex aIndex = new TaxCategoryIndex ();
+    aIndex.add ("UN/ECE 5153", "VAT", "UN/ECE 5305", "S", PERC_20);
+
+    final TaxCategoryType aUBLTaxCategory = new TaxCategoryType ();
+    // No ID
+    assertNull (aIndex.getPercentage (aUBLTaxCategory));
+
+    final IDType aID = new IDType ();
+    aID.setSchemeID ("UN/ECE 5305");
+    aID.setValue (" S ");
+    aUBLTaxCategory.setID (aID);
+    // No tax scheme
+    assertNull (aIndex.getPercentage (aUBLTaxCategory));
+
+    final IDType aTaxSchemeID = new IDType ();
+    aTaxSchemeID.setSchemeID ("UN/ECE 5153");
+    aTaxSchemeID.setValue ("VAT");
+    final TaxSchemeType aTaxScheme = new TaxSchemeType ();
+    aTaxScheme.setID (aTaxSchemeID);
+    aUBLTaxCategory.setTaxScheme (aTaxScheme);
+    assertEquals (PERC_20, aIndex.getPercentage (aUBLTaxCategory));
+  }
+}
@@ -16,14 +16,19 @@
  */
 package at.gv.brz.transform.ubl2ebi.invoice;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.Random;
 
 import javax.annotation.Nonnull;
 import javax.xml.bind.Marshaller;
@@ -48,7 +53,14 @@ import com.helger.jaxb.JAXBMarshallerHelper;
 import com.helger.ubl21.UBL21Reader;
 import com.helger.validation.error.ErrorList;
 
+import at.gv.brz.transform.ubl2ebi.AbstractConverter.EText;
 import at.gv.brz.transform.ubl2ebi.EbiNamespacePrefixMapper;
+import at.gv.brz.transform.ubl2ebi.error.TransformationError;
+import at.gv.brz.transform.ubl2ebi.error.TransformationErrorList;
+import at.gv.brz.transform.ubl2ebi.helper.NumericLimits;
+import at.gv.brz.transform.ubl2ebi.synthetic.SyntheticDocumentGenerator;
+import at.gv.brz.transform.ubl2ebi.synthetic.SyntheticDocumentSettings;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.InvoiceLineType;
 import oasis.names.specification.ubl.schema.xsd.invoice_21.InvoiceType;
 
 /**
@@ -190,4 +202,123 @@ public class InvoiceToEbInterface41ConverterTest
       assertNull (aDocEb);
     }
   }
+
+  private static boolean _containsNumericError (@Nonnull final TransformationErrorList aErrorList)
+  {
+    for (final TransformationError aError : aErrorList)
+      if (aError.getText () == EText.NUMERIC_VALUE_OUT_OF_RANGE)
+        return true;
+    return false;
+  }
+
+  @Test
+  public void testNumericLimitsOptIn ()
+  {
+    final InvoiceToEbInterface41Converter aConverter = new InvoiceToEbInterface41Converter (Locale.GERMANY,
+                                                                                           Locale.GERMANY,
+                                                                                           false);
+    // Exponent -21 is outside the default limits
+    final BigDecimal aValue = new BigDecimal ("0.000000000000000000001");
+    final SyntheticDocumentGenerator aGenerator = new SyntheticDocumentGenerator (new SyntheticDocumentSettings ().setLineCount (3));
+
+    // No limits by default
+    InvoiceType aUBLInvoice = aGenerator.createInvoice ();
+    aUBLInvoice.getInvoiceLine ().get (1).getInvoicedQuantity ().setValue (aValue);
+    TransformationErrorList aErrorList = new TransformationErrorList ();
+    assertNull (aErrorList.getNumericLimits ());
+    Ebi41InvoiceType aEbInvoice = aConverter.convertToEbInterface (aUBLInvoice, aErrorList);
+    assertFalse (_containsNumericError (aErrorList));
+    assertNotNull (aEbInvoice);
+    assertEquals (3, aEbInvoice.getDetails ().getItemList ().get (0).getListLineItem ().size ());
+
+    // Explicitly enabled limits
+    aUBLInvoice = aGenerator.createInvoice ();
+    aUBLInvoice.getInvoiceLine ().get (1).getInvoicedQuantity ().setValue (aValue);
+    aErrorList = new TransformationErrorList ().setNumericLimits (NumericLimits.DEFAULT);
+    aConverter.convertToEbInterface (aUBLInvoice, aErrorList);
+    assertTrue (_containsNumericError (aErrorList));
+  }
+
+  @Test (timeout = 60000)
+  public void testNumericLimitsFuzz ()
+  {
+    // Values that would block a BigDecimal operation for a long time
+    final BigDecimal [] aPathologicalValues = new BigDecimal [] { new BigDecimal ("1E+999999999"),
+                                                                  new BigDecimal ("-1E-999999999"),
+                                                                  new BigDecimal (BigInteger.TEN.pow (100000)),
+                                                                  new BigDecimal (BigInteger.TEN.pow (100000)
+                                                                                                .subtract (BigInteger.ONE),
+                                                                                  50000) };
+    final InvoiceToEbInterface41Converter aConverter = new InvoiceToEbInterface41Converter (Locale.GERMANY,
+                                                                                           Locale.GERMANY,
+                                                                                           false);
+    final Random aRandom = new Random (20140101L);
+    for (int i = 0; i < 200; ++i)
+    {
+      final InvoiceType aUBLInvoice = new SyntheticDocumentGenerator (new SyntheticDocumentSettings ().setSeed (i)
+                                                                                                      .setLineCount (5)
+                                                                                                      .setAllowanceChargeDensity (0.5)).createInvoice ();
+
+      // Either a pathological or a regular value
+      final boolean bPathological = aRandom.nextBoolean ();
+      final BigDecimal aValue = bPathological ? aPathologicalValues[aRandom.nextInt (aPathologicalValues.length)]
+                                              : BigDecimal.valueOf (1 + aRandom.nextInt (100000), aRandom.nextInt (5));
+      final InvoiceLineType aUBLLine = aUBLInvoice.getInvoiceLine ().get (aRandom.nextInt (5));
+      switch (aRandom.nextInt (6))
+      {
+        case 0:
+          aUBLLine.getInvoicedQuantity ().setValue (aValue);
+          break;
+        case 1:
+          aUBLLine.getLineExtensionAmount ().setValue (aValue);
+          break;
+        case 2:
+          aUBLLine.getPrice ().getPriceAmount ().setValue (aValue);
+          break;
+        case 3:
+          aUBLInvoice.getTaxTotal ().get (0).getTaxSubtotal ().get (0).getTaxableAmount ().setValue (aValue);
+          break;
+        case 4:
+          aUBLInvoice.getTaxTotal ().get (0).getTaxSubtotal ().get (0).getTaxAmount ().setValue (aValue);
+          break;
+        default:
+          aUBLInvoice.getLegalMonetaryTotal ().getPayableAmount ().setValue (aValue);
+          break;
+      }
+
+      final TransformationErrorList aErrorList = new TransformationErrorList ().setNumericLimits (NumericLimits.DEFAULT);
+      aConverter.convertToEbInterface (aUBLInvoice, aErrorList);
+
+      // Pathological values are rejected before any arithmetic is performed
+      assertEquals (aValue.toString (),
+                    Boolean.valueOf (bPathological),
+                    Boolean.valueOf (_containsNumericError (aErrorList)));
+    }
+  }
+
+  @Test
+  public void testDeliveryErrorLocation ()
+  {
+    final InvoiceToEbInterface41Converter aConverter = new InvoiceToEbInterface41Converter (Locale.GERMANY,
+                                                                                           Locale.GERMANY,
+                                                                                           false);
+    final SyntheticDocumentGenerator aGenerator = new SyntheticDocumentGenerator (new SyntheticDocumentSettings ().setLineCount (3)
+                                                                                                                  .setLineDeliveryDensity (1));
+
+    // Complete deliveries report nothing
+    InvoiceType aUBLInvoice = aGenerator.createInvoice ();
+    TransformationErrorList aErrorList = new TransformationErrorList ();
+    aConverter.convertToEbInterface (aUBLInvoice, aErrorList);
+    assertTrue (aErrorList.toString (), aErrorList.isEmpty ());
+
+    // The location of a line delivery is created on error
+    aUBLInvoice = aGenerator.createInvoice ();
+    aUBLInvoice.getInvoiceLine ().get (1).getDelivery ().get (0).getDeliveryLocation ().getAddress ().setStreetName (null);
+    aErrorList = new TransformationErrorList ();
+    aConverter.convertToEbInterface (aUBLInvoice, aErrorList);
+    assertEquals (1, aErrorList.getSize ());
+    final TransformationError aError = aErrorList.iterator ().next ();
+    assertEquals (EText.ADDRESS_NO_STREET, aError.getText ());
+    assertEquals ("InvoiceLine[1]/Delivery[0]/PostalAddress/StreetName", aError.getLocationAsString ());
+  }
 }
@@ -0,0 +1,156 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.invoice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.Locale;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import com.helger.commons.io.file.filter.FileFilterFilenameEndsWith;
+import com.helger.commons.io.file.iterate.FileSystemRecursiveIterator;
+import com.helger.commons.io.resource.FileSystemResource;
+import com.helger.commons.io.resource.IReadableResource;
+import com.helger.commons.io.stream.StreamHelper;
+import com.helger.commons.xml.serialize.write.XMLWriter;
+import com.helger.ebinterface.EbInterface41Marshaller;
+import com.helger.ebinterface.v41.Ebi41InvoiceType;
+import com.helger.ebinterface.v41.Ebi41ListLineItemType;
+import com.helger.ubl21.UBL21Reader;
+import com.helger.validation.error.ErrorList;
+
+import at.gv.brz.transform.ubl2ebi.IEbiListLineItemHandler;
+import at.gv.brz.transform.ubl2ebi.synthetic.SyntheticDocumentGenerator;
+import at.gv.brz.transform.ubl2ebi.synthetic.SyntheticDocumentSettings;
+import oasis.names.specification.ubl.schema.xsd.invoice_21.InvoiceType;
+
+/**
+ * Test class for class {@link StreamingInvoiceToEbInterface41Converter}.
+ *
+ * @author philip
+ */
+public final class StreamingInvoiceToEbInterface41ConverterTest
+{
+  @Nonnull
+  private static String _getAsString (@Nonnull final Ebi41InvoiceType aEbInvoice)
+  {
+    final Document aDoc = new EbInterface41Marshaller ().write (aEbInvoice);
+    return aDoc == null ? "invalid" : XMLWriter.getXMLString (aDoc);
+  }
+
+  @Test
+  public void testSameResultAsDOMConversion ()
+  {
+    final InvoiceToEbInterface41Converter aConverter = new InvoiceToEbInterface41Converter (Locale.GERMANY,
+                                                                                            Locale.GERMANY,
+                                                                                            false);
+    final StreamingInvoiceToEbInterface41Converter aStreamingConverter = new StreamingInvoiceToEbInterface41Converter (aConverter);
+    for (final String sDir : new String [] { "src/test/resources/ubl20/invoice", "src/test/resources/ubl20/invoice_bad" })
+      for (final File aFile : FileSystemRecursiveIterator.create (new File (sDir),
+                                                                  new FileFilterFilenameEndsWith (".xml")))
+      {
+        final IReadableResource aRes = new FileSystemResource (aFile);
+        final InvoiceType aUBLInvoice = UBL21Reader.readInvoice (aRes);
+        assertNotNull (aUBLInvoice);
+
+        final ErrorList aErrorList = new ErrorList ();
+        final Ebi41InvoiceType aEbInvoice = aConverter.convertToEbInterface (aUBLInvoice, aErrorList);
+
+        final ErrorList aStreamingErrorList = new ErrorList ();
+        final InputStream aIS = aRes.getInputStream ();
+        final Ebi41InvoiceType aStreamingEbInvoice;
+        try
+        {
+          aStreamingEbInvoice = aStreamingConverter.convertToEbInterface (aIS, null, aStreamingErrorList);
+        }
+        finally
+        {
+          StreamHelper.close (aIS);
+        }
+
+        assertEquals (aRes.getPath (), aErrorList.toString (), aStreamingErrorList.toString ());
+        if (aEbInvoice == null)
+          assertNull (aRes.getPath (), aStreamingEbInvoice);
+        else
+        {
+          assertNotNull (aRes.getPath (), aStreamingEbInvoice);
+          assertEquals (aRes.getPath (), _getAsString (aEbInvoice), _getAsString (aStreamingEbInvoice));
+        }
+      }
+  }
+
+  @Test
+  public void testLargeInvoiceWithHandler ()
+  {
+    final int nLineCount = 20000;
+    final SyntheticDocumentSettings aSettings = new SyntheticDocumentSettings ().setLineCount (nLineCount)
+                                                                                .setTaxCategoryCount (3)
+                                                                                .setAllowanceChargeDensity (0.5);
+    final byte [] aBytes = new SyntheticDocumentGenerator (aSettings).createInvoiceBytes ();
+
+    final int [] aCount = new int [1];
+    final IEbiListLineItemHandler aHandler = new IEbiListLineItemHandler ()
+    {
+      public void onListLineItem (@Nonnull final Ebi41ListLineItemType aEbiListLineItem)
+      {
+        aCount[0]++;
+        assertEquals (aCount[0], aEbiListLineItem.getPositionNumber ().intValue ());
+      }
+    };
+
+    final StreamingInvoiceToEbInterface41Converter aConverter = new StreamingInvoiceToEbInterface41Converter (new InvoiceToEbInterface41Converter (Locale.GERMANY,
+                                                                                                                                                   Locale.GERMANY,
+                                                                                                                                                   true));
+    final ErrorList aErrorList = new ErrorList ();
+    final Ebi41InvoiceType aEbInvoice = aConverter.convertToEbInterface (new ByteArrayInputStream (aBytes),
+                                                                         aHandler,
+                                                                         aErrorList);
+    assertTrue (aErrorList.toString (), aErrorList.isEmpty ());
+    assertNotNull (aEbInvoice);
+    assertEquals (nLineCount, aCount[0]);
+    // Nothing was collected in the document
+    assertTrue (aEbInvoice.getDetails ().getItemList ().get (0).getListLineItem ().isEmpty ());
+  }
+
+  @Test
+  public void testInvalidInput ()
+  {
+    final StreamingInvoiceToEbInterface41Converter aConverter = new StreamingInvoiceToEbInterface41Converter (new InvoiceToEbInterface41Converter (Locale.GERMANY,
+                                                                                                                                                   Locale.GERMANY,
+                                                                                                                                                   false));
+    // Wrong root element
+    ErrorList aErrorList = new ErrorList ();
+    assertNull (aConverter.convertToEbInterface (new ByteArrayInputStream ("<root/>".getBytes ()), null, aErrorList));
+    assertFalse (aErrorList.isEmpty ());
+
+    // Not well-formed
+    aErrorList = new ErrorList ();
+    assertNull (aConverter.convertToEbInterface (new ByteArrayInputStream ("<Invoice".getBytes ()), null, aErrorList));
+    assertFalse (aErrorList.isEmpty ());
+  }
+}
@@ -0,0 +1,183 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+import com.helger.commons.io.resource.inmemory.ReadableResourceByteArray;
+
+import at.gv.brz.transform.ubl2ebi.EUBLDocumentType;
+import at.gv.brz.transform.ubl2ebi.batch.ConversionPipeline;
+import at.gv.brz.transform.ubl2ebi.batch.ConversionResult;
+import at.gv.brz.transform.ubl2ebi.error.TransformationErrorList;
+import at.gv.brz.transform.ubl2ebi.synthetic.SyntheticDocumentGenerator;
+import at.gv.brz.transform.ubl2ebi.synthetic.SyntheticDocumentSettings;
+
+/**
+ * Test class for class {@link ConversionEvent}.
+ *
+ * @author philip
+ */
+public final class ConversionEventTest
+{
+  private static final Charset UTF8 = Charset.forName ("UTF-8");
+  private static final String INVALID_CREDIT_NOTE = "<CreditNote xmlns=\"urn:oasis:names:specification:ubl:schema:xsd:CreditNote-2\"><Foo/></CreditNote>";
+
+  private static final class EventCollector extends HistogramConversionMetricsListener
+  {
+    private final List <ConversionEvent> m_aEvents = new ArrayList <ConversionEvent> ();
+
+    @Override
+    public boolean isConversionEventEnabled ()
+    {
+      return true;
+    }
+
+    @Override
+    public void onConversionEvent (@Nonnull final ConversionEvent aEvent)
+    {
+      m_aEvents.add (aEvent);
+    }
+  }
+
+  @Test
+  public void testDisabled ()
+  {
+    final HistogramConversionMetricsListener aListener = new HistogramConversionMetricsListener ()
+    {
+      @Override
+      public void onConversionEvent (@Nonnull final ConversionEvent aEvent)
+      {
+        fail ("No events expected: " + aEvent);
+      }
+    };
+    assertFalse (aListener.isConversionEventEnabled ());
+
+    final ConversionMetricsRecorder aRecorder = ConversionMetricsRecorder.create (aListener);
+    aRecorder.startStage (EConversionStage.LINES);
+    aRecorder.onDocumentConverted (EUBLDocumentType.INVOICE, "4711", false, true, new TransformationErrorList ());
+    assertEquals (1, aListener.getDocumentCount ());
+  }
+
+  @Test
+  public void testRecorder ()
+  {
+    final EventCollector aListener = new EventCollector ();
+    final ConversionMetricsRecorder aRecorder = ConversionMetricsRecorder.create (aListener);
+    aRecorder.startStage (EConversionStage.HEADER);
+    aRecorder.startStage (EConversionStage.LINES);
+    aRecorder.startStage (EConversionStage.HEADER);
+    aRecorder.onDocumentConverted (EUBLDocumentType.CREDIT_NOTE, "4711", true, false, new TransformationErrorList ());
+
+    assertEquals (1, aListener.m_aEvents.size ());
+    final ConversionEvent aEvent = aListener.m_aEvents.get (0);
+    assertEquals (EUBLDocumentType.CREDIT_NOTE, aEvent.getDocumentType ());
+    assertEquals ("4711", aEvent.getDocumentID ());
+    assertTrue (aEvent.isStrictERBMode ());
+    assertFalse (aEvent.isSuccess ());
+    assertEquals (Thread.currentThread ().getName (), aEvent.getThreadName ());
+    assertTrue (aEvent.getStartTimeMillis () <= System.currentTimeMillis ());
+    assertEquals (0, aEvent.getLineCount ());
+    assertEquals (0, aEvent.getStageDurationNanos (EConversionStage.TAX));
+    // The sum of all stages cannot exceed the total duration
+    long nStageSum = 0;
+    for (final EConversionStage eStage : EConversionStage.values ())
+      nStageSum += aEvent.getStageDurationNanos (eStage);
+    assertTrue (nStageSum <= aEvent.getDurationNanos ());
+    assertNotNull (aEvent.toString ());
+  }
+
+  @Test
+  public void testPipeline ()
+  {
+    final EventCollector aListener = new EventCollector ();
+    final ConversionPipeline aPipeline = new ConversionPipeline (Locale.GERMANY,
+                                                                 Locale.GERMANY,
+                                                                 false,
+                                                                 false,
+                                                                 null,
+                                                                 aListener);
+
+    final SyntheticDocumentGenerator aGenerator = new SyntheticDocumentGenerator (new SyntheticDocumentSettings ().setSeed (17)
+                                                                                                                  .setLineCount (7));
+    assertTrue (aPipeline.convert (0, new ReadableResourceByteArray (aGenerator.createInvoiceBytes ())).isSuccess ());
+    assertTrue (aPipeline.convert (1, new ReadableResourceByteArray (aGenerator.createCreditNoteBytes ())).isSuccess ());
+    final ConversionResult aResult = aPipeline.convert (2,
+                                                        new ReadableResourceByteArray (INVALID_CREDIT_NOTE.getBytes (UTF8)));
+    assertFalse (aResult.isSuccess ());
+    assertEquals (3, aListener.m_aEvents.size ());
+
+    ConversionEvent aEvent = aListener.m_aEvents.get (0);
+    assertEquals (EUBLDocumentType.INVOICE, aEvent.getDocumentType ());
+    assertEquals ("SYNTHETIC-INVOICE-17", aEvent.getDocumentID ());
+    assertFalse (aEvent.isStrictERBMode ());
+    assertTrue (aEvent.isSuccess ());
+    assertEquals (7, aEvent.getLineCount ());
+    assertEquals (0, aEvent.getErrorCount ());
+    assertTrue (aEvent.getStageDurationNanos (EConversionStage.LINES) > 0);
+    // Parsing and marshalling are not part of the converter
+    assertEquals (0, aEvent.getStageDurationNanos (EConversionStage.PARSE));
+    assertEquals (0, aEvent.getStageDurationNanos (EConversionStage.MARSHAL));
+
+    aEvent = aListener.m_aEvents.get (1);
+    assertEquals (EUBLDocumentType.CREDIT_NOTE, aEvent.getDocumentType ());
+    assertEquals ("SYNTHETIC-CREDITNOTE-17", aEvent.getDocumentID ());
+    assertTrue (aEvent.isSuccess ());
+    assertEquals (7, aEvent.getLineCount ());
+
+    // Reading failed - only the parsing is reported
+    aEvent = aListener.m_aEvents.get (2);
+    assertEquals (EUBLDocumentType.CREDIT_NOTE, aEvent.getDocumentType ());
+    assertNull (aEvent.getDocumentID ());
+    assertFalse (aEvent.isSuccess ());
+    assertEquals (0, aEvent.getLineCount ());
+    assertEquals (1, aEvent.getErrorCount ());
+    assertTrue (aEvent.getStageDurationNanos (EConversionStage.PARSE) > 0);
+  }
+
+  @Test
+  public void testLogger ()
+  {
+    final ConversionEventLogger aLogger = new ConversionEventLogger (0);
+    assertTrue (aLogger.isConversionEventEnabled ());
+    assertEquals (0, aLogger.getThresholdMillis ());
+    assertEquals (ConversionEventLogger.DEFAULT_THRESHOLD_MILLIS, new ConversionEventLogger ().getThresholdMillis ());
+
+    final ConversionPipeline aPipeline = new ConversionPipeline (Locale.GERMANY,
+                                                                 Locale.GERMANY,
+                                                                 false,
+                                                                 false,
+                                                                 null,
+                                                                 aLogger);
+    final byte [] aBytes = new SyntheticDocumentGenerator (new SyntheticDocumentSettings ()).createInvoiceBytes ();
+    assertTrue (aPipeline.convert (0, new ReadableResourceByteArray (aBytes)).isSuccess ());
+  }
+}
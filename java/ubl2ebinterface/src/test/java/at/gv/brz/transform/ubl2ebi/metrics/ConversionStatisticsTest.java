@@ -0,0 +1,184 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+
+import org.junit.Test;
+
+import com.helger.commons.error.EErrorLevel;
+import com.helger.commons.io.resource.inmemory.ReadableResourceByteArray;
+
+import at.gv.brz.transform.ubl2ebi.AbstractConverter.EText;
+import at.gv.brz.transform.ubl2ebi.EUBLDocumentType;
+import at.gv.brz.transform.ubl2ebi.batch.ConversionPipeline;
+import at.gv.brz.transform.ubl2ebi.error.ErrorLocation;
+import at.gv.brz.transform.ubl2ebi.error.TransformationError;
+import at.gv.brz.transform.ubl2ebi.error.TransformationErrorList;
+import at.gv.brz.transform.ubl2ebi.synthetic.SyntheticDocumentGenerator;
+import at.gv.brz.transform.ubl2ebi.synthetic.SyntheticDocumentSettings;
+
+/**
+ * Test class for class {@link ConversionStatistics}.
+ *
+ * @author philip
+ */
+public final class ConversionStatisticsTest
+{
+  @Test
+  public void testStripedCounter () throws InterruptedException
+  {
+    final StripedCounter aCounter = new StripedCounter ();
+    assertEquals (0, aCounter.sum ());
+    final List <Thread> aThreads = new ArrayList <Thread> ();
+    for (int i = 0; i < 8; ++i)
+      aThreads.add (new Thread ()
+      {
+        @Override
+        public void run ()
+        {
+          for (int j = 0; j < 10000; ++j)
+          {
+            aCounter.increment ();
+            aCounter.add (2);
+          }
+        }
+      });
+    for (final Thread aThread : aThreads)
+      aThread.start ();
+    for (final Thread aThread : aThreads)
+      aThread.join ();
+    assertEquals (8 * 10000 * 3, aCounter.sum ());
+    assertEquals ("240000", aCounter.toString ());
+  }
+
+  @Test
+  public void testStatistics ()
+  {
+    final ConversionStatistics aStats = new ConversionStatistics ();
+    final ConversionPipeline aPipeline = new ConversionPipeline (Locale.GERMANY,
+                                                                 Locale.GERMANY,
+                                                                 false,
+                                                                 false,
+                                                                 null,
+                                                                 aStats);
+    long nBytesIn = 0;
+    for (int i = 0; i < 20; ++i)
+    {
+      final byte [] aBytes = new SyntheticDocumentGenerator (new SyntheticDocumentSettings ().setSeed (i)
+                                                                                             .setLineCount (5)).createInvoiceBytes ();
+      assertTrue (aPipeline.convert (i, new ReadableResourceByteArray (aBytes)).isSuccess ());
+      nBytesIn += aBytes.length;
+    }
+    aStats.onDiagnostic (new TransformationError (EErrorLevel.ERROR,
+                                                  ErrorLocation.create ("Invoice"),
+                                                  EText.ERB_NO_DELIVERY_DATE),
+                          1);
+
+    assertEquals (20, aStats.getDocumentCount ());
+    assertEquals (0, aStats.getFailedDocumentCount ());
+    assertEquals (100, aStats.getLineCount ());
+    assertEquals (nBytesIn, aStats.getBytesIn ());
+    assertTrue (aStats.getBytesOut () > 0);
+    assertTrue (aStats.getLatencyP50Millis () > 0);
+    assertTrue (aStats.getLatencyP50Millis () <= aStats.getLatencyP99Millis ());
+    assertTrue (aStats.getLatencyP99Millis () <= aStats.getLatencyP999Millis ());
+    assertTrue (aStats.getLatencyP999Millis () <= aStats.getLatencyMaxMillis ());
+    assertEquals (1, aStats.getERBNoDeliveryDateCount ());
+    assertEquals (0, aStats.getBICInvalidCount ());
+    assertEquals (Long.valueOf (1), aStats.getDiagnosticCounts ().get ("ERB_NO_DELIVERY_DATE"));
+    assertFalse (aStats.getDiagnosticCounts ().containsKey ("BIC_INVALID"));
+    // No full second elapsed so far
+    assertTrue (aStats.getDocumentsPerSecond () >= 0);
+  }
+
+  @Test
+  public void testAggregatedDiagnostics ()
+  {
+    final ConversionStatistics aStats = new ConversionStatistics ();
+    final ConversionMetricsRecorder aRecorder = ConversionMetricsRecorder.create (aStats);
+
+    final TransformationErrorList aErrorList = new TransformationErrorList (true);
+    for (int i = 0; i < 50; ++i)
+      aErrorList.addError (ErrorLocation.create ("PaymentMeans[*]", i), EText.BIC_INVALID, "xyz");
+    aErrorList.addError (ErrorLocation.create ("Invoice"), EText.VAT_ITEM_MISSING);
+    assertEquals (2, aErrorList.getSize ());
+    aRecorder.onDocumentConverted (EUBLDocumentType.INVOICE, null, false, false, aErrorList);
+
+    // A second document without aggregation
+    final TransformationErrorList aErrorList2 = new TransformationErrorList (false);
+    for (int i = 0; i < 3; ++i)
+      aErrorList2.addError (ErrorLocation.create ("PaymentMeans[*]", i), EText.BIC_INVALID, "abc");
+    ConversionMetricsRecorder.create (aStats).onDocumentConverted (EUBLDocumentType.INVOICE,
+                                                                   null,
+                                                                   false,
+                                                                   false,
+                                                                   aErrorList2);
+
+    assertEquals (2, aStats.getDocumentCount ());
+    assertEquals (53, aStats.getBICInvalidCount ());
+    assertEquals (1, aStats.getVATItemMissingCount ());
+    assertEquals (0, aStats.getERBNoDeliveryDateCount ());
+    assertEquals (Long.valueOf (53), aStats.getDiagnosticCounts ().get ("BIC_INVALID"));
+    assertEquals (Long.valueOf (1), aStats.getDiagnosticCounts ().get ("VAT_ITEM_MISSING"));
+    assertEquals (2, aStats.getDiagnosticCounts ().size ());
+  }
+
+  @Test
+  public void testJMX () throws Exception
+  {
+    final ConversionStatistics aStats = new ConversionStatistics ();
+    aStats.onDocumentConverted (false, 3, 1, 0);
+    aStats.onDiagnostic (new TransformationError (EErrorLevel.ERROR,
+                                                  ErrorLocation.create ("PaymentMeans[*]", 0),
+                                                  EText.BIC_INVALID,
+                                                  "xyz"),
+                          1);
+
+    final ObjectName aObjectName = aStats.registerPlatformMBean ("test");
+    try
+    {
+      assertEquals (ConversionStatistics.createObjectName ("test"), aObjectName);
+      final MBeanServer aServer = ManagementFactory.getPlatformMBeanServer ();
+      assertTrue (aServer.isRegistered (aObjectName));
+      assertEquals (Long.valueOf (1), aServer.getAttribute (aObjectName, "DocumentCount"));
+      assertEquals (Long.valueOf (1), aServer.getAttribute (aObjectName, "FailedDocumentCount"));
+      assertEquals (Long.valueOf (3), aServer.getAttribute (aObjectName, "LineCount"));
+      assertEquals (Long.valueOf (1), aServer.getAttribute (aObjectName, "BICInvalidCount"));
+      assertEquals (Long.valueOf (0), aServer.getAttribute (aObjectName, "VATItemMissingCount"));
+      assertEquals (Double.valueOf (0), aServer.getAttribute (aObjectName, "LatencyP99Millis"));
+      final TabularData aCounts = (TabularData) aServer.getAttribute (aObjectName, "DiagnosticCounts");
+      assertEquals (1, aCounts.size ());
+    }
+    finally
+    {
+      ConversionStatistics.unregisterPlatformMBean (aObjectName);
+    }
+    assertFalse (ManagementFactory.getPlatformMBeanServer ().isRegistered (aObjectName));
+  }
+}
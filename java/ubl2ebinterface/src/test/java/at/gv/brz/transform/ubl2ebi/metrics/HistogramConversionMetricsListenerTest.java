@@ -0,0 +1,177 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.Test;
+
+import com.helger.commons.io.resource.inmemory.ReadableResourceByteArray;
+
+import at.gv.brz.transform.ubl2ebi.AbstractConverter.EText;
+import at.gv.brz.transform.ubl2ebi.EUBLDocumentType;
+import at.gv.brz.transform.ubl2ebi.batch.ConversionPipeline;
+import at.gv.brz.transform.ubl2ebi.batch.ConversionResult;
+import at.gv.brz.transform.ubl2ebi.error.ErrorLocation;
+import at.gv.brz.transform.ubl2ebi.error.TransformationErrorList;
+import at.gv.brz.transform.ubl2ebi.synthetic.SyntheticDocumentGenerator;
+import at.gv.brz.transform.ubl2ebi.synthetic.SyntheticDocumentSettings;
+
+/**
+ * Test class for class {@link HistogramConversionMetricsListener}.
+ *
+ * @author philip
+ */
+public final class HistogramConversionMetricsListenerTest
+{
+  private static final Charset UTF8 = Charset.forName ("UTF-8");
+  private static final String INVALID_INVOICE = "<Invoice xmlns=\"urn:oasis:names:specification:ubl:schema:xsd:Invoice-2\"><Foo/></Invoice>";
+
+  @Test
+  public void testNoListener ()
+  {
+    final ConversionMetricsRecorder aRecorder = ConversionMetricsRecorder.create (null);
+    assertFalse (aRecorder.isEnabled ());
+    // Always the same object
+    assertTrue (aRecorder == ConversionMetricsRecorder.create (null));
+
+    final List <String> aLines = Arrays.asList ("a", "b");
+    assertTrue (aLines.iterator ().getClass () == aRecorder.countLines (aLines.iterator ()).getClass ());
+    aRecorder.startStage (EConversionStage.LINES);
+    aRecorder.onDocumentConverted (EUBLDocumentType.INVOICE, null, false, true, new TransformationErrorList ());
+
+    final ConversionPipeline aPipeline = new ConversionPipeline (Locale.GERMANY, Locale.GERMANY, false, false);
+    assertNull (aPipeline.getMetricsListener ());
+  }
+
+  @Test
+  public void testRecorder ()
+  {
+    final HistogramConversionMetricsListener aListener = new HistogramConversionMetricsListener ();
+    final ConversionMetricsRecorder aRecorder = ConversionMetricsRecorder.create (aListener);
+    assertTrue (aRecorder.isEnabled ());
+
+    aRecorder.startStage (EConversionStage.TAX);
+    aRecorder.addTaxSubtotalCount (3);
+    aRecorder.startStage (EConversionStage.LINES);
+    final Iterator <String> aIt = aRecorder.countLines (Arrays.asList ("a", "b", "c").iterator ());
+    while (aIt.hasNext ())
+      aIt.next ();
+    aRecorder.startStage (EConversionStage.ALLOWANCES_CHARGES);
+    aRecorder.addAllowanceChargeCount (2);
+    aRecorder.onDocumentConverted (EUBLDocumentType.INVOICE, null, false, true, new TransformationErrorList ());
+
+    assertEquals (1, aListener.getStageHistogram (EConversionStage.TAX).getTotalCount ());
+    assertEquals (1, aListener.getStageHistogram (EConversionStage.LINES).getTotalCount ());
+    assertEquals (1, aListener.getStageHistogram (EConversionStage.ALLOWANCES_CHARGES).getTotalCount ());
+    assertEquals (0, aListener.getStageHistogram (EConversionStage.PARSE).getTotalCount ());
+    assertEquals (1, aListener.getDocumentCount ());
+    assertEquals (0, aListener.getFailedDocumentCount ());
+    assertEquals (3, aListener.getLineCount ());
+    assertEquals (3, aListener.getTaxSubtotalCount ());
+    assertEquals (2, aListener.getAllowanceChargeCount ());
+    assertTrue (aListener.getAllDiagnosticCounts ().isEmpty ());
+  }
+
+  @Test
+  public void testAggregatedDiagnostics ()
+  {
+    for (final boolean bAggregate : new boolean [] { false, true })
+    {
+      final TransformationErrorList aErrorList = new TransformationErrorList (bAggregate);
+      for (int i = 0; i < 500; ++i)
+        aErrorList.addWarning (ErrorLocation.create ("InvoiceLine[*]/InvoicedQuantity", i),
+                               EText.DETAILS_INVALID_UNIT,
+                               "XYZ");
+      aErrorList.addError (ErrorLocation.create ("Invoice"), EText.ERB_NO_DELIVERY_DATE);
+      assertEquals (bAggregate ? 2 : 501, aErrorList.getSize ());
+
+      final HistogramConversionMetricsListener aListener = new HistogramConversionMetricsListener ();
+      ConversionMetricsRecorder.create (aListener).onDocumentConverted (EUBLDocumentType.INVOICE,
+                                                                        null,
+                                                                        false,
+                                                                        false,
+                                                                        aErrorList);
+      // Each occurrence is counted, independent of the aggregation
+      assertEquals (500, aListener.getDiagnosticCount (EText.DETAILS_INVALID_UNIT));
+      assertEquals (1, aListener.getDiagnosticCount (EText.ERB_NO_DELIVERY_DATE));
+      assertEquals (2, aListener.getAllDiagnosticCounts ().size ());
+    }
+  }
+
+  @Test
+  public void testPipeline ()
+  {
+    final HistogramConversionMetricsListener aListener = new HistogramConversionMetricsListener ();
+    final ConversionPipeline aPipeline = new ConversionPipeline (Locale.GERMANY,
+                                                                 Locale.GERMANY,
+                                                                 false,
+                                                                 false,
+                                                                 null,
+                                                                 aListener);
+    assertTrue (aPipeline.getMetricsListener () == aListener);
+
+    int nLineCount = 0;
+    for (int i = 0; i < 10; ++i)
+    {
+      final int nDocLineCount = 1 + i * 3;
+      final SyntheticDocumentGenerator aGenerator = new SyntheticDocumentGenerator (new SyntheticDocumentSettings ().setSeed (i)
+                                                                                                                    .setLineCount (nDocLineCount));
+      final byte [] aBytes = (i % 2) == 0 ? aGenerator.createInvoiceBytes () : aGenerator.createCreditNoteBytes ();
+      final ConversionResult aResult = aPipeline.convert (i, new ReadableResourceByteArray (aBytes));
+      assertTrue (aResult.toString (), aResult.isSuccess ());
+      nLineCount += nDocLineCount;
+    }
+
+    // Cannot be read
+    final ConversionResult aResult = aPipeline.convert (10,
+                                                        new ReadableResourceByteArray (INVALID_INVOICE.getBytes (UTF8)));
+    assertFalse (aResult.isSuccess ());
+    assertNotNull (aResult.getTransformationErrorList ());
+
+    assertEquals (11, aListener.getDocumentCount ());
+    assertEquals (1, aListener.getFailedDocumentCount ());
+    assertEquals (nLineCount, aListener.getLineCount ());
+    assertTrue (aListener.getTaxSubtotalCount () >= 10);
+    assertEquals (11, aListener.getStageHistogram (EConversionStage.PARSE).getTotalCount ());
+    for (final EConversionStage eStage : new EConversionStage [] { EConversionStage.CHECK_CONSISTENCY,
+                                                                   EConversionStage.HEADER,
+                                                                   EConversionStage.TAX,
+                                                                   EConversionStage.LINES,
+                                                                   EConversionStage.ALLOWANCES_CHARGES,
+                                                                   EConversionStage.PAYMENT,
+                                                                   EConversionStage.DELIVERY,
+                                                                   EConversionStage.MARSHAL })
+      assertEquals (eStage.name (), 10, aListener.getStageHistogram (eStage).getTotalCount ());
+    assertEquals (11, aListener.getProcessingHistogram ().getTotalCount ());
+    assertTrue (aListener.getBytesIn () > aListener.getBytesOut () / 10);
+    assertTrue (aListener.getBytesOut () > 0);
+    assertEquals (1, aListener.getDiagnosticCount (EText.UBL_READ_ERROR));
+    assertEquals (Long.valueOf (1), aListener.getAllDiagnosticCounts ().get (EText.UBL_READ_ERROR));
+    assertNotNull (aListener.toString ());
+  }
+}
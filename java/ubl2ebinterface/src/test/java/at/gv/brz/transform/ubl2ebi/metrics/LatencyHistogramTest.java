@@ -0,0 +1,122 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test class for class {@link LatencyHistogram}.
+ *
+ * @author philip
+ */
+public final class LatencyHistogramTest
+{
+  @Test
+  public void testBuckets ()
+  {
+    for (long i = 0; i < 32; ++i)
+    {
+      assertEquals (i, LatencyHistogram.getBucketIndex (i));
+      assertEquals (i, LatencyHistogram.getHighestValueInBucket ((int) i));
+    }
+
+    final Random aRandom = new Random (4711);
+    int nLastIndex = -1;
+    long nLastValue = -1;
+    for (int i = 0; i < 100000; ++i)
+    {
+      final long nValue = i < 50000 ? i : aRandom.nextLong () >>> (1 + aRandom.nextInt (63));
+      final int nIndex = LatencyHistogram.getBucketIndex (nValue);
+      final long nHighest = LatencyHistogram.getHighestValueInBucket (nIndex);
+      assertTrue (nValue + " " + nHighest, nHighest >= nValue);
+      assertTrue (nValue + " " + nHighest, nHighest - nValue <= nValue / 16);
+      if (i < 50000)
+      {
+        // Monotonic
+        assertTrue (nIndex >= nLastIndex);
+        assertTrue (nValue > nLastValue);
+        nLastIndex = nIndex;
+        nLastValue = nValue;
+      }
+    }
+    assertEquals (Long.MAX_VALUE,
+                  LatencyHistogram.getHighestValueInBucket (LatencyHistogram.getBucketIndex (Long.MAX_VALUE)));
+  }
+
+  @Test
+  public void testPercentiles ()
+  {
+    final LatencyHistogram aHistogram = new LatencyHistogram ();
+    assertEquals (0, aHistogram.getValueAtPercentile (50));
+    assertEquals (0, aHistogram.getMeanNanos (), 0);
+
+    for (int i = 1; i <= 10000; ++i)
+      aHistogram.recordValue (i * 1000L);
+    aHistogram.recordValue (-5);
+
+    assertEquals (10001, aHistogram.getTotalCount ());
+    assertEquals (10000000, aHistogram.getMaxNanos ());
+    assertEquals (10000 * 10001 / 2 * 1000L, aHistogram.getTotalNanos ());
+    final long nP50 = aHistogram.getValueAtPercentile (50);
+    assertTrue (Long.toString (nP50), nP50 >= 5000000 && nP50 <= 5000000 * 17 / 16);
+    final long nP99 = aHistogram.getValueAtPercentile (99);
+    assertTrue (Long.toString (nP99), nP99 >= 9900000 && nP99 <= 10000000);
+    assertEquals (10000000, aHistogram.getValueAtPercentile (100));
+    assertEquals (0, aHistogram.getValueAtPercentile (0));
+  }
+
+  @Test
+  public void testConcurrentRecording () throws InterruptedException
+  {
+    final LatencyHistogram aHistogram = new LatencyHistogram ();
+    final List <Thread> aThreads = new ArrayList <Thread> ();
+    for (int i = 0; i < 4; ++i)
+    {
+      final int nThread = i;
+      aThreads.add (new Thread ()
+      {
+        @Override
+        public void run ()
+        {
+          for (int j = 0; j < 25000; ++j)
+            aHistogram.recordValue (nThread * 1000000L + j);
+        }
+      });
+    }
+    for (final Thread aThread : aThreads)
+      aThread.start ();
+    for (final Thread aThread : aThreads)
+      aThread.join ();
+
+    assertEquals (100000, aHistogram.getTotalCount ());
+    assertEquals (3000000 + 24999, aHistogram.getMaxNanos ());
+    assertEquals (aHistogram.getMaxNanos (), aHistogram.getValueAtPercentile (100));
+
+    // The buckets of all stripes are summed up
+    final long nP25 = aHistogram.getValueAtPercentile (25);
+    assertTrue (Long.toString (nP25), nP25 >= 24999 && nP25 <= 24999 * 17 / 16);
+    final long nP50 = aHistogram.getValueAtPercentile (50);
+    assertTrue (Long.toString (nP50), nP50 >= 1024999 && nP50 <= 1024999 * 17 / 16);
+  }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright (C) 2010-2014 Bundesrechenzentrum GmbH
+ * http://www.brz.gv.at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.gv.brz.transform.ubl2ebi.synthetic;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Locale;
+
+import javax.annotation.Nonnull;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+
+import com.helger.ebinterface.v41.Ebi41InvoiceType;
+import com.helger.ubl21.UBL21Reader;
+import com.helger.validation.error.ErrorList;
+
+import at.gv.brz.transform.ubl2ebi.creditnote.CreditNoteToEbInterface41Converter;
+import at.gv.brz.transform.ubl2ebi.invoice.InvoiceToEbInterface41Converter;
+import oasis.names.specification.ubl.schema.xsd.creditnote_21.CreditNoteType;
+import oasis.names.specification.ubl.schema.xsd.invoice_21.InvoiceType;
+
+/**
+ * Test class for class {@link SyntheticDocumentGenerator}.
+ *
+ * @author philip
+ */
+public final class SyntheticDocumentGeneratorTest
+{
+  @Nonnull
+  private static SyntheticDocumentSettings _createSettings (final int nLineCount)
+  {
+    return new SyntheticDocumentSettings ().setLineCount (nLineCount)
+                                           .setTaxCategoryCount (4)
+                                           .setAllowanceChargeDensity (0.3)
+                                           .setLineDeliveryDensity (0.2)
+                                           .setOrderLineReferenceDensity (0.5);
+  }
+
+  @Test
+  public void testDeterministic ()
+  {
+    final byte [] aBytes1 = new SyntheticDocumentGenerator (_createSettings (50)).createInvoiceBytes ();
+    final byte [] aBytes2 = new SyntheticDocumentGenerator (_createSettings (50)).createInvoiceBytes ();
+    assertArrayEquals (aBytes1, aBytes2);
+
+    final byte [] aBytes3 = new SyntheticDocumentGenerator (_createSettings (50).setSeed (4711)).createInvoiceBytes ();
+    assertFalse (Arrays.equals (aBytes1, aBytes3));
+  }
+
+  @Test
+  public void testConvertInvoice ()
+  {
+    final byte [] aBytes = new SyntheticDocumentGenerator (_createSettings (1000)).createInvoiceBytes ();
+    final InvoiceType aUBLInvoice = UBL21Reader.readInvoice (new StreamSource (new ByteArrayInputStream (aBytes)));
+    assertNotNull (aUBLInvoice);
+    assertEquals (1000, aUBLInvoice.getInvoiceLine ().size ());
+
+    final ErrorList aErrorList = new ErrorList ();
+    final Ebi41InvoiceType aEbInvoice = new InvoiceToEbInterface41Converter (Locale.GERMANY,
+                                                                              Locale.GERMANY,
+                                                                              true).convertToEbInterface (aUBLInvoice,
+                                                                                                          aErrorList);
+    assertTrue (aErrorList.toString (), aErrorList.isEmpty ());
+    assertNotNull (aEbInvoice);
+    assertEquals (1000, aEbInvoice.getDetails ().getItemList ().get (0).getListLineItem ().size ());
+  }
+
+  @Test
+  public void testConvertCreditNote ()
+  {
+    final byte [] aBytes = new SyntheticDocumentGenerator (_createSettings (1000)).createCreditNoteBytes ();
+    final CreditNoteType aUBLCreditNote = UBL21Reader.readCreditNote (new StreamSource (new ByteArrayInputStream (aBytes)));
+    assertNotNull (aUBLCreditNote);
+
+    final ErrorList aErrorList = new ErrorList ();
+    final Ebi41InvoiceType aEbInvoice = new CreditNoteToEbInterface41Converter (Locale.GERMANY,
+                                                                                 Locale.GERMANY,
+                                                                                 true).convertToEbInterface (aUBLCreditNote,
+                                                                                                             aErrorList);
+    assertTrue (aErrorList.toString (), aErrorList.isEmpty ());
+    assertNotNull (aEbInvoice);
+  }
+}